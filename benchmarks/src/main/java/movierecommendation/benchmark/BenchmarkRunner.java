@@ -0,0 +1,35 @@
+package movierecommendation.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once per thread count and writes the results of each run as JSON.
+ * <p>
+ * Thread counts are taken from the {@code threads} system property (default {@code 1,4,16}) and
+ * results are written to {@code jmh-result-<threads>t.json} in the working directory. Other
+ * arguments are passed to JMH, so a subset of benchmarks or parameters can be selected as usual,
+ * e.g. {@code java -Dthreads=8 -jar benchmarks.jar Recommendation -p catalogSize=100000}.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        for (String threads : System.getProperty("threads", "1,4,16").split(",")) {
+            int count = Integer.parseInt(threads.trim());
+            new Runner(new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(count)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-result-" + count + "t.json")
+                    .build()).run();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package movierecommendation.benchmark;
+
+import movierecommendation.model.Movie;
+import movierecommendation.repository.CatalogLoader;
+import movierecommendation.service.GenreDictionary;
+import movierecommendation.service.MovieChangeNotifier;
+import movierecommendation.service.RankingScorer;
+import org.springframework.context.ApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills an empty application database with a generated catalog.
+ * <p>
+ * Movies are inserted by the {@link CatalogLoader}, which is much faster than going through the service,
+ * and the in-memory indexes are then rebuilt as after a journal replay. The catalog is generated from
+ * a fixed seed so that every run measures the same data. Movie IDs are 1 to the catalog size.
+ */
+public final class CatalogSeeder {
+
+    public static final String[] GENRES = {
+            "drama", "comedy", "action", "thriller", "romance", "horror", "documentary", "animation",
+            "adventure", "crime", "fantasy", "family", "mystery", "sci-fi", "war", "western",
+            "musical", "history", "biography", "sport"};
+    public static final int DIRECTORS = 5_000;
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private CatalogSeeder() {
+    }
+
+    /**
+     * Returns the title of a seeded movie.
+     */
+    public static String title(long id) {
+        return "Movie " + id;
+    }
+
+    /**
+     * Returns the release year of a seeded movie.
+     */
+    public static int releaseYear(long id) {
+        return 1950 + (int) (id % 75);
+    }
+
+    public static void seed(ApplicationContext context, int catalogSize) {
+        CatalogLoader catalogLoader = context.getBean(CatalogLoader.class);
+        GenreDictionary genreDictionary = context.getBean(GenreDictionary.class);
+        RankingScorer rankingScorer = context.getBean(RankingScorer.class);
+        SplittableRandom random = new SplittableRandom(42);
+        List<Movie> movies = new ArrayList<>(BATCH_SIZE);
+        for (long id = 1; id <= catalogSize; id++) {
+            String genre = GENRES[(int) (id % GENRES.length)];
+            if (id % 3 == 0) {
+                genre += "|" + GENRES[(int) (id / 3 % GENRES.length)];
+            }
+            int numberOfRatings = random.nextInt(500);
+            double averageRating = numberOfRatings == 0 ? 0 : 1 + random.nextInt(401) / 100.0;
+            movies.add(Movie.builder()
+                    .id(id)
+                    .title(title(id))
+                    .genre(genre)
+                    .genreBits(genreDictionary.encode(genre))
+                    .releaseYear(releaseYear(id))
+                    .director("Director " + (id % DIRECTORS))
+                    .averageRating(averageRating)
+                    .numberOfRatings(numberOfRatings)
+                    .rankingScore(rankingScorer.score(averageRating, numberOfRatings))
+                    .build());
+            if (movies.size() == BATCH_SIZE) {
+                catalogLoader.insertMovies(movies);
+                movies.clear();
+            }
+        }
+        catalogLoader.insertMovies(movies);
+        catalogLoader.restartMovieSequenceAbove(catalogSize);
+        context.getBean(MovieChangeNotifier.class).catalogReloaded();
+        awaitProjections(context);
+    }
+
+    /**
+     * Waits until the in-memory read model reflects every change published so far.
+     */
+    public static void awaitProjections(ApplicationContext context) {
+        try {
+            if (!context.getBean(MovieChangeNotifier.class).awaitProjections(10, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Projections did not catch up within 10 minutes");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for projections", e);
+        }
+    }
+}
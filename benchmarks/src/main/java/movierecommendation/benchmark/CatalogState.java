@@ -0,0 +1,60 @@
+package movierecommendation.benchmark;
+
+import movierecommendation.MovieRecommendation;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.service.MovieService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.SplittableRandom;
+
+/**
+ * An application context backed by an in-memory H2 catalog of {@link #catalogSize} movies,
+ * seeded by {@link CatalogSeeder}.
+ */
+@State(Scope.Benchmark)
+public class CatalogState {
+
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    ConfigurableApplicationContext context;
+    MovieService movieService;
+    MovieRepository movieRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(MovieRecommendation.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                        "movies.journal.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+        movieService = context.getBean(MovieService.class);
+        movieRepository = context.getBean(MovieRepository.class);
+        CatalogSeeder.seed(context, catalogSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Returns the ID of a random seeded movie.
+     */
+    long randomMovieId(SplittableRandom random) {
+        return 1 + random.nextInt(catalogSize);
+    }
+}
@@ -0,0 +1,71 @@
+package movierecommendation.benchmark;
+
+import movierecommendation.model.Movie;
+import movierecommendation.model.RecommendationQuery;
+import movierecommendation.service.MovieService;
+import movierecommendation.service.MovieServiceImpl;
+import movierecommendation.service.TimedMovieService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the service timers: {@code rateMovie} and {@code recommendMoviesByRatingsAndGenre} called
+ * on the {@link TimedMovieService} and directly on the {@link MovieServiceImpl} it wraps. Run with
+ * {@code -prof gc} to compare the allocation per operation as well as the time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class InstrumentationBenchmark {
+
+    private static final RecommendationQuery QUERY = RecommendationQuery.builder().genre("drama").limit(10).build();
+
+    @State(Scope.Benchmark)
+    public static class ServiceState {
+
+        @Param({"timed", "bare"})
+        public String service;
+
+        MovieService movieService;
+
+        @Setup(Level.Trial)
+        public void setUp(CatalogState catalog) {
+            movieService = service.equals("timed")
+                    ? catalog.context.getBean(TimedMovieService.class)
+                    : catalog.context.getBean(MovieServiceImpl.class);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+    }
+
+    @Benchmark
+    public ResponseEntity<String> rateMovie(CatalogState catalog, ServiceState state, ThreadState thread) {
+        return state.movieService.rateMovie(catalog.randomMovieId(thread.random), null, 1 + thread.random.nextInt(5));
+    }
+
+    @Benchmark
+    public List<Movie> recommendMoviesByRatingsAndGenre(ServiceState state) {
+        return state.movieService.recommendMoviesByRatingsAndGenre(QUERY);
+    }
+}
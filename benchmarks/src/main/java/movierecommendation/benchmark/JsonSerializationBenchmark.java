@@ -0,0 +1,102 @@
+package movierecommendation.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import movierecommendation.model.Movie;
+import movierecommendation.model.MovieField;
+import movierecommendation.model.SparseMovieList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of movie lists as returned by the endpoints, with the object mapper configuration
+ * Spring MVC uses by default for each format. Does not need the application context.
+ * <p>
+ * {@code format} selects JSON or one of the binary encodings the endpoints negotiate, and
+ * {@code fields} either every field or the sparse fieldset of a list view. The payload size of each
+ * combination is printed once per trial, so it can be compared with the time per list.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    @Param({"all", "id,title,averageRating"})
+    public String fields;
+
+    private ObjectWriter writer;
+    private Object body;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        ObjectMapper objectMapper = mapper(format);
+        List<Movie> movies = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            movies.add(Movie.builder()
+                    .id(id)
+                    .title("Movie " + id)
+                    .genre(CatalogSeeder.GENRES[(int) (id % CatalogSeeder.GENRES.length)])
+                    .director("Director " + id)
+                    .releaseYear(1950 + (int) (id % 75))
+                    .averageRating(1 + id % 400 / 100.0)
+                    .numberOfRatings((int) (id * 7 % 500))
+                    .rankingScore(1 + id % 400 / 100.0)
+                    .build());
+        }
+        if (fields.equals("all")) {
+            writer = objectMapper.writerFor(TypeFactory.defaultInstance().constructCollectionType(List.class, Movie.class));
+            body = movies;
+        } else {
+            writer = objectMapper.writerFor(SparseMovieList.class);
+            body = new SparseMovieList(movies, MovieField.from(Arrays.asList(fields.split(","))));
+        }
+        System.out.printf(Locale.ROOT, "%n%s, fields %s, %d movies: %d bytes%n", format, fields, size,
+                writeMovieList().length);
+    }
+
+    @Benchmark
+    public byte[] writeMovieList() throws JsonProcessingException {
+        return writer.writeValueAsBytes(body);
+    }
+
+    private static ObjectMapper mapper(String format) {
+        switch (format) {
+            case "json":
+                return Jackson2ObjectMapperBuilder.json().build();
+            case "smile":
+                return Jackson2ObjectMapperBuilder.smile().build();
+            case "cbor":
+                return Jackson2ObjectMapperBuilder.cbor().build();
+            default:
+                throw new IllegalArgumentException("Unknown format " + format);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package movierecommendation.benchmark;
+
+import movierecommendation.model.Movie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The repository queries on the request paths of the service.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class MovieRepositoryBenchmark {
+
+    private static final PageRequest PAGE = PageRequest.of(0, 100);
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+    }
+
+    @Benchmark
+    public Optional<Movie> findById(CatalogState catalog, ThreadState thread) {
+        return catalog.movieRepository.findById(catalog.randomMovieId(thread.random));
+    }
+
+    @Benchmark
+    public boolean existsByTitleAndReleaseYear(CatalogState catalog, ThreadState thread) {
+        long id = catalog.randomMovieId(thread.random);
+        return catalog.movieRepository.existsByTitleAndReleaseYear(CatalogSeeder.title(id), CatalogSeeder.releaseYear(id));
+    }
+
+    @Benchmark
+    public List<Movie> findByIdGreaterThanOrderByIdAsc(CatalogState catalog, ThreadState thread) {
+        return catalog.movieRepository.findByIdGreaterThanOrderByIdAsc(catalog.randomMovieId(thread.random), PAGE);
+    }
+}
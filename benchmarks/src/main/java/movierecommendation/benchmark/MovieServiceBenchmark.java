@@ -0,0 +1,60 @@
+package movierecommendation.benchmark;
+
+import movierecommendation.model.Movie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write paths of {@link movierecommendation.service.MovieService}.
+ * <p>
+ * Added movies stay in the catalog, so the catalog grows by the number of {@code addMovie}
+ * invocations over a trial; that is small next to the seeded sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class MovieServiceBenchmark {
+
+    private static final AtomicLong TITLES = new AtomicLong();
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+    }
+
+    @Benchmark
+    public ResponseEntity<String> rateMovie(CatalogState catalog, ThreadState thread) {
+        return catalog.movieService.rateMovie(catalog.randomMovieId(thread.random),
+                (long) thread.random.nextInt(100_000), 1 + thread.random.nextInt(5));
+    }
+
+    @Benchmark
+    public ResponseEntity<String> rateMovieAnonymously(CatalogState catalog, ThreadState thread) {
+        return catalog.movieService.rateMovie(catalog.randomMovieId(thread.random), null, 1 + thread.random.nextInt(5));
+    }
+
+    @Benchmark
+    public ResponseEntity<String> addMovie(CatalogState catalog, ThreadState thread) {
+        return catalog.movieService.addMovie(Movie.builder()
+                .title("Added " + TITLES.incrementAndGet())
+                .genre(CatalogSeeder.GENRES[thread.random.nextInt(CatalogSeeder.GENRES.length)])
+                .director("Director " + thread.random.nextInt(CatalogSeeder.DIRECTORS))
+                .releaseYear(1950 + thread.random.nextInt(75))
+                .build());
+    }
+}
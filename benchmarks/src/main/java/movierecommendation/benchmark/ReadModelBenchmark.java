@@ -0,0 +1,58 @@
+package movierecommendation.benchmark;
+
+import movierecommendation.index.MovieRankingIndex;
+import movierecommendation.model.GenreFilter;
+import movierecommendation.model.Movie;
+import movierecommendation.model.MovieSort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of the whole catalog and of ranking pages from the struct-of-arrays read model, next to
+ * loading the catalog as JPA entities as {@code getAllMovies} used to. Run it with {@code -prof gc}
+ * to compare allocation and collections per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ReadModelBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class IndexState {
+        MovieRankingIndex movieRankingIndex;
+
+        @Setup(Level.Trial)
+        public void setUp(CatalogState catalog) {
+            movieRankingIndex = catalog.context.getBean(MovieRankingIndex.class);
+        }
+    }
+
+    @Benchmark
+    public List<Movie> getAllMovies(CatalogState catalog) {
+        return catalog.movieService.getAllMovies();
+    }
+
+    @Benchmark
+    public List<Movie> findAllEntities(CatalogState catalog) {
+        return catalog.movieRepository.findAll();
+    }
+
+    @Benchmark
+    public List<Movie> rankingPage(IndexState state) {
+        return state.movieRankingIndex.page(GenreFilter.UNFILTERED, MovieSort.SCORE, null, 100);
+    }
+}
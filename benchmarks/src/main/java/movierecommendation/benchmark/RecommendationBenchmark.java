@@ -0,0 +1,76 @@
+package movierecommendation.benchmark;
+
+import movierecommendation.model.GenreMatch;
+import movierecommendation.model.Movie;
+import movierecommendation.model.RecommendationQuery;
+import movierecommendation.util.MovieCursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link movierecommendation.service.MovieService#recommendMoviesByRatingsAndGenre} with and without
+ * genre filters. First pages are served from the recommendation cache; later pages always walk the
+ * ranking index, so {@code page=next} measures the index itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class RecommendationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class QueryState {
+
+        @Param({"none", "single", "any", "all"})
+        public String genres;
+
+        @Param({"first", "next"})
+        public String page;
+
+        RecommendationQuery query;
+
+        @Setup(Level.Trial)
+        public void setUp(CatalogState catalog) {
+            RecommendationQuery.RecommendationQueryBuilder builder = RecommendationQuery.builder().limit(10);
+            switch (genres) {
+                case "single":
+                    builder.genre("drama");
+                    break;
+                case "any":
+                    builder.genre("drama").genre("comedy").match(GenreMatch.ANY);
+                    break;
+                case "all":
+                    builder.genre("drama").genre("comedy").match(GenreMatch.ALL);
+                    break;
+                default:
+                    break;
+            }
+            query = builder.build();
+            if (page.equals("next")) {
+                List<Movie> first = catalog.movieService.recommendMoviesByRatingsAndGenre(query);
+                if (!first.isEmpty()) {
+                    query = builder.after(MovieCursor.of(first.get(first.size() - 1), query.getSort())).build();
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Movie> recommendMoviesByRatingsAndGenre(CatalogState catalog, QueryState state) {
+        return catalog.movieService.recommendMoviesByRatingsAndGenre(state.query);
+    }
+}
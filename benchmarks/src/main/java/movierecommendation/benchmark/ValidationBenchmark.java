@@ -0,0 +1,82 @@
+package movierecommendation.benchmark;
+
+import movierecommendation.model.Movie;
+import movierecommendation.model.MovieValidation;
+import movierecommendation.util.MovieValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejection throughput of invalid movies: the {@link MovieValidator#validate validation results}
+ * next to the previous path, which threw and caught an exception with a full stack trace for every
+ * rejected movie. Rejections happen {@code depth} frames below the benchmark method, as they would
+ * below the web framework on a request thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+
+    @Param({"10", "100"})
+    public int depth;
+
+    private final MovieValidator movieValidator = new MovieValidator();
+    private final Movie invalid = Movie.builder().title("No Director").genre("Drama").releaseYear(1700).build();
+
+    @Benchmark
+    public String rejectWithValidation() {
+        return validate(depth);
+    }
+
+    @Benchmark
+    public String rejectWithException() {
+        try {
+            throwIfInvalid(depth);
+            return null;
+        } catch (Rejection e) {
+            return e.getMessage();
+        }
+    }
+
+    private String validate(int frames) {
+        if (frames > 0) {
+            return validate(frames - 1);
+        }
+        MovieValidation validation = movieValidator.validate(invalid);
+        return validation.isValid() ? null : validation.getMessage();
+    }
+
+    private void throwIfInvalid(int frames) throws Rejection {
+        if (frames > 0) {
+            throwIfInvalid(frames - 1);
+            return;
+        }
+        if (!movieValidator.validateMovie(invalid)) {
+            throw new Rejection("Missing mandatory fields: title, genre, and director are required");
+        }
+    }
+
+    /**
+     * The exception the rejection path used to throw.
+     */
+    private static final class Rejection extends Throwable {
+        private static final long serialVersionUID = 1L;
+
+        Rejection(String message) {
+            super(message);
+        }
+    }
+}
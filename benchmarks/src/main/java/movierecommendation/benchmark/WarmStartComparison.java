@@ -0,0 +1,149 @@
+package movierecommendation.benchmark;
+
+import movierecommendation.MovieRecommendation;
+import movierecommendation.model.Movie;
+import movierecommendation.model.RecommendationQuery;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.service.GenreDictionary;
+import movierecommendation.service.MovieChangeNotifier;
+import movierecommendation.service.MovieService;
+import movierecommendation.snapshot.CatalogSnapshotManager;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the time to ready of a node whose catalog is re-inserted through JPA with one whose
+ * catalog is loaded from a {@link CatalogSnapshotManager catalog snapshot}.
+ * <p>
+ * A catalog of {@code catalog} movies is seeded once and exported to a snapshot. Each run then boots
+ * a fresh application on an empty in-memory database and measures the time until it serves the
+ * whole catalog from its in-memory indexes:
+ * <ul>
+ *     <li>{@code jpa}: the movies are saved through {@link MovieRepository#saveAll} in chunks, as a
+ *     node without a snapshot would have to, and the indexes are rebuilt.</li>
+ *     <li>{@code snapshot}: the snapshot is loaded during startup.</li>
+ * </ul>
+ * Usage: {@code java -cp benchmarks.jar movierecommendation.benchmark.WarmStartComparison catalog=100000 runs=3}
+ */
+public final class WarmStartComparison {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private WarmStartComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int catalogSize = 100_000;
+        int runs = 3;
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            switch (pair[0]) {
+                case "catalog":
+                    catalogSize = Integer.parseInt(pair[1]);
+                    break;
+                case "runs":
+                    runs = Integer.parseInt(pair[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + pair[0]);
+            }
+        }
+
+        Path directory = Files.createTempDirectory("warm-start");
+        Path snapshot = directory.resolve("catalog.snap");
+        Path noSnapshot = directory.resolve("none.snap");
+        List<Movie> movies;
+        try (ConfigurableApplicationContext seeded = boot(snapshot)) {
+            CatalogSeeder.seed(seeded, catalogSize);
+            movies = seeded.getBean(MovieService.class).getAllMovies();
+            seeded.getBean(CatalogSnapshotManager.class).export();
+        }
+        System.out.printf(Locale.ROOT, "catalog: %d movies, snapshot: %d bytes%n", catalogSize, Files.size(snapshot));
+
+        for (int run = 1; run <= runs; run++) {
+            long jpa = timeToReadyWithJpa(movies, noSnapshot);
+            long fromSnapshot = timeToReadyWithSnapshot(snapshot, catalogSize);
+            System.out.printf(Locale.ROOT, "run %d: jpa %d ms, snapshot %d ms%n", run, jpa, fromSnapshot);
+        }
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(directory);
+    }
+
+    private static long timeToReadyWithJpa(List<Movie> movies, Path noSnapshot) {
+        long start = System.nanoTime();
+        try (ConfigurableApplicationContext context = boot(noSnapshot)) {
+            MovieRepository movieRepository = context.getBean(MovieRepository.class);
+            GenreDictionary genreDictionary = context.getBean(GenreDictionary.class);
+            TransactionTemplate transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+            for (int from = 0; from < movies.size(); from += CHUNK_SIZE) {
+                List<Movie> chunk = movies.subList(from, Math.min(movies.size(), from + CHUNK_SIZE));
+                transactionTemplate.executeWithoutResult(status -> movieRepository.saveAll(copies(chunk, genreDictionary)));
+            }
+            context.getBean(MovieChangeNotifier.class).catalogReloaded();
+            CatalogSeeder.awaitProjections(context);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            check(context, movies.size());
+            return elapsed;
+        }
+    }
+
+    private static long timeToReadyWithSnapshot(Path snapshot, int catalogSize) {
+        long start = System.nanoTime();
+        try (ConfigurableApplicationContext context = boot(snapshot)) {
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            check(context, catalogSize);
+            return elapsed;
+        }
+    }
+
+    private static ConfigurableApplicationContext boot(Path snapshot) {
+        return new SpringApplicationBuilder(MovieRecommendation.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:warm-start-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                        "movies.journal.enabled=false",
+                        "movies.snapshot.file=" + snapshot,
+                        "logging.level.root=WARN")
+                .run();
+    }
+
+    private static List<Movie> copies(List<Movie> movies, GenreDictionary genreDictionary) {
+        List<Movie> copies = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            copies.add(Movie.builder()
+                    .title(movie.getTitle())
+                    .genre(movie.getGenre())
+                    .genreBits(genreDictionary.encode(movie.getGenre()))
+                    .releaseYear(movie.getReleaseYear())
+                    .director(movie.getDirector())
+                    .averageRating(movie.getAverageRating())
+                    .numberOfRatings(movie.getNumberOfRatings())
+                    .rankingScore(movie.getRankingScore())
+                    .build());
+        }
+        return copies;
+    }
+
+    private static void check(ConfigurableApplicationContext context, int catalogSize) {
+        int loaded = context.getBean(MovieService.class)
+                .recommendMoviesByRatingsAndGenre(RecommendationQuery.builder().build()).size();
+        if (loaded != catalogSize) {
+            throw new IllegalStateException("Expected " + catalogSize + " movies to be served but got " + loaded);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package movierecommendation.loadtest;
+
+import movierecommendation.MovieRecommendation;
+import movierecommendation.benchmark.CatalogSeeder;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Compares the rating throughput of {@code POST /movies/{id}/rate}, one request per rating, with
+ * {@code POST /movies/ratings:batch}, as a client uploading buffered ratings would send them.
+ * <p>
+ * Boots the application on a random local port with a seeded in-memory catalog. Each run sends the
+ * same {@code ratings} ratings, generated from a fixed seed, over {@code clients} concurrent
+ * connections: first one request per rating, then in batches of {@code batch} ratings. Each client
+ * waits for a response before sending its next request. Throughput is reported in ratings per second
+ * together with the speedup of the batches. Single ratings are written to the database by the periodic
+ * flush after they were answered, while every batch is flushed before it is answered, so the speedup
+ * does not flatter the batches.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar movierecommendation.loadtest.BatchRatingComparison catalog=100000 ratings=100000 batch=50 clients=8 runs=3}
+ */
+public final class BatchRatingComparison {
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final URI base;
+    private final int clients;
+
+    private BatchRatingComparison(URI base, int clients) {
+        this.base = base;
+        this.clients = clients;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int catalogSize = 100_000;
+        int ratings = 100_000;
+        int batchSize = 50;
+        int clients = 8;
+        int runs = 3;
+        long seed = 42;
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            switch (pair[0]) {
+                case "catalog":
+                    catalogSize = Integer.parseInt(pair[1]);
+                    break;
+                case "ratings":
+                    ratings = Integer.parseInt(pair[1]);
+                    break;
+                case "batch":
+                    batchSize = Integer.parseInt(pair[1]);
+                    break;
+                case "clients":
+                    clients = Integer.parseInt(pair[1]);
+                    break;
+                case "runs":
+                    runs = Integer.parseInt(pair[1]);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(pair[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + pair[0]);
+            }
+        }
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MovieRecommendation.class)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:batchrating;DB_CLOSE_DELAY=-1",
+                        "movies.journal.enabled=false",
+                        "logging.level.root=WARN")
+                .run()) {
+            CatalogSeeder.seed(context, catalogSize);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            BatchRatingComparison comparison = new BatchRatingComparison(URI.create("http://localhost:" + port), clients);
+
+            List<String> singles = new ArrayList<>(ratings);
+            List<String> batches = new ArrayList<>();
+            SplittableRandom random = new SplittableRandom(seed);
+            StringBuilder batch = new StringBuilder();
+            for (int i = 0; i < ratings; i++) {
+                long movieId = 1 + random.nextInt(catalogSize);
+                int rating = 1 + random.nextInt(5);
+                long userId = random.nextInt(100_000);
+                singles.add("/movies/" + movieId + "/rate?rating=" + rating + "&userId=" + userId);
+                batch.append(batch.length() == 0 ? "[" : ",").append("{\"movieId\":").append(movieId)
+                        .append(",\"userId\":").append(userId).append(",\"rating\":").append(rating).append('}');
+                if ((i + 1) % batchSize == 0 || i == ratings - 1) {
+                    batches.add(batch.append(']').toString());
+                    batch.setLength(0);
+                }
+            }
+            System.out.printf(Locale.ROOT, "catalog: %d movies, %d ratings, batches of %d, %d clients%n",
+                    catalogSize, ratings, batchSize, clients);
+
+            for (int run = 1; run <= runs; run++) {
+                double single = ratings / comparison.send(singles, path -> HttpRequest.newBuilder(comparison.base.resolve(path))
+                        .POST(HttpRequest.BodyPublishers.noBody()).build());
+                double batched = ratings / comparison.send(batches, body -> HttpRequest.newBuilder(
+                                comparison.base.resolve("/movies/ratings:batch"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body)).build());
+                System.out.printf(Locale.ROOT, "run %d: single %.0f ratings/s, batch %.0f ratings/s, speedup %.1fx%n",
+                        run, single, batched, batched / single);
+            }
+        }
+    }
+
+    /**
+     * Sends every request over the clients and returns the elapsed time in seconds.
+     */
+    private double send(List<String> requests, Function<String, HttpRequest> builder) throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                workers.add(executor.submit(() -> {
+                    for (int request; (request = next.getAndIncrement()) < requests.size(); ) {
+                        try {
+                            HttpResponse<Void> response = client.send(builder.apply(requests.get(request)),
+                                    HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 400) {
+                                failed.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failed.get() > 0) {
+            System.out.printf(Locale.ROOT, "%d of %d requests failed%n", failed.get(), requests.size());
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
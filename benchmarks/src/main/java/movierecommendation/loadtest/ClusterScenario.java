@@ -0,0 +1,325 @@
+package movierecommendation.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import movierecommendation.MovieRecommendation;
+import movierecommendation.benchmark.CatalogSeeder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs a cluster of application JVMs over loopback and checks that movies are partitioned, rated
+ * and recommended consistently while members join and leave.
+ * <p>
+ * Each node is started as a separate {@code java} process from the current class path, with its own
+ * in-memory database and the journal disabled, and joins through the first node. The scenario then:
+ * <ol>
+ *     <li>adds {@code catalog} movies through the first node and waits until they are handed off to
+ *     their owners;</li>
+ *     <li>sends {@code ratings} ratings, each to a random node, and waits until every node serves the
+ *     same merged recommendations, holding all of the ratings;</li>
+ *     <li>starts one more node and waits until its share of the movies was handed off to it;</li>
+ *     <li>stops the second node gracefully and waits until its movies were handed off to the
+ *     remaining nodes.</li>
+ * </ol>
+ * After each step the number of movies on every node is printed from {@code /cluster/status}, and no
+ * movie or rating may have been lost. Logs of the nodes are written to a temporary directory.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar movierecommendation.loadtest.ClusterScenario nodes=3 catalog=3000 ratings=10000 port=18080}
+ */
+public final class ClusterScenario {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(120);
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Process> nodes = new LinkedHashMap<>();
+    private final Path logs;
+    private final int basePort;
+    private int nextNodeId = 1;
+
+    private ClusterScenario(int basePort) throws IOException {
+        this.basePort = basePort;
+        this.logs = Files.createTempDirectory("cluster-scenario");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int nodeCount = 3;
+        int catalogSize = 3_000;
+        int ratingCount = 10_000;
+        int port = 18_080;
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            switch (pair[0]) {
+                case "nodes":
+                    nodeCount = Integer.parseInt(pair[1]);
+                    break;
+                case "catalog":
+                    catalogSize = Integer.parseInt(pair[1]);
+                    break;
+                case "ratings":
+                    ratingCount = Integer.parseInt(pair[1]);
+                    break;
+                case "port":
+                    port = Integer.parseInt(pair[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + pair[0]);
+            }
+        }
+        if (nodeCount < 2) {
+            throw new IllegalArgumentException("A cluster needs at least 2 nodes");
+        }
+        ClusterScenario scenario = new ClusterScenario(port);
+        try {
+            scenario.run(nodeCount, catalogSize, ratingCount);
+        } finally {
+            scenario.stopAll();
+        }
+    }
+
+    private void run(int nodeCount, int catalogSize, int ratingCount) throws Exception {
+        System.out.printf(Locale.ROOT, "Starting %d nodes, logs in %s%n", nodeCount, logs);
+        for (int i = 0; i < nodeCount; i++) {
+            start();
+        }
+        List<String> members = new ArrayList<>(nodes.keySet());
+        await("all nodes to join", () -> allKnow(members));
+
+        long start = System.nanoTime();
+        List<Long> ids = addMovies(members.get(0), catalogSize);
+        await("new movies to be handed off", () -> settled() && totalMovies() == catalogSize);
+        report("added " + catalogSize + " movies", start);
+
+        start = System.nanoTime();
+        rate(members, ids, ratingCount);
+        await("ratings to be applied", () -> settled() && consistentRecommendations(catalogSize, ratingCount));
+        report("applied " + ratingCount + " ratings", start);
+
+        start = System.nanoTime();
+        String joined = start();
+        members.add(joined);
+        await(joined + " to join", () -> allKnow(members));
+        await("movies to be handed off to " + joined,
+                () -> movies(joined) > 0 && settled() && totalMovies() == catalogSize);
+        check(catalogSize, ratingCount);
+        report(joined + " joined", start);
+
+        start = System.nanoTime();
+        String leaving = members.remove(1);
+        stop(leaving);
+        await(leaving + " to leave", () -> allKnow(members) && settled() && totalMovies() == catalogSize);
+        check(catalogSize, ratingCount);
+        report(leaving + " left", start);
+        System.out.println("Cluster scenario passed");
+    }
+
+    private String start() throws IOException, InterruptedException {
+        int nodeId = nextNodeId++;
+        String url = "http://localhost:" + (basePort + nodeId);
+        String seed = nodes.isEmpty() ? "" : nodes.keySet().iterator().next();
+        ProcessBuilder builder = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                MovieRecommendation.class.getName(),
+                "--server.port=" + (basePort + nodeId),
+                "--spring.datasource.url=jdbc:h2:mem:cluster-" + nodeId + ";DB_CLOSE_DELAY=-1",
+                "--movies.journal.enabled=false",
+                "--movies.snapshot.file=" + logs.resolve("node-" + nodeId + ".snap"),
+                "--movies.cluster.enabled=true",
+                "--movies.cluster.self-url=" + url,
+                "--movies.cluster.node-id=" + nodeId,
+                "--movies.cluster.seeds=" + seed,
+                "--movies.cluster.rebalance-interval-ms=5000",
+                "--logging.level.root=WARN",
+                "--logging.level.movierecommendation.cluster=INFO")
+                .redirectErrorStream(true)
+                .redirectOutput(logs.resolve("node-" + nodeId + ".log").toFile());
+        nodes.put(url, builder.start());
+        await(url + " to start", () -> get(url, "/actuator/health") != null);
+        return url;
+    }
+
+    private void stop(String url) throws InterruptedException {
+        Process process = nodes.remove(url);
+        process.destroy();
+        if (!process.waitFor(TIMEOUT.toSeconds(), TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IllegalStateException(url + " did not stop within " + TIMEOUT);
+        }
+    }
+
+    private void stopAll() throws InterruptedException {
+        for (String url : new ArrayList<>(nodes.keySet())) {
+            stop(url);
+        }
+    }
+
+    private List<Long> addMovies(String url, int catalogSize) throws IOException, InterruptedException {
+        List<Map<String, Object>> movies = new ArrayList<>(catalogSize);
+        for (long i = 1; i <= catalogSize; i++) {
+            Map<String, Object> movie = new LinkedHashMap<>();
+            movie.put("title", CatalogSeeder.title(i));
+            movie.put("genre", CatalogSeeder.GENRES[(int) (i % CatalogSeeder.GENRES.length)]);
+            movie.put("releaseYear", CatalogSeeder.releaseYear(i));
+            movie.put("director", "Director " + i % CatalogSeeder.DIRECTORS);
+            movies.add(movie);
+        }
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url + "/movies/addMovies"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(movies)))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        List<Long> ids = new ArrayList<>(catalogSize);
+        for (JsonNode result : objectMapper.readTree(response.body()).path("results")) {
+            if (result.hasNonNull("movieId")) {
+                ids.add(result.get("movieId").asLong());
+            }
+        }
+        if (ids.size() != catalogSize) {
+            throw new IllegalStateException("Expected " + catalogSize + " movies to be added but got " + ids.size());
+        }
+        return ids;
+    }
+
+    private void rate(List<String> members, List<Long> ids, int ratingCount) throws IOException, InterruptedException {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < ratingCount; i++) {
+            String url = members.get(random.nextInt(members.size()));
+            long movieId = ids.get(random.nextInt(ids.size()));
+            URI uri = URI.create(url + "/movies/" + movieId + "/rate?rating=" + (1 + random.nextInt(5)));
+            int status;
+            do {
+                status = client.send(HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                        HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (status == 429) {
+                    Thread.sleep(1000);
+                }
+            } while (status == 429);
+            if (status != 200 && status != 202) {
+                throw new IllegalStateException("Rating movie " + movieId + " on " + url + " failed with " + status);
+            }
+        }
+    }
+
+    private boolean allKnow(List<String> members) {
+        for (String url : nodes.keySet()) {
+            JsonNode status = get(url, "/cluster/status");
+            if (status == null || status.path("members").size() != members.size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int movies(String url) {
+        JsonNode status = get(url, "/cluster/status");
+        return status == null ? -1 : status.path("movies").asInt();
+    }
+
+    private int totalMovies() {
+        int total = 0;
+        for (String url : nodes.keySet()) {
+            total += movies(url);
+        }
+        return total;
+    }
+
+    /**
+     * @return true once no node has movies left to hand off or ratings left to forward.
+     */
+    private boolean settled() {
+        for (String url : nodes.keySet()) {
+            JsonNode status = get(url, "/cluster/status");
+            if (status == null || status.path("rebalancing").asBoolean() || status.path("pendingRatings").asInt() > 0
+                    || status.path("parkedRatings").asInt() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean consistentRecommendations(int catalogSize, int ratingCount) {
+        try {
+            check(catalogSize, ratingCount);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Every node must serve the same merged recommendations, covering the whole catalog and every
+     * rating sent.
+     */
+    private void check(int catalogSize, int ratingCount) {
+        JsonNode expected = null;
+        for (String url : nodes.keySet()) {
+            JsonNode movies = get(url, "/movies/recommend");
+            if (movies == null || movies.size() != catalogSize) {
+                throw new IllegalStateException(url + " does not recommend all " + catalogSize + " movies");
+            }
+            long ratings = 0;
+            for (JsonNode movie : movies) {
+                ratings += movie.path("numberOfRatings").asLong();
+            }
+            if (ratings != ratingCount) {
+                throw new IllegalStateException(url + " holds " + ratings + " of " + ratingCount + " ratings");
+            }
+            if (expected != null && !expected.equals(movies)) {
+                throw new IllegalStateException(url + " recommends differently from the other nodes");
+            }
+            expected = movies;
+        }
+    }
+
+    private JsonNode get(String url, String path) {
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url + path))
+                    .timeout(Duration.ofSeconds(10)).build(), HttpResponse.BodyHandlers.ofString());
+            return response.statusCode() == 200 ? objectMapper.readTree(response.body()) : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void await(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Timed out waiting for " + what + ", see the logs in " + logs);
+            }
+            Thread.sleep(200);
+        }
+    }
+
+    private void report(String step, long start) {
+        StringBuilder counts = new StringBuilder();
+        for (String url : nodes.keySet()) {
+            counts.append(counts.length() == 0 ? "" : ", ").append(url).append('=').append(movies(url));
+        }
+        System.out.printf(Locale.ROOT, "%s in %d ms, movies per node: %s%n", step,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), counts);
+    }
+}
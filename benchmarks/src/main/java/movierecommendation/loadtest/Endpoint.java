@@ -0,0 +1,91 @@
+package movierecommendation.loadtest;
+
+import movierecommendation.benchmark.CatalogSeeder;
+import movierecommendation.util.MovieCursor;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+/**
+ * The endpoints driven by the load test, each with a generator of representative requests.
+ * Seeded movies have IDs 1 to the catalog size.
+ */
+enum Endpoint {
+
+    GET_MOVIES("getMovies") {
+        @Override
+        HttpRequest.Builder request(URI base, SplittableRandom random, int catalogSize, long sequence) {
+            String cursor = new MovieCursor(0, random.nextInt(catalogSize)).encode();
+            return HttpRequest.newBuilder(base.resolve("/movies/getMovies?limit=100&cursor=" + cursor)).GET();
+        }
+    },
+    ADD_MOVIE("addMovie") {
+        @Override
+        HttpRequest.Builder request(URI base, SplittableRandom random, int catalogSize, long sequence) {
+            String body = "{\"title\":\"Load test " + sequence + "\",\"genre\":\""
+                    + CatalogSeeder.GENRES[random.nextInt(CatalogSeeder.GENRES.length)]
+                    + "\",\"director\":\"Director " + random.nextInt(CatalogSeeder.DIRECTORS)
+                    + "\",\"releaseYear\":" + (1950 + random.nextInt(75)) + "}";
+            return HttpRequest.newBuilder(base.resolve("/movies/addMovie"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body));
+        }
+    },
+    RATE("rate") {
+        @Override
+        HttpRequest.Builder request(URI base, SplittableRandom random, int catalogSize, long sequence) {
+            long movieId = 1 + random.nextInt(catalogSize);
+            return HttpRequest.newBuilder(base.resolve("/movies/" + movieId + "/rate?rating=" + (1 + random.nextInt(5))
+                    + "&userId=" + random.nextInt(100_000))).POST(HttpRequest.BodyPublishers.noBody());
+        }
+    },
+    RECOMMEND("recommend") {
+        @Override
+        HttpRequest.Builder request(URI base, SplittableRandom random, int catalogSize, long sequence) {
+            String query = "/movies/recommend?limit=10";
+            int genres = random.nextInt(4);
+            for (int i = 0; i < genres; i++) {
+                query += "&genre=" + CatalogSeeder.GENRES[random.nextInt(CatalogSeeder.GENRES.length)];
+            }
+            if (genres > 1 && random.nextBoolean()) {
+                query += "&match=all";
+            }
+            return HttpRequest.newBuilder(base.resolve(query)).GET();
+        }
+    };
+
+    private final String key;
+
+    Endpoint(String key) {
+        this.key = key;
+    }
+
+    String key() {
+        return key;
+    }
+
+    /**
+     * Returns the next request to this endpoint.
+     *
+     * @param base        The base URI of the application.
+     * @param random      The request generator, seeded so that runs send the same requests.
+     * @param catalogSize The number of seeded movies.
+     * @param sequence    The sequence number of the request in the run, unique per run.
+     */
+    abstract HttpRequest.Builder request(URI base, SplittableRandom random, int catalogSize, long sequence);
+
+    HttpRequest request(URI base, SplittableRandom random, int catalogSize, long sequence, Duration timeout) {
+        return request(base, random, catalogSize, sequence).timeout(timeout).build();
+    }
+
+    static Endpoint fromKey(String key) {
+        for (Endpoint endpoint : values()) {
+            if (endpoint.key.equalsIgnoreCase(key)) {
+                return endpoint;
+            }
+        }
+        throw new IllegalArgumentException("Unknown endpoint: " + key);
+    }
+}
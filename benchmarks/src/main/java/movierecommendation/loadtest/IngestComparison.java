@@ -0,0 +1,163 @@
+package movierecommendation.loadtest;
+
+import movierecommendation.MovieRecommendation;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the ingest throughput of {@code POST /movies/addMovie}, one movie per request and one
+ * duplicate check and insert per movie, with {@code POST /movies/addMovies}, which checks duplicates
+ * with one query per chunk and inserts each chunk in JDBC batches.
+ * <p>
+ * Boots the application on a random local port with an empty in-memory database. Each run adds
+ * {@code movies} new movies, generated from a fixed seed, over {@code clients} concurrent connections:
+ * first one request per movie, then in requests of {@code batch} movies. Every run uses titles of its
+ * own, so that no movie is rejected as a duplicate. Each client waits for a response before sending
+ * its next request. Throughput is reported in movies per second together with the speedup of the bulk
+ * requests.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar movierecommendation.loadtest.IngestComparison movies=20000 batch=500 clients=8 runs=3}
+ */
+public final class IngestComparison {
+
+    private static final String[] GENRES = {"Action", "Comedy", "Drama", "Horror", "Romance", "Thriller"};
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final URI base;
+    private final int clients;
+
+    private IngestComparison(URI base, int clients) {
+        this.base = base;
+        this.clients = clients;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int movies = 20_000;
+        int batchSize = 500;
+        int clients = 8;
+        int runs = 3;
+        long seed = 42;
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            switch (pair[0]) {
+                case "movies":
+                    movies = Integer.parseInt(pair[1]);
+                    break;
+                case "batch":
+                    batchSize = Integer.parseInt(pair[1]);
+                    break;
+                case "clients":
+                    clients = Integer.parseInt(pair[1]);
+                    break;
+                case "runs":
+                    runs = Integer.parseInt(pair[1]);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(pair[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + pair[0]);
+            }
+        }
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MovieRecommendation.class)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:ingest;DB_CLOSE_DELAY=-1",
+                        "movies.journal.enabled=false",
+                        "logging.level.root=WARN")
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            IngestComparison comparison = new IngestComparison(URI.create("http://localhost:" + port), clients);
+            System.out.printf(Locale.ROOT, "%d movies per run, bulk requests of %d, %d clients%n",
+                    movies, batchSize, clients);
+
+            SplittableRandom random = new SplittableRandom(seed);
+            for (int run = 1; run <= runs; run++) {
+                List<String> singles = new ArrayList<>(movies);
+                List<String> batches = new ArrayList<>();
+                StringBuilder batch = new StringBuilder();
+                for (int i = 0; i < movies; i++) {
+                    singles.add(movieJson("Single " + run + "-" + i, random));
+                    batch.append(batch.length() == 0 ? "[" : ",").append(movieJson("Bulk " + run + "-" + i, random));
+                    if ((i + 1) % batchSize == 0 || i == movies - 1) {
+                        batches.add(batch.append(']').toString());
+                        batch.setLength(0);
+                    }
+                }
+                double single = movies / comparison.send(singles, "/movies/addMovie");
+                double bulk = movies / comparison.send(batches, "/movies/addMovies");
+                System.out.printf(Locale.ROOT, "run %d: single %.0f movies/s, bulk %.0f movies/s, speedup %.1fx%n",
+                        run, single, bulk, bulk / single);
+            }
+        }
+    }
+
+    private static String movieJson(String title, SplittableRandom random) {
+        return "{\"title\":\"" + title + "\",\"genre\":\"" + GENRES[random.nextInt(GENRES.length)]
+                + "\",\"director\":\"Director " + random.nextInt(1_000) + "\",\"releaseYear\":"
+                + (1950 + random.nextInt(75)) + "}";
+    }
+
+    /**
+     * Posts every body to the path over the clients and returns the elapsed time in seconds.
+     */
+    private double send(List<String> bodies, String path) throws Exception {
+        URI uri = base.resolve(path);
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                workers.add(executor.submit(() -> {
+                    for (int request; (request = next.getAndIncrement()) < bodies.size(); ) {
+                        try {
+                            HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri)
+                                            .header("Content-Type", "application/json")
+                                            .POST(HttpRequest.BodyPublishers.ofString(bodies.get(request))).build(),
+                                    HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 400) {
+                                failed.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failed.get() > 0) {
+            System.out.printf(Locale.ROOT, "%d of %d requests to %s failed%n", failed.get(), bodies.size(), path);
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
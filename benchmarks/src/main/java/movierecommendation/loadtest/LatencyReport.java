@@ -0,0 +1,121 @@
+package movierecommendation.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and error counts per endpoint for one phase of a load test.
+ * <p>
+ * Latencies are recorded in microseconds from the intended start time of each request, so
+ * requests delayed because the application or the load generator fell behind are counted with
+ * their full wait instead of being omitted.
+ */
+final class LatencyReport {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final Map<Endpoint, Histogram> histograms = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, LongAdder> errors = new EnumMap<>(Endpoint.class);
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final LongAccumulator maxDispatchLagNanos = new LongAccumulator(Math::max, 0);
+
+    LatencyReport() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            histograms.put(endpoint, new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3));
+            errors.put(endpoint, new LongAdder());
+        }
+    }
+
+    void sent(long dispatchLagNanos) {
+        sent.incrementAndGet();
+        maxDispatchLagNanos.accumulate(dispatchLagNanos);
+    }
+
+    void record(Endpoint endpoint, long latencyNanos, boolean success) {
+        long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_TRACKABLE_MICROS);
+        histograms.get(endpoint).recordValue(micros);
+        if (!success) {
+            errors.get(endpoint).increment();
+        }
+        completed.incrementAndGet();
+    }
+
+    long getSent() {
+        return sent.get();
+    }
+
+    long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * Summarizes the phase per endpoint, with latencies in milliseconds.
+     *
+     * @param seconds The length of the phase, to compute throughput.
+     */
+    Map<String, Object> toMap(double seconds) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("sent", sent.get());
+        map.put("completed", completed.get());
+        map.put("throughput", completed.get() / seconds);
+        map.put("maxDispatchLagMs", maxDispatchLagNanos.get() / 1e6);
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        long totalErrors = 0;
+        for (Endpoint endpoint : Endpoint.values()) {
+            Histogram histogram = histograms.get(endpoint);
+            if (histogram.getTotalCount() > 0) {
+                total.add(histogram);
+                totalErrors += errors.get(endpoint).sum();
+                endpoints.put(endpoint.key(), summary(histogram, errors.get(endpoint).sum(), seconds));
+            }
+        }
+        endpoints.put("all", summary(total, totalErrors, seconds));
+        map.put("endpoints", endpoints);
+        return map;
+    }
+
+    /**
+     * Writes the full latency distribution of each endpoint in the HdrHistogram percentile format,
+     * in milliseconds, to {@code <prefix>-<endpoint>.hgrm}.
+     */
+    void writeDistributions(String prefix) throws IOException {
+        for (Endpoint endpoint : Endpoint.values()) {
+            Histogram histogram = histograms.get(endpoint);
+            if (histogram.getTotalCount() > 0) {
+                try (PrintStream out = new PrintStream(new FileOutputStream(prefix + "-" + endpoint.key() + ".hgrm"))) {
+                    histogram.outputPercentileDistribution(out, 5, 1000.0);
+                }
+            }
+        }
+    }
+
+    private static Map<String, Object> summary(Histogram histogram, long errors, double seconds) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", histogram.getTotalCount());
+        summary.put("errors", errors);
+        summary.put("throughput", histogram.getTotalCount() / seconds);
+        Map<String, Double> latency = new LinkedHashMap<>();
+        for (double percentile : PERCENTILES) {
+            latency.put("p" + (percentile == (long) percentile ? String.valueOf((long) percentile) : String.valueOf(percentile)),
+                    histogram.getValueAtPercentile(percentile) / 1000.0);
+        }
+        latency.put("max", histogram.getMaxValue() / 1000.0);
+        latency.put("mean", histogram.getMean() / 1000.0);
+        summary.put("latencyMs", latency);
+        return summary;
+    }
+}
@@ -0,0 +1,122 @@
+package movierecommendation.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import movierecommendation.MovieRecommendation;
+import movierecommendation.benchmark.CatalogSeeder;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop HTTP load test of the movie endpoints.
+ * <p>
+ * Boots the application on a random local port with an in-memory catalog seeded by
+ * {@link CatalogSeeder}, then sends requests at a fixed arrival rate regardless of how fast
+ * responses come back. Each request has an intended start time on that fixed schedule and its
+ * latency is measured from there, so a stall shows up in the latencies of every request that
+ * should have been sent during it (no coordinated omission). Requests are generated from a fixed
+ * seed, so runs with the same settings send the same requests and their reports can be compared.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar movierecommendation.loadtest.LoadTest rate=500 duration=60};
+ * see {@link LoadTestConfig} for all settings.
+ */
+public final class LoadTest {
+
+    private final LoadTestConfig config;
+    private final HttpClient client;
+    private final SplittableRandom random;
+    private URI base;
+    private long sequence;
+
+    private LoadTest(LoadTestConfig config) {
+        this.config = config;
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        this.random = new SplittableRandom(config.seed);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MovieRecommendation.class)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                        "movies.journal.enabled=false",
+                        "logging.level.root=WARN")
+                .run()) {
+            CatalogSeeder.seed(context, config.catalogSize);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            new LoadTest(config).run(URI.create("http://localhost:" + port));
+        }
+    }
+
+    private void run(URI base) throws IOException, InterruptedException {
+        this.base = base;
+        if (config.warmupSeconds > 0) {
+            System.out.printf("Warming up for %d s at %d requests/s%n", config.warmupSeconds, config.rate);
+            drive(config.warmupSeconds);
+        }
+        System.out.printf("Measuring for %d s at %d requests/s%n", config.durationSeconds, config.rate);
+        LatencyReport measured = drive(config.durationSeconds);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().toString());
+        report.put("config", config.toMap());
+        Map<String, Object> environment = new LinkedHashMap<>();
+        environment.put("javaVersion", System.getProperty("java.version"));
+        environment.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        environment.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        report.put("environment", environment);
+        report.put("results", measured.toMap(config.durationSeconds));
+
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        objectMapper.writeValue(new File(config.report), report);
+        measured.writeDistributions(config.report.replaceFirst("\\.json$", ""));
+        System.out.println(objectMapper.writeValueAsString(report.get("results")));
+        System.out.println("Report written to " + config.report);
+    }
+
+    /**
+     * Sends requests on a fixed schedule for the given time and waits for the outstanding ones.
+     */
+    private LatencyReport drive(int seconds) throws InterruptedException {
+        LatencyReport report = new LatencyReport();
+        long interval = TimeUnit.SECONDS.toNanos(1) / config.rate;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        for (long intended = start; intended < end; intended += interval) {
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Endpoint endpoint = config.nextEndpoint(random);
+            HttpRequest request = endpoint.request(base, random, config.catalogSize, sequence++, config.timeout);
+            long scheduled = intended;
+            report.sent(-wait);
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> report.record(endpoint, System.nanoTime() - scheduled,
+                            error == null && response.statusCode() < 400));
+        }
+        long deadline = System.nanoTime() + config.timeout.toNanos() + TimeUnit.SECONDS.toNanos(1);
+        while (report.getCompleted() < report.getSent() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return report;
+    }
+}
@@ -0,0 +1,101 @@
+package movierecommendation.loadtest;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Settings of a load test run, parsed from {@code key=value} arguments.
+ * <ul>
+ *     <li>{@code rate}: requests per second across all endpoints (default 200)</li>
+ *     <li>{@code warmup}, {@code duration}: seconds of unmeasured and measured load (default 10 and 60)</li>
+ *     <li>{@code mix}: relative weight of each endpoint
+ *     (default {@code getMovies:10,addMovie:5,rate:60,recommend:25})</li>
+ *     <li>{@code catalog}: number of seeded movies (default 100000)</li>
+ *     <li>{@code seed}: seed of the request generator (default 42)</li>
+ *     <li>{@code timeout}: request timeout in seconds (default 30)</li>
+ *     <li>{@code report}: path of the JSON report (default {@code loadtest-report.json})</li>
+ * </ul>
+ */
+final class LoadTestConfig {
+
+    final int rate;
+    final int warmupSeconds;
+    final int durationSeconds;
+    final Map<Endpoint, Integer> mix;
+    final int catalogSize;
+    final long seed;
+    final Duration timeout;
+    final String report;
+
+    private final Endpoint[] endpoints;
+    private final int[] cumulativeWeights;
+
+    private LoadTestConfig(Map<String, String> options) {
+        rate = Integer.parseInt(options.getOrDefault("rate", "200"));
+        warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        catalogSize = Integer.parseInt(options.getOrDefault("catalog", "100000"));
+        seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        timeout = Duration.ofSeconds(Long.parseLong(options.getOrDefault("timeout", "30")));
+        report = options.getOrDefault("report", "loadtest-report.json");
+        mix = new EnumMap<>(Endpoint.class);
+        for (String entry : options.getOrDefault("mix", "getMovies:10,addMovie:5,rate:60,recommend:25").split(",")) {
+            String[] weight = entry.split(":");
+            mix.put(Endpoint.fromKey(weight[0].trim()), Integer.parseInt(weight[1].trim()));
+        }
+        if (rate <= 0 || durationSeconds <= 0 || catalogSize <= 0) {
+            throw new IllegalArgumentException("rate, duration and catalog must be positive");
+        }
+        endpoints = mix.keySet().toArray(new Endpoint[0]);
+        cumulativeWeights = new int[endpoints.length];
+        int total = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            total += mix.get(endpoints[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("The mix must give at least one endpoint a positive weight");
+        }
+    }
+
+    static LoadTestConfig parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return new LoadTestConfig(options);
+    }
+
+    /**
+     * Picks an endpoint according to the mix.
+     */
+    Endpoint nextEndpoint(SplittableRandom random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int i = 0;
+        while (cumulativeWeights[i] <= pick) {
+            i++;
+        }
+        return endpoints[i];
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("rate", rate);
+        map.put("warmupSeconds", warmupSeconds);
+        map.put("durationSeconds", durationSeconds);
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        mix.forEach((endpoint, weight) -> weights.put(endpoint.key(), weight));
+        map.put("mix", weights);
+        map.put("catalogSize", catalogSize);
+        map.put("seed", seed);
+        map.put("timeoutSeconds", timeout.getSeconds());
+        return map;
+    }
+}
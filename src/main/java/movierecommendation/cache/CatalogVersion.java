@@ -0,0 +1,113 @@
+package movierecommendation.cache;
+
+import movierecommendation.model.GenreFilter;
+import movierecommendation.model.Movie;
+import movierecommendation.service.MovieProjection;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Monotonic versions of the movie catalog, used to validate cached recommendations and to derive
+ * the ETags of the read endpoints.
+ * <p>
+ * Every genre has a version that is bumped when a movie of that genre is added or rated, and the
+ * catalog as a whole has a global version bumped on every change. Removals only carry movie ids, so
+ * they bump every genre. The version of a genre filter is
+ * the sum of the versions of its genres; as versions only grow, the sum moves exactly when one of
+ * them does, so a write only changes the versions of the genres it touched.
+ * <p>
+ * ETags additionally carry an epoch chosen at startup, as the versions restart from zero.
+ * <p>
+ * Runs after the other projections so that the versions are bumped only once the in-memory indexes
+ * have been updated.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class CatalogVersion implements MovieProjection {
+
+    private final AtomicLongArray genreVersions = new AtomicLongArray(Long.SIZE);
+    private final AtomicLong globalVersion = new AtomicLong();
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Returns the version of the movies selected by a genre filter.
+     */
+    public long version(GenreFilter genres) {
+        return version(genres.getMask());
+    }
+
+    /**
+     * Returns the version of the movies having any of the genres in the mask, or of the whole
+     * catalog for an empty mask.
+     */
+    public long version(long genreMask) {
+        if (genreMask == 0) {
+            return globalVersion.get();
+        }
+        long version = 0;
+        for (long bits = genreMask; bits != 0; bits &= bits - 1) {
+            version += genreVersions.get(Long.numberOfTrailingZeros(bits));
+        }
+        return version;
+    }
+
+    /**
+     * Returns a strong ETag for the movies selected by a genre filter.
+     */
+    public String etag(GenreFilter genres) {
+        return etag(genres.getMask());
+    }
+
+    /**
+     * Returns a strong ETag for the movies having any of the genres in the mask, or for the whole
+     * catalog for an empty mask.
+     */
+    public String etag(long genreMask) {
+        return "\"" + epoch + "-" + Long.toString(genreMask, 36) + "-" + version(genreMask) + "\"";
+    }
+
+    @Override
+    public void onMovieAdded(Movie movie) {
+        bump(movie.getGenreBits());
+    }
+
+    @Override
+    public void onMoviesAdded(List<Movie> movies) {
+        bump(genreBits(movies));
+    }
+
+    @Override
+    public void onMoviesUpdated(List<Movie> movies) {
+        bump(genreBits(movies));
+    }
+
+    @Override
+    public void onMoviesRemoved(List<Long> movieIds) {
+        bump(-1L);
+    }
+
+    @Override
+    public void onCatalogReloaded() {
+        bump(-1L);
+    }
+
+    private void bump(long genreBits) {
+        for (long bits = genreBits; bits != 0; bits &= bits - 1) {
+            genreVersions.incrementAndGet(Long.numberOfTrailingZeros(bits));
+        }
+        globalVersion.incrementAndGet();
+    }
+
+    private static long genreBits(List<Movie> movies) {
+        long genreBits = 0;
+        for (Movie movie : movies) {
+            genreBits |= movie.getGenreBits();
+        }
+        return genreBits;
+    }
+}
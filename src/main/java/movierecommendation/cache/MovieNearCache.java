@@ -0,0 +1,260 @@
+package movierecommendation.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import movierecommendation.model.Movie;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.service.MovieChangeListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded read-through cache of movie state by id in front of the {@link MovieRepository}.
+ * <p>
+ * Entries are detached copies, held in LRU segments chosen by id so that lookups of different movies
+ * rarely contend. Ids that do not exist are cached as well, so repeated ratings of unknown movies do
+ * not reach the database. Changes are written through to the entries that are cached: added and
+ * rated movies replace their entry, removed movies drop it, and a catalog reload clears the cache. A load racing with a
+ * write to the same segment is not cached, so a stale read cannot overwrite a newer entry. Lookups of
+ * many movies at once load all of their misses in a single query.
+ * <p>
+ * Hits, misses, evictions and size are exposed as {@code cache.gets}, {@code cache.evictions} and
+ * {@code cache.size} with the tag {@code cache=movies}, repository loads as {@code cache.movies.load},
+ * and the repository time saved by hits, estimated from the mean load time, as
+ * {@code cache.movies.saved}.
+ */
+@Component
+public class MovieNearCache implements MovieChangeListener {
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final Movie ABSENT = new Movie();
+
+    private final MovieRepository movieRepository;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Timer loadTimer;
+
+    @Autowired
+    public MovieNearCache(MovieRepository movieRepository,
+                          @Value("${movies.cache.max-size:10000}") int maxSize,
+                          MeterRegistry meterRegistry) {
+        this.movieRepository = movieRepository;
+        int segmentSize = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+        this.loadTimer = Timer.builder("cache.movies.load").register(meterRegistry);
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .tags("cache", "movies", "result", "hit").register(meterRegistry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                .tags("cache", "movies", "result", "miss").register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum)
+                .tags("cache", "movies").register(meterRegistry);
+        Gauge.builder("cache.size", this, MovieNearCache::size)
+                .tags("cache", "movies").register(meterRegistry);
+        TimeGauge.builder("cache.movies.saved", this, TimeUnit.NANOSECONDS, MovieNearCache::savedNanos)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached state of a movie, loading it from the repository on a miss.
+     *
+     * @param id The ID of the movie.
+     * @return The movie, which must not be modified, or null if it does not exist.
+     */
+    public Movie get(long id) {
+        Segment segment = segment(id);
+        long writes;
+        synchronized (segment) {
+            Movie cached = segment.get(id);
+            if (cached != null) {
+                hits.increment();
+                return cached == ABSENT ? null : cached;
+            }
+            writes = segment.writes;
+        }
+        misses.increment();
+        long start = System.nanoTime();
+        Movie loaded = movieRepository.findById(id).map(movie -> movie.toBuilder().build()).orElse(null);
+        loadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        synchronized (segment) {
+            if (segment.writes == writes) {
+                segment.put(id, loaded == null ? ABSENT : loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns whether a movie exists, loading it from the repository on a miss.
+     */
+    public boolean exists(long id) {
+        return get(id) != null;
+    }
+
+    /**
+     * Returns which of the given movies exist, loading all misses from the repository in one query.
+     *
+     * @param ids Distinct movie IDs.
+     * @return The IDs of the movies that exist.
+     */
+    public Set<Long> existing(Collection<Long> ids) {
+        Set<Long> existing = new HashSet<>();
+        Map<Long, Long> missed = new HashMap<>();
+        for (Long id : ids) {
+            Segment segment = segment(id);
+            synchronized (segment) {
+                Movie cached = segment.get(id);
+                if (cached == null) {
+                    missed.put(id, segment.writes);
+                    continue;
+                }
+                hits.increment();
+                if (cached != ABSENT) {
+                    existing.add(id);
+                }
+            }
+        }
+        if (missed.isEmpty()) {
+            return existing;
+        }
+        misses.add(missed.size());
+        long start = System.nanoTime();
+        Map<Long, Movie> loaded = new HashMap<>();
+        for (Movie movie : movieRepository.findAllById(missed.keySet())) {
+            loaded.put(movie.getId(), movie.toBuilder().build());
+        }
+        loadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        for (Map.Entry<Long, Long> miss : missed.entrySet()) {
+            Movie movie = loaded.get(miss.getKey());
+            if (movie != null) {
+                existing.add(miss.getKey());
+            }
+            Segment segment = segment(miss.getKey());
+            synchronized (segment) {
+                if (segment.writes == miss.getValue()) {
+                    segment.put(miss.getKey(), movie == null ? ABSENT : movie);
+                }
+            }
+        }
+        return existing;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public void onMovieAdded(Movie movie) {
+        update(movie);
+    }
+
+    @Override
+    public void onMoviesUpdated(List<Movie> movies) {
+        for (Movie movie : movies) {
+            update(movie);
+        }
+    }
+
+    @Override
+    public void onMoviesRemoved(List<Long> movieIds) {
+        for (Long movieId : movieIds) {
+            Segment segment = segment(movieId);
+            synchronized (segment) {
+                segment.remove(movieId);
+                segment.writes++;
+            }
+        }
+    }
+
+    @Override
+    public void onCatalogReloaded() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.writes++;
+            }
+        }
+    }
+
+    /**
+     * Replaces the entry of a changed movie if it is cached. Movies that are not cached are not
+     * added, so bulk writes do not push the hot movies out.
+     */
+    private void update(Movie movie) {
+        if (movie.getId() == null) {
+            return;
+        }
+        Movie copy = movie.toBuilder().build();
+        Segment segment = segment(movie.getId());
+        synchronized (segment) {
+            segment.replace(movie.getId(), copy);
+            segment.writes++;
+        }
+    }
+
+    private Segment segment(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return segments[(int) (h >>> (Long.SIZE - SEGMENT_BITS))];
+    }
+
+    private double savedNanos() {
+        return hits.sum() * loadTimer.mean(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * One LRU segment. Guarded by its own monitor; {@link #writes} counts the write-throughs so that
+     * concurrent loads can detect them.
+     */
+    private final class Segment extends LinkedHashMap<Long, Movie> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+        private long writes;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Movie> eldest) {
+            if (size() > maxSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package movierecommendation.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import movierecommendation.model.GenreFilter;
+import movierecommendation.model.Movie;
+import movierecommendation.model.MovieSort;
+import movierecommendation.model.RecommendationQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of recommendation results keyed by genre filter, limit and sort.
+ * <p>
+ * Entries are held in LRU segments chosen by key, so that hits on different keys rarely contend for
+ * the same lock. Caches too small to give every segment {@value #MIN_SEGMENT_SIZE} entries use fewer
+ * segments, down to a single exact LRU.
+ * <p>
+ * An entry is computed at the {@link CatalogVersion} of its genre filter and is valid while that
+ * version is unchanged, so a write only invalidates the entries of the genres it touched. With a
+ * positive max staleness, entries are additionally served for that long after being computed even if
+ * their version has moved on, which keeps hot entries from being recomputed on every rating during
+ * heavy rating traffic.
+ */
+@Component
+public class RecommendationCache {
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_SIZE = 64;
+
+    private final CatalogVersion catalogVersion;
+    private final long maxStalenessNanos;
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public RecommendationCache(CatalogVersion catalogVersion,
+                               @Value("${movies.recommendation.cache.max-size:1000}") int maxSize,
+                               @Value("${movies.recommendation.cache.max-staleness-ms:0}") long maxStalenessMs,
+                               MeterRegistry meterRegistry) {
+        this.catalogVersion = catalogVersion;
+        this.maxStalenessNanos = maxStalenessMs * 1_000_000;
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, maxSize / MIN_SEGMENT_SIZE)));
+        int segmentSize = Math.max(1, (maxSize + segmentCount - 1) / segmentCount);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .tags("cache", "recommendations", "result", "hit").register(meterRegistry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                .tags("cache", "recommendations", "result", "miss").register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum)
+                .tags("cache", "recommendations").register(meterRegistry);
+        Gauge.builder("cache.size", this, RecommendationCache::size)
+                .tags("cache", "recommendations").register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached recommendations for the query, computing them on a miss.
+     * The genres and cursor of the query are ignored; only first pages should be cached.
+     *
+     * @param genres The resolved genres of the query.
+     * @param query  The limit and sort of the recommendations.
+     * @param loader Computes the recommendations on a miss.
+     * @return The cached or freshly computed recommendations; the list must not be modified.
+     */
+    public List<Movie> get(GenreFilter genres, RecommendationQuery query, Supplier<List<Movie>> loader) {
+        Key key = new Key(genres, query.getLimit(), query.getSort());
+        long version = catalogVersion.version(genres);
+        Segment segment = segment(key);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+        }
+        if (entry != null && (entry.version == version || System.nanoTime() - entry.createdAt < maxStalenessNanos)) {
+            hits.increment();
+            return entry.movies;
+        }
+        misses.increment();
+        List<Movie> movies = List.copyOf(loader.get());
+        synchronized (segment) {
+            segment.put(key, new Entry(version, System.nanoTime(), movies));
+        }
+        return movies;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private Segment segment(Key key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return segments[(h >>> 16) & (segments.length - 1)];
+    }
+
+    /**
+     * One LRU segment, guarded by its own monitor.
+     */
+    private final class Segment extends LinkedHashMap<Key, Entry> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() > maxSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static final class Key {
+        private final GenreFilter genres;
+        private final Integer limit;
+        private final MovieSort sort;
+    }
+
+    @AllArgsConstructor
+    private static final class Entry {
+        private final long version;
+        private final long createdAt;
+        private final List<Movie> movies;
+    }
+}
@@ -0,0 +1,120 @@
+package movierecommendation.cluster;
+
+import movierecommendation.exception.ClusterUnavailableException;
+import movierecommendation.model.Movie;
+import movierecommendation.model.RecommendationQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calls the {@link ClusterController} of other cluster members over HTTP.
+ * <p>
+ * Every call fails with a {@link ClusterUnavailableException} after {@code movies.cluster.timeout-ms}
+ * or when the member answers with an error.
+ */
+@Component
+public class ClusterClient {
+
+    private final RestTemplate restTemplate;
+
+    @Autowired
+    public ClusterClient(RestTemplateBuilder restTemplateBuilder,
+                         @Value("${movies.cluster.timeout-ms:2000}") long timeoutMs) {
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofMillis(timeoutMs))
+                .setReadTimeout(Duration.ofMillis(timeoutMs))
+                .build();
+    }
+
+    /**
+     * Announces this node to a member.
+     *
+     * @return The members known to that member, including this node.
+     */
+    public List<String> join(String member, String self) {
+        try {
+            String[] members = restTemplate.postForObject(member + "/cluster/members", Map.of("url", self), String[].class);
+            return members == null ? List.of() : Arrays.asList(members);
+        } catch (RestClientException e) {
+            throw unavailable(member, e);
+        }
+    }
+
+    /**
+     * Tells a member that this node left the cluster.
+     */
+    public void leave(String member, String self) {
+        try {
+            restTemplate.delete(UriComponentsBuilder.fromHttpUrl(member + "/cluster/members")
+                    .queryParam("url", self).build().toUri());
+        } catch (RestClientException e) {
+            throw unavailable(member, e);
+        }
+    }
+
+    /**
+     * Sends a batch of ratings to the member owning their movies.
+     */
+    public void sendRatings(String member, List<ForwardedRating> ratings) {
+        try {
+            restTemplate.postForLocation(member + "/cluster/ratings", ratings);
+        } catch (RestClientException e) {
+            throw unavailable(member, e);
+        }
+    }
+
+    /**
+     * Hands movies off to their new owner.
+     *
+     * @return Which movies the owner holds now and which ids it holds for other movies.
+     */
+    public MovieTransferReceipt transfer(String member, MovieTransfer transfer) {
+        try {
+            MovieTransferReceipt receipt = restTemplate.postForObject(member + "/cluster/movies", transfer,
+                    MovieTransferReceipt.class);
+            return receipt == null ? new MovieTransferReceipt(List.of(), List.of()) : receipt;
+        } catch (RestClientException e) {
+            throw unavailable(member, e);
+        }
+    }
+
+    /**
+     * Asks a member for the recommendations among the movies it owns.
+     */
+    public List<Movie> recommend(String member, RecommendationQuery query) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(member + "/cluster/recommend")
+                .queryParam("match", query.getMatch().name())
+                .queryParam("sort", query.getSort().name());
+        for (String genre : query.getGenres()) {
+            uri.queryParam("genre", genre);
+        }
+        if (query.getLimit() != null) {
+            uri.queryParam("limit", query.getLimit());
+        }
+        if (query.getAfter() != null) {
+            uri.queryParam("cursor", query.getAfter().encode());
+        }
+        URI target = uri.encode().build().toUri();
+        try {
+            Movie[] movies = restTemplate.getForObject(target, Movie[].class);
+            return movies == null ? List.of() : Arrays.asList(movies);
+        } catch (RestClientException e) {
+            throw unavailable(member, e);
+        }
+    }
+
+    private static ClusterUnavailableException unavailable(String member, RestClientException e) {
+        return new ClusterUnavailableException("Cluster member " + member + " is unavailable", e);
+    }
+}
@@ -0,0 +1,141 @@
+package movierecommendation.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.index.MovieRankingIndex;
+import movierecommendation.model.GenreMatch;
+import movierecommendation.model.Movie;
+import movierecommendation.model.MovieSort;
+import movierecommendation.model.RecommendationQuery;
+import movierecommendation.service.MovieService;
+import movierecommendation.util.MovieCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Endpoints the cluster members call on each other. They are not meant for clients and must only be
+ * reachable from the other members.
+ */
+@RestController
+@RequestMapping("/cluster")
+@Slf4j
+public class ClusterController {
+
+    private final ClusterMembership clusterMembership;
+    private final ClusterRebalancer clusterRebalancer;
+    private final RatingForwarder ratingForwarder;
+    private final MovieService localMovieService;
+    private final MovieRankingIndex movieRankingIndex;
+
+    @Autowired
+    public ClusterController(ClusterMembership clusterMembership, ClusterRebalancer clusterRebalancer,
+                             RatingForwarder ratingForwarder,
+                             @Qualifier("movieServiceImpl") MovieService localMovieService,
+                             MovieRankingIndex movieRankingIndex) {
+        this.clusterMembership = clusterMembership;
+        this.clusterRebalancer = clusterRebalancer;
+        this.ratingForwarder = ratingForwarder;
+        this.localMovieService = localMovieService;
+        this.movieRankingIndex = movieRankingIndex;
+    }
+
+    /**
+     * This node, the members it knows of, the number of movies it holds and whether it is still
+     * handing movies off.
+     * @return
+     */
+    @GetMapping("/status")
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", clusterMembership.isEnabled());
+        status.put("self", clusterMembership.getSelf());
+        status.put("nodeId", clusterMembership.getNodeId());
+        status.put("members", clusterMembership.getMembers());
+        status.put("movies", movieRankingIndex.size());
+        status.put("pendingRatings", ratingForwarder.pending());
+        status.put("parkedRatings", ratingForwarder.parked());
+        status.put("rebalancing", clusterRebalancer.isRebalancing());
+        return status;
+    }
+
+    /**
+     * A node announcing that it joined.
+     * @param member
+     * @return The members known to this node.
+     */
+    @PostMapping("/members")
+    public List<String> join(@RequestBody Map<String, String> member) {
+        log.debug("Entering join() Api ");
+        String url = member.get("url");
+        if (url == null || url.isBlank()) {
+            throw new IllegalArgumentException("Invalid member. A url is required.");
+        }
+        return clusterRebalancer.memberJoined(url);
+    }
+
+    /**
+     * A node announcing that it handed off its movies and left.
+     * @param url
+     * @return
+     */
+    @DeleteMapping("/members")
+    public ResponseEntity<Void> leave(@RequestParam String url) {
+        log.debug("Entering leave() Api ");
+        clusterRebalancer.memberLeft(url);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * A batch of ratings of movies this node owns.
+     * @param ratings
+     * @return
+     */
+    @PostMapping("/ratings")
+    public ResponseEntity<Void> receiveRatings(@RequestBody List<ForwardedRating> ratings) {
+        log.debug("Entering receiveRatings() Api ");
+        ratingForwarder.receive(ratings);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Movies handed off to this node.
+     * @param transfer
+     * @return The movies this node holds now and the ids it holds for other movies.
+     */
+    @PostMapping("/movies")
+    public MovieTransferReceipt receiveMovies(@RequestBody MovieTransfer transfer) {
+        log.debug("Entering receiveMovies() Api ");
+        return clusterRebalancer.accept(transfer);
+    }
+
+    /**
+     * The recommendations among the movies this node owns, for a node merging them.
+     * @param genre
+     * @param match
+     * @param limit
+     * @param cursor
+     * @param sort
+     * @return
+     */
+    @GetMapping("/recommend")
+    public List<Movie> recommend(
+            @RequestParam(required = false) List<String> genre,
+            @RequestParam(required = false) String match,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String sort) {
+        log.debug("Entering cluster recommend() Api ");
+        return localMovieService.recommendMoviesByRatingsAndGenre(RecommendationQuery.builder()
+                .genres(genre)
+                .match(GenreMatch.from(match))
+                .limit(limit)
+                .after(MovieCursor.decode(cursor))
+                .sort(MovieSort.from(sort))
+                .build());
+    }
+}
@@ -0,0 +1,129 @@
+package movierecommendation.cluster;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The members of the cluster and which of them owns each movie.
+ * <p>
+ * With {@code movies.cluster.enabled=true}, movie ids are partitioned over the members with a
+ * {@link HashRing}: the owner of a movie holds its row and aggregates all of its ratings. The ring
+ * starts with this node and the configured {@code movies.cluster.seeds}, and is replaced as a whole
+ * when the {@link ClusterRebalancer} learns that a member joined or left. Members are identified by
+ * their base URL, {@code movies.cluster.self-url} for this node.
+ * <p>
+ * The number of members is exposed as {@code cluster.members}.
+ */
+@Component
+public class ClusterMembership {
+
+    private final boolean enabled;
+    private final String self;
+    private final int nodeId;
+    private final List<String> seeds;
+    private volatile HashRing ring;
+
+    @Autowired
+    public ClusterMembership(@Value("${movies.cluster.enabled:false}") boolean enabled,
+                             @Value("${movies.cluster.self-url:http://localhost:8080}") String self,
+                             @Value("${movies.cluster.node-id:0}") int nodeId,
+                             @Value("${movies.cluster.seeds:}") String seeds,
+                             @Value("${movies.cluster.virtual-nodes:128}") int virtualNodes,
+                             MeterRegistry meterRegistry) {
+        if (nodeId < 0 || nodeId >= 1 << 12) {
+            throw new IllegalArgumentException("movies.cluster.node-id must be between 0 and 4095");
+        }
+        this.enabled = enabled;
+        this.self = normalize(self);
+        this.nodeId = nodeId;
+        this.seeds = new ArrayList<>();
+        for (String seed : seeds.split(",")) {
+            if (!seed.isBlank() && !normalize(seed).equals(this.self)) {
+                this.seeds.add(normalize(seed));
+            }
+        }
+        List<String> members = new ArrayList<>(this.seeds);
+        members.add(this.self);
+        this.ring = new HashRing(members, virtualNodes);
+        Gauge.builder("cluster.members", this, membership -> membership.getMembers().size()).register(meterRegistry);
+    }
+
+    /**
+     * @return true if movies are partitioned over several nodes.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return true if this node owns the movie, which is always the case outside cluster mode.
+     */
+    public boolean isLocal(long movieId) {
+        return !enabled || self.equals(ring.owner(movieId));
+    }
+
+    /**
+     * Returns the base URL of the member owning a movie.
+     */
+    public String owner(long movieId) {
+        return enabled ? ring.owner(movieId) : self;
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    /**
+     * The id of this node, which keeps the ids of the movies it creates apart from other nodes'.
+     */
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public List<String> getSeeds() {
+        return seeds;
+    }
+
+    public List<String> getMembers() {
+        return ring.getMembers();
+    }
+
+    HashRing ring() {
+        return ring;
+    }
+
+    /**
+     * Adds a member.
+     *
+     * @return false if it already was a member.
+     */
+    synchronized boolean add(String member) {
+        HashRing next = ring.with(normalize(member));
+        boolean changed = next != ring;
+        ring = next;
+        return changed;
+    }
+
+    /**
+     * Removes a member.
+     *
+     * @return false if it was not a member.
+     */
+    synchronized boolean remove(String member) {
+        HashRing next = ring.without(normalize(member));
+        boolean changed = next != ring;
+        ring = next;
+        return changed;
+    }
+
+    static String normalize(String url) {
+        String trimmed = url.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
@@ -0,0 +1,259 @@
+package movierecommendation.cluster;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.exception.ClusterUnavailableException;
+import movierecommendation.index.MovieRankingIndex;
+import movierecommendation.model.Movie;
+import movierecommendation.model.MovieIngestReport;
+import movierecommendation.model.MovieIngestResult;
+import movierecommendation.model.RatingBatchItem;
+import movierecommendation.model.RatingBatchReport;
+import movierecommendation.model.RatingBatchResult;
+import movierecommendation.model.RecommendationQuery;
+import movierecommendation.service.MovieService;
+import movierecommendation.service.MovieServiceImpl;
+import movierecommendation.util.MovieCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Routes movie service calls to the cluster members owning the movies, see {@link ClusterMembership}.
+ * <p>
+ * Ratings of movies owned by another member are validated here and handed to the
+ * {@link RatingForwarder}, which batches them towards the owner; they are acknowledged with 202.
+ * Ratings of movies held by this node, including movies created here that are about to be handed
+ * off, are applied locally. A batch of ratings is split the same way, and the outcome of every rating
+ * is reported in the order of the batch. Recommendations are computed by every member over the movies
+ * it owns, in parallel, and the per-node pages are merged in the requested order. The scatter is timed as
+ * {@code cluster.scatter}. Recommendation ETags are not issued in cluster mode, as they only cover
+ * the local movies. Every other call is served from the movies of this node.
+ * <p>
+ * Outside cluster mode every call goes straight to the {@link movierecommendation.service.MovieServiceImpl}.
+ */
+@Slf4j
+@Service
+public class ClusterMovieService implements MovieService {
+
+    private final MovieService delegate;
+    private final ClusterMembership clusterMembership;
+    private final ClusterClient clusterClient;
+    private final RatingForwarder ratingForwarder;
+    private final ClusterRebalancer clusterRebalancer;
+    private final MovieRankingIndex movieRankingIndex;
+    private final ExecutorService executor;
+    private final Timer scatterTimer;
+
+    @Autowired
+    public ClusterMovieService(@Qualifier("movieServiceImpl") MovieService delegate,
+                               ClusterMembership clusterMembership,
+                               ClusterClient clusterClient,
+                               RatingForwarder ratingForwarder,
+                               ClusterRebalancer clusterRebalancer,
+                               MovieRankingIndex movieRankingIndex,
+                               @Value("${movies.cluster.scatter-threads:16}") int scatterThreads,
+                               MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.clusterMembership = clusterMembership;
+        this.clusterClient = clusterClient;
+        this.ratingForwarder = ratingForwarder;
+        this.clusterRebalancer = clusterRebalancer;
+        this.movieRankingIndex = movieRankingIndex;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, scatterThreads), runnable -> {
+            Thread thread = new Thread(runnable, "cluster-scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scatterTimer = Timer.builder("cluster.scatter").register(meterRegistry);
+    }
+
+    @Override
+    public ResponseEntity<String> addMovie(Movie movie) {
+        ResponseEntity<String> response = delegate.addMovie(movie);
+        if (clusterMembership.isEnabled() && response.getStatusCode() == HttpStatus.CREATED && movie.getId() != null) {
+            clusterRebalancer.movieCreated(movie.getId());
+        }
+        return response;
+    }
+
+    @Override
+    public MovieIngestReport addMovies(Iterator<Movie> movies) {
+        MovieIngestReport report = delegate.addMovies(movies);
+        if (clusterMembership.isEnabled()) {
+            for (MovieIngestResult result : report.getResults()) {
+                if (result.getStatus() == MovieIngestResult.Status.CREATED) {
+                    clusterRebalancer.movieCreated(result.getMovieId());
+                }
+            }
+        }
+        return report;
+    }
+
+    @Override
+    public List<Movie> getAllMovies() {
+        return delegate.getAllMovies();
+    }
+
+    @Override
+    public List<Movie> getMovies(MovieCursor after, int limit) {
+        return delegate.getMovies(after, limit);
+    }
+
+    @Override
+    public void forEachMovie(Consumer<Movie> consumer) {
+        delegate.forEachMovie(consumer);
+    }
+
+    @Override
+    public ResponseEntity<String> rateMovie(Long movieId, Long userId, double rating) {
+        if (!clusterMembership.isEnabled() || movieId == null || clusterMembership.isLocal(movieId)
+                || movieRankingIndex.contains(movieId)) {
+            return delegate.rateMovie(movieId, userId, rating);
+        }
+        if (rating < 1 || rating > 5) {
+            log.info("Invalid rating value: {}", rating);
+            return ResponseEntity.badRequest().body("Invalid rating value. Rating must be between 1 and 5.");
+        }
+        String owner = clusterMembership.owner(movieId);
+        if (!ratingForwarder.offer(owner, movieId, userId, rating)) {
+            log.debug("Forward queue for {} full, rejecting rating for movie ID {}", owner, movieId);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Too many ratings. Please retry later.");
+        }
+        return ResponseEntity.accepted().body("Rating accepted");
+    }
+
+    @Override
+    public RatingBatchReport rateMovies(List<RatingBatchItem> ratings) {
+        if (!clusterMembership.isEnabled() || ratings.isEmpty() || ratings.size() > MovieServiceImpl.MAX_BATCH_SIZE) {
+            return delegate.rateMovies(ratings);
+        }
+        long start = System.nanoTime();
+        RatingBatchResult[] results = new RatingBatchResult[ratings.size()];
+        List<RatingBatchItem> local = new ArrayList<>();
+        List<Integer> localIndexes = new ArrayList<>();
+        Set<Long> forwarded = new HashSet<>();
+        for (int i = 0; i < ratings.size(); i++) {
+            RatingBatchItem rating = ratings.get(i);
+            // Invalid ratings are left to the local service, which reports them like any other node.
+            if (rating == null || !rating.isValid() || clusterMembership.isLocal(rating.getMovieId())
+                    || movieRankingIndex.contains(rating.getMovieId())) {
+                local.add(rating);
+                localIndexes.add(i);
+                continue;
+            }
+            long movieId = rating.getMovieId();
+            if (ratingForwarder.offer(clusterMembership.owner(movieId), movieId, rating.getUserId(), rating.getRating())) {
+                forwarded.add(movieId);
+                results[i] = new RatingBatchResult(i, RatingBatchResult.Status.ACCEPTED, movieId, null);
+            } else {
+                results[i] = new RatingBatchResult(i, RatingBatchResult.Status.REJECTED, movieId,
+                        "Too many ratings. Please retry later.");
+            }
+        }
+        int localMovies = 0;
+        if (!local.isEmpty()) {
+            RatingBatchReport localReport = delegate.rateMovies(local);
+            for (RatingBatchResult result : localReport.getResults()) {
+                result.setIndex(localIndexes.get(result.getIndex()));
+                results[result.getIndex()] = result;
+            }
+            localMovies = localReport.getMovies();
+        }
+        RatingBatchReport report = new RatingBatchReport();
+        for (RatingBatchResult result : results) {
+            report.add(result);
+        }
+        report.setMovies(localMovies + forwarded.size());
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return report;
+    }
+
+    @Override
+    public List<Movie> recommendMoviesByRatingsAndGenre(RecommendationQuery query) {
+        if (!clusterMembership.isEnabled() || clusterMembership.getMembers().size() == 1) {
+            return delegate.recommendMoviesByRatingsAndGenre(query);
+        }
+        long start = System.nanoTime();
+        Map<String, CompletableFuture<List<Movie>>> remote = new LinkedHashMap<>();
+        for (String member : clusterMembership.getMembers()) {
+            if (!member.equals(clusterMembership.getSelf())) {
+                remote.put(member, CompletableFuture.supplyAsync(() -> clusterClient.recommend(member, query), executor));
+            }
+        }
+        try {
+            List<Movie> merged = new ArrayList<>(delegate.recommendMoviesByRatingsAndGenre(query));
+            for (CompletableFuture<List<Movie>> movies : remote.values()) {
+                merged.addAll(movies.join());
+            }
+            merged.sort(Comparator.comparingDouble((Movie movie) -> query.getSort().sortValue(movie)).reversed()
+                    .thenComparing(Movie::getId));
+            return query.getLimit() == null || merged.size() <= query.getLimit()
+                    ? merged : new ArrayList<>(merged.subList(0, query.getLimit()));
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof ClusterUnavailableException
+                    ? (ClusterUnavailableException) e.getCause() : e;
+        } finally {
+            remote.values().forEach(movies -> movies.cancel(false));
+            scatterTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<Movie> recommendMoviesForUser(Long userId, int limit) {
+        return delegate.recommendMoviesForUser(userId, limit);
+    }
+
+    @Override
+    public List<Movie> findSimilarMovies(Long movieId, int limit) {
+        return delegate.findSimilarMovies(movieId, limit);
+    }
+
+    @Override
+    public List<Movie> searchMovies(String query, int limit) {
+        return delegate.searchMovies(query, limit);
+    }
+
+    @Override
+    public List<Movie> getTrendingMovies(String window, List<String> genres, int limit) {
+        return delegate.getTrendingMovies(window, genres, limit);
+    }
+
+    @Override
+    public String getCatalogETag() {
+        return delegate.getCatalogETag();
+    }
+
+    @Override
+    public String getRecommendationETag(RecommendationQuery query) {
+        return clusterMembership.isEnabled() ? null : delegate.getRecommendationETag(query);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,468 @@
+package movierecommendation.cluster;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.exception.ClusterUnavailableException;
+import movierecommendation.journal.RatingJournal;
+import movierecommendation.model.Movie;
+import movierecommendation.model.UserRating;
+import movierecommendation.repository.CatalogLoader;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.repository.UserRatingRepository;
+import movierecommendation.service.GenreDictionary;
+import movierecommendation.service.MovieChangeNotifier;
+import movierecommendation.service.RankingScorer;
+import movierecommendation.service.RatingAggregator;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps every movie on the cluster member that owns it while members join and leave.
+ * <p>
+ * A starting node announces itself to the seeds and to every member they know of. Each member adds
+ * it to its {@link HashRing} and, in the background, hands off the movies the new node now owns. A
+ * node shutting down removes itself from its ring, hands off all of its movies and then tells the
+ * other members it left. Unreachable members are dropped from the ring when joining; movies whose
+ * handoff failed are retried every {@code movies.cluster.rebalance-interval-ms}.
+ * <p>
+ * A movie is created on the node that received it, as its id is only known once it is saved. If
+ * another member owns that id, the movie is handed off within {@code movies.cluster.handoff.delay-ms}.
+ * Handing off movies rebuilds the in-memory indexes of the sending node.
+ * <p>
+ * A handoff flushes the pending ratings, sends the movies with their rating aggregates and user
+ * ratings in chunks of {@code movies.cluster.handoff.batch-size}, and deletes the movies the new
+ * owner acknowledged. The receiver inserts them with the {@link CatalogLoader} so that their ids are kept,
+ * and acknowledges a movie it already holds, so a retried handoff is harmless. An id it holds for a
+ * different movie is reported as a conflict, and the sender keeps that movie.
+ * <p>
+ * The ids of the movies a node creates are taken from its own range, derived from
+ * {@code movies.cluster.node-id}, so they never collide with another node's. Before a movie of its own
+ * range is deleted after a handoff, the node journals its id as a high-water mark, and the deletes
+ * are journaled as well, so that a node restarting with an empty database neither restores the
+ * handed-off movies nor hands out their ids again. With the journal disabled, a restarted node
+ * starts over from the highest id it still holds, and reused ids show up as conflicts.
+ * <p>
+ * Moved movies are counted as {@code cluster.movies.handed.off} and {@code cluster.movies.received},
+ * and every rebalance is timed as {@code cluster.rebalance}.
+ */
+@Slf4j
+@Component
+public class ClusterRebalancer implements SmartInitializingSingleton {
+
+    /**
+     * Every node creates movie ids in its own range of this many bits.
+     */
+    static final int ID_RANGE_BITS = 40;
+
+    private final ClusterMembership clusterMembership;
+    private final ClusterClient clusterClient;
+    private final RatingForwarder ratingForwarder;
+    private final RatingAggregator ratingAggregator;
+    private final MovieRepository movieRepository;
+    private final UserRatingRepository userRatingRepository;
+    private final MovieChangeNotifier movieChangeNotifier;
+    private final GenreDictionary genreDictionary;
+    private final RankingScorer rankingScorer;
+    private final RatingJournal ratingJournal;
+    private final CatalogLoader catalogLoader;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final ExecutorService executor;
+    private final Timer rebalanceTimer;
+    private final LongAdder handedOff = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final Queue<Long> created = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger scheduledRebalances = new AtomicInteger();
+    private volatile boolean handingOff;
+
+    @Autowired
+    public ClusterRebalancer(ClusterMembership clusterMembership,
+                             ClusterClient clusterClient,
+                             RatingForwarder ratingForwarder,
+                             RatingAggregator ratingAggregator,
+                             MovieRepository movieRepository,
+                             UserRatingRepository userRatingRepository,
+                             MovieChangeNotifier movieChangeNotifier,
+                             GenreDictionary genreDictionary,
+                             RankingScorer rankingScorer,
+                             RatingJournal ratingJournal,
+                             CatalogLoader catalogLoader,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${movies.cluster.handoff.batch-size:1000}") int batchSize,
+                             MeterRegistry meterRegistry) {
+        this.clusterMembership = clusterMembership;
+        this.clusterClient = clusterClient;
+        this.ratingForwarder = ratingForwarder;
+        this.ratingAggregator = ratingAggregator;
+        this.movieRepository = movieRepository;
+        this.userRatingRepository = userRatingRepository;
+        this.movieChangeNotifier = movieChangeNotifier;
+        this.genreDictionary = genreDictionary;
+        this.rankingScorer = rankingScorer;
+        this.ratingJournal = ratingJournal;
+        this.catalogLoader = catalogLoader;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-rebalance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.rebalanceTimer = Timer.builder("cluster.rebalance").register(meterRegistry);
+        FunctionCounter.builder("cluster.movies.handed.off", handedOff, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("cluster.movies.received", received, LongAdder::sum).register(meterRegistry);
+    }
+
+    /**
+     * Moves the movie sequence into this node's id range once the database has been restored, and
+     * before the web server accepts the first movie. The sequence continues after the highest id of
+     * the range that is either held or was handed off.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!clusterMembership.isEnabled()) {
+            return;
+        }
+        long base = rangeBase();
+        Long maxId = movieRepository.findMaxIdInRange(base, base + (1L << ID_RANGE_BITS));
+        long highWater = maxId == null ? base : maxId;
+        if (isOwnRange(ratingJournal.getIdHighWater())) {
+            highWater = Math.max(highWater, ratingJournal.getIdHighWater());
+        }
+        catalogLoader.restartMovieSequenceAbove(highWater);
+    }
+
+    /**
+     * Announces this node to the seeds and every member they know of.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void join() {
+        if (!clusterMembership.isEnabled()) {
+            return;
+        }
+        String self = clusterMembership.getSelf();
+        Deque<String> pending = new ArrayDeque<>(clusterMembership.getSeeds());
+        Set<String> announced = new HashSet<>();
+        while (!pending.isEmpty()) {
+            String member = pending.poll();
+            if (!announced.add(member)) {
+                continue;
+            }
+            try {
+                for (String known : clusterClient.join(member, self)) {
+                    if (clusterMembership.add(known)) {
+                        pending.add(ClusterMembership.normalize(known));
+                    }
+                }
+            } catch (ClusterUnavailableException e) {
+                log.warn("Removing unreachable member {} from the cluster: {}", member, e.getMessage());
+                clusterMembership.remove(member);
+            }
+        }
+        log.info("Joined cluster as {} with members {}", self, clusterMembership.getMembers());
+        scheduleRebalance();
+    }
+
+    /**
+     * Adds a member that announced itself and hands off the movies it now owns in the background.
+     *
+     * @return The members known to this node.
+     */
+    public List<String> memberJoined(String member) {
+        if (clusterMembership.add(member)) {
+            log.info("Member {} joined, members are now {}", member, clusterMembership.getMembers());
+            scheduleRebalance();
+        }
+        return clusterMembership.getMembers();
+    }
+
+    /**
+     * Removes a member that handed off its movies and left.
+     */
+    public void memberLeft(String member) {
+        if (!ClusterMembership.normalize(member).equals(clusterMembership.getSelf()) && clusterMembership.remove(member)) {
+            log.info("Member {} left, members are now {}", member, clusterMembership.getMembers());
+        }
+    }
+
+    /**
+     * Hands off every movie to the remaining members before this node shuts down.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void leave() {
+        if (!clusterMembership.isEnabled()) {
+            return;
+        }
+        String self = clusterMembership.getSelf();
+        List<String> others = new ArrayList<>(clusterMembership.getMembers());
+        others.remove(self);
+        if (others.isEmpty()) {
+            return;
+        }
+        clusterMembership.remove(self);
+        int moved = rebalance();
+        for (String member : others) {
+            try {
+                clusterClient.leave(member, self);
+            } catch (ClusterUnavailableException e) {
+                log.warn("Could not tell {} that {} left: {}", member, self, e.getMessage());
+            }
+        }
+        log.info("Left cluster after handing off {} movies", moved);
+    }
+
+    /**
+     * Hands off every local movie that another member owns.
+     *
+     * @return The number of movies handed off.
+     */
+    @Scheduled(fixedDelayString = "${movies.cluster.rebalance-interval-ms:60000}",
+            initialDelayString = "${movies.cluster.rebalance-interval-ms:60000}")
+    public synchronized int rebalance() {
+        if (!clusterMembership.isEnabled()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        ratingAggregator.flush();
+        int moved = 0;
+        long after = Long.MIN_VALUE;
+        List<Movie> page;
+        while (!(page = movieRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, batchSize))).isEmpty()) {
+            after = page.get(page.size() - 1).getId();
+            moved += handOff(page);
+        }
+        created.clear();
+        long elapsed = System.nanoTime() - start;
+        rebalanceTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        if (moved > 0) {
+            log.info("Handed off {} movies in {} ms", moved, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+        return moved;
+    }
+
+    /**
+     * Remembers a movie this node just created so that it is handed off soon if another member
+     * owns it.
+     */
+    public void movieCreated(long movieId) {
+        if (!clusterMembership.isLocal(movieId)) {
+            created.add(movieId);
+        }
+    }
+
+    /**
+     * Hands off the movies created here since the last call that other members own.
+     *
+     * @return The number of movies handed off.
+     */
+    @Scheduled(fixedDelayString = "${movies.cluster.handoff.delay-ms:1000}")
+    public synchronized int handOffCreated() {
+        if (created.isEmpty()) {
+            return 0;
+        }
+        handingOff = true;
+        try {
+            List<Long> ids = new ArrayList<>();
+            Long id;
+            while ((id = created.poll()) != null) {
+                ids.add(id);
+            }
+            ratingAggregator.flush();
+            int moved = 0;
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                moved += handOff(movieRepository.findAllById(ids.subList(from, Math.min(ids.size(), from + batchSize))));
+            }
+            if (moved > 0) {
+                log.debug("Handed off {} new movies", moved);
+            }
+            return moved;
+        } finally {
+            handingOff = false;
+        }
+    }
+
+    /**
+     * @return true while movies are waiting to be handed off or a rebalance is scheduled or running.
+     */
+    public boolean isRebalancing() {
+        return scheduledRebalances.get() > 0 || handingOff || !created.isEmpty();
+    }
+
+    /**
+     * Inserts movies handed off by another member, keeping their ids, and applies the ratings that
+     * were parked while they were on their way. A movie already held is acknowledged without being
+     * inserted again, so a retried handoff is harmless; an id held for a different movie, with
+     * another title or release year, is reported as a conflict.
+     *
+     * @return The ids of the movies now held, which the sender may delete, and the conflicting ids.
+     */
+    public MovieTransferReceipt accept(MovieTransfer transfer) {
+        List<Long> ids = new ArrayList<>(transfer.getMovies().size());
+        for (Movie movie : transfer.getMovies()) {
+            ids.add(movie.getId());
+        }
+        Map<Long, Movie> existing = new HashMap<>();
+        for (Movie movie : movieRepository.findAllById(ids)) {
+            existing.put(movie.getId(), movie);
+        }
+        List<Long> accepted = new ArrayList<>(ids.size());
+        List<Long> conflicts = new ArrayList<>();
+        List<Movie> added = new ArrayList<>(ids.size());
+        for (Movie movie : transfer.getMovies()) {
+            Movie held = existing.get(movie.getId());
+            if (held != null) {
+                if (Objects.equals(held.getTitle(), movie.getTitle())
+                        && held.getReleaseYear() == movie.getReleaseYear()) {
+                    accepted.add(movie.getId());
+                } else {
+                    conflicts.add(movie.getId());
+                }
+                continue;
+            }
+            movie.setGenreBits(genreDictionary.encodeLenient(movie.getGenre()));
+            movie.setRankingScore(rankingScorer.score(movie.getAverageRating(), movie.getNumberOfRatings()));
+            added.add(movie);
+            accepted.add(movie.getId());
+        }
+        List<UserRating> addedRatings = new ArrayList<>();
+        for (UserRating rating : transfer.getUserRatings()) {
+            if (!existing.containsKey(rating.getMovieId())) {
+                addedRatings.add(rating);
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            catalogLoader.insertMovies(added);
+            catalogLoader.insertUserRatings(addedRatings);
+        });
+        movieChangeNotifier.moviesAdded(added);
+        ratingJournal.appendUserRatings(addedRatings);
+        movieChangeNotifier.userRatingsUpdated(addedRatings);
+        ratingForwarder.releaseParked(ids);
+        received.add(added.size());
+        log.debug("Received {} movies and {} user ratings", added.size(), addedRatings.size());
+        if (!conflicts.isEmpty()) {
+            log.warn("Rejected {} handed-off movies whose ids are held by other movies: {}", conflicts.size(), conflicts);
+        }
+        return new MovieTransferReceipt(accepted, conflicts);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private void scheduleRebalance() {
+        scheduledRebalances.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                rebalance();
+            } finally {
+                scheduledRebalances.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Hands off the movies of a chunk that other members own.
+     *
+     * @return The number of movies handed off.
+     */
+    private int handOff(List<Movie> movies) {
+        Map<String, List<Movie>> byOwner = new LinkedHashMap<>();
+        for (Movie movie : movies) {
+            if (!clusterMembership.isLocal(movie.getId())) {
+                byOwner.computeIfAbsent(clusterMembership.owner(movie.getId()), owner -> new ArrayList<>()).add(movie);
+            }
+        }
+        int moved = 0;
+        for (Map.Entry<String, List<Movie>> entry : byOwner.entrySet()) {
+            moved += handOff(entry.getKey(), entry.getValue());
+        }
+        return moved;
+    }
+
+    /**
+     * Sends movies to their new owner and deletes those it acknowledged.
+     *
+     * @return The number of movies handed off, 0 if the owner could not be reached.
+     */
+    private int handOff(String owner, List<Movie> movies) {
+        List<Long> ids = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            ids.add(movie.getId());
+        }
+        List<UserRating> userRatings = userRatingRepository.findByMovieIdIn(ids);
+        MovieTransferReceipt receipt;
+        try {
+            receipt = clusterClient.transfer(owner, new MovieTransfer(movies, userRatings));
+        } catch (ClusterUnavailableException e) {
+            log.warn("Could not hand off {} movies to {}, retrying later: {}", ids.size(), owner, e.getMessage());
+            return 0;
+        }
+        if (!receipt.getConflicts().isEmpty()) {
+            log.warn("{} holds other movies under the ids {}, keeping them here", owner, receipt.getConflicts());
+        }
+        Set<Long> sent = new HashSet<>(ids);
+        List<Long> acknowledged = new ArrayList<>(receipt.getAccepted().size());
+        long highWater = Long.MIN_VALUE;
+        for (Long id : receipt.getAccepted()) {
+            if (sent.contains(id)) {
+                acknowledged.add(id);
+                if (isOwnRange(id)) {
+                    highWater = Math.max(highWater, id);
+                }
+            }
+        }
+        if (acknowledged.isEmpty()) {
+            return 0;
+        }
+        if (highWater != Long.MIN_VALUE) {
+            ratingJournal.recordIdHighWater(highWater);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            userRatingRepository.deleteByMovieIdIn(acknowledged);
+            movieRepository.deleteAllByIdInBatch(acknowledged);
+        });
+        movieChangeNotifier.moviesRemoved(acknowledged);
+        handedOff.add(acknowledged.size());
+        return acknowledged.size();
+    }
+
+    private long rangeBase() {
+        return (long) clusterMembership.getNodeId() << ID_RANGE_BITS;
+    }
+
+    private boolean isOwnRange(long id) {
+        return id >= 0 && id >>> ID_RANGE_BITS == clusterMembership.getNodeId();
+    }
+}
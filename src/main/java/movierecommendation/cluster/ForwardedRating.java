@@ -0,0 +1,20 @@
+package movierecommendation.cluster;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A rating accepted by one node and forwarded to the node owning the movie.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ForwardedRating {
+    private long movieId;
+    /**
+     * The ID of the rating user, or null for an anonymous rating.
+     */
+    private Long userId;
+    private double rating;
+}
@@ -0,0 +1,121 @@
+package movierecommendation.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent hash ring assigning movie ids to cluster members.
+ * <p>
+ * Every member is placed on the ring at {@code virtualNodes} points hashed from its URL, and a movie
+ * is owned by the member of the first point at or after the hash of its id. Adding or removing a
+ * member therefore only moves the ids between its points and their predecessors, about one in
+ * {@code members} of all ids. The points are held in a sorted primitive array, so a lookup is one
+ * binary search.
+ */
+final class HashRing {
+
+    private final List<String> members;
+    private final int virtualNodes;
+    private final long[] points;
+    private final String[] owners;
+
+    HashRing(Collection<String> members, int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("movies.cluster.virtual-nodes must be positive");
+        }
+        this.members = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(members)));
+        this.virtualNodes = virtualNodes;
+        int size = this.members.size() * virtualNodes;
+        long[] hashes = new long[size];
+        String[] hashOwners = new String[size];
+        int i = 0;
+        for (String member : this.members) {
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                hashes[i] = hash(member + '#' + replica);
+                hashOwners[i] = member;
+                i++;
+            }
+        }
+        Integer[] order = new Integer[size];
+        for (int j = 0; j < size; j++) {
+            order[j] = j;
+        }
+        Arrays.sort(order, (a, b) -> hashes[a] != hashes[b]
+                ? Long.compare(hashes[a], hashes[b]) : hashOwners[a].compareTo(hashOwners[b]));
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int j = 0; j < size; j++) {
+            points[j] = hashes[order[j]];
+            owners[j] = hashOwners[order[j]];
+        }
+    }
+
+    /**
+     * Returns the member owning a movie, or null if the ring is empty.
+     */
+    String owner(long movieId) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, mix(movieId));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    List<String> getMembers() {
+        return members;
+    }
+
+    boolean contains(String member) {
+        return members.contains(member);
+    }
+
+    HashRing with(String member) {
+        if (contains(member)) {
+            return this;
+        }
+        List<String> next = new ArrayList<>(members);
+        next.add(member);
+        return new HashRing(next, virtualNodes);
+    }
+
+    HashRing without(String member) {
+        if (!contains(member)) {
+            return this;
+        }
+        List<String> next = new ArrayList<>(members);
+        next.remove(member);
+        return new HashRing(next, virtualNodes);
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes, finished with {@link #mix(long)} to spread nearby strings.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * MurmurHash3 finalizer, so that sequential ids land all over the ring.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
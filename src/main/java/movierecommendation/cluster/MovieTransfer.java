@@ -0,0 +1,20 @@
+package movierecommendation.cluster;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import movierecommendation.model.Movie;
+import movierecommendation.model.UserRating;
+
+import java.util.List;
+
+/**
+ * Movies handed off to their new owner, with their rating aggregates and the user ratings of them.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieTransfer {
+    private List<Movie> movies;
+    private List<UserRating> userRatings;
+}
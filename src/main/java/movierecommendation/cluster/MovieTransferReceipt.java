@@ -0,0 +1,25 @@
+package movierecommendation.cluster;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The answer of a member to a {@link MovieTransfer}: which of the movies it now holds, and which ids
+ * it already holds for a different movie.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieTransferReceipt {
+    /**
+     * The ids of the movies the member inserted or already held, which the sender may delete.
+     */
+    private List<Long> accepted;
+    /**
+     * The ids the member already holds for a different movie; the sender keeps these movies.
+     */
+    private List<Long> conflicts;
+}
@@ -0,0 +1,238 @@
+package movierecommendation.cluster;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.exception.ClusterUnavailableException;
+import movierecommendation.service.RatingAggregator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Batches ratings of movies owned by other cluster members towards their owners, and applies the
+ * ratings forwarded to this node.
+ * <p>
+ * Accepted ratings are queued per owner in bounded queues; when a queue is full the rating is
+ * rejected right away instead of blocking. Every {@code movies.cluster.forward.flush-interval-ms} the
+ * queues are drained in batches of up to {@code movies.cluster.forward.batch-size} ratings, one request
+ * per batch. A batch that cannot be delivered is dropped and counted, so forwarded ratings are
+ * applied at most once.
+ * <p>
+ * A forwarded rating of a movie this node owns but does not hold yet, because the movie is still
+ * being handed off to it, is parked for up to {@code movies.cluster.handoff.park-ms} and applied once
+ * the movie arrives. Ratings that reached this node under a stale ring are passed on to the current
+ * owner.
+ * <p>
+ * Forwarded, failed and parked ratings are exposed as {@code cluster.ratings.forwarded},
+ * {@code cluster.ratings.forward.failed} and {@code cluster.ratings.parked}, and the ratings waiting
+ * to be forwarded as {@code cluster.ratings.forward.pending}.
+ */
+@Slf4j
+@Component
+public class RatingForwarder {
+
+    private final ClusterMembership clusterMembership;
+    private final ClusterClient clusterClient;
+    private final RatingAggregator ratingAggregator;
+    private final int batchSize;
+    private final int capacity;
+    private final long parkMillis;
+    private final LongSupplier clock;
+    private final Map<String, BlockingQueue<ForwardedRating>> queues = new ConcurrentHashMap<>();
+    private final Map<Long, ParkedRatings> parked = new HashMap<>();
+    private int parkedCount;
+    private final LongAdder forwardedRatings = new LongAdder();
+    private final LongAdder failedRatings = new LongAdder();
+
+    @Autowired
+    public RatingForwarder(ClusterMembership clusterMembership,
+                           ClusterClient clusterClient,
+                           RatingAggregator ratingAggregator,
+                           @Value("${movies.cluster.forward.batch-size:500}") int batchSize,
+                           @Value("${movies.cluster.forward.queue-capacity:100000}") int capacity,
+                           @Value("${movies.cluster.handoff.park-ms:10000}") long parkMillis,
+                           MeterRegistry meterRegistry) {
+        this(clusterMembership, clusterClient, ratingAggregator, batchSize, capacity, parkMillis,
+                System::currentTimeMillis);
+        FunctionCounter.builder("cluster.ratings.forwarded", forwardedRatings, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("cluster.ratings.forward.failed", failedRatings, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("cluster.ratings.forward.pending", this, RatingForwarder::pending).register(meterRegistry);
+        Gauge.builder("cluster.ratings.parked", this, RatingForwarder::parked).register(meterRegistry);
+    }
+
+    RatingForwarder(ClusterMembership clusterMembership, ClusterClient clusterClient,
+                    RatingAggregator ratingAggregator, int batchSize, int capacity, long parkMillis,
+                    LongSupplier clock) {
+        this.clusterMembership = clusterMembership;
+        this.clusterClient = clusterClient;
+        this.ratingAggregator = ratingAggregator;
+        this.batchSize = Math.max(1, batchSize);
+        this.capacity = Math.max(1, capacity);
+        this.parkMillis = parkMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Queues a validated rating for the member owning the movie, without blocking.
+     *
+     * @return false if the queue of that member is full and the rating was rejected.
+     */
+    public boolean offer(String owner, long movieId, Long userId, double rating) {
+        return queues.computeIfAbsent(owner, member -> new ArrayBlockingQueue<>(capacity))
+                .offer(new ForwardedRating(movieId, userId, rating));
+    }
+
+    /**
+     * Sends the queued ratings to their owners, one batch at a time.
+     *
+     * @return The number of ratings delivered.
+     */
+    @Scheduled(fixedDelayString = "${movies.cluster.forward.flush-interval-ms:50}")
+    public int flush() {
+        int delivered = 0;
+        for (Map.Entry<String, BlockingQueue<ForwardedRating>> entry : queues.entrySet()) {
+            BlockingQueue<ForwardedRating> queue = entry.getValue();
+            while (!queue.isEmpty()) {
+                List<ForwardedRating> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+                if (queue.drainTo(batch, batchSize) > 0 && send(entry.getKey(), batch)) {
+                    delivered += batch.size();
+                }
+            }
+        }
+        expireParked();
+        return delivered;
+    }
+
+    /**
+     * Applies ratings forwarded by another member.
+     *
+     * @return The number of ratings applied right away.
+     */
+    public int receive(List<ForwardedRating> ratings) {
+        int applied = 0;
+        for (ForwardedRating rating : ratings) {
+            if (!clusterMembership.isLocal(rating.getMovieId())) {
+                if (!offer(clusterMembership.owner(rating.getMovieId()), rating.getMovieId(), rating.getUserId(),
+                        rating.getRating())) {
+                    failedRatings.increment();
+                }
+            } else if (ratingAggregator.record(rating.getMovieId(), rating.getUserId(), rating.getRating())) {
+                applied++;
+            } else {
+                park(rating);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Applies the parked ratings of movies that were just handed off to this node.
+     */
+    public void releaseParked(Collection<Long> movieIds) {
+        List<ForwardedRating> released = new ArrayList<>();
+        synchronized (parked) {
+            if (parked.isEmpty()) {
+                return;
+            }
+            for (Long movieId : movieIds) {
+                ParkedRatings ratings = parked.remove(movieId);
+                if (ratings != null) {
+                    released.addAll(ratings.ratings);
+                    parkedCount -= ratings.ratings.size();
+                }
+            }
+        }
+        for (ForwardedRating rating : released) {
+            ratingAggregator.record(rating.getMovieId(), rating.getUserId(), rating.getRating());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        int delivered = flush();
+        if (delivered > 0) {
+            log.info("Forwarded {} ratings before shutdown", delivered);
+        }
+    }
+
+    public int pending() {
+        int pending = 0;
+        for (BlockingQueue<ForwardedRating> queue : queues.values()) {
+            pending += queue.size();
+        }
+        return pending;
+    }
+
+    public int parked() {
+        synchronized (parked) {
+            return parkedCount;
+        }
+    }
+
+    private boolean send(String owner, List<ForwardedRating> batch) {
+        try {
+            clusterClient.sendRatings(owner, batch);
+            forwardedRatings.add(batch.size());
+            return true;
+        } catch (ClusterUnavailableException e) {
+            failedRatings.add(batch.size());
+            log.warn("Dropped {} ratings for {}: {}", batch.size(), owner, e.getMessage());
+            return false;
+        }
+    }
+
+    private void park(ForwardedRating rating) {
+        synchronized (parked) {
+            if (parkedCount >= capacity) {
+                failedRatings.increment();
+                return;
+            }
+            parked.computeIfAbsent(rating.getMovieId(), id -> new ParkedRatings(clock.getAsLong() + parkMillis))
+                    .ratings.add(rating);
+            parkedCount++;
+        }
+    }
+
+    private void expireParked() {
+        synchronized (parked) {
+            long now = clock.getAsLong();
+            Iterator<ParkedRatings> iterator = parked.values().iterator();
+            while (iterator.hasNext()) {
+                ParkedRatings ratings = iterator.next();
+                if (ratings.deadline <= now) {
+                    iterator.remove();
+                    parkedCount -= ratings.ratings.size();
+                    failedRatings.add(ratings.ratings.size());
+                }
+            }
+        }
+    }
+
+    /**
+     * Ratings of one movie waiting for the movie to arrive, until a deadline in epoch millis.
+     */
+    private static final class ParkedRatings {
+        private final long deadline;
+        private final List<ForwardedRating> ratings = new ArrayList<>(2);
+
+        ParkedRatings(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
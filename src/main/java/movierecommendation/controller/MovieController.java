@@ -1,34 +1,110 @@
 package movierecommendation.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import lombok.extern.slf4j.Slf4j;
+import movierecommendation.model.GenreMatch;
 import movierecommendation.model.Movie;
+import movierecommendation.model.MovieField;
+import movierecommendation.model.MovieIngestReport;
+import movierecommendation.model.MovieSort;
+import movierecommendation.model.RatingBatchItem;
+import movierecommendation.model.RatingBatchReport;
+import movierecommendation.model.RecommendationQuery;
+import movierecommendation.model.SparseMovieList;
 import movierecommendation.service.MovieService;
+import movierecommendation.util.MovieCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/movies")
 @Slf4j
 public class MovieController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
     private final MovieService movieService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public MovieController(MovieService movieService) {
+    public MovieController(MovieService movieService, ObjectMapper objectMapper) {
         this.movieService = movieService;
+        this.objectMapper = objectMapper;
     }
 
     /**
-     * Retrieve a list of all movies.
+     * Retrieve a list of all movies, or one page of them when a cursor or limit is given.
+     * The cursor of the next page is returned in the X-Next-Cursor header. Answers 304 when the
+     * catalog still matches the If-None-Match header. With fields, only the given fields of each
+     * movie are returned.
+     * @param cursor
+     * @param limit
+     * @param fields
+     * @param request
      * @return
      */
     @GetMapping(path = "/getMovies")
-    public List<Movie> getAllMovies() {
-        log.info("Entering getAllMovies() Api ");
-        return movieService.getAllMovies();
+    public ResponseEntity<Object> getAllMovies(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) List<String> fields,
+            WebRequest request) {
+        log.debug("Entering getAllMovies() Api ");
+        Set<MovieField> movieFields = MovieField.from(fields);
+        String etag = representationETag(movieService.getCatalogETag(), request, movieFields);
+        if (notModified(request, etag)) {
+            return null;
+        }
+        if (cursor == null && limit == null) {
+            return ok(etag).body(body(movieService.getAllMovies(), movieFields));
+        }
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        return page(movieService.getMovies(MovieCursor.decode(cursor), pageSize), pageSize, MovieCursor::of,
+                movieFields, etag);
+    }
+
+    /**
+     * Stream all movies as a JSON array, written incrementally in constant memory. Answers 304
+     * when the catalog still matches the If-None-Match header.
+     * @param request
+     * @return
+     */
+    @GetMapping(path = "/getMovies/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllMovies(WebRequest request) {
+        log.debug("Entering streamAllMovies() Api ");
+        String etag = movieService.getCatalogETag();
+        if (notModified(request, etag)) {
+            return null;
+        }
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                movieService.forEachMovie(movie -> writeMovie(generator, movie));
+                generator.writeEndArray();
+            }
+        };
+        return ok(etag).contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     /**
@@ -38,34 +114,262 @@ public class MovieController {
      */
     @PostMapping(path = "/addMovie")
     public ResponseEntity<String> addMovie(@RequestBody Movie movie) {
-        log.info("Entering addMovie() Api ");
+        log.debug("Entering addMovie() Api ");
        return movieService.addMovie(movie);
     }
 
     /**
-     * Rate a movie by providing a rating.
+     * Add many movies at once from a JSON array.
+     * @param movies
+     * @return
+     */
+    @PostMapping(path = "/addMovies", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<MovieIngestReport> addMovies(@RequestBody List<Movie> movies) {
+        log.debug("Entering addMovies() Api ");
+        return ResponseEntity.ok(movieService.addMovies(movies.iterator()));
+    }
+
+    /**
+     * Add many movies at once from a newline-delimited JSON stream, one movie per line.
+     * @param body
+     * @return
+     */
+    @PostMapping(path = "/addMovies", consumes = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<MovieIngestReport> addMoviesStream(InputStream body) throws IOException {
+        log.debug("Entering addMoviesStream() Api ");
+        try (MappingIterator<Movie> movies = objectMapper.readerFor(Movie.class).readValues(body)) {
+            return ResponseEntity.ok(movieService.addMovies(movies));
+        } catch (RuntimeJsonMappingException e) {
+            throw new IllegalArgumentException("Malformed movie in request body: " + e.getMessage());
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof JsonProcessingException) {
+                throw new IllegalArgumentException("Malformed movie in request body: " + e.getCause().getMessage());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Rate a movie by providing a rating, optionally on behalf of a user.
+     * In asynchronous rating mode the rating is queued and 202 returned, or 429 when the queue is full.
      * @param movieId
      * @param rating
+     * @param userId
      * @return
      */
     @PostMapping(path = "/{movieId}/rate")
     public ResponseEntity<String> rateMovie(
             @PathVariable Long movieId,
-            @RequestParam double rating) {
-        log.info("Entering rateMovie() Api ");
-        return movieService.rateMovie(movieId, rating);
+            @RequestParam double rating,
+            @RequestParam(required = false) Long userId) {
+        log.debug("Entering rateMovie() Api ");
+        return movieService.rateMovie(movieId, userId, rating);
+    }
+
+    /**
+     * Rate many movies at once, for example ratings buffered offline, with up to 1000 ratings per batch.
+     * Each rating is validated like a single rating; the report holds the outcome of every rating, in
+     * the order they were submitted.
+     * @param ratings
+     * @return
+     */
+    @PostMapping(path = "/ratings:batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<RatingBatchReport> rateMovies(@RequestBody List<RatingBatchItem> ratings) {
+        log.debug("Entering rateMovies() Api ");
+        return ResponseEntity.ok(movieService.rateMovies(ratings));
     }
 
 
     /**
-     * Get movie recommendations based on ratings and optional genre.
+     * Get movie recommendations based on ratings and optional genres, sorted by average rating
+     * or by confidence-weighted ranking score. With several genres, movies having any of them are
+     * returned, or movies having all of them with match=all.
+     * The cursor of the next page is returned in the X-Next-Cursor header when a limit is given.
+     * Answers 304 when no movie of the requested genres changed since the If-None-Match header.
+     * With fields, only the given fields of each movie are returned.
      * @param genre
+     * @param match
+     * @param limit
+     * @param cursor
+     * @param sort
+     * @param fields
+     * @param request
      * @return
      */
     @GetMapping("/recommend")
-    public List<Movie> recommendMoviesByRatingsAndGenre(
-            @RequestParam(required = false) String genre) {
-        log.info("Entering recommendMoviesByRatingsAndGenre() Api ");
-        return movieService.recommendMoviesByRatingsAndGenre(genre) ;
+    public ResponseEntity<Object> recommendMoviesByRatingsAndGenre(
+            @RequestParam(required = false) List<String> genre,
+            @RequestParam(required = false) String match,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) List<String> fields,
+            WebRequest request) {
+        log.debug("Entering recommendMoviesByRatingsAndGenre() Api ");
+        Set<MovieField> movieFields = MovieField.from(fields);
+        RecommendationQuery query = RecommendationQuery.builder()
+                .genres(genre)
+                .match(GenreMatch.from(match))
+                .limit(limit)
+                .after(MovieCursor.decode(cursor))
+                .sort(MovieSort.from(sort))
+                .build();
+        String etag = representationETag(movieService.getRecommendationETag(query), request, movieFields);
+        if (notModified(request, etag)) {
+            return null;
+        }
+        List<Movie> movies = movieService.recommendMoviesByRatingsAndGenre(query);
+        return limit == null ? ok(etag).body(body(movies, movieFields))
+                : page(movies, limit, movie -> MovieCursor.of(movie, query.getSort()), movieFields, etag);
+    }
+
+    /**
+     * Get personalized movie recommendations for a user, based on the movies similar to those
+     * the user rated.
+     * @param userId
+     * @param limit
+     * @return
+     */
+    @GetMapping("/recommend/user/{userId}")
+    public ResponseEntity<List<Movie>> recommendMoviesForUser(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = "10") int limit) {
+        log.debug("Entering recommendMoviesForUser() Api ");
+        return ResponseEntity.ok(movieService.recommendMoviesForUser(userId, limit));
+    }
+
+    /**
+     * Get the movies most similar to a movie, by shared genre, shared director and release year.
+     * @param movieId
+     * @param limit
+     * @return
+     */
+    @GetMapping("/{movieId}/similar")
+    public ResponseEntity<List<Movie>> findSimilarMovies(
+            @PathVariable Long movieId,
+            @RequestParam(defaultValue = "10") int limit) {
+        log.debug("Entering findSimilarMovies() Api ");
+        List<Movie> movies = movieService.findSimilarMovies(movieId, limit);
+        return movies == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(movies);
+    }
+
+    /**
+     * Search movies by title, best match first. The last word of the query may be incomplete.
+     * @param q
+     * @param limit
+     * @return
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<Movie>> searchMovies(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        log.debug("Entering searchMovies() Api ");
+        return ResponseEntity.ok(movieService.searchMovies(q, limit));
+    }
+
+    /**
+     * Get the movies rated most over a recent window, recent ratings weighing more, optionally
+     * limited to movies having any of the given genres.
+     * @param window
+     * @param genre
+     * @param limit
+     * @return
+     */
+    @GetMapping("/trending")
+    public ResponseEntity<List<Movie>> getTrendingMovies(
+            @RequestParam(defaultValue = "1h") String window,
+            @RequestParam(required = false) List<String> genre,
+            @RequestParam(defaultValue = "10") int limit) {
+        log.debug("Entering getTrendingMovies() Api ");
+        return ResponseEntity.ok(movieService.getTrendingMovies(window, genre, limit));
+    }
+
+    private static ResponseEntity<Object> page(List<Movie> movies, int limit, Function<Movie, MovieCursor> cursor,
+                                               Set<MovieField> fields, String etag) {
+        ResponseEntity.BodyBuilder response = ok(etag);
+        if (!movies.isEmpty() && movies.size() == limit) {
+            response.header(NEXT_CURSOR_HEADER, cursor.apply(movies.get(movies.size() - 1)).encode());
+        }
+        return response.body(body(movies, fields));
+    }
+
+    /**
+     * The movies with every field, or only the requested ones. Either is written in the format
+     * negotiated from the Accept header: JSON, CBOR or Smile.
+     */
+    private static Object body(List<Movie> movies, Set<MovieField> fields) {
+        return fields == null ? movies : new SparseMovieList(movies, fields);
+    }
+
+    /**
+     * Checks the request against the ETag before anything is read, so that a 304 costs neither a
+     * query nor serialization. The ETag must be taken before the response body is computed.
+     */
+    private static boolean notModified(WebRequest request, String etag) {
+        return etag != null && request.checkNotModified(etag);
+    }
+
+    /**
+     * Extends the ETag of the movies by the response format and the requested fields, unless they are
+     * JSON with every field, so that the representations of one catalog version never share an ETag.
+     */
+    private static String representationETag(String etag, WebRequest request, Set<MovieField> fields) {
+        String format = format(request.getHeader(HttpHeaders.ACCEPT));
+        if (etag == null || format == null && fields == null) {
+            return etag;
+        }
+        StringBuilder tag = new StringBuilder(etag.length() + 16).append(etag, 0, etag.length() - 1);
+        if (format != null) {
+            tag.append('-').append(format);
+        }
+        if (fields != null) {
+            int bits = 0;
+            for (MovieField field : fields) {
+                bits |= 1 << field.ordinal();
+            }
+            tag.append("-f").append(Integer.toString(bits, 36));
+        }
+        return tag.append('"').toString();
+    }
+
+    /**
+     * The binary format the Accept header prefers, or null for JSON, which is also the default.
+     */
+    private static String format(String accept) {
+        if (accept == null) {
+            return null;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType type : accepted) {
+            if (type.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return null;
+            }
+            if (type.isCompatibleWith(MediaType.APPLICATION_CBOR)) {
+                return "cbor";
+            }
+            if (type.isCompatibleWith(APPLICATION_SMILE)) {
+                return "smile";
+            }
+        }
+        return null;
+    }
+
+    private static ResponseEntity.BodyBuilder ok(String etag) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT);
+        return etag != null ? response.eTag(etag) : response;
+    }
+
+    private static void writeMovie(JsonGenerator generator, Movie movie) {
+        try {
+            generator.writeObject(movie);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
@@ -0,0 +1,12 @@
+package movierecommendation.exception;
+
+/**
+ * Signals that a cluster member needed to answer a request could not be reached.
+ */
+public class ClusterUnavailableException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public ClusterUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
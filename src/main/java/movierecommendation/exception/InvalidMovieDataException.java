@@ -1,7 +1,13 @@
 package movierecommendation.exception;
 
-public class InvalidMovieDataException extends Throwable {
+/**
+ * Signals movie data that fails validation. It only carries a message for the client, so it does
+ * not capture a stack trace.
+ */
+public class InvalidMovieDataException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
     public InvalidMovieDataException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -1,7 +1,13 @@
 package movierecommendation.exception;
 
-public class MovieAlreadyExistsException extends Throwable {
+/**
+ * Signals a movie with the title and release year of a stored one. Stackless, like
+ * {@link InvalidMovieDataException}.
+ */
+public class MovieAlreadyExistsException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
     public MovieAlreadyExistsException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,13 @@
+package movierecommendation.exception;
+
+/**
+ * Signals that a movie introduces a genre while the genre dictionary already holds the maximum
+ * number of genres.
+ */
+public class TooManyGenresException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public TooManyGenresException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,300 @@
+package movierecommendation.index;
+
+import movierecommendation.model.Movie;
+import movierecommendation.util.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Struct-of-arrays copy of the movie catalog, the read model behind {@link MovieRankingIndex}.
+ * <p>
+ * Every movie occupies one slot of a set of primitive columns: id, release year, average rating,
+ * number of ratings, ranking score and genre bitset. Genre strings and directors, which repeat
+ * across many movies, are dictionary encoded into a shared string table, so each distinct value is
+ * held once. Titles are nearly unique and are kept as one string per slot. Ids are mapped to slots
+ * without boxing. Detached {@link Movie}s are only materialized when a movie is read, so a catalog of
+ * a million movies costs a few dozen bytes per movie plus its title, instead of a managed entity
+ * with its own copy of every string.
+ * <p>
+ * Writes are serialized by the caller. Reads of the columns take no lock: the columns are republished
+ * through a volatile reference when they grow, and the size after every appended slot, so a reader
+ * sees every slot below the size it read. A reader racing with an update of the same movie may see
+ * some of its fields before and some after the update.
+ * <p>
+ * A removed movie leaves a tombstone in its slot, so that concurrent readers and the slots held by
+ * the rankings stay valid. Tombstones are dropped when the store is rebuilt.
+ */
+final class CatalogStore {
+
+    private static final int NO_SLOT = -1;
+    private static final int NULL_CODE = -1;
+
+    private final LongIntHashMap slots;
+    private final ReadWriteLock slotsLock = new ReentrantReadWriteLock();
+    private final StringTable strings = new StringTable();
+    private volatile Columns columns;
+    private volatile int size;
+    private volatile int removed;
+    private volatile boolean orderedById = true;
+
+    CatalogStore(int expectedSize) {
+        this.slots = new LongIntHashMap(Math.max(16, expectedSize));
+        this.columns = new Columns(Math.max(16, expectedSize));
+    }
+
+    /**
+     * Inserts or updates a movie. Must not be called concurrently.
+     *
+     * @return The slot of the movie.
+     */
+    int put(Movie movie) {
+        long id = movie.getId();
+        int slot = slot(id);
+        Columns target = columns;
+        if (slot == NO_SLOT) {
+            slot = size;
+            if (slot == target.ids.length) {
+                target = target.grow(slot * 2);
+            }
+            if (slot > 0 && target.ids[slot - 1] > id) {
+                orderedById = false;
+            }
+        }
+        target.ids[slot] = id;
+        target.titles[slot] = movie.getTitle();
+        target.genres[slot] = strings.intern(movie.getGenre());
+        target.directors[slot] = strings.intern(movie.getDirector());
+        target.releaseYears[slot] = movie.getReleaseYear();
+        target.averageRatings[slot] = movie.getAverageRating();
+        target.numberOfRatings[slot] = movie.getNumberOfRatings();
+        target.rankingScores[slot] = movie.getRankingScore();
+        target.genreBits[slot] = movie.getGenreBits();
+        target.removed[slot] = false;
+        columns = target;
+        if (slot == size) {
+            slotsLock.writeLock().lock();
+            try {
+                slots.put(id, slot);
+            } finally {
+                slotsLock.writeLock().unlock();
+            }
+            size = slot + 1;
+        }
+        return slot;
+    }
+
+    /**
+     * Removes a movie, leaving a tombstone in its slot. Must not be called concurrently with
+     * {@link #put(Movie)}.
+     *
+     * @return The former slot of the movie, or -1 if it was not stored.
+     */
+    int remove(long id) {
+        int slot;
+        slotsLock.writeLock().lock();
+        try {
+            slot = slots.get(id, NO_SLOT);
+            if (slot == NO_SLOT) {
+                return NO_SLOT;
+            }
+            slots.remove(id);
+        } finally {
+            slotsLock.writeLock().unlock();
+        }
+        Columns current = columns;
+        current.removed[slot] = true;
+        columns = current;
+        removed++;
+        return slot;
+    }
+
+    /**
+     * Returns the slot of a movie, or -1 if it is not stored.
+     */
+    int slot(long id) {
+        slotsLock.readLock().lock();
+        try {
+            return slots.get(id, NO_SLOT);
+        } finally {
+            slotsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of stored movies, without tombstones.
+     */
+    int size() {
+        return size - removed;
+    }
+
+    long genreBits(int slot) {
+        return columns.genreBits[slot];
+    }
+
+    /**
+     * Materializes the movie in a slot as a new detached entity.
+     */
+    Movie movie(int slot) {
+        Columns current = columns;
+        return Movie.builder()
+                .id(current.ids[slot])
+                .title(current.titles[slot])
+                .genre(strings.get(current.genres[slot]))
+                .genreBits(current.genreBits[slot])
+                .releaseYear(current.releaseYears[slot])
+                .director(strings.get(current.directors[slot]))
+                .averageRating(current.averageRatings[slot])
+                .numberOfRatings(current.numberOfRatings[slot])
+                .rankingScore(current.rankingScores[slot])
+                .build();
+    }
+
+    /**
+     * Materializes every stored movie, ordered by id.
+     */
+    List<Movie> movies() {
+        int count = size;
+        Columns current = columns;
+        List<Movie> movies = new ArrayList<>(count);
+        for (int slot = 0; slot < count; slot++) {
+            if (!current.removed[slot]) {
+                movies.add(movie(slot));
+            }
+        }
+        if (!orderedById) {
+            movies.sort(Comparator.comparing(Movie::getId));
+        }
+        return movies;
+    }
+
+    /**
+     * Materializes up to {@code limit} stored movies with an id greater than {@code afterId}, ordered
+     * by id.
+     */
+    List<Movie> moviesAfter(long afterId, int limit) {
+        int count = size;
+        Columns current = columns;
+        if (orderedById) {
+            int from = Arrays.binarySearch(current.ids, 0, count, afterId);
+            from = from < 0 ? -from - 1 : from + 1;
+            List<Movie> movies = new ArrayList<>(Math.max(0, Math.min(count - from, limit)));
+            for (int slot = from; slot < count && movies.size() < limit; slot++) {
+                if (!current.removed[slot]) {
+                    movies.add(movie(slot));
+                }
+            }
+            return movies;
+        }
+        long[] ids = new long[count];
+        int matched = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if (current.ids[slot] > afterId && !current.removed[slot]) {
+                ids[matched++] = current.ids[slot];
+            }
+        }
+        Arrays.sort(ids, 0, matched);
+        List<Movie> movies = new ArrayList<>(Math.min(matched, limit));
+        for (int i = 0; i < matched && movies.size() < limit; i++) {
+            movies.add(movie(slot(ids[i])));
+        }
+        return movies;
+    }
+
+    /**
+     * Approximate heap size of the store in bytes, excluding the title strings themselves.
+     */
+    long estimatedBytes() {
+        Columns current = columns;
+        long perSlot = Long.BYTES * 2 + Double.BYTES * 2 + Integer.BYTES * 4 + 4 + 1;
+        return slots.estimatedBytes() + current.ids.length * perSlot + strings.estimatedBytes();
+    }
+
+    /**
+     * The columns of the store, replaced as a whole when they grow.
+     */
+    private static final class Columns {
+        private final long[] ids;
+        private final String[] titles;
+        private final int[] genres;
+        private final int[] directors;
+        private final int[] releaseYears;
+        private final double[] averageRatings;
+        private final int[] numberOfRatings;
+        private final double[] rankingScores;
+        private final long[] genreBits;
+        private final boolean[] removed;
+
+        Columns(int capacity) {
+            this(new long[capacity], new String[capacity], new int[capacity], new int[capacity], new int[capacity],
+                    new double[capacity], new int[capacity], new double[capacity], new long[capacity],
+                    new boolean[capacity]);
+        }
+
+        private Columns(long[] ids, String[] titles, int[] genres, int[] directors, int[] releaseYears,
+                        double[] averageRatings, int[] numberOfRatings, double[] rankingScores, long[] genreBits,
+                        boolean[] removed) {
+            this.ids = ids;
+            this.titles = titles;
+            this.genres = genres;
+            this.directors = directors;
+            this.releaseYears = releaseYears;
+            this.averageRatings = averageRatings;
+            this.numberOfRatings = numberOfRatings;
+            this.rankingScores = rankingScores;
+            this.genreBits = genreBits;
+            this.removed = removed;
+        }
+
+        Columns grow(int capacity) {
+            return new Columns(Arrays.copyOf(ids, capacity), Arrays.copyOf(titles, capacity),
+                    Arrays.copyOf(genres, capacity), Arrays.copyOf(directors, capacity),
+                    Arrays.copyOf(releaseYears, capacity), Arrays.copyOf(averageRatings, capacity),
+                    Arrays.copyOf(numberOfRatings, capacity), Arrays.copyOf(rankingScores, capacity),
+                    Arrays.copyOf(genreBits, capacity), Arrays.copyOf(removed, capacity));
+        }
+    }
+
+    /**
+     * Dictionary of repeated strings. Codes are assigned by the single writer and the values are
+     * republished through a volatile reference when they grow.
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private volatile String[] values = new String[64];
+
+        int intern(String value) {
+            if (value == null) {
+                return NULL_CODE;
+            }
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            int next = codes.size();
+            String[] current = values;
+            if (next == current.length) {
+                current = Arrays.copyOf(current, next * 2);
+            }
+            current[next] = value;
+            values = current;
+            codes.put(value, next);
+            return next;
+        }
+
+        String get(int code) {
+            return code == NULL_CODE ? null : values[code];
+        }
+
+        long estimatedBytes() {
+            // A hash map node and boxed code per distinct value, plus the value array.
+            return codes.size() * 48L + values.length * 4L;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package movierecommendation.index;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of int slots, used as a posting list without boxing. Indexes add slots in
+ * ascending order, which keeps the list sorted.
+ */
+final class IntPostings {
+    private int[] slots;
+    private int size;
+
+    IntPostings() {
+        this(4);
+    }
+
+    IntPostings(int capacity) {
+        slots = new int[Math.max(capacity, 1)];
+    }
+
+    void add(int slot) {
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        slots[size++] = slot;
+    }
+
+    int get(int index) {
+        return slots[index];
+    }
+
+    /**
+     * Returns whether the list contains the slot, assuming slots were added in ascending order.
+     */
+    boolean contains(int slot) {
+        return Arrays.binarySearch(slots, 0, size, slot) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long estimatedBytes() {
+        return 32L + slots.length * (long) Integer.BYTES;
+    }
+}
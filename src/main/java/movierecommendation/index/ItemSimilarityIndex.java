@@ -0,0 +1,406 @@
+package movierecommendation.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.model.UserRating;
+import movierecommendation.repository.UserRatingRepository;
+import movierecommendation.service.MovieProjection;
+import movierecommendation.util.IntFloatHashMap;
+import movierecommendation.util.LongIntHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+/**
+ * In-memory item-item collaborative filtering over the per-user ratings.
+ * <p>
+ * Users and movies are mapped to dense int slots. Every user has a sparse vector of their ratings,
+ * and every movie a sparse row of dot products with the movies rated by the same users, plus its
+ * squared norm; all are primitive open-addressing maps. A new or changed rating updates the rows of
+ * the rated movie and of the other movies of that user by the rating delta, so the cosine
+ * similarity of any two movies is always available without a full recomputation.
+ * <p>
+ * The K most similar movies of a movie are derived from its row on first use and dropped whenever
+ * the row changes. A user is recommended the movies with the highest sum of similarity times rating
+ * over the neighbours of the movies they rated, so a request costs O(rated movies * K).
+ * <p>
+ * A removed movie keeps its slot until the next rebuild, but is no longer a neighbour or a
+ * recommendation, and a re-added movie with the same id starts over in a new slot.
+ * <p>
+ * Only the first {@code movies.similarity.max-profile} movies a user rates contribute co-ratings.
+ * Further ratings are kept aside for recommending and excluding movies. Each rating therefore updates at
+ * most that many rows, and a user adds at most its square to the dot products.
+ */
+@Slf4j
+@Component
+public class ItemSimilarityIndex implements MovieProjection {
+
+    private final UserRatingRepository userRatingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int neighborCount;
+    private final int maxProfile;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Model model;
+
+    @Autowired
+    public ItemSimilarityIndex(UserRatingRepository userRatingRepository,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${movies.similarity.neighbors:50}") int neighborCount,
+                               @Value("${movies.similarity.max-profile:500}") int maxProfile) {
+        this.userRatingRepository = userRatingRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.neighborCount = neighborCount;
+        this.maxProfile = maxProfile;
+        this.model = new Model(maxProfile);
+        Gauge.builder("similarity.index.users", this, index -> index.read(m -> m.userCount))
+                .register(meterRegistry);
+        Gauge.builder("similarity.index.movies", this, index -> index.read(m -> m.movieCount - m.removedCount))
+                .register(meterRegistry);
+        Gauge.builder("similarity.index.memory", this, index -> index.read(Model::estimatedBytes))
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * Returns the movies most similar to the ones the user rated, excluding those.
+     *
+     * @param userId The ID of the user.
+     * @param limit  The maximum number of movies to return.
+     * @return Movie IDs ordered by score, highest first; empty if the user has not rated any movie.
+     */
+    public long[] recommend(long userId, int limit) {
+        lock.readLock().lock();
+        try {
+            return model.recommend(userId, limit, neighborCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns whether the user has rated the movie.
+     */
+    public boolean hasRated(long userId, long movieId) {
+        lock.readLock().lock();
+        try {
+            return model.hasRated(userId, movieId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of ratings the user has given.
+     */
+    public int ratingCount(long userId) {
+        lock.readLock().lock();
+        try {
+            return model.ratingCount(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onUserRatingsUpdated(List<UserRating> ratings) {
+        lock.writeLock().lock();
+        try {
+            for (UserRating rating : ratings) {
+                model.apply(rating.getUserId(), rating.getMovieId(), (float) rating.getRating());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onMoviesRemoved(List<Long> movieIds) {
+        lock.writeLock().lock();
+        try {
+            for (Long movieId : movieIds) {
+                model.remove(movieId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onRebuild() {
+        rebuild();
+    }
+
+    /**
+     * Replaces the index contents with the ratings in the repository.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            Model rebuilt = new Model(maxProfile);
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Object[]> rows = userRatingRepository.streamAllRatings()) {
+                    rows.forEach(row -> rebuilt.apply((Long) row[0], (Long) row[1], ((Number) row[2]).floatValue()));
+                }
+            });
+            model = rebuilt;
+            log.info("Rebuilt similarity index with {} users and {} movies", rebuilt.userCount, rebuilt.movieCount);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private double read(ToDoubleFunction<Model> metric) {
+        lock.readLock().lock();
+        try {
+            return metric.applyAsDouble(model);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The K most similar movies of one movie, best first.
+     */
+    private static final class Neighbors {
+        private final int[] movies;
+        private final float[] similarities;
+        private final int size;
+
+        Neighbors(int[] movies, float[] similarities, int size) {
+            this.movies = movies;
+            this.similarities = similarities;
+            this.size = size;
+        }
+    }
+
+    /**
+     * One generation of the index. Writes require the write lock; reads only the read lock, as the
+     * lazily derived neighbours are immutable and idempotent to recompute.
+     */
+    private static final class Model {
+        private final int maxProfile;
+
+        private final LongIntHashMap userSlots = new LongIntHashMap();
+        private IntFloatHashMap[] profiles = new IntFloatHashMap[64];
+        private IntFloatHashMap[] overflows = new IntFloatHashMap[64];
+        private int userCount;
+
+        private final LongIntHashMap movieSlots = new LongIntHashMap();
+        private long[] movieIds = new long[64];
+        private IntFloatHashMap[] coRatings = new IntFloatHashMap[64];
+        private double[] squaredNorms = new double[64];
+        private Neighbors[] neighbors = new Neighbors[64];
+        private final BitSet removed = new BitSet();
+        private int movieCount;
+        private int removedCount;
+
+        Model(int maxProfile) {
+            this.maxProfile = maxProfile;
+        }
+
+        void apply(long userId, long movieId, float rating) {
+            int user = userSlot(userId);
+            IntFloatHashMap profile = profiles[user];
+            int movie = movieSlot(movieId);
+            float previous = profile.get(movie, Float.NaN);
+            boolean rerated = !Float.isNaN(previous);
+            if (!rerated && profile.size() >= maxProfile) {
+                if (overflows[user] == null) {
+                    overflows[user] = new IntFloatHashMap();
+                }
+                overflows[user].put(movie, rating);
+                return;
+            }
+            float delta = rerated ? rating - previous : rating;
+            if (delta == 0) {
+                return;
+            }
+            for (int slot = 0; slot < profile.capacity(); slot++) {
+                int other = profile.keyAt(slot);
+                if (other == IntFloatHashMap.EMPTY || other == movie || removed.get(other)) {
+                    continue;
+                }
+                float product = delta * profile.valueAt(slot);
+                coRatings[movie].addTo(other, product);
+                coRatings[other].addTo(movie, product);
+                neighbors[other] = null;
+            }
+            squaredNorms[movie] += (double) rating * rating - (rerated ? (double) previous * previous : 0);
+            neighbors[movie] = null;
+            profile.put(movie, rating);
+        }
+
+        /**
+         * Drops a movie from the rows of its co-rated movies and frees its id.
+         */
+        void remove(long movieId) {
+            int movie = movieSlots.get(movieId, -1);
+            if (movie < 0) {
+                return;
+            }
+            IntFloatHashMap row = coRatings[movie];
+            for (int slot = 0; slot < row.capacity(); slot++) {
+                int other = row.keyAt(slot);
+                if (other != IntFloatHashMap.EMPTY) {
+                    coRatings[other].put(movie, 0);
+                    neighbors[other] = null;
+                }
+            }
+            coRatings[movie] = new IntFloatHashMap();
+            squaredNorms[movie] = 0;
+            neighbors[movie] = null;
+            movieSlots.remove(movieId);
+            removed.set(movie);
+            removedCount++;
+        }
+
+        long[] recommend(long userId, int limit, int neighborCount) {
+            int user = userSlots.get(userId, -1);
+            if (user < 0) {
+                return new long[0];
+            }
+            IntFloatHashMap profile = profiles[user];
+            IntFloatHashMap overflow = overflows[user];
+            IntFloatHashMap scores = new IntFloatHashMap(Math.min(movieCount, ratingCount(user) * neighborCount));
+            addScores(scores, profile, profile, overflow, neighborCount);
+            if (overflow != null) {
+                addScores(scores, overflow, profile, overflow, neighborCount);
+            }
+            TopK top = new TopK(limit);
+            for (int slot = 0; slot < scores.capacity(); slot++) {
+                int movie = scores.keyAt(slot);
+                if (movie != IntFloatHashMap.EMPTY) {
+                    top.offer(movie, scores.valueAt(slot));
+                }
+            }
+            int[] movies = new int[top.size()];
+            int count = top.drainTo(movies, new float[movies.length]);
+            long[] result = new long[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = movieIds[movies[i]];
+            }
+            return result;
+        }
+
+        boolean hasRated(long userId, long movieId) {
+            int user = userSlots.get(userId, -1);
+            int movie = movieSlots.get(movieId, -1);
+            return user >= 0 && movie >= 0 && rated(profiles[user], overflows[user], movie);
+        }
+
+        int ratingCount(long userId) {
+            int user = userSlots.get(userId, -1);
+            return user < 0 ? 0 : ratingCount(user);
+        }
+
+        double estimatedBytes() {
+            long bytes = userSlots.estimatedBytes() + movieSlots.estimatedBytes()
+                    + profiles.length * 16L + movieIds.length * (8L + 8L + 8L + 8L);
+            for (int i = 0; i < userCount; i++) {
+                bytes += profiles[i].estimatedBytes() + (overflows[i] == null ? 0 : overflows[i].estimatedBytes());
+            }
+            for (int i = 0; i < movieCount; i++) {
+                bytes += coRatings[i].estimatedBytes();
+                Neighbors similar = neighbors[i];
+                if (similar != null) {
+                    bytes += 48L + similar.movies.length * (long) (Integer.BYTES + Float.BYTES);
+                }
+            }
+            return bytes;
+        }
+
+        private void addScores(IntFloatHashMap scores, IntFloatHashMap ratings, IntFloatHashMap profile,
+                               IntFloatHashMap overflow, int neighborCount) {
+            for (int slot = 0; slot < ratings.capacity(); slot++) {
+                int movie = ratings.keyAt(slot);
+                if (movie == IntFloatHashMap.EMPTY || removed.get(movie)) {
+                    continue;
+                }
+                float rating = ratings.valueAt(slot);
+                Neighbors similar = neighbors(movie, neighborCount);
+                for (int i = 0; i < similar.size; i++) {
+                    if (!rated(profile, overflow, similar.movies[i])) {
+                        scores.addTo(similar.movies[i], similar.similarities[i] * rating);
+                    }
+                }
+            }
+        }
+
+        private static boolean rated(IntFloatHashMap profile, IntFloatHashMap overflow, int movie) {
+            return profile.containsKey(movie) || overflow != null && overflow.containsKey(movie);
+        }
+
+        private int ratingCount(int user) {
+            return profiles[user].size() + (overflows[user] == null ? 0 : overflows[user].size());
+        }
+
+        private Neighbors neighbors(int movie, int neighborCount) {
+            Neighbors similar = neighbors[movie];
+            if (similar != null) {
+                return similar;
+            }
+            IntFloatHashMap row = coRatings[movie];
+            double norm = Math.sqrt(squaredNorms[movie]);
+            TopK top = new TopK(Math.min(neighborCount, row.size()));
+            for (int slot = 0; slot < row.capacity(); slot++) {
+                int other = row.keyAt(slot);
+                float dot = other == IntFloatHashMap.EMPTY || removed.get(other) ? 0 : row.valueAt(slot);
+                if (dot > 0) {
+                    top.offer(other, (float) (dot / (norm * Math.sqrt(squaredNorms[other]))));
+                }
+            }
+            int[] movies = new int[top.size()];
+            float[] similarities = new float[movies.length];
+            similar = new Neighbors(movies, similarities, top.drainTo(movies, similarities));
+            neighbors[movie] = similar;
+            return similar;
+        }
+
+        private int userSlot(long userId) {
+            int user = userSlots.get(userId, -1);
+            if (user < 0) {
+                user = userCount++;
+                if (user == profiles.length) {
+                    profiles = Arrays.copyOf(profiles, user * 2);
+                    overflows = Arrays.copyOf(overflows, user * 2);
+                }
+                profiles[user] = new IntFloatHashMap();
+                userSlots.put(userId, user);
+            }
+            return user;
+        }
+
+        private int movieSlot(long movieId) {
+            int movie = movieSlots.get(movieId, -1);
+            if (movie < 0) {
+                movie = movieCount++;
+                if (movie == movieIds.length) {
+                    movieIds = Arrays.copyOf(movieIds, movie * 2);
+                    coRatings = Arrays.copyOf(coRatings, movie * 2);
+                    squaredNorms = Arrays.copyOf(squaredNorms, movie * 2);
+                    neighbors = Arrays.copyOf(neighbors, movie * 2);
+                }
+                movieIds[movie] = movieId;
+                coRatings[movie] = new IntFloatHashMap();
+                movieSlots.put(movieId, movie);
+            }
+            return movie;
+        }
+    }
+}
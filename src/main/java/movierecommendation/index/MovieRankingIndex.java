@@ -0,0 +1,427 @@
+package movierecommendation.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.model.GenreFilter;
+import movierecommendation.model.GenreMatch;
+import movierecommendation.model.Movie;
+import movierecommendation.model.MovieSort;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.service.MovieChangeNotifier;
+import movierecommendation.service.MovieProjection;
+import movierecommendation.util.MovieCursor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory ranking of movies by average rating and by ranking score, kept globally and per genre.
+ * <p>
+ * Each ranking is a concurrent skip list ordered by its sort value descending and id ascending,
+ * so the top K movies are served in O(K) without touching the database. A movie is in the ranking
+ * of each of its genres. Several genres are evaluated against the genre bitset of each entry: a
+ * match on all genres walks the ranking of the least common one, a match on any genre the global
+ * ranking. The index is rebuilt from the {@link MovieRepository} on startup and updated
+ * incrementally as movies are added, rated and removed.
+ * <p>
+ * The movies themselves are held in a {@link CatalogStore}, which also serves the whole catalog
+ * without going to the database. Its size is exposed as {@code catalog.store.movies} and its
+ * approximate heap footprint as {@code catalog.store.memory}.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class MovieRankingIndex implements MovieProjection {
+
+    static final Comparator<RankedMovie> RATING_ORDER = Comparator
+            .comparingDouble(RankedMovie::getAverageRating).reversed()
+            .thenComparingLong(RankedMovie::getId);
+    static final Comparator<RankedMovie> SCORE_ORDER = Comparator
+            .comparingDouble(RankedMovie::getRankingScore).reversed()
+            .thenComparingLong(RankedMovie::getId);
+
+    private static final long PROJECTION_TIMEOUT_SECONDS = 30;
+
+    private final MovieRepository movieRepository;
+    private final ObjectProvider<MovieChangeNotifier> movieChangeNotifier;
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    private volatile Rankings rankings = new Rankings(0);
+
+    @Autowired
+    public MovieRankingIndex(MovieRepository movieRepository, ObjectProvider<MovieChangeNotifier> movieChangeNotifier,
+                             MeterRegistry meterRegistry) {
+        this.movieRepository = movieRepository;
+        this.movieChangeNotifier = movieChangeNotifier;
+        Gauge.builder("catalog.store.movies", this, MovieRankingIndex::size).register(meterRegistry);
+        Gauge.builder("catalog.store.memory", this, index -> index.rankings.store.estimatedBytes())
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * Returns the highest rated movies, optionally restricted by genre.
+     *
+     * @param genres The genre filter.
+     * @param limit  The maximum number of movies to return, or null for all of them.
+     * @return Movies ordered by average rating, highest first.
+     */
+    public List<Movie> top(GenreFilter genres, Integer limit) {
+        return page(genres, MovieSort.RATING, null, limit);
+    }
+
+    /**
+     * Returns the next movies of a ranking after a keyset cursor.
+     *
+     * @param genres The genre filter.
+     * @param sort   The ranking to read.
+     * @param after  The sort key of the last movie already returned, or null to start at the top.
+     * @param limit  The maximum number of movies to return, or null for all remaining ones.
+     * @return Movies ordered by the sort value, highest first.
+     */
+    public List<Movie> page(GenreFilter genres, MovieSort sort, MovieCursor after, Integer limit) {
+        Rankings current = rankings;
+        NavigableSet<RankedMovie> ranking = current.ranking(sort, genres);
+        if (ranking == null) {
+            return Collections.emptyList();
+        }
+        if (after != null) {
+            ranking = ranking.tailSet(RankedMovie.probe(after.getSortValue(), after.getId()), false);
+        }
+        int max = limit == null ? Integer.MAX_VALUE : limit;
+        List<Movie> result = new ArrayList<>(Math.min(max, 64));
+        Iterator<RankedMovie> iterator = ranking.iterator();
+        while (result.size() < max && iterator.hasNext()) {
+            RankedMovie next = iterator.next();
+            if (genres.matches(next.getGenreBits())) {
+                result.add(current.movie(next));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the indexed copy of a movie.
+     *
+     * @param id The ID of the movie.
+     * @return The movie, or null if it is not indexed.
+     */
+    public Movie get(long id) {
+        CatalogStore store = rankings.store;
+        int slot = store.slot(id);
+        return slot < 0 ? null : store.movie(slot);
+    }
+
+    /**
+     * Returns whether a movie is indexed, without materializing it.
+     */
+    public boolean contains(long id) {
+        return rankings.store.slot(id) >= 0;
+    }
+
+    /**
+     * Returns the genre bitset of an indexed movie without materializing it.
+     *
+     * @param id The ID of the movie.
+     * @return The genre bits, or 0 if the movie is not indexed.
+     */
+    public long genreBits(long id) {
+        CatalogStore store = rankings.store;
+        int slot = store.slot(id);
+        return slot < 0 ? 0 : store.genreBits(slot);
+    }
+
+    /**
+     * Returns a detached copy of every indexed movie.
+     *
+     * @return The movies ordered by id.
+     */
+    public List<Movie> all() {
+        return rankings.store.movies();
+    }
+
+    /**
+     * Returns the next indexed movies by id.
+     *
+     * @param afterId The id of the last movie already returned.
+     * @param limit   The maximum number of movies to return.
+     * @return Detached copies of the movies, ordered by id.
+     */
+    public List<Movie> pageById(long afterId, int limit) {
+        return rankings.store.moviesAfter(afterId, limit);
+    }
+
+    /**
+     * Returns the number of indexed movies.
+     */
+    public int size() {
+        return rankings.store.size();
+    }
+
+    @Override
+    public void onMovieAdded(Movie movie) {
+        update(movie);
+    }
+
+    @Override
+    public void onMoviesUpdated(List<Movie> movies) {
+        for (Movie movie : movies) {
+            update(movie);
+        }
+    }
+
+    @Override
+    public void onMoviesRemoved(List<Long> movieIds) {
+        rebuildLock.readLock().lock();
+        try {
+            Rankings current = rankings;
+            for (Long movieId : movieIds) {
+                current.remove(movieId);
+            }
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onCatalogReloaded() {
+        rebuild();
+    }
+
+    /**
+     * Replaces the index contents with the current state of the repository.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuildLock.writeLock().lock();
+        try {
+            List<Movie> movies = movieRepository.findAll();
+            Rankings rebuilt = new Rankings(movies.size());
+            for (Movie movie : movies) {
+                rebuilt.put(movie);
+            }
+            rankings = rebuilt;
+            log.info("Rebuilt ranking index with {} movies", rebuilt.store.size());
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compares every indexed movie against the repository.
+     *
+     * @return The number of movies that are missing from the index or whose rating differs.
+     */
+    public int checkConsistency() {
+        return mismatches(movieRepository.findAll()).size();
+    }
+
+    /**
+     * Periodically checks the index against the repository and rebuilds it on a mismatch.
+     * <p>
+     * The check runs without blocking updates, so a movie that was just written may not have been
+     * projected yet. The mismatched movies are therefore compared again once the changes published
+     * so far have been projected, and only the movies that still differ trigger a rebuild.
+     */
+    @Scheduled(initialDelayString = "${movies.ranking.consistency-check-interval-ms:300000}",
+            fixedDelayString = "${movies.ranking.consistency-check-interval-ms:300000}")
+    public void verify() {
+        List<Long> mismatched = mismatches(movieRepository.findAll());
+        if (mismatched.isEmpty()) {
+            return;
+        }
+        try {
+            if (!movieChangeNotifier.getObject().awaitProjections(PROJECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.info("Projections did not catch up within {} s, checking the ranking index again later",
+                        PROJECTION_TIMEOUT_SECONDS);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        mismatched = mismatches(movieRepository.findAllById(mismatched));
+        if (!mismatched.isEmpty()) {
+            log.warn("Ranking index is inconsistent with the repository for {} movies, rebuilding", mismatched.size());
+            rebuild();
+        }
+    }
+
+    /**
+     * Returns the IDs of the movies that are missing from the index or whose ranking differs.
+     */
+    private List<Long> mismatches(Iterable<Movie> movies) {
+        List<Long> mismatched = new ArrayList<>();
+        Rankings current = rankings;
+        for (Movie movie : movies) {
+            RankedMovie ranked = current.entry(movie.getId());
+            if (ranked == null
+                    || ranked.getAverageRating() != movie.getAverageRating()
+                    || ranked.getRankingScore() != movie.getRankingScore()
+                    || ranked.getGenreBits() != movie.getGenreBits()) {
+                mismatched.add(movie.getId());
+            }
+        }
+        return mismatched;
+    }
+
+    private void update(Movie movie) {
+        if (movie.getId() == null) {
+            return;
+        }
+        rebuildLock.readLock().lock();
+        try {
+            rankings.put(movie);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One generation of the index: the stored movies, the rankings of every sort and the current
+     * entry of every movie by its slot. Writes are serialized on the generation.
+     */
+    private static final class Rankings {
+        private final CatalogStore store;
+        private final Map<MovieSort, SortedRankings> bySort = new EnumMap<>(MovieSort.class);
+        private final AtomicIntegerArray genreSizes = new AtomicIntegerArray(Long.SIZE);
+        private RankedMovie[] entries;
+
+        Rankings(int expectedSize) {
+            store = new CatalogStore(expectedSize);
+            entries = new RankedMovie[Math.max(16, expectedSize)];
+            bySort.put(MovieSort.RATING, new SortedRankings(RATING_ORDER));
+            bySort.put(MovieSort.SCORE, new SortedRankings(SCORE_ORDER));
+        }
+
+        /**
+         * Returns the ranking to walk for a genre filter; its entries still have to be matched
+         * against the filter unless it selects a single genre.
+         */
+        NavigableSet<RankedMovie> ranking(MovieSort sort, GenreFilter genres) {
+            SortedRankings sorted = bySort.get(sort);
+            long mask = genres.getMask();
+            if (genres.isUnfiltered()) {
+                return sorted.global;
+            }
+            if (mask == 0) {
+                return null;
+            }
+            if (Long.bitCount(mask) > 1 && genres.getMatch() == GenreMatch.ANY) {
+                return sorted.global;
+            }
+            int rarest = -1;
+            for (long bits = mask; bits != 0; bits &= bits - 1) {
+                int genre = Long.numberOfTrailingZeros(bits);
+                if (rarest < 0 || genreSizes.get(genre) < genreSizes.get(rarest)) {
+                    rarest = genre;
+                }
+            }
+            return sorted.byGenre.get(rarest);
+        }
+
+        /**
+         * Materializes a ranked movie with the sort values it is ranked by, which a concurrent
+         * update may already have changed in the store.
+         */
+        Movie movie(RankedMovie entry) {
+            Movie movie = store.movie(entry.getSlot());
+            movie.setAverageRating(entry.getAverageRating());
+            movie.setRankingScore(entry.getRankingScore());
+            movie.setGenreBits(entry.getGenreBits());
+            return movie;
+        }
+
+        synchronized RankedMovie entry(long id) {
+            int slot = store.slot(id);
+            return slot < 0 ? null : entries[slot];
+        }
+
+        synchronized void put(Movie movie) {
+            int slot = store.put(movie);
+            if (slot == entries.length) {
+                entries = Arrays.copyOf(entries, slot * 2);
+            }
+            RankedMovie previous = entries[slot];
+            RankedMovie entry = RankedMovie.of(movie, slot);
+            for (SortedRankings sorted : bySort.values()) {
+                if (previous != null) {
+                    sorted.remove(previous);
+                }
+                sorted.add(entry);
+            }
+            for (long bits = previous == null ? 0 : previous.getGenreBits(); bits != 0; bits &= bits - 1) {
+                genreSizes.decrementAndGet(Long.numberOfTrailingZeros(bits));
+            }
+            for (long bits = entry.getGenreBits(); bits != 0; bits &= bits - 1) {
+                genreSizes.incrementAndGet(Long.numberOfTrailingZeros(bits));
+            }
+            entries[slot] = entry;
+        }
+
+        synchronized void remove(long id) {
+            int slot = store.remove(id);
+            if (slot < 0) {
+                return;
+            }
+            RankedMovie entry = entries[slot];
+            for (SortedRankings sorted : bySort.values()) {
+                sorted.remove(entry);
+            }
+            for (long bits = entry.getGenreBits(); bits != 0; bits &= bits - 1) {
+                genreSizes.decrementAndGet(Long.numberOfTrailingZeros(bits));
+            }
+            entries[slot] = null;
+        }
+    }
+
+    /**
+     * The global and per-genre rankings of one sort order.
+     */
+    private static final class SortedRankings {
+        private final Comparator<RankedMovie> order;
+        private final NavigableSet<RankedMovie> global;
+        private final Map<Integer, NavigableSet<RankedMovie>> byGenre = new ConcurrentHashMap<>();
+
+        SortedRankings(Comparator<RankedMovie> order) {
+            this.order = order;
+            this.global = new ConcurrentSkipListSet<>(order);
+        }
+
+        void add(RankedMovie entry) {
+            global.add(entry);
+            for (long bits = entry.getGenreBits(); bits != 0; bits &= bits - 1) {
+                byGenre.computeIfAbsent(Long.numberOfTrailingZeros(bits), genre -> new ConcurrentSkipListSet<>(order))
+                        .add(entry);
+            }
+        }
+
+        void remove(RankedMovie entry) {
+            global.remove(entry);
+            for (long bits = entry.getGenreBits(); bits != 0; bits &= bits - 1) {
+                byGenre.get(Long.numberOfTrailingZeros(bits)).remove(entry);
+            }
+        }
+    }
+}
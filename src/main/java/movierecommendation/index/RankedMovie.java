@@ -0,0 +1,38 @@
+package movierecommendation.index;
+
+import lombok.Getter;
+import movierecommendation.model.Movie;
+
+/**
+ * Immutable entry of the {@link MovieRankingIndex}. Holds the sort values the entry is ranked by and
+ * the slot of the movie in the {@link CatalogStore}, so that later changes to the managed entity
+ * cannot reorder the index behind its back.
+ */
+@Getter
+final class RankedMovie {
+    private final long id;
+    private final double averageRating;
+    private final double rankingScore;
+    private final long genreBits;
+    private final int slot;
+
+    private RankedMovie(long id, double averageRating, double rankingScore, long genreBits, int slot) {
+        this.id = id;
+        this.averageRating = averageRating;
+        this.rankingScore = rankingScore;
+        this.genreBits = genreBits;
+        this.slot = slot;
+    }
+
+    static RankedMovie of(Movie movie, int slot) {
+        return new RankedMovie(movie.getId(), movie.getAverageRating(), movie.getRankingScore(),
+                movie.getGenreBits(), slot);
+    }
+
+    /**
+     * Search key positioned at the given sort key, used to seek into a ranking of either sort.
+     */
+    static RankedMovie probe(double sortValue, long id) {
+        return new RankedMovie(id, sortValue, sortValue, 0, -1);
+    }
+}
@@ -0,0 +1,366 @@
+package movierecommendation.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.model.Movie;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.service.MovieProjection;
+import movierecommendation.util.LongIntHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * In-memory inverted indexes on genre, director and release year for "more like this" lookups.
+ * <p>
+ * Movies are mapped to dense int slots holding their genre bitset, dictionary-encoded director, their
+ * release year and their ranking score. Every director has a posting list of slots, and every genre
+ * one posting list per release year. A candidate scores one point for sharing at least one genre,
+ * one for a shared director and up to one for release-year proximity, falling to zero at the year
+ * window; the ranking score breaks ties.
+ * <p>
+ * A lookup scores the movies of the same director, then walks the year buckets of each of the movie's
+ * genres outwards from its release year, stopping as soon as no further bucket can beat the K-th
+ * best candidate. A candidate sharing several genres is only scored in the walk of the lowest one.
+ * A lookup therefore touches the director's movies and the genres' movies of the nearest years, not
+ * the whole genres.
+ */
+@Slf4j
+@Component
+public class SimilarMovieIndex implements MovieProjection {
+
+    static final float GENRE_WEIGHT = 1f;
+    static final float DIRECTOR_WEIGHT = 1f;
+    static final float YEAR_WEIGHT = 1f;
+    /**
+     * Scales the ranking score (at most 5) well below one step of year proximity.
+     */
+    static final float TIE_BREAK_WEIGHT = 1e-4f;
+    private static final float MAX_TIE_BREAK = 5 * TIE_BREAK_WEIGHT;
+
+    private final MovieRepository movieRepository;
+    private final int yearWindow;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Model model = new Model();
+
+    @Autowired
+    public SimilarMovieIndex(MovieRepository movieRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${movies.similar.year-window:10}") int yearWindow) {
+        this.movieRepository = movieRepository;
+        this.yearWindow = yearWindow;
+        Gauge.builder("similar.index.movies", this, index -> index.read(Model::size))
+                .register(meterRegistry);
+        Gauge.builder("similar.index.memory", this, index -> index.read(Model::estimatedBytes))
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * Returns the movies most similar to the given one, excluding it.
+     *
+     * @param movieId The ID of the movie.
+     * @param limit   The maximum number of movies to return.
+     * @return Movie IDs ordered by similarity, highest first; null if the movie is not indexed.
+     */
+    public long[] similar(long movieId, int limit) {
+        lock.readLock().lock();
+        try {
+            return model.similar(movieId, limit, yearWindow);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of indexed movies.
+     */
+    public int size() {
+        return (int) read(Model::size);
+    }
+
+    @Override
+    public void onMovieAdded(Movie movie) {
+        onMoviesAdded(List.of(movie));
+    }
+
+    @Override
+    public void onMoviesAdded(List<Movie> movies) {
+        lock.writeLock().lock();
+        try {
+            for (Movie movie : movies) {
+                model.put(movie);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onMoviesUpdated(List<Movie> movies) {
+        lock.writeLock().lock();
+        try {
+            for (Movie movie : movies) {
+                model.updateScore(movie);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onMoviesRemoved(List<Long> movieIds) {
+        lock.writeLock().lock();
+        try {
+            for (Long movieId : movieIds) {
+                model.remove(movieId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onCatalogReloaded() {
+        rebuild();
+    }
+
+    /**
+     * Replaces the index contents with the movies in the repository.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            Model rebuilt = new Model();
+            for (Movie movie : movieRepository.findAll()) {
+                rebuilt.put(movie);
+            }
+            model = rebuilt;
+            log.info("Rebuilt similar movie index with {} movies", rebuilt.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private double read(ToDoubleFunction<Model> metric) {
+        lock.readLock().lock();
+        try {
+            return metric.applyAsDouble(model);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static float yearProximity(int yearDistance, int yearWindow) {
+        return yearDistance >= yearWindow ? 0 : YEAR_WEIGHT * (1 - (float) yearDistance / yearWindow);
+    }
+
+    /**
+     * One generation of the index. Writes require the write lock, reads the read lock. A removed
+     * movie keeps its slot and postings until the next rebuild, but is skipped by lookups.
+     */
+    private static final class Model {
+        private final LongIntHashMap movieSlots = new LongIntHashMap();
+        private final BitSet removed = new BitSet();
+        private int removedCount;
+        private long[] movieIds = new long[64];
+        private long[] genreBits = new long[64];
+        private int[] directors = new int[64];
+        private int[] years = new int[64];
+        private float[] tieBreaks = new float[64];
+        private int movieCount;
+
+        private final Map<String, Integer> directorCodes = new HashMap<>();
+        private final GenrePostings[] genrePostings = new GenrePostings[Long.SIZE];
+        private IntPostings[] directorPostings = new IntPostings[16];
+
+        void put(Movie movie) {
+            if (movie.getId() == null) {
+                return;
+            }
+            int slot = movieSlots.get(movie.getId(), -1);
+            if (slot >= 0) {
+                tieBreaks[slot] = tieBreak(movie);
+                return;
+            }
+            slot = movieCount++;
+            if (slot == movieIds.length) {
+                int capacity = slot * 2;
+                movieIds = Arrays.copyOf(movieIds, capacity);
+                genreBits = Arrays.copyOf(genreBits, capacity);
+                directors = Arrays.copyOf(directors, capacity);
+                years = Arrays.copyOf(years, capacity);
+                tieBreaks = Arrays.copyOf(tieBreaks, capacity);
+            }
+            movieIds[slot] = movie.getId();
+            genreBits[slot] = movie.getGenreBits();
+            directors[slot] = directorCode(movie.getDirector());
+            years[slot] = movie.getReleaseYear();
+            tieBreaks[slot] = tieBreak(movie);
+            movieSlots.put(movie.getId(), slot);
+            for (long bits = genreBits[slot]; bits != 0; bits &= bits - 1) {
+                int genre = Long.numberOfTrailingZeros(bits);
+                if (genrePostings[genre] == null) {
+                    genrePostings[genre] = new GenrePostings();
+                }
+                genrePostings[genre].add(years[slot], slot);
+            }
+            if (directors[slot] >= 0) {
+                directorPostings[directors[slot]].add(slot);
+            }
+        }
+
+        void remove(long movieId) {
+            int slot = movieSlots.get(movieId, -1);
+            if (slot >= 0) {
+                movieSlots.remove(movieId);
+                removed.set(slot);
+                removedCount++;
+            }
+        }
+
+        int size() {
+            return movieCount - removedCount;
+        }
+
+        void updateScore(Movie movie) {
+            int slot = movie.getId() == null ? -1 : movieSlots.get(movie.getId(), -1);
+            if (slot >= 0) {
+                tieBreaks[slot] = tieBreak(movie);
+            }
+        }
+
+        long[] similar(long movieId, int limit, int yearWindow) {
+            int target = movieSlots.get(movieId, -1);
+            if (target < 0) {
+                return null;
+            }
+            TopK top = new TopK(limit);
+            int director = directors[target];
+            if (director >= 0) {
+                IntPostings postings = directorPostings[director];
+                for (int i = 0; i < postings.size(); i++) {
+                    int slot = postings.get(i);
+                    if (slot != target && !removed.get(slot)) {
+                        top.offer(slot, score(target, slot, yearWindow));
+                    }
+                }
+            }
+            long targetBits = genreBits[target];
+            for (long bits = targetBits; bits != 0; bits &= bits - 1) {
+                int genre = Long.numberOfTrailingZeros(bits);
+                NavigableMap<Integer, IntPostings> byYear = genrePostings[genre].byYear;
+                int year = years[target];
+                Integer lower = byYear.floorKey(year);
+                Integer upper = byYear.higherKey(year);
+                while (lower != null || upper != null) {
+                    int bucketYear;
+                    if (upper == null || (lower != null && year - lower <= upper - year)) {
+                        bucketYear = lower;
+                        lower = byYear.lowerKey(lower);
+                    } else {
+                        bucketYear = upper;
+                        upper = byYear.higherKey(upper);
+                    }
+                    float bound = GENRE_WEIGHT + yearProximity(Math.abs(bucketYear - year), yearWindow) + MAX_TIE_BREAK;
+                    if (top.isFull() && top.minScore() > bound) {
+                        break;
+                    }
+                    IntPostings postings = byYear.get(bucketYear);
+                    for (int i = 0; i < postings.size(); i++) {
+                        int slot = postings.get(i);
+                        if (slot != target && !removed.get(slot) && (director < 0 || directors[slot] != director)
+                                && Long.numberOfTrailingZeros(genreBits[slot] & targetBits) == genre) {
+                            top.offer(slot, score(target, slot, yearWindow));
+                        }
+                    }
+                }
+            }
+            int[] slots = new int[top.size()];
+            int count = top.drainTo(slots, new float[slots.length]);
+            long[] result = new long[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = movieIds[slots[i]];
+            }
+            return result;
+        }
+
+        double estimatedBytes() {
+            long bytes = movieSlots.estimatedBytes() + movieIds.length * (8L + 8L + 4L + 4L + 4L)
+                    + (genrePostings.length + directorPostings.length) * 8L + directorCodes.size() * 96L;
+            for (GenrePostings postings : genrePostings) {
+                if (postings != null) {
+                    bytes += postings.estimatedBytes();
+                }
+            }
+            for (int i = 0; i < directorCodes.size(); i++) {
+                bytes += directorPostings[i].estimatedBytes();
+            }
+            return bytes;
+        }
+
+        private float score(int target, int slot, int yearWindow) {
+            float score = yearProximity(Math.abs(years[slot] - years[target]), yearWindow) + tieBreaks[slot];
+            if ((genreBits[slot] & genreBits[target]) != 0) {
+                score += GENRE_WEIGHT;
+            }
+            if (directors[target] >= 0 && directors[slot] == directors[target]) {
+                score += DIRECTOR_WEIGHT;
+            }
+            return score;
+        }
+
+        private int directorCode(String director) {
+            if (director == null) {
+                return -1;
+            }
+            int code = directorCodes.computeIfAbsent(director.trim().toLowerCase(Locale.ROOT), key -> directorCodes.size());
+            if (code == directorPostings.length) {
+                directorPostings = Arrays.copyOf(directorPostings, code * 2);
+            }
+            if (directorPostings[code] == null) {
+                directorPostings[code] = new IntPostings();
+            }
+            return code;
+        }
+
+        private static float tieBreak(Movie movie) {
+            return (float) Math.max(0, Math.min(movie.getRankingScore(), 5)) * TIE_BREAK_WEIGHT;
+        }
+    }
+
+    /**
+     * The slots of one genre, bucketed by release year so that lookups can start at the nearest years.
+     */
+    private static final class GenrePostings {
+        private final NavigableMap<Integer, IntPostings> byYear = new TreeMap<>();
+
+        void add(int year, int slot) {
+            byYear.computeIfAbsent(year, key -> new IntPostings()).add(slot);
+        }
+
+        long estimatedBytes() {
+            long bytes = 48L;
+            for (IntPostings postings : byYear.values()) {
+                bytes += 64L + postings.estimatedBytes();
+            }
+            return bytes;
+        }
+    }
+}
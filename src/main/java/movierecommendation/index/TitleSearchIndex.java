@@ -0,0 +1,445 @@
+package movierecommendation.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.model.Movie;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.service.MovieProjection;
+import movierecommendation.util.IntFloatHashMap;
+import movierecommendation.util.LongIntHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory title search over normalized titles, with prefix autocomplete and typo tolerance.
+ * <p>
+ * Titles are lowercased, stripped of accents and reduced to words of letters and digits. Every word
+ * has a posting list of the titles containing it, kept in a sorted map so that a word prefix
+ * resolves to a range of words, and every trigram of a normalized title has a posting list of int
+ * slots. A query is matched by prefix through the word map and by substring or approximately through
+ * the trigrams, where a title qualifies when it contains at least the configured share of the
+ * query's trigrams.
+ * <p>
+ * Results are ranked by match quality (exact title, title prefix, word prefix, substring, then
+ * trigram similarity) and then by average rating.
+ */
+@Slf4j
+@Component
+public class TitleSearchIndex implements MovieProjection {
+
+    static final float EXACT = 4f;
+    static final float TITLE_PREFIX = 3f;
+    static final float WORD_PREFIX = 2f;
+    static final float SUBSTRING = 1f;
+    /**
+     * Scales the average rating (at most 5) below one step of the rounded trigram similarity.
+     */
+    static final float RATING_WEIGHT = 1e-3f;
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final MovieRepository movieRepository;
+    private final float minSimilarity;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Model model = new Model();
+
+    @Autowired
+    public TitleSearchIndex(MovieRepository movieRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${movies.search.min-similarity:0.5}") float minSimilarity) {
+        this.movieRepository = movieRepository;
+        this.minSimilarity = minSimilarity;
+        Gauge.builder("search.index.titles", this, index -> index.read(Model::size))
+                .register(meterRegistry);
+        Gauge.builder("search.index.memory", this, index -> index.read(Model::estimatedBytes))
+                .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("search.index.memory.per.title", this,
+                        index -> index.read(m -> m.size() == 0 ? 0 : m.estimatedBytes() / m.size()))
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * Returns the movies whose title best matches the query.
+     *
+     * @param query The text typed by the user; the last word may be incomplete.
+     * @param limit The maximum number of movies to return.
+     * @return Movie IDs ordered by match quality and then by average rating, best first.
+     */
+    public long[] search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return new long[0];
+        }
+        lock.readLock().lock();
+        try {
+            return model.search(normalized, limit, minSimilarity);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of indexed titles.
+     */
+    public int size() {
+        return (int) read(Model::size);
+    }
+
+    /**
+     * Returns the estimated memory use of the index, in bytes.
+     */
+    public long estimatedBytes() {
+        return (long) read(Model::estimatedBytes);
+    }
+
+    @Override
+    public void onMovieAdded(Movie movie) {
+        onMoviesAdded(List.of(movie));
+    }
+
+    @Override
+    public void onMoviesAdded(List<Movie> movies) {
+        lock.writeLock().lock();
+        try {
+            for (Movie movie : movies) {
+                model.put(movie);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onMoviesUpdated(List<Movie> movies) {
+        lock.writeLock().lock();
+        try {
+            for (Movie movie : movies) {
+                model.updateRating(movie);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onMoviesRemoved(List<Long> movieIds) {
+        lock.writeLock().lock();
+        try {
+            for (Long movieId : movieIds) {
+                model.remove(movieId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onCatalogReloaded() {
+        rebuild();
+    }
+
+    /**
+     * Replaces the index contents with the movies in the repository.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            Model rebuilt = new Model();
+            for (Movie movie : movieRepository.findAll()) {
+                rebuilt.put(movie);
+            }
+            model = rebuilt;
+            log.info("Rebuilt title search index with {} titles", rebuilt.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private double read(ToDoubleFunction<Model> metric) {
+        lock.readLock().lock();
+        try {
+            return metric.applyAsDouble(model);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lowercases a title, strips accents and reduces it to words of letters and digits separated by
+     * single spaces.
+     */
+    static String normalize(String title) {
+        if (title == null) {
+            return "";
+        }
+        String stripped = ACCENTS.matcher(Normalizer.normalize(title, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * Returns the match quality of a normalized title for a normalized query, or 0 if it only
+     * matches approximately.
+     */
+    static float quality(String title, String query) {
+        if (title.equals(query)) {
+            return EXACT;
+        }
+        if (title.startsWith(query)) {
+            return TITLE_PREFIX;
+        }
+        int at = title.indexOf(query);
+        if (at < 0) {
+            return 0;
+        }
+        for (; at >= 0; at = title.indexOf(query, at + 1)) {
+            if (title.charAt(at - 1) == ' ') {
+                return WORD_PREFIX;
+            }
+        }
+        return SUBSTRING;
+    }
+
+    /**
+     * Share of the query's trigrams found in a title, discounted by up to a tenth for titles with
+     * many other trigrams so that closer matches of equal coverage rank first.
+     */
+    static float similarity(float sharedTrigrams, int queryTrigrams, int titleTrigrams) {
+        float coverage = sharedTrigrams / queryTrigrams;
+        return coverage * (0.9f + 0.1f * sharedTrigrams / Math.max(titleTrigrams, 1));
+    }
+
+    private static long trigram(String text, int at) {
+        return (long) text.charAt(at) << 32 | (long) text.charAt(at + 1) << 16 | text.charAt(at + 2);
+    }
+
+    /**
+     * One generation of the index. Writes require the write lock, reads the read lock. A removed
+     * title keeps its slot and postings until the next rebuild, but is skipped by searches.
+     */
+    private static final class Model {
+        private final LongIntHashMap titleSlots = new LongIntHashMap();
+        private final BitSet removed = new BitSet();
+        private int removedCount;
+        private long[] movieIds = new long[64];
+        private String[] titles = new String[64];
+        private int[] trigramCounts = new int[64];
+        private float[] ratings = new float[64];
+        private int titleCount;
+
+        private final NavigableMap<String, IntPostings> words = new TreeMap<>();
+        private final LongIntHashMap trigramIds = new LongIntHashMap();
+        private IntPostings[] trigramPostings = new IntPostings[1024];
+        private int trigramCount;
+
+        void put(Movie movie) {
+            if (movie.getId() == null) {
+                return;
+            }
+            int slot = titleSlots.get(movie.getId(), -1);
+            if (slot >= 0) {
+                ratings[slot] = (float) movie.getAverageRating();
+                return;
+            }
+            String title = normalize(movie.getTitle());
+            slot = titleCount++;
+            if (slot == movieIds.length) {
+                int capacity = slot * 2;
+                movieIds = Arrays.copyOf(movieIds, capacity);
+                titles = Arrays.copyOf(titles, capacity);
+                trigramCounts = Arrays.copyOf(trigramCounts, capacity);
+                ratings = Arrays.copyOf(ratings, capacity);
+            }
+            movieIds[slot] = movie.getId();
+            titles[slot] = title;
+            ratings[slot] = (float) movie.getAverageRating();
+            titleSlots.put(movie.getId(), slot);
+            if (!title.isEmpty()) {
+                for (String word : title.split(" ")) {
+                    addPosting(words.computeIfAbsent(word, key -> new IntPostings(1)), slot);
+                }
+            }
+            for (int at = 0; at + 3 <= title.length(); at++) {
+                if (addPosting(trigramPostings(trigram(title, at)), slot)) {
+                    trigramCounts[slot]++;
+                }
+            }
+        }
+
+        void remove(long movieId) {
+            int slot = titleSlots.get(movieId, -1);
+            if (slot >= 0) {
+                titleSlots.remove(movieId);
+                removed.set(slot);
+                removedCount++;
+            }
+        }
+
+        int size() {
+            return titleCount - removedCount;
+        }
+
+        void updateRating(Movie movie) {
+            int slot = movie.getId() == null ? -1 : titleSlots.get(movie.getId(), -1);
+            if (slot >= 0) {
+                ratings[slot] = (float) movie.getAverageRating();
+            }
+        }
+
+        long[] search(String query, int limit, float minSimilarity) {
+            TopK top = new TopK(limit);
+            int space = query.indexOf(' ');
+            String firstWord = space < 0 ? query : query.substring(0, space);
+            NavigableMap<String, IntPostings> prefixed = space < 0
+                    ? words.subMap(firstWord, true, firstWord + Character.MAX_VALUE, true)
+                    : words.subMap(firstWord, true, firstWord, true);
+            BitSet visited = prefixed.size() > 1 ? new BitSet() : null;
+            for (IntPostings postings : prefixed.values()) {
+                for (int i = 0; i < postings.size(); i++) {
+                    int slot = postings.get(i);
+                    if (removed.get(slot)) {
+                        continue;
+                    }
+                    float quality = quality(titles[slot], query);
+                    if (quality > 0 && (visited == null || !visited.get(slot))) {
+                        if (visited != null) {
+                            visited.set(slot);
+                        }
+                        top.offer(slot, quality + ratings[slot] * RATING_WEIGHT);
+                    }
+                }
+            }
+            if (query.length() >= 3 && (!top.isFull() || top.minScore() < WORD_PREFIX)) {
+                offerTrigramMatches(query, top, minSimilarity);
+            }
+            int[] slots = new int[top.size()];
+            int count = top.drainTo(slots, new float[slots.length]);
+            long[] result = new long[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = movieIds[slots[i]];
+            }
+            return result;
+        }
+
+        double estimatedBytes() {
+            long bytes = titleSlots.estimatedBytes() + trigramIds.estimatedBytes()
+                    + movieIds.length * (8L + 8L + 4L + 4L) + trigramPostings.length * 8L;
+            for (int slot = 0; slot < titleCount; slot++) {
+                bytes += 40L + titles[slot].length();
+            }
+            for (IntPostings postings : words.values()) {
+                bytes += 40L + 48L + postings.estimatedBytes();
+            }
+            for (int i = 0; i < trigramCount; i++) {
+                bytes += trigramPostings[i].estimatedBytes();
+            }
+            return bytes;
+        }
+
+        /**
+         * Offers the titles that contain the query as a substring not at a word start, or that share
+         * enough of its trigrams. Word prefix matches were already offered from the word map.
+         * <p>
+         * A title must share at least {@code required} of the query's trigrams, so it must appear in
+         * one of the {@code lists - required + 1} shortest posting lists. Only those are scanned to
+         * collect candidates; the longer lists are probed per candidate by binary search.
+         */
+        private void offerTrigramMatches(String query, TopK top, float minSimilarity) {
+            LongIntHashMap seen = new LongIntHashMap();
+            List<IntPostings> lists = new ArrayList<>();
+            int queryTrigrams = 0;
+            for (int at = 0; at + 3 <= query.length(); at++) {
+                long trigram = trigram(query, at);
+                if (seen.get(trigram, -1) >= 0) {
+                    continue;
+                }
+                seen.put(trigram, at);
+                queryTrigrams++;
+                int id = trigramIds.get(trigram, -1);
+                if (id >= 0) {
+                    lists.add(trigramPostings[id]);
+                }
+            }
+            int required = Math.max(1, (int) Math.ceil(minSimilarity * queryTrigrams));
+            if (lists.size() < required) {
+                return;
+            }
+            lists.sort(Comparator.comparingInt(IntPostings::size));
+            int scanned = lists.size() - required + 1;
+            IntFloatHashMap shared = new IntFloatHashMap();
+            for (int list = 0; list < scanned; list++) {
+                IntPostings postings = lists.get(list);
+                for (int i = 0; i < postings.size(); i++) {
+                    shared.addTo(postings.get(i), 1);
+                }
+            }
+            for (int entry = 0; entry < shared.capacity(); entry++) {
+                int slot = shared.keyAt(entry);
+                if (slot == IntFloatHashMap.EMPTY || removed.get(slot)) {
+                    continue;
+                }
+                float quality = quality(titles[slot], query);
+                if (quality >= WORD_PREFIX) {
+                    continue;
+                }
+                if (quality == 0) {
+                    float count = shared.valueAt(entry);
+                    for (int list = scanned; list < lists.size(); list++) {
+                        if (lists.get(list).contains(slot)) {
+                            count++;
+                        }
+                    }
+                    float similarity = similarity(count, queryTrigrams, trigramCounts[slot]);
+                    quality = similarity < minSimilarity ? 0 : Math.round(similarity * 100) / 100f;
+                }
+                if (quality > 0) {
+                    top.offer(slot, quality + ratings[slot] * RATING_WEIGHT);
+                }
+            }
+        }
+
+        private IntPostings trigramPostings(long trigram) {
+            int id = trigramIds.get(trigram, -1);
+            if (id < 0) {
+                id = trigramCount++;
+                if (id == trigramPostings.length) {
+                    trigramPostings = Arrays.copyOf(trigramPostings, id * 2);
+                }
+                trigramPostings[id] = new IntPostings(1);
+                trigramIds.put(trigram, id);
+            }
+            return trigramPostings[id];
+        }
+
+        /**
+         * Appends a slot unless it is already the last one, as a title's postings are added together.
+         */
+        private static boolean addPosting(IntPostings postings, int slot) {
+            if (postings.size() > 0 && postings.get(postings.size() - 1) == slot) {
+                return false;
+            }
+            postings.add(slot);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package movierecommendation.index;
+
+/**
+ * Bounded min-heap keeping the K highest scored int keys, without boxing.
+ * Ties are broken by the lower key.
+ */
+final class TopK {
+    private final int[] keys;
+    private final float[] scores;
+    private int size;
+
+    TopK(int k) {
+        keys = new int[k];
+        scores = new float[k];
+    }
+
+    void offer(int key, float score) {
+        if (keys.length == 0) {
+            return;
+        }
+        if (size < keys.length) {
+            keys[size] = key;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (worse(keys[0], scores[0], key, score)) {
+            keys[0] = key;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size == keys.length;
+    }
+
+    /**
+     * Returns the lowest score kept; only meaningful when the heap is not empty.
+     */
+    float minScore() {
+        return scores[0];
+    }
+
+    /**
+     * Empties the heap into the given arrays, best first.
+     *
+     * @return The number of keys written.
+     */
+    int drainTo(int[] keysOut, float[] scoresOut) {
+        int count = size;
+        for (int i = count - 1; i >= 0; i--) {
+            keysOut[i] = keys[0];
+            scoresOut[i] = scores[0];
+            size--;
+            keys[0] = keys[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return count;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(keys[i], scores[i], keys[parent], scores[parent])) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && worse(keys[left], scores[left], keys[worst], scores[worst])) {
+                worst = left;
+            }
+            if (right < size && worse(keys[right], scores[right], keys[worst], scores[worst])) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        float score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    private static boolean worse(int key, float score, int otherKey, float otherScore) {
+        return score < otherScore || (score == otherScore && key > otherKey);
+    }
+}
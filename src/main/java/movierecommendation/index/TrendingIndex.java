@@ -0,0 +1,453 @@
+package movierecommendation.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.service.MovieProjection;
+import movierecommendation.util.LongIntHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongPredicate;
+import java.util.function.LongSupplier;
+
+/**
+ * Movies with the most rating activity over recent sliding windows.
+ * <p>
+ * Every movie rated within the longest window has a ring buffer of rating counts and sums, one
+ * bucket per {@code movies.trending.bucket-seconds}. Recording a rating only adds it to the count and
+ * sum of its movie and bucket in one of several lock stripes, chosen by movie id, so it is O(1) and
+ * concurrent ratings of different movies rarely contend. A background ticker drains the stripes into
+ * the ring buffers, re-scores the movies rated since the last tick, and every active movie once a
+ * bucket has closed, and keeps one ranking per configured
+ * window ordered by decayed popularity: the ratings in the window, each losing half its weight every
+ * quarter of the window, with ties broken by the average rating within the window. Movies without
+ * ratings in the longest window release their ring buffer, so the rankings only hold recently rated
+ * movies and are read without touching the catalog. A removed movie releases its ring buffer at once.
+ * <p>
+ * Rating activity is kept in memory only and starts empty after a restart. The number of movies with
+ * a ring buffer is exposed as {@code trending.index.movies}.
+ */
+@Slf4j
+@Component
+public class TrendingIndex implements MovieProjection {
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingDouble(Entry::getScore).reversed()
+            .thenComparing(Comparator.comparingDouble(Entry::getAverageRating).reversed())
+            .thenComparingLong(Entry::getId);
+
+    private static final int STRIPES = 64;
+
+    private final long bucketMillis;
+    private final int ringSize;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final Map<String, Window> windows = new LinkedHashMap<>();
+    private final LongSupplier clock;
+
+    private final LongIntHashMap slots = new LongIntHashMap();
+    private long[] ids = new long[16];
+    private int[][] counts = new int[16][];
+    private float[][] sums = new float[16][];
+    private long[] lastBuckets = new long[16];
+    private boolean[] dirty = new boolean[16];
+    private int slotCount;
+    private int[] dirtySlots = new int[16];
+    private int dirtyCount;
+    private int[] activeSlots = new int[16];
+    private int activeCount;
+    private long currentBucket;
+    private long scoredBucket = Long.MIN_VALUE;
+
+    @Autowired
+    public TrendingIndex(@Value("${movies.trending.bucket-seconds:300}") int bucketSeconds,
+                         @Value("${movies.trending.windows:1h,6h,24h}") String windows,
+                         MeterRegistry meterRegistry) {
+        this(bucketSeconds, windows, System::currentTimeMillis);
+        Gauge.builder("trending.index.movies", this, TrendingIndex::activeMovies).register(meterRegistry);
+    }
+
+    TrendingIndex(int bucketSeconds, String windows, LongSupplier clock) {
+        if (bucketSeconds < 1) {
+            throw new IllegalArgumentException("movies.trending.bucket-seconds must be positive");
+        }
+        this.bucketMillis = bucketSeconds * 1000L;
+        this.clock = clock;
+        int longest = 0;
+        for (String name : windows.split(",")) {
+            Duration duration = DurationStyle.detectAndParse(name.trim());
+            int buckets = (int) Math.max(1, (duration.toMillis() + bucketMillis - 1) / bucketMillis);
+            this.windows.put(name.trim(), new Window(buckets));
+            longest = Math.max(longest, buckets);
+        }
+        this.ringSize = longest;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Records a rating given now. It is ranked from the next tick on.
+     */
+    public void record(long movieId, double rating) {
+        stripes[mix(movieId) & (STRIPES - 1)].add(movieId, clock.getAsLong() / bucketMillis, (float) rating);
+    }
+
+    /**
+     * Returns the movies trending over a window, most popular first.
+     *
+     * @param window One of the configured windows, for example {@code 1h}.
+     * @param filter Selects the movies that may be returned, by ID.
+     * @param limit  The maximum number of movies to return.
+     * @return The IDs of the movies.
+     * @throws IllegalArgumentException If the window is not configured.
+     */
+    public long[] top(String window, LongPredicate filter, int limit) {
+        Window selected = windows.get(window);
+        if (selected == null) {
+            throw new IllegalArgumentException("Invalid window. Window must be one of "
+                    + String.join(", ", windows.keySet()) + ".");
+        }
+        long[] result = new long[Math.min(limit, 64)];
+        int size = 0;
+        for (Entry entry : selected.ranking) {
+            if (size == limit) {
+                break;
+            }
+            if (filter.test(entry.getId())) {
+                if (size == result.length) {
+                    result = Arrays.copyOf(result, Math.min(limit, size * 2));
+                }
+                result[size++] = entry.getId();
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Brings the rankings up to date: re-scores the movies rated since the last tick or, once a
+     * bucket has closed, every movie with a ring buffer, releasing those without recent ratings.
+     */
+    @Scheduled(fixedDelayString = "${movies.trending.refresh-interval-ms:1000}")
+    public synchronized void tick() {
+        for (Stripe stripe : stripes) {
+            stripe.drainTo(this);
+        }
+        long bucket = bucket();
+        if (bucket != scoredBucket) {
+            rescoreAll(bucket);
+            scoredBucket = bucket;
+        } else {
+            for (int i = 0; i < dirtyCount; i++) {
+                rescore(dirtySlots[i], bucket);
+            }
+        }
+        for (int i = 0; i < dirtyCount; i++) {
+            dirty[dirtySlots[i]] = false;
+        }
+        dirtyCount = 0;
+    }
+
+    public synchronized int activeMovies() {
+        return activeCount;
+    }
+
+    @Override
+    public synchronized void onMoviesRemoved(List<Long> movieIds) {
+        BitSet released = new BitSet();
+        for (Long movieId : movieIds) {
+            int slot = slots.get(movieId, -1);
+            if (slot < 0 || counts[slot] == null) {
+                continue;
+            }
+            counts[slot] = null;
+            sums[slot] = null;
+            for (Window window : windows.values()) {
+                Entry entry = window.entries[slot];
+                if (entry != null) {
+                    window.ranking.remove(entry);
+                    window.entries[slot] = null;
+                }
+            }
+            released.set(slot);
+        }
+        if (released.isEmpty()) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < activeCount; i++) {
+            if (!released.get(activeSlots[i])) {
+                activeSlots[kept++] = activeSlots[i];
+            }
+        }
+        activeCount = kept;
+    }
+
+    /**
+     * Adds the ratings a movie was given within one bucket to its ring buffer and marks it dirty.
+     */
+    private void apply(long movieId, long bucket, int count, float sum) {
+        int slot = slots.get(movieId, -1);
+        if (slot < 0) {
+            slot = allocate(movieId);
+        }
+        if (counts[slot] == null) {
+            counts[slot] = new int[ringSize];
+            sums[slot] = new float[ringSize];
+            lastBuckets[slot] = bucket;
+            activate(slot);
+        } else if (bucket <= lastBuckets[slot] - ringSize) {
+            return;
+        } else {
+            advance(slot, bucket);
+        }
+        int index = (int) (bucket % ringSize);
+        counts[slot][index] += count;
+        sums[slot][index] += sum;
+        if (!dirty[slot]) {
+            dirty[slot] = true;
+            if (dirtyCount == dirtySlots.length) {
+                dirtySlots = Arrays.copyOf(dirtySlots, dirtyCount * 2);
+            }
+            dirtySlots[dirtyCount++] = slot;
+        }
+    }
+
+    private static int mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private long bucket() {
+        currentBucket = Math.max(currentBucket, clock.getAsLong() / bucketMillis);
+        return currentBucket;
+    }
+
+    private void rescoreAll(long bucket) {
+        Map<Window, NavigableSet<Entry>> rankings = new LinkedHashMap<>();
+        for (Window window : windows.values()) {
+            rankings.put(window, new ConcurrentSkipListSet<>(ORDER));
+        }
+        int kept = 0;
+        for (int i = 0; i < activeCount; i++) {
+            int slot = activeSlots[i];
+            if (lastBuckets[slot] <= bucket - ringSize) {
+                counts[slot] = null;
+                sums[slot] = null;
+                for (Window window : windows.values()) {
+                    window.entries[slot] = null;
+                }
+                continue;
+            }
+            activeSlots[kept++] = slot;
+            for (Window window : windows.values()) {
+                Entry entry = score(slot, window, bucket);
+                window.entries[slot] = entry;
+                if (entry != null) {
+                    rankings.get(window).add(entry);
+                }
+            }
+        }
+        activeCount = kept;
+        rankings.forEach((window, ranking) -> window.ranking = ranking);
+    }
+
+    private void rescore(int slot, long bucket) {
+        if (counts[slot] == null) {
+            return;
+        }
+        for (Window window : windows.values()) {
+            Entry previous = window.entries[slot];
+            if (previous != null) {
+                window.ranking.remove(previous);
+            }
+            Entry entry = score(slot, window, bucket);
+            window.entries[slot] = entry;
+            if (entry != null) {
+                window.ranking.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Returns the decayed popularity of a movie over a window, or null if it has no ratings in it.
+     */
+    private Entry score(int slot, Window window, long bucket) {
+        int[] ring = counts[slot];
+        float[] ringSums = sums[slot];
+        long last = lastBuckets[slot];
+        double score = 0;
+        int count = 0;
+        double sum = 0;
+        for (int age = 0; age < window.weights.length; age++) {
+            long b = bucket - age;
+            if (b > last) {
+                continue;
+            }
+            if (b <= last - ringSize) {
+                break;
+            }
+            int index = (int) (b % ringSize);
+            score += ring[index] * window.weights[age];
+            count += ring[index];
+            sum += ringSums[index];
+        }
+        return count > 0 ? new Entry(ids[slot], score, sum / count) : null;
+    }
+
+    /**
+     * Clears the buckets that were skipped since the movie was last rated.
+     */
+    private void advance(int slot, long bucket) {
+        long last = lastBuckets[slot];
+        for (long b = last + 1; b <= bucket && b <= last + ringSize; b++) {
+            int index = (int) (b % ringSize);
+            counts[slot][index] = 0;
+            sums[slot][index] = 0;
+        }
+        lastBuckets[slot] = Math.max(last, bucket);
+    }
+
+    private int allocate(long movieId) {
+        int slot = slotCount++;
+        if (slot == ids.length) {
+            int capacity = slot * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+            lastBuckets = Arrays.copyOf(lastBuckets, capacity);
+            dirty = Arrays.copyOf(dirty, capacity);
+            for (Window window : windows.values()) {
+                window.entries = Arrays.copyOf(window.entries, capacity);
+            }
+        }
+        ids[slot] = movieId;
+        slots.put(movieId, slot);
+        return slot;
+    }
+
+    private void activate(int slot) {
+        if (activeCount == activeSlots.length) {
+            activeSlots = Arrays.copyOf(activeSlots, activeCount * 2);
+        }
+        activeSlots[activeCount++] = slot;
+    }
+
+    /**
+     * One lock stripe: the ratings recorded since the last tick, counted and summed per movie and
+     * bucket. The latest bucket of every movie is found by hash; a rating in a later bucket starts a
+     * new entry.
+     */
+    private static final class Stripe {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private LongIntHashMap latest = new LongIntHashMap();
+        private long[] movieIds = new long[INITIAL_CAPACITY];
+        private long[] buckets = new long[INITIAL_CAPACITY];
+        private int[] counts = new int[INITIAL_CAPACITY];
+        private float[] sums = new float[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized void add(long movieId, long bucket, float rating) {
+            int entry = latest.get(movieId, -1);
+            if (entry < 0 || buckets[entry] != bucket) {
+                if (size == movieIds.length) {
+                    movieIds = Arrays.copyOf(movieIds, size * 2);
+                    buckets = Arrays.copyOf(buckets, size * 2);
+                    counts = Arrays.copyOf(counts, size * 2);
+                    sums = Arrays.copyOf(sums, size * 2);
+                }
+                entry = size++;
+                movieIds[entry] = movieId;
+                buckets[entry] = bucket;
+                latest.put(movieId, entry);
+            }
+            counts[entry]++;
+            sums[entry] += rating;
+        }
+
+        /**
+         * Hands the pending ratings to the index, which must hold its own lock, and starts over.
+         */
+        void drainTo(TrendingIndex index) {
+            long[] drainedIds;
+            long[] drainedBuckets;
+            int[] drainedCounts;
+            float[] drainedSums;
+            int drained;
+            synchronized (this) {
+                if (size == 0) {
+                    return;
+                }
+                drainedIds = movieIds;
+                drainedBuckets = buckets;
+                drainedCounts = counts;
+                drainedSums = sums;
+                drained = size;
+                latest = new LongIntHashMap();
+                movieIds = new long[INITIAL_CAPACITY];
+                buckets = new long[INITIAL_CAPACITY];
+                counts = new int[INITIAL_CAPACITY];
+                sums = new float[INITIAL_CAPACITY];
+                size = 0;
+            }
+            for (int i = 0; i < drained; i++) {
+                index.apply(drainedIds[i], drainedBuckets[i], drainedCounts[i], drainedSums[i]);
+            }
+        }
+    }
+
+    /**
+     * The ranking of one window. The ranking is read without locking and replaced as a whole when a
+     * bucket closes; the entries by slot are only touched under the index lock.
+     */
+    private static final class Window {
+        private final double[] weights;
+        private Entry[] entries = new Entry[16];
+        private volatile NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(ORDER);
+
+        Window(int buckets) {
+            weights = new double[buckets];
+            double halfLife = Math.max(1, buckets / 4.0);
+            for (int age = 0; age < buckets; age++) {
+                weights[age] = Math.pow(0.5, age / halfLife);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final long id;
+        private final double score;
+        private final double averageRating;
+
+        Entry(long id, double score, double averageRating) {
+            this.id = id;
+            this.score = score;
+            this.averageRating = averageRating;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        double getScore() {
+            return score;
+        }
+
+        double getAverageRating() {
+            return averageRating;
+        }
+    }
+}
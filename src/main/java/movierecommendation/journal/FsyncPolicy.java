@@ -0,0 +1,19 @@
+package movierecommendation.journal;
+
+/**
+ * When the rating journal forces its writes to disk.
+ */
+public enum FsyncPolicy {
+    /**
+     * Every append waits until it has been forced to disk. Concurrent appends share one fsync.
+     */
+    ALWAYS,
+    /**
+     * Writes are forced every fsync interval; a crash loses at most one interval of appends.
+     */
+    INTERVAL,
+    /**
+     * Writes are handed to the operating system every fsync interval and never forced.
+     */
+    NEVER
+}
@@ -0,0 +1,203 @@
+package movierecommendation.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary format of the rating journal.
+ * <p>
+ * A journal file is a sequence of records, each framed as the payload length, the CRC32C of the
+ * payload and the payload itself. The first payload byte is the record type. A frame that is cut
+ * short or fails its checksum marks the end of the readable file, which is what a crash in the
+ * middle of a write leaves behind.
+ */
+final class JournalCodec {
+
+    /** A movie and the rating sum and count it was added with. */
+    static final byte MOVIE = 1;
+    /** A rating, counted into the movie's aggregates and replacing the user's earlier rating. */
+    static final byte RATING = 2;
+    /** The latest rating of a user that is already counted in the movie's aggregates. */
+    static final byte USER_RATING = 3;
+    /** A movie removed from this node, together with its ratings. */
+    static final byte MOVIE_DELETE = 4;
+    /** A movie id this node handed out and that its sequence must stay above after the movie is gone. */
+    static final byte ID_HIGH_WATER = 5;
+    /** A catalog snapshot that was loaded and journaled in full, carrying its highest movie id. */
+    static final byte SNAPSHOT_LOADED = 6;
+
+    static final long NO_USER = Long.MIN_VALUE;
+    static final int RATING_RECORD_BYTES = 8 + 1 + 8 + 8 + 8;
+
+    private static final int HEADER_BYTES = 8;
+
+    private JournalCodec() {
+    }
+
+    /**
+     * Receives the records read from a journal file.
+     */
+    interface Visitor {
+        void movie(long id, String title, String genre, int releaseYear, String director, double ratingSum, int ratingCount);
+
+        void rating(byte type, long movieId, long userId, double rating);
+
+        void movieDeleted(long id);
+
+        void idHighWater(long id);
+
+        void snapshotLoaded(long maxId);
+    }
+
+    /**
+     * Returns a buffer with room for at least the given number of bytes, growing it if needed.
+     */
+    static ByteBuffer ensureRemaining(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    static ByteBuffer putRating(ByteBuffer buffer, byte type, long movieId, long userId, double rating) {
+        buffer = ensureRemaining(buffer, RATING_RECORD_BYTES);
+        int start = beginFrame(buffer);
+        buffer.put(type).putLong(movieId).putLong(userId).putDouble(rating);
+        endFrame(buffer, start);
+        return buffer;
+    }
+
+    static ByteBuffer putMovie(ByteBuffer buffer, long id, String title, String genre, int releaseYear,
+                               String director, double ratingSum, int ratingCount) {
+        byte[] titleBytes = bytes(title);
+        byte[] genreBytes = bytes(genre);
+        byte[] directorBytes = bytes(director);
+        buffer = ensureRemaining(buffer, HEADER_BYTES + 1 + 8 + 4 + 8 + 4
+                + length(titleBytes) + length(genreBytes) + length(directorBytes));
+        int start = beginFrame(buffer);
+        buffer.put(MOVIE).putLong(id);
+        putBytes(buffer, titleBytes);
+        putBytes(buffer, genreBytes);
+        buffer.putInt(releaseYear);
+        putBytes(buffer, directorBytes);
+        buffer.putDouble(ratingSum).putInt(ratingCount);
+        endFrame(buffer, start);
+        return buffer;
+    }
+
+    static ByteBuffer putMovieDelete(ByteBuffer buffer, long id) {
+        return putId(buffer, MOVIE_DELETE, id);
+    }
+
+    static ByteBuffer putIdHighWater(ByteBuffer buffer, long id) {
+        return putId(buffer, ID_HIGH_WATER, id);
+    }
+
+    static ByteBuffer putSnapshotLoaded(ByteBuffer buffer, long maxId) {
+        return putId(buffer, SNAPSHOT_LOADED, maxId);
+    }
+
+    private static ByteBuffer putId(ByteBuffer buffer, byte type, long id) {
+        buffer = ensureRemaining(buffer, HEADER_BYTES + 1 + 8);
+        int start = beginFrame(buffer);
+        buffer.put(type).putLong(id);
+        endFrame(buffer, start);
+        return buffer;
+    }
+
+    /**
+     * Reads records from the buffer until it is exhausted or a torn or corrupt frame is found.
+     *
+     * @return The number of records read. The buffer is left positioned after the last good record.
+     */
+    static long read(ByteBuffer buffer, Visitor visitor) {
+        long records = 0;
+        CRC32C crc = new CRC32C();
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                buffer.position(start);
+                break;
+            }
+            buffer.position(buffer.position() + length);
+            decode(payload, visitor);
+            records++;
+        }
+        return records;
+    }
+
+    private static void decode(ByteBuffer payload, Visitor visitor) {
+        byte type = payload.get();
+        if (type == MOVIE) {
+            long id = payload.getLong();
+            String title = getString(payload);
+            String genre = getString(payload);
+            int releaseYear = payload.getInt();
+            String director = getString(payload);
+            visitor.movie(id, title, genre, releaseYear, director, payload.getDouble(), payload.getInt());
+        } else if (type == RATING || type == USER_RATING) {
+            visitor.rating(type, payload.getLong(), payload.getLong(), payload.getDouble());
+        } else if (type == MOVIE_DELETE) {
+            visitor.movieDeleted(payload.getLong());
+        } else if (type == ID_HIGH_WATER) {
+            visitor.idHighWater(payload.getLong());
+        } else if (type == SNAPSHOT_LOADED) {
+            visitor.snapshotLoaded(payload.getLong());
+        } else {
+            throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private static int beginFrame(ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.position(start + HEADER_BYTES);
+        return start;
+    }
+
+    private static void endFrame(ByteBuffer buffer, int start) {
+        int length = buffer.position() - start - HEADER_BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), buffer.arrayOffset() + start + HEADER_BYTES, length);
+        buffer.putInt(start, length);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
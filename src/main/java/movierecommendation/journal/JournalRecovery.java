@@ -0,0 +1,127 @@
+package movierecommendation.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.model.Movie;
+import movierecommendation.model.UserRating;
+import movierecommendation.repository.CatalogLoader;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.service.GenreDictionary;
+import movierecommendation.service.RankingScorer;
+import movierecommendation.util.LongIntHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Restores the movies, their rating aggregates and the user ratings from the {@link RatingJournal}
+ * into the database on startup, before the in-memory indexes are built from it, and then opens the
+ * journal for writing.
+ * <p>
+ * Rows are inserted by the {@link CatalogLoader} so that the journaled movie IDs are kept, and the
+ * movie sequence is moved past the highest restored ID. A database that already holds movies is left
+ * as it is.
+ */
+@Slf4j
+@Component
+public class JournalRecovery {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final RatingJournal ratingJournal;
+    private final MovieRepository movieRepository;
+    private final CatalogLoader catalogLoader;
+    private final RankingScorer rankingScorer;
+    private final GenreDictionary genreDictionary;
+    private volatile boolean restored;
+    private volatile LongIntHashMap deletedMovies = new LongIntHashMap();
+
+    @Autowired
+    public JournalRecovery(RatingJournal ratingJournal, MovieRepository movieRepository,
+                           CatalogLoader catalogLoader, RankingScorer rankingScorer,
+                           GenreDictionary genreDictionary) {
+        this.ratingJournal = ratingJournal;
+        this.movieRepository = movieRepository;
+        this.catalogLoader = catalogLoader;
+        this.rankingScorer = rankingScorer;
+        this.genreDictionary = genreDictionary;
+    }
+
+    /**
+     * @return true if the database was restored from the journal on startup.
+     */
+    public boolean isRestored() {
+        return restored;
+    }
+
+    /**
+     * @return true if the journal replayed on startup ends with the deletion of the given movie, as
+     * left by deleting it or handing it off to another cluster member.
+     */
+    public boolean isDeleted(long movieId) {
+        return deletedMovies.get(movieId, -1) >= 0;
+    }
+
+    @PostConstruct
+    public void recover() throws IOException {
+        if (!ratingJournal.isEnabled()) {
+            return;
+        }
+        ReplayState state = ratingJournal.replay();
+        deletedMovies = state.getDeletedMovies();
+        if (movieRepository.count() > 0) {
+            log.warn("Database already contains movies, not restoring {} journaled movies", state.getMovies().size());
+        } else if (!state.getMovies().isEmpty()) {
+            restore(state);
+            restored = true;
+        }
+        ratingJournal.open();
+    }
+
+    private void restore(ReplayState state) {
+        long maxId = 0;
+        List<Movie> movies = new ArrayList<>(BATCH_SIZE);
+        for (Movie movie : state.getMovies().values()) {
+            ReplayState.Partition partition = state.partitionFor(movie.getId());
+            int numberOfRatings = partition.count(movie.getId());
+            double averageRating = numberOfRatings > 0 ? partition.sum(movie.getId()) / numberOfRatings : 0;
+            movie.setGenreBits(genreDictionary.encodeLenient(movie.getGenre()));
+            movie.setAverageRating(averageRating);
+            movie.setNumberOfRatings(numberOfRatings);
+            movie.setRankingScore(rankingScorer.score(averageRating, numberOfRatings));
+            movies.add(movie);
+            maxId = Math.max(maxId, movie.getId());
+            if (movies.size() == BATCH_SIZE) {
+                catalogLoader.insertMovies(movies);
+                movies = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        catalogLoader.insertMovies(movies);
+
+        long userRatings = 0;
+        List<UserRating> ratings = new ArrayList<>(BATCH_SIZE);
+        for (ReplayState.Partition partition : state.getPartitions()) {
+            for (int slot = 0; slot < partition.ratingCapacity(); slot++) {
+                long userId = partition.ratingUserAt(slot);
+                long movieId = partition.ratingMovieAt(slot);
+                if (userId == JournalCodec.NO_USER || !state.getMovies().containsKey(movieId)) {
+                    continue;
+                }
+                ratings.add(UserRating.builder().userId(userId).movieId(movieId)
+                        .rating(partition.ratingValueAt(slot)).build());
+                userRatings++;
+                if (ratings.size() == BATCH_SIZE) {
+                    catalogLoader.insertUserRatings(ratings);
+                    ratings = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+        }
+        catalogLoader.insertUserRatings(ratings);
+
+        catalogLoader.restartMovieSequenceAbove(maxId);
+        log.info("Restored {} movies and {} user ratings from the journal", state.getMovies().size(), userRatings);
+    }
+}
@@ -0,0 +1,247 @@
+package movierecommendation.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.model.Movie;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays journal files into a {@link ReplayState}.
+ * <p>
+ * One thread reads the memory-mapped files in order and decodes the records; rating records are
+ * handed in batches to one worker per partition, so the aggregation runs in parallel while every
+ * movie still sees its records in journal order.
+ */
+@Slf4j
+final class JournalReplayer {
+
+    private static final int BATCH_SIZE = 4096;
+    private static final int QUEUE_CAPACITY = 8;
+    private static final Batch END = new Batch(0);
+
+    private JournalReplayer() {
+    }
+
+    static ReplayState replay(List<Path> files, int threads) throws IOException {
+        ReplayState state = new ReplayState(threads);
+        if (threads <= 1) {
+            Partitioned reader = new Partitioned(state, null);
+            for (Path file : files) {
+                state.addRecords(readFile(file, reader));
+            }
+            state.purgeDeleted();
+            return state;
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "journal-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<BlockingQueue<Batch>> queues = new ArrayList<>(threads);
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (ReplayState.Partition partition : state.getPartitions()) {
+            BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            queues.add(queue);
+            futures.add(workers.submit(() -> {
+                for (Batch batch = queue.take(); batch != END; batch = queue.take()) {
+                    batch.applyTo(partition);
+                }
+                return null;
+            }));
+        }
+        try {
+            Partitioned reader = new Partitioned(state, new Dispatcher(queues, futures));
+            for (Path file : files) {
+                state.addRecords(readFile(file, reader));
+            }
+            reader.flush();
+            for (int i = 0; i < queues.size(); i++) {
+                put(queues.get(i), futures.get(i), END);
+            }
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        state.purgeDeleted();
+        return state;
+    }
+
+    private static long readFile(Path file, Partitioned reader) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long records = JournalCodec.read(buffer, reader);
+            if (buffer.hasRemaining()) {
+                log.warn("Ignoring {} trailing bytes of journal file {} after a torn or corrupt record",
+                        buffer.remaining(), file.getFileName());
+            }
+            return records;
+        }
+    }
+
+    private static void put(BlockingQueue<Batch> queue, Future<?> worker, Batch batch) {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (worker.isDone()) {
+                    await(worker);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while replaying the journal", e);
+        }
+    }
+
+    private static void await(Future<?> worker) {
+        try {
+            worker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while replaying the journal", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Journal replay failed", e.getCause());
+        }
+    }
+
+    /**
+     * Decodes records into the state: movie metadata directly, rating records either directly into
+     * the partition or, with a dispatcher, into per-partition batches.
+     */
+    private static final class Partitioned implements JournalCodec.Visitor {
+        private final ReplayState state;
+        private final Dispatcher dispatcher;
+        private final Batch[] batches;
+
+        Partitioned(ReplayState state, Dispatcher dispatcher) {
+            this.state = state;
+            this.dispatcher = dispatcher;
+            this.batches = new Batch[state.getPartitions().length];
+            for (int i = 0; i < batches.length; i++) {
+                batches[i] = new Batch(BATCH_SIZE);
+            }
+        }
+
+        @Override
+        public void movie(long id, String title, String genre, int releaseYear, String director,
+                          double ratingSum, int ratingCount) {
+            state.getDeletedMovies().remove(id);
+            state.getMovies().put(id, Movie.builder()
+                    .id(id)
+                    .title(title)
+                    .genre(genre)
+                    .releaseYear(releaseYear)
+                    .director(director)
+                    .build());
+            add(JournalCodec.MOVIE, id, JournalCodec.NO_USER, ratingSum, ratingCount);
+        }
+
+        @Override
+        public void rating(byte type, long movieId, long userId, double rating) {
+            add(type, movieId, userId, rating, 1);
+        }
+
+        @Override
+        public void movieDeleted(long id) {
+            state.getMovies().remove(id);
+            state.getDeletedMovies().put(id, 0);
+            add(JournalCodec.MOVIE_DELETE, id, JournalCodec.NO_USER, 0, 0);
+        }
+
+        @Override
+        public void idHighWater(long id) {
+            state.raiseIdHighWater(id);
+        }
+
+        @Override
+        public void snapshotLoaded(long maxId) {
+            state.raiseSnapshotLoaded(maxId);
+        }
+
+        void flush() {
+            for (int i = 0; i < batches.length; i++) {
+                if (batches[i].size > 0) {
+                    dispatcher.send(i, batches[i]);
+                    batches[i] = new Batch(BATCH_SIZE);
+                }
+            }
+        }
+
+        private void add(byte type, long movieId, long userId, double value, int count) {
+            int partition = state.partitionOf(movieId);
+            if (dispatcher == null) {
+                state.getPartitions()[partition].apply(type, movieId, userId, value, count);
+                return;
+            }
+            Batch batch = batches[partition];
+            batch.add(type, movieId, userId, value, count);
+            if (batch.size == BATCH_SIZE) {
+                dispatcher.send(partition, batch);
+                batches[partition] = new Batch(BATCH_SIZE);
+            }
+        }
+    }
+
+    private static final class Dispatcher {
+        private final List<BlockingQueue<Batch>> queues;
+        private final List<Future<?>> workers;
+
+        Dispatcher(List<BlockingQueue<Batch>> queues, List<Future<?>> workers) {
+            this.queues = queues;
+            this.workers = workers;
+        }
+
+        void send(int partition, Batch batch) {
+            put(queues.get(partition), workers.get(partition), batch);
+        }
+    }
+
+    /**
+     * Decoded records of one partition, held in primitive arrays.
+     */
+    private static final class Batch {
+        private final byte[] types;
+        private final long[] movieIds;
+        private final long[] userIds;
+        private final double[] values;
+        private final int[] counts;
+        private int size;
+
+        Batch(int capacity) {
+            types = new byte[capacity];
+            movieIds = new long[capacity];
+            userIds = new long[capacity];
+            values = new double[capacity];
+            counts = new int[capacity];
+        }
+
+        void add(byte type, long movieId, long userId, double value, int count) {
+            types[size] = type;
+            movieIds[size] = movieId;
+            userIds[size] = userId;
+            values[size] = value;
+            counts[size] = count;
+            size++;
+        }
+
+        void applyTo(ReplayState.Partition partition) {
+            for (int i = 0; i < size; i++) {
+                partition.apply(types[i], movieIds[i], userIds[i], values[i], counts[i]);
+            }
+        }
+    }
+}
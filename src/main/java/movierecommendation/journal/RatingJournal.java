@@ -0,0 +1,645 @@
+package movierecommendation.journal;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.model.Movie;
+import movierecommendation.model.UserRating;
+import movierecommendation.service.MovieChangeListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only binary journal of added and removed movies and ratings, so that the in-memory database
+ * can be rebuilt after a restart.
+ * <p>
+ * Appends are encoded into an in-memory buffer under a short lock. A single writer thread swaps the
+ * buffer out, writes it to the current segment file and forces it to disk according to the
+ * {@link FsyncPolicy}; with {@link FsyncPolicy#ALWAYS}, appends that arrive during one fsync are
+ * committed together by the next. Segments are rotated once they reach the segment size, and sealed
+ * segments are periodically compacted into a snapshot of the catalog state, so a replay reads one
+ * snapshot plus the segments written since.
+ * <p>
+ * If the writer cannot start a new segment, or still cannot write or force a batch after
+ * {@code movies.journal.write-attempts} attempts, the journal fails: appends and waits for durability
+ * throw from then on, rather than accepting writes that would not survive a restart. Appends are also
+ * rejected while more than {@code movies.journal.max-pending-bytes} wait for the writer.
+ * <p>
+ * The journal is replayed and opened for writing by {@link JournalRecovery} on startup.
+ */
+@Slf4j
+@Component
+public class RatingJournal implements MovieChangeListener {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+    private final long segmentSizeBytes;
+    private final int replayThreads;
+    private final int writeAttempts;
+    private final long writeRetryDelayMs;
+    private final int maxPendingBytes;
+
+    private final Timer syncTimer;
+    private final Timer replayTimer;
+    private final AtomicLong appendedRecords = new AtomicLong();
+    private final AtomicLong writtenBytes = new AtomicLong();
+    private volatile long lastReplayRecords;
+    private volatile double lastReplayRecordsPerSecond;
+    private volatile long idHighWater = Long.MIN_VALUE;
+    private volatile long snapshotLoaded = Long.MIN_VALUE;
+
+    private final Object appendLock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private long appendedSequence;
+
+    private final Object durableLock = new Object();
+    private volatile long durableSequence;
+
+    private final Object compactionLock = new Object();
+    private volatile long segmentNumber;
+    private volatile boolean rotationRequested;
+    private volatile boolean running;
+    private volatile IOException failure;
+    private FileChannel channel;
+    private Thread writer;
+
+    @Autowired
+    public RatingJournal(@Value("${movies.journal.enabled:false}") boolean enabled,
+                         @Value("${movies.journal.dir:journal}") String directory,
+                         @Value("${movies.journal.fsync:interval}") String fsyncPolicy,
+                         @Value("${movies.journal.fsync-interval-ms:100}") long fsyncIntervalMs,
+                         @Value("${movies.journal.segment-size-bytes:67108864}") long segmentSizeBytes,
+                         @Value("${movies.journal.replay-threads:0}") int replayThreads,
+                         @Value("${movies.journal.write-attempts:3}") int writeAttempts,
+                         @Value("${movies.journal.write-retry-delay-ms:1000}") long writeRetryDelayMs,
+                         @Value("${movies.journal.max-pending-bytes:67108864}") int maxPendingBytes,
+                         MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.fsyncPolicy = FsyncPolicy.valueOf(fsyncPolicy.trim().toUpperCase(Locale.ROOT));
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.segmentSizeBytes = segmentSizeBytes;
+        this.replayThreads = replayThreads > 0 ? replayThreads : Runtime.getRuntime().availableProcessors();
+        this.writeAttempts = Math.max(1, writeAttempts);
+        this.writeRetryDelayMs = writeRetryDelayMs;
+        this.maxPendingBytes = maxPendingBytes;
+        this.syncTimer = Timer.builder("journal.sync").tag("fsync", this.fsyncPolicy.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry);
+        this.replayTimer = Timer.builder("journal.replay").register(meterRegistry);
+        FunctionCounter.builder("journal.appends", appendedRecords, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("journal.written", writtenBytes, AtomicLong::get).baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("journal.replay.records", this, RatingJournal::getLastReplayRecords).register(meterRegistry);
+        Gauge.builder("journal.replay.throughput", this, RatingJournal::getLastReplayRecordsPerSecond)
+                .baseUnit("records/s").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getLastReplayRecords() {
+        return lastReplayRecords;
+    }
+
+    public double getLastReplayRecordsPerSecond() {
+        return lastReplayRecordsPerSecond;
+    }
+
+    /**
+     * @return The highest id passed to {@link #recordIdHighWater(long)}, including before the last
+     * restart, or {@link Long#MIN_VALUE} if there is none.
+     */
+    public long getIdHighWater() {
+        return idHighWater;
+    }
+
+    /**
+     * @return true if a catalog snapshot load was recorded by {@link #recordSnapshotLoaded(long)},
+     * including before the last restart.
+     */
+    public boolean isSnapshotLoaded() {
+        return snapshotLoaded != Long.MIN_VALUE;
+    }
+
+    /**
+     * Appends user ratings that are already counted in the aggregates their movies were journaled
+     * with, such as those of movies handed off by another cluster member, and waits for them.
+     */
+    public void appendUserRatings(List<UserRating> ratings) {
+        if (!enabled || ratings.isEmpty()) {
+            return;
+        }
+        checkNotFailed();
+        long sequence;
+        synchronized (appendLock) {
+            checkBacklog();
+            for (UserRating rating : ratings) {
+                pending = JournalCodec.putRating(pending, JournalCodec.USER_RATING, rating.getMovieId(),
+                        rating.getUserId(), rating.getRating());
+                appended();
+            }
+            sequence = appendedSequence;
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Durably records a movie id that the movie sequence must stay above, even once no movie with
+     * that id is held any more. Waits for the record to be synced like a rating.
+     */
+    public void recordIdHighWater(long id) {
+        if (!enabled) {
+            return;
+        }
+        checkNotFailed();
+        long sequence;
+        synchronized (appendLock) {
+            checkBacklog();
+            pending = JournalCodec.putIdHighWater(pending, id);
+            sequence = appended();
+            idHighWater = Math.max(idHighWater, id);
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Durably records that a catalog snapshot, whose highest movie id is given, was loaded and its
+     * movies journaled, so that it is not loaded again over the journal after a restart.
+     */
+    public void recordSnapshotLoaded(long maxId) {
+        if (!enabled) {
+            return;
+        }
+        checkNotFailed();
+        long sequence;
+        synchronized (appendLock) {
+            checkBacklog();
+            pending = JournalCodec.putSnapshotLoaded(pending, maxId);
+            sequence = appended();
+            snapshotLoaded = Math.max(snapshotLoaded, maxId);
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Appends a rating.
+     *
+     * @param movieId The ID of the rated movie.
+     * @param userId  The ID of the rating user, or null for an anonymous rating.
+     * @param rating  The rating value.
+     * @return The sequence number of the record, to pass to {@link #awaitDurable(long)}.
+     */
+    public long appendRating(long movieId, Long userId, double rating) {
+        if (!enabled) {
+            return 0;
+        }
+        checkNotFailed();
+        synchronized (appendLock) {
+            checkBacklog();
+            pending = JournalCodec.putRating(pending, JournalCodec.RATING, movieId,
+                    userId == null ? JournalCodec.NO_USER : userId, rating);
+            return appended();
+        }
+    }
+
+    /**
+     * Waits until the record with the given sequence number has been forced to disk, if the fsync
+     * policy is {@link FsyncPolicy#ALWAYS}. Returns immediately under the other policies.
+     *
+     * @throws UncheckedIOException If the journal failed before the record was forced to disk.
+     */
+    public void awaitDurable(long sequence) {
+        if (sequence == 0) {
+            return;
+        }
+        if (fsyncPolicy != FsyncPolicy.ALWAYS) {
+            checkNotFailed();
+            return;
+        }
+        synchronized (durableLock) {
+            while (durableSequence < sequence && running) {
+                try {
+                    durableLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (durableSequence < sequence) {
+                checkNotFailed();
+            }
+        }
+    }
+
+    @Override
+    public void onMovieAdded(Movie movie) {
+        onMoviesAdded(List.of(movie));
+    }
+
+    @Override
+    public void onMoviesAdded(List<Movie> movies) {
+        if (!enabled || movies.isEmpty()) {
+            return;
+        }
+        checkNotFailed();
+        long sequence;
+        synchronized (appendLock) {
+            checkBacklog();
+            for (Movie movie : movies) {
+                pending = JournalCodec.putMovie(pending, movie.getId(), movie.getTitle(), movie.getGenre(),
+                        movie.getReleaseYear(), movie.getDirector(),
+                        movie.getAverageRating() * movie.getNumberOfRatings(), movie.getNumberOfRatings());
+                appended();
+            }
+            sequence = appendedSequence;
+        }
+        awaitDurable(sequence);
+    }
+
+    @Override
+    public void onMoviesRemoved(List<Long> movieIds) {
+        if (!enabled || movieIds.isEmpty()) {
+            return;
+        }
+        checkNotFailed();
+        long sequence;
+        synchronized (appendLock) {
+            checkBacklog();
+            for (Long movieId : movieIds) {
+                pending = JournalCodec.putMovieDelete(pending, movieId);
+                appended();
+            }
+            sequence = appendedSequence;
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Reads the latest snapshot and every segment written after it.
+     */
+    ReplayState replay() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path temp : files.filter(file -> file.toString().endsWith(TEMP_SUFFIX)).collect(Collectors.toList())) {
+                Files.delete(temp);
+            }
+        }
+        List<Path> files = new ArrayList<>();
+        long snapshot = latestSnapshot();
+        if (snapshot >= 0) {
+            files.add(snapshotPath(snapshot));
+        }
+        for (long number : segmentNumbers()) {
+            if (number > snapshot) {
+                files.add(segmentPath(number));
+            }
+        }
+        long start = System.nanoTime();
+        ReplayState state = JournalReplayer.replay(files, replayThreads);
+        idHighWater = Math.max(idHighWater, state.getIdHighWater());
+        snapshotLoaded = Math.max(snapshotLoaded, state.getSnapshotLoaded());
+        long elapsed = System.nanoTime() - start;
+        replayTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        lastReplayRecords = state.getRecords();
+        lastReplayRecordsPerSecond = elapsed == 0 ? 0 : state.getRecords() * 1e9 / elapsed;
+        log.info("Replayed {} journal records from {} files in {} ms ({} records/s, {} threads)",
+                state.getRecords(), files.size(), TimeUnit.NANOSECONDS.toMillis(elapsed),
+                Math.round(lastReplayRecordsPerSecond), replayThreads);
+        return state;
+    }
+
+    /**
+     * Starts a new segment after all existing ones and starts the writer.
+     */
+    synchronized void open() throws IOException {
+        if (!enabled || running) {
+            return;
+        }
+        Files.createDirectories(directory);
+        long last = Math.max(latestSnapshot(), segmentNumbers().stream().mapToLong(Long::longValue).max().orElse(-1));
+        segmentNumber = last + 1;
+        channel = openSegment(segmentNumber);
+        running = true;
+        writer = new Thread(this::writeLoop, "rating-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Journal open at {} with fsync policy {}", segmentPath(segmentNumber), fsyncPolicy);
+    }
+
+    /**
+     * Folds the sealed segments and the previous snapshot into a new snapshot and deletes them,
+     * which keeps the replay time bounded. Also asks the writer to seal the current segment, so
+     * that it is compacted by the next run.
+     */
+    @Scheduled(initialDelayString = "${movies.journal.compaction-interval-ms:600000}",
+            fixedDelayString = "${movies.journal.compaction-interval-ms:600000}")
+    public void compact() {
+        if (!running) {
+            return;
+        }
+        synchronized (compactionLock) {
+            rotationRequested = true;
+            synchronized (appendLock) {
+                appendLock.notifyAll();
+            }
+            try {
+                long sealed = segmentNumber - 1;
+                long snapshot = latestSnapshot();
+                List<Long> segments = segmentNumbers().stream()
+                        .filter(number -> number > snapshot && number <= sealed)
+                        .collect(Collectors.toList());
+                if (segments.isEmpty()) {
+                    return;
+                }
+                List<Path> files = new ArrayList<>();
+                if (snapshot >= 0) {
+                    files.add(snapshotPath(snapshot));
+                }
+                segments.forEach(number -> files.add(segmentPath(number)));
+                long start = System.nanoTime();
+                ReplayState state = JournalReplayer.replay(files, replayThreads);
+                writeSnapshot(state, sealed);
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+                log.info("Compacted {} journal records from {} files into {} in {} ms", state.getRecords(),
+                        files.size(), snapshotPath(sealed).getFileName(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Journal compaction failed, will retry", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        synchronized (appendLock) {
+            appendLock.notifyAll();
+        }
+        writer.join();
+        synchronized (durableLock) {
+            durableLock.notifyAll();
+        }
+    }
+
+    private long appended() {
+        appendedRecords.incrementAndGet();
+        appendedSequence++;
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            appendLock.notifyAll();
+        }
+        return appendedSequence;
+    }
+
+    private void writeLoop() {
+        ByteBuffer spare = ByteBuffer.allocate(pending.capacity());
+        boolean stopping = false;
+        while (!stopping) {
+            if (fsyncPolicy != FsyncPolicy.ALWAYS) {
+                sleep(fsyncIntervalMs);
+            }
+            ByteBuffer batch;
+            long sequence;
+            synchronized (appendLock) {
+                while (pending.position() == 0 && running && !rotationRequested
+                        && fsyncPolicy == FsyncPolicy.ALWAYS) {
+                    try {
+                        appendLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                stopping = !running;
+                batch = pending;
+                pending = spare;
+                sequence = appendedSequence;
+            }
+            batch.flip();
+            try {
+                writeFully(batch, stopping);
+            } catch (IOException e) {
+                fail(e);
+                break;
+            }
+            batch.clear();
+            spare = batch;
+            synchronized (durableLock) {
+                durableSequence = sequence;
+                durableLock.notifyAll();
+            }
+            try {
+                rotateIfNeeded();
+            } catch (IOException e) {
+                fail(e);
+                break;
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close journal segment", e);
+        }
+    }
+
+    /**
+     * Writes and forces a batch, retrying a failed attempt after a delay.
+     *
+     * @throws IOException If the last of the write attempts failed.
+     */
+    private void writeFully(ByteBuffer batch, boolean stopping) throws IOException {
+        if (!batch.hasRemaining()) {
+            return;
+        }
+        int bytes = batch.remaining();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                long start = System.nanoTime();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                if (fsyncPolicy != FsyncPolicy.NEVER) {
+                    channel.force(false);
+                }
+                syncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                writtenBytes.addAndGet(bytes);
+                return;
+            } catch (IOException e) {
+                if (stopping) {
+                    log.error("Failed to write {} journal bytes on shutdown", batch.remaining(), e);
+                    return;
+                }
+                if (attempt >= writeAttempts) {
+                    throw e;
+                }
+                log.warn("Failed to write journal (attempt {} of {}), retrying", attempt, writeAttempts, e);
+                sleep(writeRetryDelayMs);
+            }
+        }
+    }
+
+    private void rotateIfNeeded() throws IOException {
+        if (running && (rotationRequested || channel.size() >= segmentSizeBytes) && channel.size() > 0) {
+            FileChannel next = openSegment(segmentNumber + 1);
+            channel.close();
+            channel = next;
+            segmentNumber++;
+        }
+        rotationRequested = false;
+    }
+
+    /**
+     * Stops the writer after the journal can no longer be written, and wakes up every waiter so
+     * that it sees the failure.
+     */
+    private void fail(IOException e) {
+        log.error("Failed to write or rotate journal segment, rejecting further journal writes", e);
+        failure = e;
+        running = false;
+        synchronized (durableLock) {
+            durableLock.notifyAll();
+        }
+    }
+
+    /**
+     * Rejects an append while the writer is too far behind, so the buffer cannot grow without bound.
+     * Must hold the append lock.
+     */
+    private void checkBacklog() {
+        if (pending.position() >= maxPendingBytes) {
+            throw new UncheckedIOException(new IOException("Journal backlog exceeds " + maxPendingBytes
+                    + " bytes, writes are not durable"));
+        }
+    }
+
+    private void checkNotFailed() {
+        IOException cause = failure;
+        if (cause != null) {
+            throw new UncheckedIOException("Journal failed, writes are not durable", cause);
+        }
+    }
+
+    private void writeSnapshot(ReplayState state, long number) throws IOException {
+        Path target = snapshotPath(number);
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+            if (state.getIdHighWater() != Long.MIN_VALUE) {
+                buffer = JournalCodec.putIdHighWater(buffer, state.getIdHighWater());
+            }
+            if (state.getSnapshotLoaded() != Long.MIN_VALUE) {
+                buffer = JournalCodec.putSnapshotLoaded(buffer, state.getSnapshotLoaded());
+            }
+            for (Movie movie : state.getMovies().values()) {
+                ReplayState.Partition partition = state.partitionFor(movie.getId());
+                buffer = JournalCodec.putMovie(buffer, movie.getId(), movie.getTitle(), movie.getGenre(),
+                        movie.getReleaseYear(), movie.getDirector(),
+                        partition.sum(movie.getId()), partition.count(movie.getId()));
+                buffer = drainIfFull(out, buffer);
+            }
+            for (ReplayState.Partition partition : state.getPartitions()) {
+                for (int slot = 0; slot < partition.ratingCapacity(); slot++) {
+                    long userId = partition.ratingUserAt(slot);
+                    if (userId != JournalCodec.NO_USER) {
+                        buffer = JournalCodec.putRating(buffer, JournalCodec.USER_RATING,
+                                partition.ratingMovieAt(slot), userId, partition.ratingValueAt(slot));
+                        buffer = drainIfFull(out, buffer);
+                    }
+                }
+            }
+            drain(out, buffer);
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteBuffer drainIfFull(FileChannel out, ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < buffer.capacity() / 8) {
+            drain(out, buffer);
+        }
+        return buffer;
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private Path snapshotPath(long number) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX));
+    }
+
+    private List<Long> segmentNumbers() throws IOException {
+        return fileNumbers(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+    }
+
+    private long latestSnapshot() throws IOException {
+        return fileNumbers(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).stream().mapToLong(Long::longValue).max().orElse(-1);
+    }
+
+    private List<Long> fileNumbers(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .map(name -> Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package movierecommendation.journal;
+
+import movierecommendation.model.Movie;
+import movierecommendation.util.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Catalog state rebuilt from the journal: the movies, their rating sums and counts, the latest
+ * rating of every user and the highest movie id handed out by this node that is no longer held.
+ * The ids of deleted movies and whether a catalog snapshot was loaded are kept as well. Rating state
+ * is split into partitions by movie id so that the partitions can be replayed by separate threads;
+ * every record of a movie lands in the same partition, in journal order.
+ */
+final class ReplayState {
+
+    private final Map<Long, Movie> movies = new LinkedHashMap<>();
+    private final Partition[] partitions;
+    private long records;
+    private final LongIntHashMap deletedMovies = new LongIntHashMap();
+    private long idHighWater = Long.MIN_VALUE;
+    private long snapshotLoaded = Long.MIN_VALUE;
+
+    ReplayState(int partitionCount) {
+        partitions = new Partition[Math.max(1, partitionCount)];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition();
+        }
+    }
+
+    Map<Long, Movie> getMovies() {
+        return movies;
+    }
+
+    Partition[] getPartitions() {
+        return partitions;
+    }
+
+    long getRecords() {
+        return records;
+    }
+
+    void addRecords(long count) {
+        records += count;
+    }
+
+    /**
+     * @return The highest id recorded by {@link RatingJournal#recordIdHighWater(long)}, or
+     * {@link Long#MIN_VALUE} if there is none.
+     */
+    long getIdHighWater() {
+        return idHighWater;
+    }
+
+    void raiseIdHighWater(long id) {
+        idHighWater = Math.max(idHighWater, id);
+    }
+
+    /**
+     * @return The ids of the movies whose last record is a deletion, such as movies deleted or handed
+     * off by this node.
+     */
+    LongIntHashMap getDeletedMovies() {
+        return deletedMovies;
+    }
+
+    /**
+     * @return The highest movie id of the catalog snapshots recorded by
+     * {@link RatingJournal#recordSnapshotLoaded(long)}, or {@link Long#MIN_VALUE} if none was loaded.
+     */
+    long getSnapshotLoaded() {
+        return snapshotLoaded;
+    }
+
+    void raiseSnapshotLoaded(long maxId) {
+        snapshotLoaded = Math.max(snapshotLoaded, maxId);
+    }
+
+    int partitionOf(long movieId) {
+        long h = movieId * 0x9E3779B97F4A7C15L;
+        return (int) ((h >>> 33) % partitions.length);
+    }
+
+    Partition partitionFor(long movieId) {
+        return partitions[partitionOf(movieId)];
+    }
+
+    /**
+     * Drops the user ratings of deleted movies from every partition. Called once the replay is done.
+     */
+    void purgeDeleted() {
+        for (Partition partition : partitions) {
+            partition.purgeDeleted();
+        }
+    }
+
+    /**
+     * Rating sums and counts per movie, and the latest rating per user and movie, of one partition.
+     * Only accessed by one thread at a time.
+     * <p>
+     * A deleted movie's aggregates are reset at once, while its user ratings are dropped in one pass
+     * over the rating table when the replay ends or when a later record refers to the movie again.
+     */
+    static final class Partition {
+        private final LongIntHashMap slots = new LongIntHashMap();
+        private long[] movieIds = new long[64];
+        private double[] sums = new double[64];
+        private int[] counts = new int[64];
+        private int size;
+
+        private long[] ratingUsers = emptyUsers(64);
+        private long[] ratingMovies = new long[64];
+        private double[] ratingValues = new double[64];
+        private int ratingCount;
+        private LongIntHashMap deleted = new LongIntHashMap();
+
+        void apply(byte type, long movieId, long userId, double value, int count) {
+            if (deleted.size() > 0 && deleted.get(movieId, -1) >= 0) {
+                purgeDeleted();
+            }
+            if (type == JournalCodec.MOVIE_DELETE) {
+                int slot = slots.get(movieId, -1);
+                if (slot >= 0) {
+                    sums[slot] = 0;
+                    counts[slot] = 0;
+                }
+                deleted.put(movieId, 0);
+                return;
+            }
+            if (type == JournalCodec.USER_RATING) {
+                putLatest(userId, movieId, value);
+                return;
+            }
+            int slot = slot(movieId);
+            if (type == JournalCodec.RATING && userId != JournalCodec.NO_USER) {
+                double previous = putLatest(userId, movieId, value);
+                if (!Double.isNaN(previous)) {
+                    sums[slot] -= previous;
+                    counts[slot]--;
+                }
+            }
+            sums[slot] += value;
+            counts[slot] += count;
+        }
+
+        double sum(long movieId) {
+            int slot = slots.get(movieId, -1);
+            return slot < 0 ? 0 : sums[slot];
+        }
+
+        int count(long movieId) {
+            int slot = slots.get(movieId, -1);
+            return slot < 0 ? 0 : counts[slot];
+        }
+
+        int size() {
+            return size;
+        }
+
+        long movieIdAt(int slot) {
+            return movieIds[slot];
+        }
+
+        int ratingCapacity() {
+            return ratingUsers.length;
+        }
+
+        /**
+         * Returns the user of the latest rating stored in the given slot, or {@link JournalCodec#NO_USER}.
+         */
+        long ratingUserAt(int slot) {
+            return ratingUsers[slot];
+        }
+
+        long ratingMovieAt(int slot) {
+            return ratingMovies[slot];
+        }
+
+        double ratingValueAt(int slot) {
+            return ratingValues[slot];
+        }
+
+        private int slot(long movieId) {
+            int slot = slots.get(movieId, -1);
+            if (slot < 0) {
+                slot = size++;
+                if (slot == movieIds.length) {
+                    movieIds = Arrays.copyOf(movieIds, slot * 2);
+                    sums = Arrays.copyOf(sums, slot * 2);
+                    counts = Arrays.copyOf(counts, slot * 2);
+                }
+                movieIds[slot] = movieId;
+                slots.put(movieId, slot);
+            }
+            return slot;
+        }
+
+        /**
+         * Stores the latest rating of a user for a movie.
+         *
+         * @return The rating it replaces, or NaN.
+         */
+        private double putLatest(long userId, long movieId, double value) {
+            if ((ratingCount + 1) * 4 > ratingUsers.length * 3) {
+                resizeRatings();
+            }
+            int slot = ratingSlot(ratingUsers, ratingMovies, userId, movieId);
+            double previous = Double.NaN;
+            if (ratingUsers[slot] == JournalCodec.NO_USER) {
+                ratingUsers[slot] = userId;
+                ratingMovies[slot] = movieId;
+                ratingCount++;
+            } else {
+                previous = ratingValues[slot];
+            }
+            ratingValues[slot] = value;
+            return previous;
+        }
+
+        /**
+         * Drops the user ratings of the movies deleted since the last purge.
+         */
+        void purgeDeleted() {
+            if (deleted.size() > 0) {
+                rehashRatings(ratingUsers.length);
+            }
+        }
+
+        private void resizeRatings() {
+            rehashRatings(ratingUsers.length * 2);
+        }
+
+        /**
+         * Moves the user ratings into a table of the given capacity, leaving out those of deleted movies.
+         */
+        private void rehashRatings(int capacity) {
+            long[] oldUsers = ratingUsers;
+            long[] oldMovies = ratingMovies;
+            double[] oldValues = ratingValues;
+            ratingUsers = emptyUsers(capacity);
+            ratingMovies = new long[capacity];
+            ratingValues = new double[capacity];
+            ratingCount = 0;
+            for (int i = 0; i < oldUsers.length; i++) {
+                if (oldUsers[i] != JournalCodec.NO_USER && deleted.get(oldMovies[i], -1) < 0) {
+                    int slot = ratingSlot(ratingUsers, ratingMovies, oldUsers[i], oldMovies[i]);
+                    ratingUsers[slot] = oldUsers[i];
+                    ratingMovies[slot] = oldMovies[i];
+                    ratingValues[slot] = oldValues[i];
+                    ratingCount++;
+                }
+            }
+            if (deleted.size() > 0) {
+                deleted = new LongIntHashMap();
+            }
+        }
+
+        private static int ratingSlot(long[] users, long[] movies, long userId, long movieId) {
+            int mask = users.length - 1;
+            long h = (userId * 31 + movieId) * 0x9E3779B97F4A7C15L;
+            int slot = (int) (h ^ (h >>> 32)) & mask;
+            while (users[slot] != JournalCodec.NO_USER && (users[slot] != userId || movies[slot] != movieId)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static long[] emptyUsers(int capacity) {
+            long[] users = new long[capacity];
+            Arrays.fill(users, JournalCodec.NO_USER);
+            return users;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package movierecommendation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Entry of the genre dictionary.
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Genre {
+    /**
+     * Bit of the genre in {@link Movie#getGenreBits()}, from 0 to 63.
+     */
+    @Id
+    private Integer id;
+    /**
+     * Lowercase name of the genre.
+     */
+    @Column(nullable = false, unique = true)
+    private String name;
+}
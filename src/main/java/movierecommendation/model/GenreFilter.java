@@ -0,0 +1,51 @@
+package movierecommendation.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Selects movies by their genre bitset, see {@link Movie#getGenreBits()}.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public final class GenreFilter {
+
+    /**
+     * Selects every movie.
+     */
+    public static final GenreFilter UNFILTERED = new GenreFilter(0, GenreMatch.ANY, false);
+    /**
+     * Selects no movie, for requests naming genres that no movie has.
+     */
+    public static final GenreFilter NOTHING = new GenreFilter(0, GenreMatch.ANY, true);
+
+    private final long mask;
+    private final GenreMatch match;
+    private final boolean empty;
+
+    private GenreFilter(long mask, GenreMatch match, boolean empty) {
+        this.mask = mask;
+        this.match = match;
+        this.empty = empty;
+    }
+
+    /**
+     * Returns the filter selecting the movies with any or all of the genres in the mask.
+     */
+    public static GenreFilter of(long mask, GenreMatch match) {
+        return mask == 0 ? UNFILTERED : new GenreFilter(mask, match, false);
+    }
+
+    public boolean isUnfiltered() {
+        return mask == 0 && !empty;
+    }
+
+    public boolean matches(long genreBits) {
+        if (mask == 0) {
+            return !empty;
+        }
+        return match == GenreMatch.ALL ? (genreBits & mask) == mask : (genreBits & mask) != 0;
+    }
+}
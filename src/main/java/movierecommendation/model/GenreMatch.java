@@ -0,0 +1,34 @@
+package movierecommendation.model;
+
+import java.util.Locale;
+
+/**
+ * How a recommendation request with several genres selects movies.
+ */
+public enum GenreMatch {
+    /**
+     * Movies having at least one of the genres.
+     */
+    ANY,
+    /**
+     * Movies having every one of the genres.
+     */
+    ALL;
+
+    /**
+     * Parses a genre match request parameter, case-insensitively.
+     *
+     * @param match The parameter value, or null for {@link #ANY}.
+     * @throws IllegalArgumentException if the value is not a known match.
+     */
+    public static GenreMatch from(String match) {
+        if (match == null) {
+            return ANY;
+        }
+        try {
+            return valueOf(match.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid match: " + match + ". Match must be any or all.");
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package movierecommendation.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -8,28 +9,54 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
 
 @ToString
 @Data
 @Entity
-@Builder
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = @Index(name = "idx_movie_genre_ranking_score", columnList = "genre, rankingScore"))
+@Builder(toBuilder = true)
 @Getter @Setter
 @EqualsAndHashCode (of = "id")
 @NoArgsConstructor
 @AllArgsConstructor
 public class Movie {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movie_seq")
+    @SequenceGenerator(name = "movie_seq", sequenceName = "movie_seq", allocationSize = 50)
     private Long id;
     private String title;
+    /**
+     * One or more genres separated by {@code |} or {@code ,}, for example {@code Action|Comedy}.
+     */
     private String genre;
+    /**
+     * Bitset of the movie's genres, one bit per entry of the genre dictionary. Derived from
+     * {@link #genre} when the movie is saved; 0 for movies saved before genres were encoded.
+     */
+    @JsonIgnore
+    @Column(columnDefinition = "bigint default 0 not null")
+    private long genreBits;
     private int releaseYear;
     private String director;
     private double averageRating;
     private int numberOfRatings;
+    /**
+     * Bayesian average of the ratings, shrunk towards the catalog mean by a fixed prior weight so
+     * that movies with few ratings do not outrank well established ones.
+     */
+    private double rankingScore;
 }
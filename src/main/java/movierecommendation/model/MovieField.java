@@ -0,0 +1,115 @@
+package movierecommendation.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The fields of a {@link Movie} that list responses can be limited to with {@code fields=}, each
+ * written directly to the generator under its usual JSON name.
+ */
+public enum MovieField {
+    ID("id") {
+        @Override
+        void write(JsonGenerator generator, Movie movie) throws IOException {
+            if (movie.getId() == null) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(movie.getId());
+            }
+        }
+    },
+    TITLE("title") {
+        @Override
+        void write(JsonGenerator generator, Movie movie) throws IOException {
+            generator.writeString(movie.getTitle());
+        }
+    },
+    GENRE("genre") {
+        @Override
+        void write(JsonGenerator generator, Movie movie) throws IOException {
+            generator.writeString(movie.getGenre());
+        }
+    },
+    RELEASE_YEAR("releaseYear") {
+        @Override
+        void write(JsonGenerator generator, Movie movie) throws IOException {
+            generator.writeNumber(movie.getReleaseYear());
+        }
+    },
+    DIRECTOR("director") {
+        @Override
+        void write(JsonGenerator generator, Movie movie) throws IOException {
+            generator.writeString(movie.getDirector());
+        }
+    },
+    AVERAGE_RATING("averageRating") {
+        @Override
+        void write(JsonGenerator generator, Movie movie) throws IOException {
+            generator.writeNumber(movie.getAverageRating());
+        }
+    },
+    NUMBER_OF_RATINGS("numberOfRatings") {
+        @Override
+        void write(JsonGenerator generator, Movie movie) throws IOException {
+            generator.writeNumber(movie.getNumberOfRatings());
+        }
+    },
+    RANKING_SCORE("rankingScore") {
+        @Override
+        void write(JsonGenerator generator, Movie movie) throws IOException {
+            generator.writeNumber(movie.getRankingScore());
+        }
+    };
+
+    private final String jsonName;
+
+    MovieField(String jsonName) {
+        this.jsonName = jsonName;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    /**
+     * Writes the field name and value of a movie.
+     */
+    void writeField(JsonGenerator generator, Movie movie) throws IOException {
+        generator.writeFieldName(jsonName);
+        write(generator, movie);
+    }
+
+    abstract void write(JsonGenerator generator, Movie movie) throws IOException;
+
+    /**
+     * Parses a fields request parameter, given as JSON field names, case-insensitively.
+     *
+     * @param names The requested field names, or null for every field.
+     * @return The requested fields in declaration order, or null for every field.
+     * @throws IllegalArgumentException if a name is not a known field.
+     */
+    public static Set<MovieField> from(List<String> names) {
+        if (names == null || names.isEmpty()) {
+            return null;
+        }
+        Set<MovieField> fields = EnumSet.noneOf(MovieField.class);
+        for (String name : names) {
+            fields.add(fromJsonName(name.trim()));
+        }
+        return fields;
+    }
+
+    private static MovieField fromJsonName(String name) {
+        for (MovieField field : values()) {
+            if (field.jsonName.equalsIgnoreCase(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Invalid field: " + name + ". Fields must be among id, title, genre, "
+                + "releaseYear, director, averageRating, numberOfRatings and rankingScore.");
+    }
+}
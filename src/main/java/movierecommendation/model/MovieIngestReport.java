@@ -0,0 +1,39 @@
+package movierecommendation.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-item report of a bulk ingest request, in the order the movies were submitted.
+ */
+@Data
+public class MovieIngestReport {
+
+    private int created;
+    private int rejected;
+    private long elapsedMillis;
+    private List<MovieIngestResult> results = new ArrayList<>();
+
+    public void add(MovieIngestResult result) {
+        results.add(result);
+        if (result.getStatus() == MovieIngestResult.Status.CREATED) {
+            created++;
+        } else {
+            rejected++;
+        }
+    }
+
+    /**
+     * Appends the results of a later chunk, renumbering them after the results already present.
+     */
+    public void append(MovieIngestReport chunk) {
+        int offset = results.size();
+        for (MovieIngestResult result : chunk.getResults()) {
+            result.setIndex(result.getIndex() + offset);
+            add(result);
+        }
+        elapsedMillis += chunk.getElapsedMillis();
+    }
+}
@@ -0,0 +1,45 @@
+package movierecommendation.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of one movie of a bulk ingest request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieIngestResult {
+
+    public enum Status {
+        CREATED,
+        INVALID,
+        DUPLICATE
+    }
+
+    private int index;
+    private Status status;
+    private Long movieId;
+    private String message;
+    /**
+     * Every rule the movie violated; empty unless it was rejected.
+     */
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<MovieViolation> violations = Collections.emptyList();
+
+    public MovieIngestResult(int index, Status status, Long movieId, String message) {
+        this(index, status, movieId, message, Collections.emptyList());
+    }
+
+    /**
+     * Result of a movie rejected for the violations of a validation.
+     */
+    public static MovieIngestResult rejected(int index, Status status, MovieValidation validation) {
+        return new MovieIngestResult(index, status, null, validation.getMessage(), validation.getViolations());
+    }
+}
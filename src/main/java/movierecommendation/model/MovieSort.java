@@ -0,0 +1,38 @@
+package movierecommendation.model;
+
+import java.util.Locale;
+
+/**
+ * Orderings supported by recommendation listings. Both sort descending, ties broken by ascending id.
+ */
+public enum MovieSort {
+    /**
+     * Plain average rating.
+     */
+    RATING,
+    /**
+     * Confidence-weighted ranking score, see {@link Movie#getRankingScore()}.
+     */
+    SCORE;
+
+    public double sortValue(Movie movie) {
+        return this == SCORE ? movie.getRankingScore() : movie.getAverageRating();
+    }
+
+    /**
+     * Parses a sort request parameter, case-insensitively.
+     *
+     * @param sort The parameter value, or null for {@link #RATING}.
+     * @throws IllegalArgumentException if the value is not a known sort.
+     */
+    public static MovieSort from(String sort) {
+        if (sort == null) {
+            return RATING;
+        }
+        try {
+            return valueOf(sort.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid sort: " + sort + ". Sort must be rating or score.");
+        }
+    }
+}
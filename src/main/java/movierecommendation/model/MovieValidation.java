@@ -0,0 +1,117 @@
+package movierecommendation.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Outcome of validating a movie: every {@link MovieViolation rule} it violates.
+ * <p>
+ * There is one shared, immutable instance per combination of violations, with its violation list and
+ * message built once, so validating a movie allocates nothing whether it passes or not.
+ */
+public final class MovieValidation {
+
+    private static final MovieViolation[] VIOLATIONS = MovieViolation.values();
+    private static final MovieValidation[] INSTANCES = new MovieValidation[1 << VIOLATIONS.length];
+
+    static {
+        for (int bits = 0; bits < INSTANCES.length; bits++) {
+            INSTANCES[bits] = new MovieValidation(bits);
+        }
+    }
+
+    public static final MovieValidation VALID = INSTANCES[0];
+
+    private final int bits;
+    private final List<MovieViolation> violations;
+    private final String message;
+
+    private MovieValidation(int bits) {
+        this.bits = bits;
+        List<MovieViolation> list = new ArrayList<>();
+        for (MovieViolation violation : VIOLATIONS) {
+            if ((bits & bit(violation)) != 0) {
+                list.add(violation);
+            }
+        }
+        this.violations = Collections.unmodifiableList(list);
+        this.message = message(list);
+    }
+
+    public static MovieValidation of(MovieViolation violation) {
+        return VALID.with(violation);
+    }
+
+    /**
+     * Returns the validation with one more violation.
+     */
+    public MovieValidation with(MovieViolation violation) {
+        return INSTANCES[bits | bit(violation)];
+    }
+
+    public boolean isValid() {
+        return bits == 0;
+    }
+
+    public boolean has(MovieViolation violation) {
+        return (bits & bit(violation)) != 0;
+    }
+
+    public List<MovieViolation> getViolations() {
+        return violations;
+    }
+
+    /**
+     * A message describing every violation, or null if the movie is valid.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "MovieValidation" + violations;
+    }
+
+    private static int bit(MovieViolation violation) {
+        return 1 << violation.ordinal();
+    }
+
+    private static String message(List<MovieViolation> violations) {
+        if (violations.isEmpty()) {
+            return null;
+        }
+        StringJoiner message = new StringJoiner("; ");
+        StringJoiner missing = new StringJoiner(", ", "Missing mandatory fields: ", " required");
+        missing.setEmptyValue("");
+        for (MovieViolation violation : violations) {
+            if (violation.isMissingField()) {
+                missing.add(violation.getField());
+            }
+        }
+        if (missing.length() > 0) {
+            message.add(missing.toString());
+        }
+        for (MovieViolation violation : violations) {
+            switch (violation) {
+                case RELEASE_YEAR_OUT_OF_RANGE:
+                    message.add("Release year is out of range");
+                    break;
+                case TITLE_TOO_LONG:
+                    message.add("Title is too long");
+                    break;
+                case DUPLICATE:
+                    message.add("Movie already exists");
+                    break;
+                case TOO_MANY_GENRES:
+                    message.add("Too many genres. At most 64 genres are supported");
+                    break;
+                default:
+                    break;
+            }
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,31 @@
+package movierecommendation.model;
+
+/**
+ * A rule that a submitted movie can violate.
+ */
+public enum MovieViolation {
+    MISSING_TITLE("title"),
+    MISSING_GENRE("genre"),
+    MISSING_DIRECTOR("director"),
+    RELEASE_YEAR_OUT_OF_RANGE("releaseYear"),
+    TITLE_TOO_LONG("title"),
+    DUPLICATE("title"),
+    TOO_MANY_GENRES("genre");
+
+    private final String field;
+
+    MovieViolation(String field) {
+        this.field = field;
+    }
+
+    /**
+     * The movie field the rule applies to.
+     */
+    public String getField() {
+        return field;
+    }
+
+    boolean isMissingField() {
+        return this == MISSING_TITLE || this == MISSING_GENRE || this == MISSING_DIRECTOR;
+    }
+}
@@ -0,0 +1,29 @@
+package movierecommendation.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One rating of a batch rating request, optionally given by a user.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RatingBatchItem {
+
+    private Long movieId;
+    private Long userId;
+    private Double rating;
+
+    /**
+     * @return true if the rating names a movie and its value is between 1 and 5.
+     */
+    @JsonIgnore
+    public boolean isValid() {
+        return movieId != null && rating != null && rating >= 1 && rating <= 5;
+    }
+}
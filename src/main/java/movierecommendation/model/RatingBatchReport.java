@@ -0,0 +1,34 @@
+package movierecommendation.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-item report of a batch rating request, in the order the ratings were submitted.
+ */
+@Data
+public class RatingBatchReport {
+
+    private int rated;
+    private int accepted;
+    private int rejected;
+    /**
+     * The number of distinct movies whose ratings were rated or accepted.
+     */
+    private int movies;
+    private long elapsedMillis;
+    private List<RatingBatchResult> results = new ArrayList<>();
+
+    public void add(RatingBatchResult result) {
+        results.add(result);
+        if (result.getStatus() == RatingBatchResult.Status.RATED) {
+            rated++;
+        } else if (result.getStatus() == RatingBatchResult.Status.ACCEPTED) {
+            accepted++;
+        } else {
+            rejected++;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package movierecommendation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one rating of a batch rating request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RatingBatchResult {
+
+    public enum Status {
+        /**
+         * Recorded and journaled, like a rating answered with 200.
+         */
+        RATED,
+        /**
+         * Queued or forwarded to the owning cluster member, like a rating answered with 202.
+         */
+        ACCEPTED,
+        INVALID,
+        NOT_FOUND,
+        /**
+         * Not accepted because the rating queue was full; the rating may be retried.
+         */
+        REJECTED
+    }
+
+    private int index;
+    private Status status;
+    private Long movieId;
+    private String message;
+}
@@ -0,0 +1,40 @@
+package movierecommendation.model;
+
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+import movierecommendation.util.MovieCursor;
+
+import java.util.List;
+
+/**
+ * Parameters of a recommendation request.
+ */
+@Value
+@Builder
+public class RecommendationQuery {
+    /**
+     * Genres for filtering (optional, case-insensitive). Each entry may list several genres
+     * separated by {@code |} or {@code ,}.
+     */
+    @Singular(ignoreNullCollections = true)
+    List<String> genres;
+    /**
+     * Whether movies must have any or all of the genres.
+     */
+    @Builder.Default
+    GenreMatch match = GenreMatch.ANY;
+    /**
+     * Maximum number of movies to return (optional).
+     */
+    Integer limit;
+    /**
+     * Cursor of the last movie of the previous page (optional).
+     */
+    MovieCursor after;
+    /**
+     * Ordering of the recommendations.
+     */
+    @Builder.Default
+    MovieSort sort = MovieSort.RATING;
+}
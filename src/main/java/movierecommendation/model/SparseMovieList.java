@@ -0,0 +1,60 @@
+package movierecommendation.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A list of movies serialized with only the requested {@link MovieField}s.
+ * <p>
+ * The fields are written straight to the generator rather than through the bean serializer of
+ * {@link Movie}, so unrequested fields are neither serialized nor sent. The movies themselves are
+ * still read from the catalog with every field. Serialization goes through whichever generator the
+ * response was negotiated for, JSON or binary.
+ */
+@JsonSerialize(using = SparseMovieList.Serializer.class)
+public final class SparseMovieList {
+
+    private final List<Movie> movies;
+    private final Set<MovieField> fields;
+
+    public SparseMovieList(List<Movie> movies, Set<MovieField> fields) {
+        this.movies = movies;
+        this.fields = fields;
+    }
+
+    public List<Movie> getMovies() {
+        return movies;
+    }
+
+    public Set<MovieField> getFields() {
+        return fields;
+    }
+
+    public static final class Serializer extends StdSerializer<SparseMovieList> {
+        private static final long serialVersionUID = 1L;
+
+        public Serializer() {
+            super(SparseMovieList.class);
+        }
+
+        @Override
+        public void serialize(SparseMovieList list, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeStartArray(list.movies, list.movies.size());
+            for (Movie movie : list.movies) {
+                generator.writeStartObject(movie);
+                for (MovieField field : list.fields) {
+                    field.writeField(generator, movie);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+}
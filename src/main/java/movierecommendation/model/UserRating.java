@@ -0,0 +1,63 @@
+package movierecommendation.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+/**
+ * The latest rating a user gave to a movie. A user re-rating a movie replaces the previous rating.
+ * <p>
+ * The key is assigned by the caller, so the entity tracks whether it has been persisted itself;
+ * this lets new ratings be inserted without a select per row.
+ */
+@ToString
+@Entity
+@IdClass(UserRatingId.class)
+@Table(indexes = @Index(name = "idx_user_rating_movie", columnList = "movieId"))
+@Builder
+@Getter @Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserRating implements Persistable<UserRatingId> {
+    @Id
+    private Long userId;
+    @Id
+    private Long movieId;
+    private double rating;
+
+    @Transient
+    @JsonIgnore
+    @Builder.Default
+    private boolean isNew = true;
+
+    @Override
+    @JsonIgnore
+    public UserRatingId getId() {
+        return new UserRatingId(userId, movieId);
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+}
@@ -0,0 +1,20 @@
+package movierecommendation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Composite key of a {@link UserRating}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserRatingId implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Long userId;
+    private Long movieId;
+}
@@ -0,0 +1,7 @@
+package movierecommendation.repository;
+
+import movierecommendation.model.Genre;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface GenreRepository extends JpaRepository<Genre, Integer> {
+}
@@ -1,13 +1,62 @@
 package movierecommendation.repository;
 
 import movierecommendation.model.Movie;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface MovieRepository extends JpaRepository<Movie, Long> {
     boolean existsByTitleAndReleaseYear(String title, int releaseYear);
 
-    List<Movie> findByGenreIgnoreCase(String genre, Sort sort);
+    /**
+     * Title and release year of every movie whose title is in the given set, as [title, releaseYear] rows.
+     */
+    @Query("select m.title, m.releaseYear from Movie m where m.title in :titles")
+    List<Object[]> findTitleAndReleaseYearByTitleIn(@Param("titles") Collection<String> titles);
+
+    /**
+     * The ids among the given ones that belong to a movie.
+     */
+    @Query("select m.id from Movie m where m.id in :ids")
+    List<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Highest movie id from {@code from} inclusive to {@code to} exclusive, or null if there is none.
+     */
+    @Query("select max(m.id) from Movie m where m.id >= :from and m.id < :to")
+    Long findMaxIdInRange(@Param("from") long from, @Param("to") long to);
+
+    /**
+     * Every distinct genre bitset of the movies, to find the genre bits in use.
+     */
+    @Query("select distinct m.genreBits from Movie m")
+    List<Long> findDistinctGenreBits();
+
+    /**
+     * Mean of all ratings across the catalog, or null if no movie has been rated.
+     */
+    @Query("select sum(m.averageRating * m.numberOfRatings) / sum(m.numberOfRatings) from Movie m where m.numberOfRatings > 0")
+    Double findCatalogMeanRating();
+
+    /**
+     * Recomputes the ranking score of every movie for a new prior.
+     */
+    @Modifying
+    @Query("update Movie m set m.rankingScore = (:weight * :prior + m.averageRating * m.numberOfRatings) / (:weight + m.numberOfRatings * 1.0)")
+    int updateRankingScores(@Param("prior") double prior, @Param("weight") double weight);
+
+    /**
+     * Keyset page of movies with the given genre bitset and a genre string, ordered by id.
+     */
+    List<Movie> findByGenreBitsAndGenreIsNotNullAndIdGreaterThanOrderByIdAsc(long genreBits, Long id, Pageable pageable);
+
+    /**
+     * Keyset page of movies ordered by id.
+     */
+    List<Movie> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
 }
\ No newline at end of file
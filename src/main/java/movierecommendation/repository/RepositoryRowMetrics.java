@@ -0,0 +1,100 @@
+package movierecommendation.repository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.BaseStream;
+
+/**
+ * Records the number of rows returned by every repository query method as {@code repository.rows},
+ * tagged by repository and method.
+ * <p>
+ * Complements the per-method timers that Spring Boot records as {@code spring.data.repository.invocations}.
+ * Collections, slices and optionals count their elements, single entities count one and streams are
+ * not counted since they are consumed after the call returns. Methods returning nothing, a boolean
+ * or a number are not recorded.
+ */
+@Component
+public class RepositoryRowMetrics implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Autowired
+    public RepositoryRowMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport) {
+            RowCountInterceptor interceptor = new RowCountInterceptor(meterRegistry);
+            ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory ->
+                    factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) -> {
+                        interceptor.repository = repositoryInformation.getRepositoryInterface().getSimpleName();
+                        proxyFactory.addAdvice(interceptor);
+                    }));
+        }
+        return bean;
+    }
+
+    /**
+     * Returns the number of rows in a repository method result, or -1 if it is not a row count.
+     */
+    static long rows(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        if (result instanceof Iterable || result instanceof BaseStream
+                || result instanceof Boolean || result instanceof Number) {
+            return -1;
+        }
+        return 1;
+    }
+
+    private static final class RowCountInterceptor implements MethodInterceptor {
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+        private final Map<Method, DistributionSummary> summaries = new ConcurrentHashMap<>();
+        private String repository;
+
+        RowCountInterceptor(ObjectProvider<MeterRegistry> meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Object result = invocation.proceed();
+            long rows = invocation.getMethod().getReturnType() == void.class ? -1 : rows(result);
+            if (rows >= 0) {
+                summaries.computeIfAbsent(invocation.getMethod(), method -> DistributionSummary
+                        .builder("repository.rows")
+                        .baseUnit("rows")
+                        .tag("repository", repository)
+                        .tag("method", method.getName())
+                        .register(meterRegistry.getObject())).record(rows);
+            }
+            return result;
+        }
+    }
+}
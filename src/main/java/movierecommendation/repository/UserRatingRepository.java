@@ -0,0 +1,40 @@
+package movierecommendation.repository;
+
+import movierecommendation.model.UserRating;
+import movierecommendation.model.UserRatingId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+public interface UserRatingRepository extends JpaRepository<UserRating, UserRatingId> {
+
+    /**
+     * Streams every rating as [userId, movieId, rating] rows. The rows are not managed entities, so
+     * the persistence context does not grow while streaming. Must be consumed inside a transaction
+     * and closed afterwards.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select r.userId, r.movieId, r.rating from UserRating r")
+    Stream<Object[]> streamAllRatings();
+
+    /**
+     * Every user rating of the given movies.
+     */
+    List<UserRating> findByMovieIdIn(Collection<Long> movieIds);
+
+    /**
+     * Deletes every user rating of the given movies.
+     */
+    @Modifying
+    @Query("delete from UserRating r where r.movieId in :movieIds")
+    int deleteByMovieIdIn(@Param("movieIds") Collection<Long> movieIds);
+}
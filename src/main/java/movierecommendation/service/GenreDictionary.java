@@ -0,0 +1,255 @@
+package movierecommendation.service;
+
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.exception.TooManyGenresException;
+import movierecommendation.model.Genre;
+import movierecommendation.model.GenreFilter;
+import movierecommendation.model.GenreMatch;
+import movierecommendation.repository.GenreRepository;
+import movierecommendation.repository.MovieRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Dictionary encoding of genre names to the bits of {@link movierecommendation.model.Movie#getGenreBits()}.
+ * <p>
+ * Genres are matched case-insensitively and get the lowest free bit the first time a movie uses
+ * them. New entries are saved in their own transaction, so a bit stays assigned even if the
+ * transaction of the movie that introduced it rolls back. At most 64 genres are supported.
+ * <p>
+ * Once the dictionary is full, a new genre takes over the bit of an entry that no movie in the
+ * database uses and that was not encoded for {@code movies.genres.reclaim-after-ms}, which leaves
+ * the transactions of movies encoded since time to commit. Genres of deleted movies and of failed
+ * inserts thus do not use up the dictionary for good.
+ */
+@Slf4j
+@Component
+public class GenreDictionary {
+
+    public static final int MAX_GENRES = Long.SIZE;
+
+    private static final Pattern SEPARATOR = Pattern.compile("[|,]");
+
+    private final GenreRepository genreRepository;
+    private final MovieRepository movieRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long reclaimAfterNanos;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicLongArray lastEncoded = new AtomicLongArray(MAX_GENRES);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long assigned;
+    private long nextReclaim;
+
+    @Autowired
+    public GenreDictionary(GenreRepository genreRepository, MovieRepository movieRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${movies.genres.reclaim-after-ms:60000}") long reclaimAfterMs) {
+        this.genreRepository = genreRepository;
+        this.movieRepository = movieRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.reclaimAfterNanos = TimeUnit.MILLISECONDS.toNanos(reclaimAfterMs);
+        long longAgo = System.nanoTime() - reclaimAfterNanos;
+        for (int id = 0; id < MAX_GENRES; id++) {
+            lastEncoded.set(id, longAgo);
+        }
+        this.nextReclaim = longAgo;
+    }
+
+    @PostConstruct
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            for (Genre genre : genreRepository.findAll()) {
+                ids.put(genre.getName(), genre.getId());
+                assigned |= 1L << genre.getId();
+            }
+            log.info("Loaded {} genres", ids.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the genre bitset of a movie, adding genres that are not in the dictionary yet.
+     *
+     * @param genres One or more genres separated by {@code |} or {@code ,} (optional).
+     * @throws TooManyGenresException if a genre is not in the dictionary and the dictionary is full.
+     */
+    public long encode(String genres) {
+        List<String> missing = new ArrayList<>(0);
+        long bits = encodeKnown(split(genres), missing);
+        for (String name : missing) {
+            bits |= 1L << add(name);
+        }
+        return bits;
+    }
+
+    /**
+     * Like {@link #encode(String)}, but leaves out genres that do not fit into a full dictionary
+     * instead of failing. For movies that are already part of the catalog, such as on recovery or
+     * handoff, where losing a genre bit is better than losing the movie.
+     */
+    public long encodeLenient(String genres) {
+        List<String> missing = new ArrayList<>(0);
+        long bits = encodeKnown(split(genres), missing);
+        for (String name : missing) {
+            try {
+                bits |= 1L << add(name);
+            } catch (TooManyGenresException e) {
+                log.warn("Not encoding genre {}: {}", name, e.getMessage());
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Returns the filter for the given genres, without adding unknown ones to the dictionary.
+     *
+     * @param genres The requested genres; each entry may list several separated by {@code |} or {@code ,}.
+     * @param match  Whether movies must have any or all of the genres.
+     * @return {@link GenreFilter#UNFILTERED} if no genre is given, {@link GenreFilter#NOTHING} if no
+     * movie can match.
+     */
+    public GenreFilter filter(Collection<String> genres, GenreMatch match) {
+        long mask = 0;
+        boolean unknown = false;
+        for (String entry : genres) {
+            for (String name : split(entry)) {
+                Integer id = ids.get(name);
+                if (id == null) {
+                    unknown = true;
+                } else {
+                    mask |= 1L << id;
+                }
+            }
+        }
+        if (mask == 0) {
+            return unknown ? GenreFilter.NOTHING : GenreFilter.UNFILTERED;
+        }
+        return unknown && match == GenreMatch.ALL ? GenreFilter.NOTHING : GenreFilter.of(mask, match);
+    }
+
+    /**
+     * Splits a genre string into lowercase genre names, without blanks or duplicates.
+     */
+    public static List<String> split(String genres) {
+        List<String> names = new ArrayList<>(2);
+        if (genres != null) {
+            for (String part : SEPARATOR.split(genres)) {
+                String name = part.trim().toLowerCase(Locale.ROOT);
+                if (!name.isEmpty() && !names.contains(name)) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the bits of the genres in the dictionary, marking them as just encoded so they are not
+     * reclaimed under a movie that is about to be saved, and collects the others.
+     */
+    private long encodeKnown(List<String> names, List<String> missing) {
+        long bits = 0;
+        long now = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            for (String name : names) {
+                Integer id = ids.get(name);
+                if (id == null) {
+                    missing.add(name);
+                } else {
+                    lastEncoded.set(id, now);
+                    bits |= 1L << id;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return bits;
+    }
+
+    private int add(String name) {
+        lock.writeLock().lock();
+        try {
+            long now = System.nanoTime();
+            Integer existing = ids.get(name);
+            if (existing != null) {
+                lastEncoded.set(existing, now);
+                return existing;
+            }
+            if (assigned == -1L) {
+                reclaim(now);
+            }
+            if (assigned == -1L) {
+                throw new TooManyGenresException("Too many genres. At most " + MAX_GENRES + " genres are supported.");
+            }
+            int id = Long.numberOfTrailingZeros(~assigned);
+            transactionTemplate.executeWithoutResult(status -> genreRepository.save(new Genre(id, name)));
+            ids.put(name, id);
+            assigned |= 1L << id;
+            lastEncoded.set(id, now);
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Frees the entries whose bit no movie in the database uses and that were not encoded recently.
+     * As this scans the movies, a scan that frees nothing is not repeated before an entry can have
+     * become reclaimable. Must hold the write lock.
+     */
+    private void reclaim(long now) {
+        if (now - nextReclaim < 0) {
+            return;
+        }
+        long used = 0;
+        for (Long bits : movieRepository.findDistinctGenreBits()) {
+            used |= bits;
+        }
+        long unused = ~used;
+        long reclaimable = 0;
+        long earliest = now + reclaimAfterNanos;
+        for (long bits = unused; bits != 0; bits &= bits - 1) {
+            int id = Long.numberOfTrailingZeros(bits);
+            long reclaimableAt = lastEncoded.get(id) + reclaimAfterNanos;
+            if (now - reclaimableAt >= 0) {
+                reclaimable |= 1L << id;
+            } else if (reclaimableAt - earliest < 0) {
+                earliest = reclaimableAt;
+            }
+        }
+        if (reclaimable == 0) {
+            nextReclaim = earliest;
+            return;
+        }
+        long freedBits = reclaimable;
+        List<Integer> freed = new ArrayList<>(Long.bitCount(freedBits));
+        for (long bits = freedBits; bits != 0; bits &= bits - 1) {
+            freed.add(Long.numberOfTrailingZeros(bits));
+        }
+        transactionTemplate.executeWithoutResult(status -> genreRepository.deleteAllById(freed));
+        ids.values().removeIf(id -> (freedBits & 1L << id) != 0);
+        assigned &= ~freedBits;
+        log.info("Reclaimed {} genres that no movie uses", freed.size());
+    }
+}
@@ -0,0 +1,73 @@
+package movierecommendation.service;
+
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.model.Movie;
+import movierecommendation.repository.MovieRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Encodes the genre strings of movies saved before genres were dictionary encoded.
+ * <p>
+ * Runs on startup before the in-memory indexes are built, walking the movies without a genre
+ * bitset in ID order, one transaction per page.
+ */
+@Slf4j
+@Component
+public class GenreMigration {
+
+    static final int PAGE_SIZE = 500;
+
+    private final MovieRepository movieRepository;
+    private final GenreDictionary genreDictionary;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public GenreMigration(MovieRepository movieRepository, GenreDictionary genreDictionary,
+                          PlatformTransactionManager transactionManager) {
+        this.movieRepository = movieRepository;
+        this.genreDictionary = genreDictionary;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Migrates every movie that has a genre but no genre bitset.
+     *
+     * @return The number of migrated movies.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public int migrate() {
+        int migrated = 0;
+        long afterId = Long.MIN_VALUE;
+        while (true) {
+            long after = afterId;
+            List<Movie> page = transactionTemplate.execute(status -> {
+                List<Movie> movies = movieRepository.findByGenreBitsAndGenreIsNotNullAndIdGreaterThanOrderByIdAsc(
+                        0L, after, PageRequest.of(0, PAGE_SIZE));
+                for (Movie movie : movies) {
+                    movie.setGenreBits(genreDictionary.encodeLenient(movie.getGenre()));
+                }
+                return movieRepository.saveAll(movies);
+            });
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+            migrated += page.size();
+            afterId = page.get(page.size() - 1).getId();
+        }
+        if (migrated > 0) {
+            log.info("Encoded the genres of {} movies", migrated);
+        }
+        return migrated;
+    }
+}
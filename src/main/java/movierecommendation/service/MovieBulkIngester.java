@@ -0,0 +1,167 @@
+package movierecommendation.service;
+
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.exception.TooManyGenresException;
+import movierecommendation.model.Movie;
+import movierecommendation.model.MovieIngestReport;
+import movierecommendation.model.MovieIngestResult;
+import movierecommendation.model.MovieValidation;
+import movierecommendation.model.MovieViolation;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.util.MovieValidator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inserts many movies at once.
+ * <p>
+ * Movies are processed in chunks. Each chunk is validated, deduplicated within itself and against
+ * the repository with a single set-based query, and inserted in one transaction so that Hibernate
+ * can group the inserts into JDBC batches.
+ */
+@Slf4j
+@Component
+public class MovieBulkIngester {
+
+    private static final MovieValidation NULL_MOVIE = MovieValidation.of(MovieViolation.MISSING_TITLE)
+            .with(MovieViolation.MISSING_GENRE).with(MovieViolation.MISSING_DIRECTOR);
+    private static final MovieValidation DUPLICATE = MovieValidation.of(MovieViolation.DUPLICATE);
+    private static final MovieValidation TOO_MANY_GENRES = MovieValidation.of(MovieViolation.TOO_MANY_GENRES);
+
+    private final MovieRepository movieRepository;
+    private final MovieValidator movieValidator;
+    private final MovieChangeNotifier movieChangeNotifier;
+    private final RankingScorer rankingScorer;
+    private final GenreDictionary genreDictionary;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    @Autowired
+    public MovieBulkIngester(MovieRepository movieRepository,
+                             MovieValidator movieValidator,
+                             MovieChangeNotifier movieChangeNotifier,
+                             RankingScorer rankingScorer,
+                             GenreDictionary genreDictionary,
+                             EntityManager entityManager,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${movies.ingest.chunk-size:500}") int chunkSize) {
+        this.movieRepository = movieRepository;
+        this.movieValidator = movieValidator;
+        this.movieChangeNotifier = movieChangeNotifier;
+        this.rankingScorer = rankingScorer;
+        this.genreDictionary = genreDictionary;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Ingests the given movies chunk by chunk. Only one chunk is held in memory at a time, so the
+     * iterator may be backed by a stream of any length; chunks already ingested stay committed if
+     * the iterator fails.
+     *
+     * @param movies The movies to add.
+     * @return A report with one result per submitted movie.
+     */
+    public MovieIngestReport ingest(Iterator<Movie> movies) {
+        MovieIngestReport report = new MovieIngestReport();
+        List<Movie> chunk = new ArrayList<>(chunkSize);
+        while (movies.hasNext()) {
+            chunk.add(movies.next());
+            if (chunk.size() == chunkSize) {
+                report.append(ingestChunk(chunk));
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            report.append(ingestChunk(chunk));
+        }
+        log.info("Ingested {} movies ({} created, {} rejected) in {} ms",
+                report.getResults().size(), report.getCreated(), report.getRejected(), report.getElapsedMillis());
+        return report;
+    }
+
+    private MovieIngestReport ingestChunk(List<Movie> chunk) {
+        long start = System.nanoTime();
+        MovieIngestResult[] results = new MovieIngestResult[chunk.size()];
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+        Set<String> titles = new HashSet<>();
+
+        for (int i = 0; i < chunk.size(); i++) {
+            Movie movie = chunk.get(i);
+            MovieValidation validation = movie == null ? NULL_MOVIE : movieValidator.validate(movie);
+            if (!validation.isValid()) {
+                results[i] = MovieIngestResult.rejected(i, MovieIngestResult.Status.INVALID, validation);
+            } else if (candidates.putIfAbsent(key(movie.getTitle(), movie.getReleaseYear()), i) != null) {
+                results[i] = new MovieIngestResult(i, MovieIngestResult.Status.DUPLICATE, null,
+                        "Duplicate movie in request", DUPLICATE.getViolations());
+            } else {
+                titles.add(movie.getTitle());
+            }
+        }
+
+        List<Movie> saved = transactionTemplate.execute(status -> {
+            if (!titles.isEmpty()) {
+                for (Object[] existing : movieRepository.findTitleAndReleaseYearByTitleIn(titles)) {
+                    Integer index = candidates.remove(key((String) existing[0], (Integer) existing[1]));
+                    if (index != null) {
+                        results[index] = MovieIngestResult.rejected(index, MovieIngestResult.Status.DUPLICATE,
+                                DUPLICATE);
+                    }
+                }
+            }
+            List<Movie> toInsert = new ArrayList<>(candidates.size());
+            for (Iterator<Integer> indexes = candidates.values().iterator(); indexes.hasNext(); ) {
+                int index = indexes.next();
+                Movie movie = chunk.get(index);
+                try {
+                    movie.setGenreBits(genreDictionary.encode(movie.getGenre()));
+                } catch (TooManyGenresException e) {
+                    results[index] = MovieIngestResult.rejected(index, MovieIngestResult.Status.INVALID,
+                            TOO_MANY_GENRES);
+                    indexes.remove();
+                    continue;
+                }
+                movie.setId(null);
+                rankingScorer.applyScore(movie);
+                toInsert.add(movie);
+            }
+            List<Movie> inserted = movieRepository.saveAll(toInsert);
+            entityManager.flush();
+            entityManager.clear();
+            return inserted;
+        });
+
+        for (int index : candidates.values()) {
+            results[index] = new MovieIngestResult(index, MovieIngestResult.Status.CREATED,
+                    chunk.get(index).getId(), "Movie added successfully");
+        }
+        if (saved != null) {
+            movieChangeNotifier.moviesAdded(saved);
+        }
+
+        MovieIngestReport report = new MovieIngestReport();
+        for (MovieIngestResult result : results) {
+            report.add(result);
+        }
+        report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    private static String key(String title, int releaseYear) {
+        return releaseYear + "\u0000" + title;
+    }
+}
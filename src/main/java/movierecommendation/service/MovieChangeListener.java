@@ -0,0 +1,63 @@
+package movierecommendation.service;
+
+import movierecommendation.model.Movie;
+import movierecommendation.model.UserRating;
+
+import java.util.List;
+
+/**
+ * Receives changes to the movie catalog after they have been committed to the repository.
+ * Implementations keep in-memory read structures up to date and must not call back into
+ * {@link MovieService}.
+ */
+public interface MovieChangeListener {
+
+    /**
+     * Called after a new movie has been saved.
+     *
+     * @param movie The saved movie, including its generated ID.
+     */
+    default void onMovieAdded(Movie movie) {
+    }
+
+    /**
+     * Called after many new movies have been saved at once.
+     *
+     * @param movies The saved movies, including their generated IDs.
+     */
+    default void onMoviesAdded(List<Movie> movies) {
+        movies.forEach(this::onMovieAdded);
+    }
+
+    /**
+     * Called after the rating aggregates of existing movies have been updated.
+     *
+     * @param movies The updated movies.
+     */
+    default void onMoviesUpdated(List<Movie> movies) {
+    }
+
+    /**
+     * Called after movies have been deleted from the repository, for example because they were
+     * handed off to another cluster member.
+     *
+     * @param movieIds The IDs of the deleted movies.
+     */
+    default void onMoviesRemoved(List<Long> movieIds) {
+    }
+
+    /**
+     * Called after per-user ratings have been saved. Each user and movie appears at most once.
+     *
+     * @param ratings The saved ratings, replacing any earlier rating of the same user and movie.
+     */
+    default void onUserRatingsUpdated(List<UserRating> ratings) {
+    }
+
+    /**
+     * Called after many movies have been changed at once in the repository, for example by a
+     * set-based update. Derived state should be reloaded from the repository.
+     */
+    default void onCatalogReloaded() {
+    }
+}
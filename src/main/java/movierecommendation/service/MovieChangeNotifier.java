@@ -0,0 +1,312 @@
+package movierecommendation.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.model.Movie;
+import movierecommendation.model.UserRating;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Dispatches catalog changes to every registered {@link MovieChangeListener}.
+ * A failing listener is logged and does not prevent the others from being notified.
+ * <p>
+ * Listeners on the write path, such as the journal, are notified on the calling thread before the
+ * change is acknowledged. {@link MovieProjection}s are notified by a single projector thread, in
+ * publication order, through a queue of {@code movies.projection.queue-capacity} events; when the
+ * queue is full, publishing blocks until the projector caught up, which bounds how far reads can lag
+ * behind writes. With {@code movies.projection.async=false} projections are notified on the calling
+ * thread as well.
+ * <p>
+ * The time from publishing an event to projecting it is exposed as {@code projection.lag}, tagged by
+ * event, the events waiting as {@code projection.pending} and the age of the oldest of them as
+ * {@code projection.staleness}.
+ */
+@Slf4j
+@Component
+public class MovieChangeNotifier {
+
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private final List<MovieChangeListener> listeners = new ArrayList<>();
+    private final List<MovieProjection> projections = new ArrayList<>();
+    private final boolean async;
+    private final BlockingQueue<ProjectionEvent> events;
+    private final Timer movieAddedLag;
+    private final Timer moviesAddedLag;
+    private final Timer moviesUpdatedLag;
+    private final Timer moviesRemovedLag;
+    private final Timer userRatingsUpdatedLag;
+    private final Timer catalogReloadedLag;
+    private final Timer rebuildLag;
+    private volatile boolean running;
+    private Thread projector;
+
+    @Autowired
+    public MovieChangeNotifier(ObjectProvider<MovieChangeListener> listeners,
+                               @Value("${movies.projection.async:true}") boolean async,
+                               @Value("${movies.projection.queue-capacity:10000}") int capacity,
+                               MeterRegistry meterRegistry) {
+        listeners.orderedStream().forEach(listener -> {
+            if (listener instanceof MovieProjection) {
+                projections.add((MovieProjection) listener);
+            } else {
+                this.listeners.add(listener);
+            }
+        });
+        this.async = async;
+        this.events = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.movieAddedLag = lag(meterRegistry, "movieAdded");
+        this.moviesAddedLag = lag(meterRegistry, "moviesAdded");
+        this.moviesUpdatedLag = lag(meterRegistry, "moviesUpdated");
+        this.moviesRemovedLag = lag(meterRegistry, "moviesRemoved");
+        this.userRatingsUpdatedLag = lag(meterRegistry, "userRatingsUpdated");
+        this.catalogReloadedLag = lag(meterRegistry, "catalogReloaded");
+        this.rebuildLag = lag(meterRegistry, "rebuild");
+        Gauge.builder("projection.pending", events, BlockingQueue::size).register(meterRegistry);
+        TimeGauge.builder("projection.staleness", this, TimeUnit.NANOSECONDS, MovieChangeNotifier::staleness)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!async) {
+            return;
+        }
+        running = true;
+        projector = new Thread(this::run, "movie-projector");
+        projector.setDaemon(true);
+        projector.start();
+    }
+
+    public void movieAdded(Movie movie) {
+        for (MovieChangeListener listener : listeners) {
+            try {
+                listener.onMovieAdded(movie);
+            } catch (RuntimeException e) {
+                log.warn("Listener {} failed on added movie {}", listener.getClass().getSimpleName(), movie.getId(), e);
+            }
+        }
+        project(movieAddedLag, "movieAdded", projection -> projection.onMovieAdded(movie));
+    }
+
+    public void moviesAdded(List<Movie> movies) {
+        if (movies.isEmpty()) {
+            return;
+        }
+        for (MovieChangeListener listener : listeners) {
+            try {
+                listener.onMoviesAdded(movies);
+            } catch (RuntimeException e) {
+                log.warn("Listener {} failed on {} added movies", listener.getClass().getSimpleName(), movies.size(), e);
+            }
+        }
+        project(moviesAddedLag, "moviesAdded", projection -> projection.onMoviesAdded(movies));
+    }
+
+    public void moviesUpdated(List<Movie> movies) {
+        if (movies.isEmpty()) {
+            return;
+        }
+        for (MovieChangeListener listener : listeners) {
+            try {
+                listener.onMoviesUpdated(movies);
+            } catch (RuntimeException e) {
+                log.warn("Listener {} failed on {} updated movies", listener.getClass().getSimpleName(), movies.size(), e);
+            }
+        }
+        project(moviesUpdatedLag, "moviesUpdated", projection -> projection.onMoviesUpdated(movies));
+    }
+
+    public void moviesRemoved(List<Long> movieIds) {
+        if (movieIds.isEmpty()) {
+            return;
+        }
+        for (MovieChangeListener listener : listeners) {
+            try {
+                listener.onMoviesRemoved(movieIds);
+            } catch (RuntimeException e) {
+                log.warn("Listener {} failed on {} removed movies", listener.getClass().getSimpleName(), movieIds.size(), e);
+            }
+        }
+        project(moviesRemovedLag, "moviesRemoved", projection -> projection.onMoviesRemoved(movieIds));
+    }
+
+    public void userRatingsUpdated(List<UserRating> ratings) {
+        if (ratings.isEmpty()) {
+            return;
+        }
+        for (MovieChangeListener listener : listeners) {
+            try {
+                listener.onUserRatingsUpdated(ratings);
+            } catch (RuntimeException e) {
+                log.warn("Listener {} failed on {} user ratings", listener.getClass().getSimpleName(), ratings.size(), e);
+            }
+        }
+        project(userRatingsUpdatedLag, "userRatingsUpdated", projection -> projection.onUserRatingsUpdated(ratings));
+    }
+
+    public void catalogReloaded() {
+        for (MovieChangeListener listener : listeners) {
+            try {
+                listener.onCatalogReloaded();
+            } catch (RuntimeException e) {
+                log.warn("Listener {} failed on catalog reload", listener.getClass().getSimpleName(), e);
+            }
+        }
+        project(catalogReloadedLag, "catalogReloaded", MovieChangeListener::onCatalogReloaded);
+    }
+
+    /**
+     * Rebuilds every projection from the repository, after the changes published before.
+     *
+     * @return false if the projections were not rebuilt within the timeout.
+     */
+    public boolean rebuildProjections(long timeout, TimeUnit unit) throws InterruptedException {
+        project(rebuildLag, "rebuild", MovieProjection::onRebuild);
+        return awaitProjections(timeout, unit);
+    }
+
+    /**
+     * Waits until the changes published so far have been projected.
+     *
+     * @return false if they were not projected within the timeout.
+     */
+    public boolean awaitProjections(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!running) {
+            return true;
+        }
+        CountDownLatch projected = new CountDownLatch(1);
+        enqueue(new ProjectionEvent(null, "barrier", projection -> {
+        }, projected));
+        return projected.await(timeout, unit);
+    }
+
+    /**
+     * @return true if projections are updated asynchronously.
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * @return The number of events waiting to be projected.
+     */
+    public int pending() {
+        return events.size();
+    }
+
+    /**
+     * @return The time the oldest event waiting to be projected has been waiting, in nanoseconds.
+     */
+    public long staleness() {
+        ProjectionEvent oldest = events.peek();
+        return oldest == null ? 0 : Math.max(0, System.nanoTime() - oldest.publishedNanos);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (projector != null) {
+            running = false;
+            projector.join();
+        }
+        int projected = 0;
+        for (ProjectionEvent event; (event = events.poll()) != null; projected++) {
+            apply(event);
+        }
+        if (projected > 0) {
+            log.info("Projected {} pending events before shutdown", projected);
+        }
+    }
+
+    private void project(Timer lag, String name, Consumer<MovieProjection> change) {
+        ProjectionEvent event = new ProjectionEvent(lag, name, change, null);
+        if (!running) {
+            apply(event);
+            return;
+        }
+        enqueue(event);
+    }
+
+    private void enqueue(ProjectionEvent event) {
+        try {
+            while (!events.offer(event, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    apply(event);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while publishing {}, projecting it on the calling thread", event.name);
+            apply(event);
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                ProjectionEvent event = events.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    apply(event);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void apply(ProjectionEvent event) {
+        for (MovieProjection projection : projections) {
+            try {
+                event.change.accept(projection);
+            } catch (RuntimeException e) {
+                log.warn("Projection {} failed on {}", projection.getClass().getSimpleName(), event.name, e);
+            }
+        }
+        if (event.lag != null) {
+            event.lag.record(System.nanoTime() - event.publishedNanos, TimeUnit.NANOSECONDS);
+        }
+        if (event.projected != null) {
+            event.projected.countDown();
+        }
+    }
+
+    private static Timer lag(MeterRegistry meterRegistry, String event) {
+        return Timer.builder("projection.lag").tag("event", event).register(meterRegistry);
+    }
+
+    /**
+     * A change waiting to be projected, with the time it was published.
+     */
+    private static final class ProjectionEvent {
+        private final Timer lag;
+        private final String name;
+        private final Consumer<MovieProjection> change;
+        private final CountDownLatch projected;
+        private final long publishedNanos = System.nanoTime();
+
+        ProjectionEvent(Timer lag, String name, Consumer<MovieProjection> change, CountDownLatch projected) {
+            this.lag = lag;
+            this.name = name;
+            this.change = change;
+            this.projected = projected;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package movierecommendation.service;
+
+/**
+ * A {@link MovieChangeListener} maintaining an in-memory read model that serves the read endpoints.
+ * <p>
+ * Projections are updated from the changes committed to the repository, in the order they were
+ * committed, by the projector thread of the {@link MovieChangeNotifier}. With
+ * {@code movies.projection.async=true} this happens after the change was acknowledged, so reads may
+ * lag behind writes by the changes still waiting to be projected.
+ */
+public interface MovieProjection extends MovieChangeListener {
+
+    /**
+     * Called when the projections are rebuilt on request. Derived state should be reloaded from
+     * the repository.
+     */
+    default void onRebuild() {
+        onCatalogReloaded();
+    }
+}
@@ -1,9 +1,16 @@
 package movierecommendation.service;
 
 import movierecommendation.model.Movie;
+import movierecommendation.model.MovieIngestReport;
+import movierecommendation.model.RatingBatchItem;
+import movierecommendation.model.RatingBatchReport;
+import movierecommendation.model.RecommendationQuery;
+import movierecommendation.util.MovieCursor;
 import org.springframework.http.ResponseEntity;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface MovieService {
     /**
@@ -14,6 +21,14 @@ public interface MovieService {
      */
     ResponseEntity<String> addMovie(Movie movie);
 
+    /**
+     * Adds many movies to the system using batched inserts.
+     *
+     * @param movies The movies to be added, consumed in chunks.
+     * @return Report with the outcome of every submitted movie.
+     */
+    MovieIngestReport addMovies(Iterator<Movie> movies);
+
     /**
      * Retrieves all movies in the system.
      *
@@ -21,20 +36,103 @@ public interface MovieService {
      */
     List<Movie> getAllMovies();
 
+    /**
+     * Retrieves one keyset page of movies ordered by ID.
+     *
+     * @param after The cursor of the last movie of the previous page (optional).
+     * @param limit The page size.
+     * @return List of at most limit movies.
+     */
+    List<Movie> getMovies(MovieCursor after, int limit);
+
+    /**
+     * Streams all movies ordered by ID to the given consumer, one page at a time, without copying the
+     * whole catalog at once.
+     *
+     * @param consumer Receives a detached copy of each movie.
+     */
+    void forEachMovie(Consumer<Movie> consumer);
+
     /**
      * Rates a movie with the given rating.
      *
      * @param movieId The ID of the movie to be rated.
+     * @param userId  The ID of the rating user (optional). A user's later rating of the same movie
+     *                replaces their earlier one.
      * @param rating  The rating value.
      * @return ResponseEntity with a status and message.
      */
-    ResponseEntity<String> rateMovie(Long movieId, double rating);
+    ResponseEntity<String> rateMovie(Long movieId, Long userId, double rating);
+
+    /**
+     * Rates many movies at once. Each rating is validated like a single rating, and the ratings are
+     * applied with one lookup of their movies and one transaction.
+     *
+     * @param ratings Between 1 and 1000 ratings.
+     * @return The outcome of every rating, in the order they were given.
+     */
+    RatingBatchReport rateMovies(List<RatingBatchItem> ratings);
+
     /**
      * Recommends movies by ratings and genre.
      *
-     * @param genre The genre for filtering (optional).
+     * @param query The genres for filtering and how to match them, the page size and cursor, and the ordering.
+     * @return List of recommended movies.
+     */
+    List<Movie> recommendMoviesByRatingsAndGenre(RecommendationQuery query);
+
+    /**
+     * Recommends movies to a user based on the movies similar to those they rated. Movies the user
+     * already rated are excluded; remaining places are filled by ranking score.
+     *
+     * @param userId The ID of the user.
+     * @param limit  The number of movies to return.
      * @return List of recommended movies.
      */
-    List<Movie> recommendMoviesByRatingsAndGenre(String genre);
+    List<Movie> recommendMoviesForUser(Long userId, int limit);
+
+    /**
+     * Finds the movies most similar to a movie by shared genre, shared director and release year.
+     *
+     * @param movieId The ID of the movie.
+     * @param limit   The number of movies to return.
+     * @return List of similar movies, most similar first, or null if the movie does not exist.
+     */
+    List<Movie> findSimilarMovies(Long movieId, int limit);
+
+    /**
+     * Searches movies by title, tolerating incomplete last words and typos.
+     *
+     * @param query The text to search for.
+     * @param limit The number of movies to return.
+     * @return List of matching movies, best match first and then by average rating.
+     */
+    List<Movie> searchMovies(String query, int limit);
+
+    /**
+     * Finds the movies rated most over a recent window, recent ratings weighing more.
+     *
+     * @param window The window, one of the configured {@code movies.trending.windows}.
+     * @param genres The genres to filter by (optional); a movie matches if it has any of them.
+     * @param limit  The number of movies to return.
+     * @return List of trending movies, most trending first.
+     */
+    List<Movie> getTrendingMovies(String window, List<String> genres, int limit);
+
+    /**
+     * Returns a strong ETag of the whole catalog, which changes whenever a movie is added or rated.
+     *
+     * @return The quoted ETag.
+     */
+    String getCatalogETag();
+
+    /**
+     * Returns a strong ETag of the recommendations for a query, which changes whenever a movie of
+     * one of its genres is added or rated.
+     *
+     * @param query The genres for filtering and how to match them.
+     * @return The quoted ETag.
+     */
+    String getRecommendationETag(RecommendationQuery query);
 
 }
@@ -1,30 +1,93 @@
 package movierecommendation.service;
 
 import lombok.extern.slf4j.Slf4j;
-import movierecommendation.exception.InvalidMovieDataException;
-import movierecommendation.exception.MovieAlreadyExistsException;
+import movierecommendation.cache.CatalogVersion;
+import movierecommendation.cache.MovieNearCache;
+import movierecommendation.cache.RecommendationCache;
+import movierecommendation.exception.TooManyGenresException;
+import movierecommendation.index.ItemSimilarityIndex;
+import movierecommendation.index.MovieRankingIndex;
+import movierecommendation.index.SimilarMovieIndex;
+import movierecommendation.index.TitleSearchIndex;
+import movierecommendation.index.TrendingIndex;
+import movierecommendation.model.GenreFilter;
+import movierecommendation.model.GenreMatch;
 import movierecommendation.model.Movie;
+import movierecommendation.model.MovieIngestReport;
+import movierecommendation.model.MovieSort;
+import movierecommendation.model.MovieValidation;
+import movierecommendation.model.MovieViolation;
+import movierecommendation.model.RatingBatchItem;
+import movierecommendation.model.RatingBatchReport;
+import movierecommendation.model.RatingBatchResult;
+import movierecommendation.model.RecommendationQuery;
 import movierecommendation.repository.MovieRepository;
+import movierecommendation.util.MovieCursor;
 import movierecommendation.util.MovieValidator;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 public class MovieServiceImpl implements MovieService{
 
+    static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BATCH_SIZE = 1000;
+
     private MovieRepository movieRepository;
     private MovieValidator movieValidator;
+    private RatingAggregator ratingAggregator;
+    private MovieRankingIndex movieRankingIndex;
+    private MovieChangeNotifier movieChangeNotifier;
+    private MovieBulkIngester movieBulkIngester;
+    private RecommendationCache recommendationCache;
+    private RankingScorer rankingScorer;
+    private ItemSimilarityIndex itemSimilarityIndex;
+    private SimilarMovieIndex similarMovieIndex;
+    private TitleSearchIndex titleSearchIndex;
+    private GenreDictionary genreDictionary;
+    private RatingQueue ratingQueue;
+    private CatalogVersion catalogVersion;
+    private TrendingIndex trendingIndex;
+    private MovieNearCache movieNearCache;
 
     @Autowired
-    public MovieServiceImpl(MovieRepository movieRepository, MovieValidator movieValidator) {
+    public MovieServiceImpl(MovieRepository movieRepository, MovieValidator movieValidator,
+                            RatingAggregator ratingAggregator, MovieRankingIndex movieRankingIndex,
+                            MovieChangeNotifier movieChangeNotifier, MovieBulkIngester movieBulkIngester,
+                            RecommendationCache recommendationCache, RankingScorer rankingScorer,
+                            ItemSimilarityIndex itemSimilarityIndex, SimilarMovieIndex similarMovieIndex,
+                            TitleSearchIndex titleSearchIndex, GenreDictionary genreDictionary,
+                            RatingQueue ratingQueue, CatalogVersion catalogVersion, TrendingIndex trendingIndex,
+                            MovieNearCache movieNearCache) {
         this.movieRepository = movieRepository;
         this.movieValidator = movieValidator;
+        this.ratingAggregator = ratingAggregator;
+        this.movieRankingIndex = movieRankingIndex;
+        this.movieChangeNotifier = movieChangeNotifier;
+        this.movieBulkIngester = movieBulkIngester;
+        this.recommendationCache = recommendationCache;
+        this.rankingScorer = rankingScorer;
+        this.itemSimilarityIndex = itemSimilarityIndex;
+        this.similarMovieIndex = similarMovieIndex;
+        this.titleSearchIndex = titleSearchIndex;
+        this.genreDictionary = genreDictionary;
+        this.ratingQueue = ratingQueue;
+        this.catalogVersion = catalogVersion;
+        this.trendingIndex = trendingIndex;
+        this.movieNearCache = movieNearCache;
     }
 
     /**
@@ -32,29 +95,39 @@ public class MovieServiceImpl implements MovieService{
      */
     @Override
     public ResponseEntity<String> addMovie(Movie movie) {
-        try {
-        if (!movieValidator.validateMovie(movie)) {
-            throw new InvalidMovieDataException("Missing mandatory fields: title, genre, and director are required");
+        MovieValidation validation = movieValidator.validate(movie);
+        if (validation.isValid()
+                && movieRepository.existsByTitleAndReleaseYear(movie.getTitle(), movie.getReleaseYear())) {
+            validation = MovieValidation.of(MovieViolation.DUPLICATE);
         }
-
-        if (movieRepository.existsByTitleAndReleaseYear(movie.getTitle(), movie.getReleaseYear())) {
-            throw new MovieAlreadyExistsException("Movie already exists");
+        if (validation.isValid()) {
+            try {
+                movie.setGenreBits(genreDictionary.encode(movie.getGenre()));
+            } catch (TooManyGenresException e) {
+                validation = MovieValidation.of(MovieViolation.TOO_MANY_GENRES);
+            }
+        }
+        if (!validation.isValid()) {
+            log.debug("Rejected {}: {}", movie, validation.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(validation.getMessage());
         }
 
+        rankingScorer.applyScore(movie);
         Movie savedMovie = movieRepository.save(movie);
         if (savedMovie != null) {
+            movieChangeNotifier.movieAdded(savedMovie);
             return ResponseEntity.status(HttpStatus.CREATED).body("Movie added successfully");
         } else {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to add movie");
         }
-        } catch (InvalidMovieDataException e) {
-            log.info("Missing mandatory fields: title, genre, and director are required for {} ", movie);
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
-        } catch (MovieAlreadyExistsException e) {
-            log.info("Movie already exists for {} ",movie);
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
-        }
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MovieIngestReport addMovies(Iterator<Movie> movies) {
+        return movieBulkIngester.ingest(movies);
     }
 
     /**
@@ -62,28 +135,45 @@ public class MovieServiceImpl implements MovieService{
      */
     @Override
     public List<Movie> getAllMovies() {
-        return movieRepository.findAll();
+        return movieRankingIndex.all();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public ResponseEntity<String> rateMovie(Long movieId, double rating) {
+    public List<Movie> getMovies(MovieCursor after, int limit) {
+        checkLimit(limit);
+        return movieRankingIndex.pageById(after == null ? Long.MIN_VALUE : after.getId(), limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEachMovie(Consumer<Movie> consumer) {
+        long afterId = Long.MIN_VALUE;
+        List<Movie> page;
+        while (!(page = movieRankingIndex.pageById(afterId, MAX_PAGE_SIZE)).isEmpty()) {
+            page.forEach(consumer);
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResponseEntity<String> rateMovie(Long movieId, Long userId, double rating) {
         if (rating < 1 || rating > 5) {
             log.info("Invalid rating value: {}", rating);
             return ResponseEntity.badRequest().body("Invalid rating value. Rating must be between 1 and 5.");
         }
-        Movie movie = movieRepository.findById(movieId).orElse(null);
-        if (movie != null) {
-            double currentTotalRating = movie.getAverageRating() * movie.getNumberOfRatings();
-            int newNumberOfRatings = movie.getNumberOfRatings() + 1;
-            double newAverageRating = (currentTotalRating + rating) / newNumberOfRatings;
-
-            movie.setAverageRating(newAverageRating);
-            movie.setNumberOfRatings(newNumberOfRatings);
-            movieRepository.save(movie);
-            log.info("Movie rated successfully for ID {}", movieId);
+        if (ratingQueue.isEnabled()) {
+            return queueRating(movieId, userId, rating);
+        }
+        if (ratingAggregator.record(movieId, userId, rating)) {
+            log.debug("Movie rated successfully for ID {}", movieId);
             return ResponseEntity.ok("Movie rated successfully");
         } else {
             log.info("Movie not found for ID {}", movieId);
@@ -95,12 +185,195 @@ public class MovieServiceImpl implements MovieService{
     /**
      * {@inheritDoc}
      */
-    public List<Movie> recommendMoviesByRatingsAndGenre(String genre) {
-        Sort sort = Sort.by(Sort.Direction.DESC, "averageRating");
-        if (genre != null) {
-            return movieRepository.findByGenreIgnoreCase(genre, sort);
+    @Override
+    public RatingBatchReport rateMovies(List<RatingBatchItem> ratings) {
+        if (ratings.isEmpty() || ratings.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Invalid batch. A batch must have between 1 and " + MAX_BATCH_SIZE + " ratings.");
+        }
+        long start = System.nanoTime();
+        List<RatingBatchItem> valid = new ArrayList<>(ratings.size());
+        for (RatingBatchItem rating : ratings) {
+            if (rating != null && rating.isValid()) {
+                valid.add(rating);
+            }
+        }
+        Set<Long> known;
+        if (ratingQueue.isEnabled()) {
+            Set<Long> movieIds = new HashSet<>();
+            for (RatingBatchItem rating : valid) {
+                movieIds.add(rating.getMovieId());
+            }
+            known = movieIds.isEmpty() ? Collections.emptySet() : movieNearCache.existing(movieIds);
         } else {
-            return movieRepository.findAll(sort);
+            known = valid.isEmpty() ? Collections.emptySet() : ratingAggregator.recordAll(valid);
+        }
+
+        RatingBatchReport report = new RatingBatchReport();
+        Set<Long> rated = new HashSet<>();
+        for (int i = 0; i < ratings.size(); i++) {
+            RatingBatchItem rating = ratings.get(i);
+            Long movieId = rating == null ? null : rating.getMovieId();
+            if (rating == null || movieId == null) {
+                report.add(new RatingBatchResult(i, RatingBatchResult.Status.INVALID, null,
+                        "Invalid rating. A movie ID is required."));
+            } else if (!rating.isValid()) {
+                report.add(new RatingBatchResult(i, RatingBatchResult.Status.INVALID, movieId,
+                        "Invalid rating value. Rating must be between 1 and 5."));
+            } else if (!known.contains(movieId)) {
+                report.add(new RatingBatchResult(i, RatingBatchResult.Status.NOT_FOUND, movieId, "Movie Not Found"));
+            } else if (!ratingQueue.isEnabled()) {
+                rated.add(movieId);
+                report.add(new RatingBatchResult(i, RatingBatchResult.Status.RATED, movieId, null));
+            } else if (ratingQueue.offer(movieId, rating.getUserId(), rating.getRating())) {
+                rated.add(movieId);
+                report.add(new RatingBatchResult(i, RatingBatchResult.Status.ACCEPTED, movieId, null));
+            } else {
+                report.add(new RatingBatchResult(i, RatingBatchResult.Status.REJECTED, movieId,
+                        "Too many ratings. Please retry later."));
+            }
+        }
+        report.setMovies(rated.size());
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.debug("Rated {} and accepted {} of {} ratings for {} movies",
+                report.getRated(), report.getAccepted(), ratings.size(), rated.size());
+        return report;
+    }
+
+    /**
+     * Accepts a rating for asynchronous application, checking the movie against the near-cache,
+     * which is updated before a new movie is acknowledged, so that the request rarely touches the
+     * database.
+     */
+    private ResponseEntity<String> queueRating(Long movieId, Long userId, double rating) {
+        if (movieId == null || !movieNearCache.exists(movieId)) {
+            log.info("Movie not found for ID {}", movieId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Movie Not Found");
+        }
+        if (!ratingQueue.offer(movieId, userId, rating)) {
+            log.debug("Rating queue full, rejecting rating for movie ID {}", movieId);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Too many ratings. Please retry later.");
+        }
+        return ResponseEntity.accepted().body("Rating accepted");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Movie> recommendMoviesByRatingsAndGenre(RecommendationQuery query) {
+        if (query.getLimit() != null) {
+            checkLimit(query.getLimit());
+        }
+        GenreFilter genres = genreDictionary.filter(query.getGenres(), query.getMatch());
+        if (genres.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (query.getAfter() != null) {
+            return movieRankingIndex.page(genres, query.getSort(), query.getAfter(), query.getLimit());
+        }
+        return recommendationCache.get(genres, query,
+                () -> movieRankingIndex.page(genres, query.getSort(), null, query.getLimit()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Movie> recommendMoviesForUser(Long userId, int limit) {
+        checkLimit(limit);
+        List<Movie> movies = new ArrayList<>(limit);
+        Set<Long> included = new HashSet<>();
+        for (long movieId : itemSimilarityIndex.recommend(userId, limit)) {
+            Movie movie = movieRankingIndex.get(movieId);
+            if (movie != null && included.add(movieId)) {
+                movies.add(movie);
+            }
+        }
+        MovieCursor after = null;
+        while (movies.size() < limit) {
+            List<Movie> popular = movieRankingIndex.page(GenreFilter.UNFILTERED, MovieSort.SCORE, after, limit);
+            if (popular.isEmpty()) {
+                break;
+            }
+            for (Movie movie : popular) {
+                if (movies.size() < limit && !itemSimilarityIndex.hasRated(userId, movie.getId())
+                        && included.add(movie.getId())) {
+                    movies.add(movie);
+                }
+            }
+            after = MovieCursor.of(popular.get(popular.size() - 1), MovieSort.SCORE);
+        }
+        return movies;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Movie> findSimilarMovies(Long movieId, int limit) {
+        checkLimit(limit);
+        long[] similarIds = similarMovieIndex.similar(movieId, limit);
+        return similarIds == null ? null : indexedMovies(similarIds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Movie> searchMovies(String query, int limit) {
+        checkLimit(limit);
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Invalid query. Query must not be blank.");
+        }
+        return indexedMovies(titleSearchIndex.search(query, limit));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Movie> getTrendingMovies(String window, List<String> genres, int limit) {
+        checkLimit(limit);
+        GenreFilter filter = genreDictionary.filter(genres == null ? Collections.emptyList() : genres, GenreMatch.ANY);
+        if (filter.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return indexedMovies(trendingIndex.top(window,
+                id -> filter.isUnfiltered() || filter.matches(movieRankingIndex.genreBits(id)), limit));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getCatalogETag() {
+        return catalogVersion.etag(GenreFilter.UNFILTERED);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getRecommendationETag(RecommendationQuery query) {
+        return catalogVersion.etag(genreDictionary.filter(query.getGenres(), query.getMatch()));
+    }
+
+    private List<Movie> indexedMovies(long[] movieIds) {
+        List<Movie> movies = new ArrayList<>(movieIds.length);
+        for (long movieId : movieIds) {
+            Movie movie = movieRankingIndex.get(movieId);
+            if (movie != null) {
+                movies.add(movie);
+            }
+        }
+        return movies;
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Invalid limit. Limit must be between 1 and " + MAX_PAGE_SIZE + ".");
         }
     }
 
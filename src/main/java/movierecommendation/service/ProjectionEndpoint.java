@@ -0,0 +1,48 @@
+package movierecommendation.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports how far the read projections lag behind the writes under {@code GET /actuator/projections},
+ * and rebuilds them from the repository under {@code POST /actuator/projections}.
+ */
+@Component
+@Endpoint(id = "projections")
+public class ProjectionEndpoint {
+
+    private static final long REBUILD_TIMEOUT_MINUTES = 10;
+
+    private final MovieChangeNotifier movieChangeNotifier;
+
+    @Autowired
+    public ProjectionEndpoint(MovieChangeNotifier movieChangeNotifier) {
+        this.movieChangeNotifier = movieChangeNotifier;
+    }
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return Map.of("async", movieChangeNotifier.isAsync(),
+                "pending", movieChangeNotifier.pending(),
+                "stalenessMs", TimeUnit.NANOSECONDS.toMillis(movieChangeNotifier.staleness()));
+    }
+
+    @WriteOperation
+    public Map<String, Object> rebuild() {
+        long start = System.nanoTime();
+        try {
+            boolean rebuilt = movieChangeNotifier.rebuildProjections(REBUILD_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            return Map.of("rebuilt", rebuilt,
+                    "elapsedMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rebuilding projections", e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package movierecommendation.service;
+
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.model.Movie;
+import movierecommendation.repository.MovieRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Computes {@link Movie#getRankingScore()}: a Bayesian average that blends a movie's own ratings with
+ * the catalog mean, weighted as if every movie had {@code priorWeight} extra ratings at the mean.
+ * <p>
+ * Scores are written whenever a movie is added or its rating aggregates change. The catalog mean is
+ * refreshed periodically with a single aggregate query instead of on every write; stored scores are
+ * only recomputed, with one set-based update, once the mean has drifted by more than the configured
+ * threshold since they were last rescored.
+ */
+@Slf4j
+@Component
+public class RankingScorer {
+
+    private final MovieRepository movieRepository;
+    private final MovieChangeNotifier movieChangeNotifier;
+    private final TransactionTemplate transactionTemplate;
+    private final double priorWeight;
+    private final double rescoreThreshold;
+
+    private volatile double prior;
+    private double scoredPrior;
+
+    @Autowired
+    public RankingScorer(MovieRepository movieRepository,
+                         MovieChangeNotifier movieChangeNotifier,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${movies.ranking.prior-weight:10}") double priorWeight,
+                         @Value("${movies.ranking.default-prior:3.0}") double defaultPrior,
+                         @Value("${movies.ranking.rescore-threshold:0.05}") double rescoreThreshold) {
+        this.movieRepository = movieRepository;
+        this.movieChangeNotifier = movieChangeNotifier;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.priorWeight = priorWeight;
+        this.rescoreThreshold = rescoreThreshold;
+        this.prior = defaultPrior;
+        this.scoredPrior = defaultPrior;
+    }
+
+    /**
+     * Returns the ranking score for the given rating aggregates under the current prior.
+     */
+    public double score(double averageRating, int numberOfRatings) {
+        if (numberOfRatings <= 0) {
+            return prior;
+        }
+        return (priorWeight * prior + averageRating * numberOfRatings) / (priorWeight + numberOfRatings);
+    }
+
+    /**
+     * Updates the ranking score of the given movie from its current rating aggregates.
+     */
+    public void applyScore(Movie movie) {
+        movie.setRankingScore(score(movie.getAverageRating(), movie.getNumberOfRatings()));
+    }
+
+    public double getPrior() {
+        return prior;
+    }
+
+    /**
+     * Reloads the catalog mean rating and rescores all movies if it has drifted too far.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${movies.ranking.prior-refresh-interval-ms:60000}",
+            fixedDelayString = "${movies.ranking.prior-refresh-interval-ms:60000}")
+    public synchronized void refreshPrior() {
+        Double mean = movieRepository.findCatalogMeanRating();
+        if (mean == null) {
+            return;
+        }
+        prior = mean;
+        if (Math.abs(mean - scoredPrior) <= rescoreThreshold) {
+            return;
+        }
+        Integer rescored = transactionTemplate.execute(status -> movieRepository.updateRankingScores(mean, priorWeight));
+        scoredPrior = mean;
+        log.info("Catalog mean rating is now {}, rescored {} movies", mean, rescored);
+        movieChangeNotifier.catalogReloaded();
+    }
+}
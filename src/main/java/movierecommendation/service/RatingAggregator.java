@@ -0,0 +1,464 @@
+package movierecommendation.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.cache.MovieNearCache;
+import movierecommendation.index.TrendingIndex;
+import movierecommendation.journal.RatingJournal;
+import movierecommendation.model.Movie;
+import movierecommendation.model.RatingBatchItem;
+import movierecommendation.model.UserRating;
+import movierecommendation.model.UserRatingId;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.repository.UserRatingRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects ratings in memory and writes them behind to the {@link MovieRepository}.
+ * <p>
+ * Ratings are accumulated per movie id as a primitive sum and count inside lock stripes,
+ * so recording a rating is an O(1) in-memory operation and concurrent ratings on the same
+ * movie are never lost. Pending ratings are folded into {@link Movie#getAverageRating()} and
+ * {@link Movie#getNumberOfRatings()}, and the {@link Movie#getRankingScore()} recomputed, by {@link #flush()}, which runs periodically in one
+ * transaction per batch and once more on shutdown.
+ * <p>
+ * Ratings given by a known user are additionally queued as {@link UserRating}s and saved by the same
+ * flush. When a user re-rates a movie, the flush takes their previous rating back out of the movie
+ * aggregate, so every user counts at most once per movie.
+ * <p>
+ * Ratings of movies that do not exist are rejected; existence is checked against the
+ * {@link MovieNearCache}, so hot movies are not looked up in the repository on every rating.
+ * Accepted ratings are also counted by the {@link TrendingIndex}. A batch of ratings checks all of its
+ * movies at once and is flushed right away, see {@link #recordAll(List)}.
+ * <p>
+ * Every rating is also appended to the {@link RatingJournal} before it is acknowledged, so ratings
+ * that are still pending, or that only live in the in-memory database, survive a restart.
+ * <p>
+ * Recorded and flushed ratings are counted as {@code ratings.recorded} and {@code ratings.flushed},
+ * and the ratings waiting for the next flush are exposed as {@code ratings.pending.movies} and
+ * {@code ratings.pending.user}. Recording a rating only increments a {@link LongAdder}; the pending
+ * gauges are computed when metrics are read.
+ */
+@Slf4j
+@Component
+public class RatingAggregator {
+
+    private final MovieRepository movieRepository;
+    private final UserRatingRepository userRatingRepository;
+    private final MovieChangeNotifier movieChangeNotifier;
+    private final RankingScorer rankingScorer;
+    private final RatingJournal ratingJournal;
+    private final TransactionTemplate transactionTemplate;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final Queue<UserRating> pendingUserRatings = new ConcurrentLinkedQueue<>();
+    private final MovieNearCache movieNearCache;
+    private final TrendingIndex trendingIndex;
+    private final Object flushLock = new Object();
+    private List<UserRating> failedUserRatings = new ArrayList<>();
+    private final LongAdder recordedRatings = new LongAdder();
+    private final LongAdder flushedRatings = new LongAdder();
+    private final Timer flushTimer;
+
+    @Autowired
+    public RatingAggregator(MovieRepository movieRepository,
+                            UserRatingRepository userRatingRepository,
+                            MovieChangeNotifier movieChangeNotifier,
+                            RankingScorer rankingScorer,
+                            RatingJournal ratingJournal,
+                            MovieNearCache movieNearCache,
+                            TrendingIndex trendingIndex,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${movies.rating.stripes:64}") int stripeCount,
+                            MeterRegistry meterRegistry) {
+        this.movieRepository = movieRepository;
+        this.userRatingRepository = userRatingRepository;
+        this.movieChangeNotifier = movieChangeNotifier;
+        this.rankingScorer = rankingScorer;
+        this.ratingJournal = ratingJournal;
+        this.movieNearCache = movieNearCache;
+        this.trendingIndex = trendingIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.stripeMask = size - 1;
+        this.flushTimer = Timer.builder("ratings.flush").register(meterRegistry);
+        FunctionCounter.builder("ratings.recorded", recordedRatings, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("ratings.flushed", flushedRatings, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("ratings.pending.movies", this, RatingAggregator::pendingMovies).register(meterRegistry);
+        Gauge.builder("ratings.pending.user", pendingUserRatings, Queue::size).register(meterRegistry);
+    }
+
+    /**
+     * Records a single rating for a movie.
+     *
+     * @param movieId The ID of the movie being rated.
+     * @param rating  The rating value, already validated by the caller.
+     * @return false if no movie exists with the given ID.
+     */
+    public boolean record(Long movieId, double rating) {
+        return record(movieId, null, rating);
+    }
+
+    /**
+     * Records a single rating for a movie given by a user.
+     *
+     * @param movieId The ID of the movie being rated.
+     * @param userId  The ID of the rating user, or null for an anonymous rating.
+     * @param rating  The rating value, already validated by the caller.
+     * @return false if no movie exists with the given ID.
+     */
+    public boolean record(Long movieId, Long userId, double rating) {
+        if (!isKnownMovie(movieId)) {
+            return false;
+        }
+        ratingJournal.awaitDurable(append(movieId, userId, rating));
+        return true;
+    }
+
+    /**
+     * Records a batch of validated ratings and flushes them in one transaction.
+     * <p>
+     * The movies are checked in one lookup, and the ratings of movies that do not exist are skipped.
+     * Every other rating is journaled, and the batch waits for the journal once, after its last
+     * rating. The ratings are then summed per movie, so the pending aggregate of each movie is updated
+     * once, and flushed with all other pending ratings.
+     *
+     * @param ratings Ratings whose movie and value were validated by the caller.
+     * @return The IDs of the movies that exist; only their ratings were recorded.
+     */
+    public Set<Long> recordAll(List<RatingBatchItem> ratings) {
+        Set<Long> movieIds = new HashSet<>();
+        for (RatingBatchItem rating : ratings) {
+            movieIds.add(rating.getMovieId());
+        }
+        Set<Long> existing = movieNearCache.existing(movieIds);
+        PendingRatings batch = new PendingRatings();
+        List<UserRating> userRatings = new ArrayList<>();
+        long sequence = 0;
+        for (RatingBatchItem rating : ratings) {
+            long movieId = rating.getMovieId();
+            if (!existing.contains(movieId)) {
+                continue;
+            }
+            sequence = ratingJournal.appendRating(movieId, rating.getUserId(), rating.getRating());
+            batch.merge(movieId, rating.getRating(), 1);
+            trendingIndex.record(movieId, rating.getRating());
+            if (rating.getUserId() != null) {
+                userRatings.add(UserRating.builder().userId(rating.getUserId()).movieId(movieId)
+                        .rating(rating.getRating()).build());
+            }
+        }
+        if (batch.size == 0) {
+            return existing;
+        }
+        mergeIntoStripes(batch);
+        pendingUserRatings.addAll(userRatings);
+        recordedRatings.add(batch.ratingCount());
+        ratingJournal.awaitDurable(sequence);
+        flush();
+        return existing;
+    }
+
+    /**
+     * Journals and aggregates a rating for a movie already known to exist, without waiting for
+     * the journal to be synced.
+     *
+     * @return The journal sequence of the rating.
+     */
+    long append(long movieId, Long userId, double rating) {
+        long sequence = ratingJournal.appendRating(movieId, userId, rating);
+        stripes[mix(movieId) & stripeMask].add(movieId, rating);
+        trendingIndex.record(movieId, rating);
+        // Queued after the stripe so that a flush draining this rating also drains its aggregate.
+        if (userId != null) {
+            pendingUserRatings.add(UserRating.builder().userId(userId).movieId(movieId).rating(rating).build());
+        }
+        recordedRatings.increment();
+        return sequence;
+    }
+
+    /**
+     * Applies all pending ratings to the repository in a single transaction.
+     *
+     * @return The number of movies whose aggregates were updated.
+     */
+    @Scheduled(fixedDelayString = "${movies.rating.flush-interval-ms:500}")
+    public int flush() {
+        synchronized (flushLock) {
+            List<UserRating> userRatings = failedUserRatings;
+            failedUserRatings = new ArrayList<>();
+            for (UserRating userRating; (userRating = pendingUserRatings.poll()) != null; ) {
+                userRatings.add(userRating);
+            }
+            PendingRatings pending = new PendingRatings();
+            for (Stripe stripe : stripes) {
+                stripe.drainTo(pending);
+            }
+            if (pending.size == 0 && userRatings.isEmpty()) {
+                return 0;
+            }
+            Applied applied;
+            long start = System.nanoTime();
+            try {
+                applied = transactionTemplate.execute(status -> apply(pending, userRatings));
+            } catch (RuntimeException e) {
+                log.warn("Failed to flush ratings for {} movies, will retry", pending.size, e);
+                mergeIntoStripes(pending);
+                failedUserRatings = userRatings;
+                return 0;
+            } finally {
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            flushedRatings.add(pending.ratingCount());
+            log.debug("Flushed ratings for {} movies and {} user ratings", pending.size, userRatings.size());
+            if (applied == null) {
+                return 0;
+            }
+            movieChangeNotifier.moviesUpdated(applied.movies);
+            movieChangeNotifier.userRatingsUpdated(applied.userRatings);
+            return applied.movies.size();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing pending ratings before shutdown");
+        flush();
+    }
+
+    private Applied apply(PendingRatings drained, List<UserRating> drainedUserRatings) {
+        // Adjusted on a copy so that a failed transaction requeues the ratings as they were drained.
+        PendingRatings pending = drained.copy();
+        List<UserRating> userRatings = applyUserRatings(drainedUserRatings, pending);
+        List<Long> ids = new ArrayList<>(pending.size);
+        for (int i = 0; i < pending.size; i++) {
+            ids.add(pending.ids[i]);
+        }
+        List<Movie> movies = ids.isEmpty() ? Collections.emptyList() : movieRepository.findAllById(ids);
+        for (Movie movie : movies) {
+            int slot = pending.slots.get(movie.getId());
+            double currentTotalRating = movie.getAverageRating() * movie.getNumberOfRatings();
+            int newNumberOfRatings = movie.getNumberOfRatings() + pending.counts[slot];
+            movie.setAverageRating(newNumberOfRatings > 0 ? (currentTotalRating + pending.sums[slot]) / newNumberOfRatings : 0);
+            movie.setNumberOfRatings(newNumberOfRatings);
+            rankingScorer.applyScore(movie);
+        }
+        return new Applied(movies.isEmpty() ? movies : movieRepository.saveAll(movies), userRatings);
+    }
+
+    /**
+     * Saves the latest rating of every user and movie, taking ratings that are replaced, either
+     * within this flush or from an earlier one, back out of the pending movie aggregates.
+     */
+    private List<UserRating> applyUserRatings(List<UserRating> drained, PendingRatings pending) {
+        if (drained.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<UserRatingId, UserRating> latest = new LinkedHashMap<>();
+        for (UserRating userRating : drained) {
+            UserRating replaced = latest.put(userRating.getId(), userRating);
+            if (replaced != null) {
+                pending.merge(replaced.getMovieId(), -replaced.getRating(), -1);
+            }
+        }
+        for (UserRating existing : userRatingRepository.findAllById(latest.keySet())) {
+            pending.merge(existing.getMovieId(), -existing.getRating(), -1);
+            existing.setRating(latest.get(existing.getId()).getRating());
+            latest.put(existing.getId(), existing);
+        }
+        return userRatingRepository.saveAll(latest.values());
+    }
+
+    private double pendingMovies() {
+        int pending = 0;
+        for (Stripe stripe : stripes) {
+            pending += stripe.size();
+        }
+        return pending;
+    }
+
+    private void mergeIntoStripes(PendingRatings pending) {
+        for (int i = 0; i < pending.size; i++) {
+            long id = pending.ids[i];
+            stripes[mix(id) & stripeMask].merge(id, pending.sums[i], pending.counts[i]);
+        }
+    }
+
+    private boolean isKnownMovie(Long movieId) {
+        return movieId != null && movieNearCache.exists(movieId);
+    }
+
+    private static int mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * One lock stripe: an open-addressing table of movie id to pending rating sum and count.
+     */
+    private static final class Stripe {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private long[] ids = new long[INITIAL_CAPACITY];
+        private double[] sums = new double[INITIAL_CAPACITY];
+        private int[] counts = new int[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void add(long id, double rating) {
+            merge(id, rating, 1);
+        }
+
+        synchronized void merge(long id, double sum, int count) {
+            if ((size + 1) * 4 > ids.length * 3) {
+                resize();
+            }
+            int slot = slotFor(ids, counts, id);
+            if (counts[slot] == 0) {
+                ids[slot] = id;
+                size++;
+            }
+            sums[slot] += sum;
+            counts[slot] += count;
+        }
+
+        void drainTo(PendingRatings pending) {
+            long[] drainedIds;
+            double[] drainedSums;
+            int[] drainedCounts;
+            synchronized (this) {
+                if (size == 0) {
+                    return;
+                }
+                drainedIds = ids;
+                drainedSums = sums;
+                drainedCounts = counts;
+                ids = new long[INITIAL_CAPACITY];
+                sums = new double[INITIAL_CAPACITY];
+                counts = new int[INITIAL_CAPACITY];
+                size = 0;
+            }
+            for (int i = 0; i < drainedIds.length; i++) {
+                if (drainedCounts[i] != 0) {
+                    pending.append(drainedIds[i], drainedSums[i], drainedCounts[i]);
+                }
+            }
+        }
+
+        private void resize() {
+            long[] oldIds = ids;
+            double[] oldSums = sums;
+            int[] oldCounts = counts;
+            ids = new long[oldIds.length * 2];
+            sums = new double[oldIds.length * 2];
+            counts = new int[oldIds.length * 2];
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldCounts[i] != 0) {
+                    int slot = slotFor(ids, counts, oldIds[i]);
+                    ids[slot] = oldIds[i];
+                    sums[slot] = oldSums[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int slotFor(long[] ids, int[] counts, long id) {
+            int mask = ids.length - 1;
+            int slot = mix(id) & mask;
+            while (counts[slot] != 0 && ids[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Pending ratings drained from all stripes for one flush.
+     */
+    private static final class PendingRatings {
+        private final Map<Long, Integer> slots = new HashMap<>();
+        private long[] ids = new long[64];
+        private double[] sums = new double[64];
+        private int[] counts = new int[64];
+        private int size;
+
+        long ratingCount() {
+            long ratings = 0;
+            for (int i = 0; i < size; i++) {
+                ratings += counts[i];
+            }
+            return ratings;
+        }
+
+        void append(long id, double sum, int count) {
+            merge(id, sum, count);
+        }
+
+        void merge(long id, double sum, int count) {
+            Integer slot = slots.get(id);
+            if (slot != null) {
+                sums[slot] += sum;
+                counts[slot] += count;
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                sums = Arrays.copyOf(sums, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            slots.put(id, size);
+            ids[size] = id;
+            sums[size] = sum;
+            counts[size] = count;
+            size++;
+        }
+
+        PendingRatings copy() {
+            PendingRatings copy = new PendingRatings();
+            for (int i = 0; i < size; i++) {
+                copy.merge(ids[i], sums[i], counts[i]);
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * What a flush committed: the updated movies and the saved user ratings.
+     */
+    @AllArgsConstructor
+    private static final class Applied {
+        private final List<Movie> movies;
+        private final List<UserRating> userRatings;
+    }
+}
@@ -0,0 +1,183 @@
+package movierecommendation.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded queue of accepted ratings, applied asynchronously by a single writer thread.
+ * <p>
+ * With {@code movies.rating.async.enabled=true}, rating a movie only validates the rating and
+ * offers it to this queue, so request threads never wait on the database or the journal. When the
+ * queue is full the rating is rejected right away instead of blocking. The writer drains up to
+ * {@code movies.rating.async.batch-size} ratings at a time, appends them to the
+ * {@link RatingAggregator}, which coalesces them per movie id, and flushes the whole batch in one
+ * transaction.
+ * <p>
+ * Ratings still queued are applied on shutdown, but ratings accepted shortly before a crash are
+ * lost, as they are acknowledged before they are journaled.
+ * <p>
+ * The queue depth is exposed as {@code ratings.queue.depth}, rejected ratings as
+ * {@code ratings.queue.rejected}, the size of every batch as {@code ratings.batch.size} and the time
+ * from accepting a rating to committing it as {@code ratings.apply.lag}.
+ */
+@Slf4j
+@Component
+public class RatingQueue {
+
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private final RatingAggregator ratingAggregator;
+    private final boolean enabled;
+    private final int batchSize;
+    private final BlockingQueue<QueuedRating> queue;
+    private final LongAdder rejectedRatings = new LongAdder();
+    private final DistributionSummary batchSizes;
+    private final Timer applyLag;
+    private volatile boolean running;
+    private Thread writer;
+
+    @Autowired
+    public RatingQueue(RatingAggregator ratingAggregator,
+                       @Value("${movies.rating.async.enabled:false}") boolean enabled,
+                       @Value("${movies.rating.async.queue-capacity:100000}") int capacity,
+                       @Value("${movies.rating.async.batch-size:1000}") int batchSize,
+                       MeterRegistry meterRegistry) {
+        this.ratingAggregator = ratingAggregator;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.batchSizes = DistributionSummary.builder("ratings.batch.size").register(meterRegistry);
+        this.applyLag = Timer.builder("ratings.apply.lag").register(meterRegistry);
+        Gauge.builder("ratings.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        FunctionCounter.builder("ratings.queue.rejected", rejectedRatings, LongAdder::sum).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::run, "rating-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return true if ratings are applied asynchronously through this queue.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a validated rating for a movie known to exist, without blocking.
+     *
+     * @param movieId The ID of the movie being rated.
+     * @param userId  The ID of the rating user, or null for an anonymous rating.
+     * @param rating  The rating value, already validated by the caller.
+     * @return false if the queue is full and the rating was rejected.
+     */
+    public boolean offer(long movieId, Long userId, double rating) {
+        if (queue.offer(new QueuedRating(movieId, userId, rating, System.nanoTime()))) {
+            return true;
+        }
+        rejectedRatings.increment();
+        return false;
+    }
+
+    /**
+     * Applies the ratings queued so far, one batch at a time.
+     *
+     * @return The number of ratings applied.
+     */
+    int drain() {
+        List<QueuedRating> batch = new ArrayList<>(batchSize);
+        int applied = 0;
+        while (queue.drainTo(batch, batchSize) > 0) {
+            applied += apply(batch);
+            batch.clear();
+        }
+        return applied;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer != null) {
+            running = false;
+            writer.join();
+        }
+        int applied = drain();
+        if (applied > 0) {
+            log.info("Applied {} queued ratings before shutdown", applied);
+        }
+    }
+
+    private void run() {
+        List<QueuedRating> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                QueuedRating first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                apply(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private int apply(List<QueuedRating> batch) {
+        int appended = 0;
+        try {
+            for (QueuedRating rating : batch) {
+                ratingAggregator.append(rating.movieId, rating.userId, rating.rating);
+                appended++;
+            }
+        } catch (RuntimeException e) {
+            log.error("Dropped {} queued ratings that could not be journaled", batch.size() - appended, e);
+        }
+        // A failed flush keeps the ratings pending in the aggregator, which retries them on its schedule.
+        ratingAggregator.flush();
+        long now = System.nanoTime();
+        for (int i = 0; i < appended; i++) {
+            applyLag.record(now - batch.get(i).enqueuedNanos, TimeUnit.NANOSECONDS);
+        }
+        batchSizes.record(batch.size());
+        return appended;
+    }
+
+    /**
+     * A rating waiting in the queue, with the time it was accepted.
+     */
+    @AllArgsConstructor
+    private static final class QueuedRating {
+        private final long movieId;
+        private final Long userId;
+        private final double rating;
+        private final long enqueuedNanos;
+    }
+}
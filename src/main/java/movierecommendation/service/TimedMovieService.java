@@ -0,0 +1,216 @@
+package movierecommendation.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import movierecommendation.model.Movie;
+import movierecommendation.model.MovieIngestReport;
+import movierecommendation.model.RatingBatchItem;
+import movierecommendation.model.RatingBatchReport;
+import movierecommendation.model.RecommendationQuery;
+import movierecommendation.util.MovieCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Times every call to the movie service as {@code service.invocations}, tagged by method. The calls go
+ * through the {@link movierecommendation.cluster.ClusterMovieService}, which hands them to the
+ * {@link MovieServiceImpl} outside cluster mode.
+ * <p>
+ * The timers are registered once up front and recorded with two {@link System#nanoTime()} reads, so
+ * timing a call allocates nothing and takes no lock. Failed calls are recorded like successful ones;
+ * errors are counted per endpoint by {@code http.server.requests}.
+ */
+@Primary
+@Service
+public class TimedMovieService implements MovieService {
+
+    private final MovieService delegate;
+    private final Timer addMovie;
+    private final Timer addMovies;
+    private final Timer getAllMovies;
+    private final Timer getMovies;
+    private final Timer forEachMovie;
+    private final Timer rateMovie;
+    private final Timer rateMovies;
+    private final Timer recommendMoviesByRatingsAndGenre;
+    private final Timer recommendMoviesForUser;
+    private final Timer findSimilarMovies;
+    private final Timer searchMovies;
+    private final Timer getTrendingMovies;
+    private final Timer getCatalogETag;
+    private final Timer getRecommendationETag;
+
+    @Autowired
+    public TimedMovieService(@Qualifier("clusterMovieService") MovieService delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.addMovie = timer(meterRegistry, "addMovie");
+        this.addMovies = timer(meterRegistry, "addMovies");
+        this.getAllMovies = timer(meterRegistry, "getAllMovies");
+        this.getMovies = timer(meterRegistry, "getMovies");
+        this.forEachMovie = timer(meterRegistry, "forEachMovie");
+        this.rateMovie = timer(meterRegistry, "rateMovie");
+        this.rateMovies = timer(meterRegistry, "rateMovies");
+        this.recommendMoviesByRatingsAndGenre = timer(meterRegistry, "recommendMoviesByRatingsAndGenre");
+        this.recommendMoviesForUser = timer(meterRegistry, "recommendMoviesForUser");
+        this.findSimilarMovies = timer(meterRegistry, "findSimilarMovies");
+        this.searchMovies = timer(meterRegistry, "searchMovies");
+        this.getTrendingMovies = timer(meterRegistry, "getTrendingMovies");
+        this.getCatalogETag = timer(meterRegistry, "getCatalogETag");
+        this.getRecommendationETag = timer(meterRegistry, "getRecommendationETag");
+    }
+
+    @Override
+    public ResponseEntity<String> addMovie(Movie movie) {
+        long start = System.nanoTime();
+        try {
+            return delegate.addMovie(movie);
+        } finally {
+            addMovie.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public MovieIngestReport addMovies(Iterator<Movie> movies) {
+        long start = System.nanoTime();
+        try {
+            return delegate.addMovies(movies);
+        } finally {
+            addMovies.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<Movie> getAllMovies() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAllMovies();
+        } finally {
+            getAllMovies.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<Movie> getMovies(MovieCursor after, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getMovies(after, limit);
+        } finally {
+            getMovies.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void forEachMovie(Consumer<Movie> consumer) {
+        long start = System.nanoTime();
+        try {
+            delegate.forEachMovie(consumer);
+        } finally {
+            forEachMovie.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public ResponseEntity<String> rateMovie(Long movieId, Long userId, double rating) {
+        long start = System.nanoTime();
+        try {
+            return delegate.rateMovie(movieId, userId, rating);
+        } finally {
+            rateMovie.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public RatingBatchReport rateMovies(List<RatingBatchItem> ratings) {
+        long start = System.nanoTime();
+        try {
+            return delegate.rateMovies(ratings);
+        } finally {
+            rateMovies.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<Movie> recommendMoviesByRatingsAndGenre(RecommendationQuery query) {
+        long start = System.nanoTime();
+        try {
+            return delegate.recommendMoviesByRatingsAndGenre(query);
+        } finally {
+            recommendMoviesByRatingsAndGenre.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<Movie> recommendMoviesForUser(Long userId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.recommendMoviesForUser(userId, limit);
+        } finally {
+            recommendMoviesForUser.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<Movie> findSimilarMovies(Long movieId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findSimilarMovies(movieId, limit);
+        } finally {
+            findSimilarMovies.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<Movie> searchMovies(String query, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.searchMovies(query, limit);
+        } finally {
+            searchMovies.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<Movie> getTrendingMovies(String window, List<String> genres, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getTrendingMovies(window, genres, limit);
+        } finally {
+            getTrendingMovies.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public String getCatalogETag() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getCatalogETag();
+        } finally {
+            getCatalogETag.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public String getRecommendationETag(RecommendationQuery query) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getRecommendationETag(query);
+        } finally {
+            getRecommendationETag.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String method) {
+        return Timer.builder("service.invocations")
+                .tag("service", "MovieService")
+                .tag("method", method)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,35 @@
+package movierecommendation.snapshot;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * Exports the catalog snapshot on demand, under {@code POST /actuator/catalogsnapshot}.
+ */
+@Component
+@Endpoint(id = "catalogsnapshot")
+public class CatalogSnapshotEndpoint {
+
+    private final CatalogSnapshotManager catalogSnapshotManager;
+
+    @Autowired
+    public CatalogSnapshotEndpoint(CatalogSnapshotManager catalogSnapshotManager) {
+        this.catalogSnapshotManager = catalogSnapshotManager;
+    }
+
+    @WriteOperation
+    public Map<String, Object> export() {
+        try {
+            int movies = catalogSnapshotManager.export();
+            return Map.of("file", catalogSnapshotManager.getFile().toAbsolutePath().toString(), "movies", movies);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to export catalog snapshot", e);
+        }
+    }
+}
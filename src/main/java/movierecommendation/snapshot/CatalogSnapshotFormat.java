@@ -0,0 +1,33 @@
+package movierecommendation.snapshot;
+
+/**
+ * Binary format of a catalog snapshot.
+ * <p>
+ * A snapshot is a big-endian file holding every movie column by column:
+ * <pre>
+ * int      magic, format version, movie count n
+ * long[n]  IDs
+ * int[n]   release years
+ * double[n] average ratings
+ * int[n]   numbers of ratings
+ * int[n+1] title offsets into the title bytes, followed by the UTF-8 title bytes
+ * genres:    int d, d strings as int length and UTF-8 bytes, then int[n] codes (-1 for null)
+ * directors: the same dictionary encoding as genres
+ * int      CRC32C of all preceding bytes
+ * </pre>
+ * Fixed-width columns can be read in place from a mapped file, and genres and directors, which
+ * repeat across many movies, are stored once each. Ranking scores and genre bitsets are not stored,
+ * as they depend on the catalog mean and the genre dictionary of the process loading the snapshot.
+ */
+final class CatalogSnapshotFormat {
+
+    /** "MVCS". */
+    static final int MAGIC = 0x4D564353;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 12;
+    static final int TRAILER_BYTES = 4;
+    static final int NULL_CODE = -1;
+
+    private CatalogSnapshotFormat() {
+    }
+}
@@ -0,0 +1,243 @@
+package movierecommendation.snapshot;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import movierecommendation.journal.JournalRecovery;
+import movierecommendation.journal.RatingJournal;
+import movierecommendation.model.Movie;
+import movierecommendation.repository.CatalogLoader;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.service.GenreDictionary;
+import movierecommendation.service.MovieService;
+import movierecommendation.service.RankingScorer;
+import movierecommendation.service.RatingAggregator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports the movie catalog, including the rating aggregates, to a binary snapshot file and loads it
+ * back on startup.
+ * <p>
+ * On startup with an empty database, after the {@link JournalRecovery} had its chance to restore the
+ * journal, an existing snapshot file is mapped and its rows are inserted by the {@link CatalogLoader},
+ * before the in-memory indexes are built from the database. Per-user ratings are not part of the
+ * snapshot.
+ * <p>
+ * The loaded movies are appended to the {@link RatingJournal} as its base, so that the journal restores
+ * them, and the ratings given to them since, after a restart, followed by a record that the load
+ * finished. Once the journal holds that record the snapshot is not loaded again, so movies deleted or
+ * handed off since stay gone. If the journal restored the database without it, the snapshot movies it
+ * lacks are loaded, except those it deleted, which completes a load that was interrupted.
+ * <p>
+ * Load and export times are exposed as {@code catalog.snapshot.load} and
+ * {@code catalog.snapshot.export}, and the time from JVM start until the application is ready as
+ * {@code catalog.ready.time}, tagged by whether the catalog came from the snapshot.
+ */
+@Slf4j
+@Component
+public class CatalogSnapshotManager {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MovieRepository movieRepository;
+    private final MovieService movieService;
+    private final RatingAggregator ratingAggregator;
+    private final CatalogLoader catalogLoader;
+    private final JournalRecovery journalRecovery;
+    private final RatingJournal ratingJournal;
+    private final GenreDictionary genreDictionary;
+    private final RankingScorer rankingScorer;
+    private final MeterRegistry meterRegistry;
+    private final Path file;
+    private final boolean exportOnShutdown;
+    private final Timer loadTimer;
+    private final Timer exportTimer;
+    private volatile boolean loaded;
+
+    @Autowired
+    public CatalogSnapshotManager(MovieRepository movieRepository,
+                                  MovieService movieService,
+                                  RatingAggregator ratingAggregator,
+                                  CatalogLoader catalogLoader,
+                                  JournalRecovery journalRecovery,
+                                  RatingJournal ratingJournal,
+                                  GenreDictionary genreDictionary,
+                                  RankingScorer rankingScorer,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${movies.snapshot.file:catalog.snap}") String file,
+                                  @Value("${movies.snapshot.export-on-shutdown:false}") boolean exportOnShutdown) {
+        this.movieRepository = movieRepository;
+        this.movieService = movieService;
+        this.ratingAggregator = ratingAggregator;
+        this.catalogLoader = catalogLoader;
+        this.journalRecovery = journalRecovery;
+        this.ratingJournal = ratingJournal;
+        this.genreDictionary = genreDictionary;
+        this.rankingScorer = rankingScorer;
+        this.meterRegistry = meterRegistry;
+        this.file = Paths.get(file);
+        this.exportOnShutdown = exportOnShutdown;
+        this.loadTimer = Timer.builder("catalog.snapshot.load").register(meterRegistry);
+        this.exportTimer = Timer.builder("catalog.snapshot.export").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void loadOnStartup() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        if (ratingJournal.isSnapshotLoaded()) {
+            log.info("Journal already contains a catalog snapshot, not loading catalog snapshot {}", file);
+            return;
+        }
+        if (movieRepository.count() > 0 && !journalRecovery.isRestored()) {
+            log.info("Database already contains movies, not loading catalog snapshot {}", file);
+            return;
+        }
+        load();
+    }
+
+    /**
+     * Inserts every movie of the snapshot file that is neither in the database yet nor deleted by the
+     * journal, keeping their IDs, journals them and records that the snapshot was loaded.
+     *
+     * @return The number of loaded movies.
+     */
+    public int load() throws IOException {
+        long start = System.nanoTime();
+        CatalogSnapshotReader snapshot = CatalogSnapshotReader.open(file);
+        Map<String, Long> genreBits = new HashMap<>();
+        long maxId = 0;
+        int count = 0;
+        List<Movie> movies = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < snapshot.size(); i++) {
+            String genre = snapshot.genre(i);
+            double averageRating = snapshot.averageRating(i);
+            int numberOfRatings = snapshot.numberOfRatings(i);
+            movies.add(Movie.builder()
+                    .id(snapshot.id(i))
+                    .title(snapshot.title(i))
+                    .genre(genre)
+                    .genreBits(genre == null ? 0L : genreBits.computeIfAbsent(genre, genreDictionary::encodeLenient))
+                    .releaseYear(snapshot.releaseYear(i))
+                    .director(snapshot.director(i))
+                    .averageRating(averageRating)
+                    .numberOfRatings(numberOfRatings)
+                    .rankingScore(rankingScorer.score(averageRating, numberOfRatings))
+                    .build());
+            maxId = Math.max(maxId, snapshot.id(i));
+            if (movies.size() == BATCH_SIZE) {
+                count += insertMissing(movies);
+                movies = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        count += insertMissing(movies);
+        catalogLoader.restartMovieSequenceAbove(Math.max(maxId, maxIdInDatabase()));
+        ratingJournal.recordSnapshotLoaded(maxId);
+        long elapsed = System.nanoTime() - start;
+        loadTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        loaded = true;
+        log.info("Loaded {} movies from catalog snapshot {} in {} ms", count, file,
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return count;
+    }
+
+    /**
+     * Writes every movie to the snapshot file, replacing it atomically. Pending ratings are
+     * flushed first so that the snapshot includes them.
+     *
+     * @return The number of exported movies.
+     */
+    public int export() throws IOException {
+        long start = System.nanoTime();
+        ratingAggregator.flush();
+        CatalogSnapshotWriter snapshot = new CatalogSnapshotWriter();
+        movieService.forEachMovie(snapshot::add);
+        long bytes = snapshot.write(file);
+        long elapsed = System.nanoTime() - start;
+        exportTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Exported {} movies to catalog snapshot {} ({} bytes) in {} ms", snapshot.size(), file, bytes,
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return snapshot.size();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Reports the time to ready once the in-memory indexes have been built.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void reportReady() {
+        long uptimeMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        TimeGauge.builder("catalog.ready.time", () -> uptimeMs, TimeUnit.MILLISECONDS)
+                .tag("source", loaded ? "snapshot" : "database")
+                .register(meterRegistry);
+        log.info("Ready with {} movies {} ms after JVM start, catalog {}", movieRepository.count(), uptimeMs,
+                loaded ? "loaded from snapshot " + file : "restored by the database or journal");
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void exportOnShutdown() {
+        if (!exportOnShutdown) {
+            return;
+        }
+        try {
+            export();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to export catalog snapshot {} on shutdown", file, e);
+        }
+    }
+
+    /**
+     * Inserts and journals the movies whose IDs are neither in the database nor deleted by the journal.
+     *
+     * @return The number of inserted movies.
+     */
+    private int insertMissing(List<Movie> movies) {
+        movies.removeIf(movie -> journalRecovery.isDeleted(movie.getId()));
+        if (movies.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            ids.add(movie.getId());
+        }
+        Set<Long> existing = new HashSet<>(movieRepository.findIdsByIdIn(ids));
+        if (!existing.isEmpty()) {
+            movies.removeIf(movie -> existing.contains(movie.getId()));
+        }
+        catalogLoader.insertMovies(movies);
+        ratingJournal.onMoviesAdded(movies);
+        return movies.size();
+    }
+
+    private long maxIdInDatabase() {
+        Long maxId = movieRepository.findMaxIdInRange(0, Long.MAX_VALUE);
+        return maxId == null ? 0 : maxId;
+    }
+}
@@ -0,0 +1,143 @@
+package movierecommendation.snapshot;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads a catalog snapshot, see {@link CatalogSnapshotFormat}, from a memory-mapped file.
+ * <p>
+ * The whole file is checksummed when it is opened. Fixed-width columns are then read in place from
+ * the mapping, and only titles are decoded per movie; the genre and director dictionaries are decoded
+ * once.
+ */
+public class CatalogSnapshotReader {
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int idsAt;
+    private final int releaseYearsAt;
+    private final int averageRatingsAt;
+    private final int numberOfRatingsAt;
+    private final int titleOffsetsAt;
+    private final int titleBytesAt;
+    private final String[] genres;
+    private final int genreCodesAt;
+    private final String[] directors;
+    private final int directorCodesAt;
+
+    private CatalogSnapshotReader(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        int end = buffer.limit() - CatalogSnapshotFormat.TRAILER_BYTES;
+        if (end < CatalogSnapshotFormat.HEADER_BYTES) {
+            throw new IOException("Catalog snapshot is truncated");
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.duplicate().position(0).limit(end));
+        if ((int) checksum.getValue() != buffer.getInt(end)) {
+            throw new IOException("Catalog snapshot checksum mismatch");
+        }
+        if (buffer.getInt(0) != CatalogSnapshotFormat.MAGIC) {
+            throw new IOException("Not a catalog snapshot");
+        }
+        int version = buffer.getInt(4);
+        if (version != CatalogSnapshotFormat.VERSION) {
+            throw new IOException("Unsupported catalog snapshot version " + version);
+        }
+        try {
+            size = buffer.getInt(8);
+            idsAt = CatalogSnapshotFormat.HEADER_BYTES;
+            releaseYearsAt = Math.addExact(idsAt, Math.multiplyExact(size, Long.BYTES));
+            averageRatingsAt = Math.addExact(releaseYearsAt, Math.multiplyExact(size, Integer.BYTES));
+            numberOfRatingsAt = Math.addExact(averageRatingsAt, Math.multiplyExact(size, Double.BYTES));
+            titleOffsetsAt = Math.addExact(numberOfRatingsAt, Math.multiplyExact(size, Integer.BYTES));
+            titleBytesAt = Math.addExact(titleOffsetsAt, Math.multiplyExact(size + 1, Integer.BYTES));
+            ByteBuffer in = buffer.duplicate().position(Math.addExact(titleBytesAt, titleOffset(size)));
+            genres = readDictionary(in);
+            genreCodesAt = in.position();
+            in.position(Math.addExact(genreCodesAt, Math.multiplyExact(size, Integer.BYTES)));
+            directors = readDictionary(in);
+            directorCodesAt = in.position();
+            if (directorCodesAt + (long) size * Integer.BYTES != end) {
+                throw new IOException("Malformed catalog snapshot");
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException | IllegalArgumentException
+                | NegativeArraySizeException | ArithmeticException e) {
+            throw new IOException("Malformed catalog snapshot", e);
+        }
+    }
+
+    /**
+     * Maps and validates a snapshot file.
+     *
+     * @throws IOException If the file cannot be read or is not a valid snapshot.
+     */
+    public static CatalogSnapshotReader open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Catalog snapshot is too large to map: " + channel.size() + " bytes");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CatalogSnapshotReader(mapped);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long id(int index) {
+        return buffer.getLong(idsAt + index * Long.BYTES);
+    }
+
+    public int releaseYear(int index) {
+        return buffer.getInt(releaseYearsAt + index * Integer.BYTES);
+    }
+
+    public double averageRating(int index) {
+        return buffer.getDouble(averageRatingsAt + index * Double.BYTES);
+    }
+
+    public int numberOfRatings(int index) {
+        return buffer.getInt(numberOfRatingsAt + index * Integer.BYTES);
+    }
+
+    public String title(int index) {
+        int from = titleOffset(index);
+        byte[] bytes = new byte[titleOffset(index + 1) - from];
+        buffer.get(titleBytesAt + from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public String genre(int index) {
+        return decode(genres, buffer.getInt(genreCodesAt + index * Integer.BYTES));
+    }
+
+    public String director(int index) {
+        return decode(directors, buffer.getInt(directorCodesAt + index * Integer.BYTES));
+    }
+
+    private int titleOffset(int index) {
+        return buffer.getInt(titleOffsetsAt + index * Integer.BYTES);
+    }
+
+    private static String decode(String[] dictionary, int code) {
+        return code == CatalogSnapshotFormat.NULL_CODE ? null : dictionary[code];
+    }
+
+    private static String[] readDictionary(ByteBuffer in) {
+        String[] values = new String[in.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            values[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+}
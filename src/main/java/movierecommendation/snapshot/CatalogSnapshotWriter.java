@@ -0,0 +1,191 @@
+package movierecommendation.snapshot;
+
+import movierecommendation.model.Movie;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Collects movies column by column and writes them as a catalog snapshot, see
+ * {@link CatalogSnapshotFormat}.
+ */
+public class CatalogSnapshotWriter {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private long[] ids = new long[1024];
+    private int[] releaseYears = new int[1024];
+    private double[] averageRatings = new double[1024];
+    private int[] numberOfRatings = new int[1024];
+    private int[] titleOffsets = new int[1025];
+    private int[] genreCodes = new int[1024];
+    private int[] directorCodes = new int[1024];
+    private final ByteArrayOutputStream titleBytes = new ByteArrayOutputStream();
+    private final Map<String, Integer> genres = new LinkedHashMap<>();
+    private final Map<String, Integer> directors = new LinkedHashMap<>();
+    private int size;
+
+    /**
+     * Appends a movie. The movie is not retained.
+     */
+    public void add(Movie movie) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            releaseYears = Arrays.copyOf(releaseYears, capacity);
+            averageRatings = Arrays.copyOf(averageRatings, capacity);
+            numberOfRatings = Arrays.copyOf(numberOfRatings, capacity);
+            titleOffsets = Arrays.copyOf(titleOffsets, capacity + 1);
+            genreCodes = Arrays.copyOf(genreCodes, capacity);
+            directorCodes = Arrays.copyOf(directorCodes, capacity);
+        }
+        ids[size] = movie.getId();
+        releaseYears[size] = movie.getReleaseYear();
+        averageRatings[size] = movie.getAverageRating();
+        numberOfRatings[size] = movie.getNumberOfRatings();
+        byte[] title = movie.getTitle() != null ? movie.getTitle().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        titleBytes.write(title, 0, title.length);
+        titleOffsets[size + 1] = titleBytes.size();
+        genreCodes[size] = code(genres, movie.getGenre());
+        directorCodes[size] = code(directors, movie.getDirector());
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes the collected movies to the file, replacing it atomically.
+     *
+     * @return The size of the written file in bytes.
+     */
+    public long write(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        long written;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.putInt(CatalogSnapshotFormat.MAGIC);
+            out.putInt(CatalogSnapshotFormat.VERSION);
+            out.putInt(size);
+            for (int i = 0; i < size; i++) {
+                out.putLong(ids[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                out.putInt(releaseYears[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                out.putDouble(averageRatings[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                out.putInt(numberOfRatings[i]);
+            }
+            for (int i = 0; i <= size; i++) {
+                out.putInt(titleOffsets[i]);
+            }
+            out.putBytes(titleBytes.toByteArray());
+            putDictionary(out, genres, genreCodes);
+            putDictionary(out, directors, directorCodes);
+            written = out.finish();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    private void putDictionary(Output out, Map<String, Integer> dictionary, int[] codes) throws IOException {
+        out.putInt(dictionary.size());
+        for (String value : dictionary.keySet()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.putInt(bytes.length);
+            out.putBytes(bytes);
+        }
+        for (int i = 0; i < size; i++) {
+            out.putInt(codes[i]);
+        }
+    }
+
+    private static int code(Map<String, Integer> dictionary, String value) {
+        if (value == null) {
+            return CatalogSnapshotFormat.NULL_CODE;
+        }
+        return dictionary.computeIfAbsent(value, key -> dictionary.size());
+    }
+
+    /**
+     * Buffered, checksummed output to a file channel.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        private final CRC32C checksum = new CRC32C();
+        private long written;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensureRemaining(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                ensureRemaining(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        long finish() throws IOException {
+            drain();
+            buffer.putInt((int) checksum.getValue());
+            buffer.flip();
+            write();
+            return written;
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            write();
+        }
+
+        private void write() throws IOException {
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package movierecommendation.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from non-negative int keys to float values, without boxing.
+ * Entries cannot be removed. Iterate by slot:
+ * <pre>
+ * for (int slot = 0; slot &lt; map.capacity(); slot++) {
+ *     int key = map.keyAt(slot);
+ *     if (key != IntFloatHashMap.EMPTY) { ... map.valueAt(slot) ... }
+ * }
+ * </pre>
+ * Not thread-safe.
+ */
+public final class IntFloatHashMap {
+
+    public static final int EMPTY = -1;
+
+    private int[] keys;
+    private float[] values;
+    private int size;
+
+    public IntFloatHashMap() {
+        this(2);
+    }
+
+    public IntFloatHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, expectedSize * 4 / 3) * 2 - 1);
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new float[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(int key) {
+        return keys[slotOf(keys, key)] == key;
+    }
+
+    public float get(int key, float defaultValue) {
+        int slot = slotOf(keys, key);
+        return keys[slot] == key ? values[slot] : defaultValue;
+    }
+
+    public void put(int key, float value) {
+        int slot = insert(key);
+        values[slot] = value;
+    }
+
+    public void addTo(int key, float delta) {
+        int slot = insert(key);
+        values[slot] += delta;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the key stored in the given slot, or {@link #EMPTY}.
+     */
+    public int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    public float valueAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Approximate heap size of this map in bytes.
+     */
+    public long estimatedBytes() {
+        return 64L + keys.length * (long) (Integer.BYTES + Float.BYTES);
+    }
+
+    private int insert(int key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative key: " + key);
+        }
+        int slot = slotOf(keys, key);
+        if (keys[slot] == key) {
+            return slot;
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize();
+            slot = slotOf(keys, key);
+        }
+        keys[slot] = key;
+        size++;
+        return slot;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        float[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        values = new float[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slotOf(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int slotOf(int[] keys, int key) {
+        int mask = keys.length - 1;
+        int h = key * 0x9E3779B9;
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,112 @@
+package movierecommendation.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to non-negative int values, without boxing.
+ * Used to assign dense int slots to sparse ids. Not thread-safe.
+ */
+public final class LongIntHashMap {
+
+    private static final int EMPTY = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, expectedSize * 4 / 3) * 2 - 1);
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, EMPTY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value of the key, or the default value if the key is absent.
+     */
+    public int get(long key, int defaultValue) {
+        int slot = slotOf(keys, values, key);
+        return values[slot] == EMPTY ? defaultValue : values[slot];
+    }
+
+    public void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        int slot = slotOf(keys, values, key);
+        if (values[slot] == EMPTY) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                resize();
+                slot = slotOf(keys, values, key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Removes the key if present, shifting back the entries probed past it so no tombstone is left.
+     */
+    public void remove(long key) {
+        int gap = slotOf(keys, values, key);
+        if (values[gap] == EMPTY) {
+            return;
+        }
+        int mask = keys.length - 1;
+        for (int next = (gap + 1) & mask; values[next] != EMPTY; next = (next + 1) & mask) {
+            int home = home(keys[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        values[gap] = EMPTY;
+        size--;
+    }
+
+    /**
+     * Approximate heap size of this map in bytes.
+     */
+    public long estimatedBytes() {
+        return 64L + keys.length * (long) (Long.BYTES + Integer.BYTES);
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(values, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != EMPTY) {
+                int slot = slotOf(keys, values, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int slotOf(long[] keys, int[] values, long key) {
+        int mask = keys.length - 1;
+        int slot = home(key, mask);
+        while (values[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int home(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,65 @@
+package movierecommendation.util;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import movierecommendation.model.Movie;
+import movierecommendation.model.MovieSort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset pagination cursor: the sort key of the last movie of a page.
+ * Listing by id only uses {@link #getId()}; ranked listings use both the sort value and the id.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class MovieCursor {
+
+    private final double sortValue;
+    private final long id;
+
+    public MovieCursor(double sortValue, long id) {
+        this.sortValue = sortValue;
+        this.id = id;
+    }
+
+    /**
+     * Returns the cursor after a movie of a listing ordered by id, which carries no sort value.
+     */
+    public static MovieCursor of(Movie movie) {
+        return new MovieCursor(0, movie.getId());
+    }
+
+    public static MovieCursor of(Movie movie, MovieSort sort) {
+        return new MovieCursor(sort.sortValue(movie), movie.getId());
+    }
+
+    public String encode() {
+        String key = sortValue + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a cursor previously returned by {@link #encode()}.
+     *
+     * @param cursor The encoded cursor, or null.
+     * @return The decoded cursor, or null if none was given.
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    public static MovieCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = key.indexOf(':');
+            return new MovieCursor(Double.parseDouble(key.substring(0, separator)),
+                    Long.parseLong(key.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -1,15 +1,60 @@
 package movierecommendation.util;
 
 import movierecommendation.model.Movie;
+import movierecommendation.model.MovieValidation;
+import movierecommendation.model.MovieViolation;
 import org.springframework.stereotype.Service;
 
+import java.time.Year;
+
 @Service
 public class MovieValidator {
 
+    /**
+     * Length of the title column.
+     */
+    public static final int MAX_TITLE_LENGTH = 255;
+    public static final int MIN_RELEASE_YEAR = 1888;
+    /**
+     * How far in the future a release year may be announced.
+     */
+    public static final int MAX_YEARS_AHEAD = 10;
+
+    private final int maxReleaseYear = Year.now().getValue() + MAX_YEARS_AHEAD;
+
     public boolean validateMovie(Movie movie) {
-        return movie.getTitle() != null
-                && movie.getGenre() != null
-                && movie.getDirector() != null;
+        return validate(movie).isValid();
     }
 
+    /**
+     * Checks a movie against every field rule: title, genre and director are mandatory, the title
+     * fits its column and a release year, when given, is between {@value #MIN_RELEASE_YEAR} and
+     * {@value #MAX_YEARS_AHEAD} years from now. Duplicates are checked by the callers.
+     *
+     * @return The violated rules; never null.
+     */
+    public MovieValidation validate(Movie movie) {
+        MovieValidation validation = MovieValidation.VALID;
+        String title = movie.getTitle();
+        if (isBlank(title)) {
+            validation = validation.with(MovieViolation.MISSING_TITLE);
+        } else if (title.length() > MAX_TITLE_LENGTH) {
+            validation = validation.with(MovieViolation.TITLE_TOO_LONG);
+        }
+        if (isBlank(movie.getGenre())) {
+            validation = validation.with(MovieViolation.MISSING_GENRE);
+        }
+        if (isBlank(movie.getDirector())) {
+            validation = validation.with(MovieViolation.MISSING_DIRECTOR);
+        }
+        int releaseYear = movie.getReleaseYear();
+        if (releaseYear != 0 && (releaseYear < MIN_RELEASE_YEAR || releaseYear > maxReleaseYear)) {
+            validation = validation.with(MovieViolation.RELEASE_YEAR_OUT_OF_RANGE);
+        }
+        return validation;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
 }
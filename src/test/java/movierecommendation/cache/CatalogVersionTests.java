@@ -0,0 +1,92 @@
+package movierecommendation.cache;
+
+import movierecommendation.model.GenreFilter;
+import movierecommendation.model.GenreMatch;
+import movierecommendation.model.Movie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogVersionTests {
+
+    private static final long DRAMA = 1L;
+    private static final long ACTION = 1L << 1;
+
+    private CatalogVersion catalogVersion;
+
+    @BeforeEach
+    void setUp() {
+        catalogVersion = new CatalogVersion();
+    }
+
+    @Test
+    void testWriteBumpsOnlyItsGenresAndTheCatalog() {
+        String catalog = catalogVersion.etag(GenreFilter.UNFILTERED);
+        String drama = catalogVersion.etag(genres(DRAMA));
+        String action = catalogVersion.etag(genres(ACTION));
+
+        catalogVersion.onMoviesUpdated(List.of(buildMovie(1L, DRAMA)));
+
+        assertThat(catalogVersion.etag(GenreFilter.UNFILTERED)).isNotEqualTo(catalog);
+        assertThat(catalogVersion.etag(genres(DRAMA))).isNotEqualTo(drama);
+        assertThat(catalogVersion.etag(genres(ACTION))).isEqualTo(action);
+    }
+
+    @Test
+    void testMultiGenreVersionMovesWithAnyOfItsGenres() {
+        GenreFilter both = GenreFilter.of(DRAMA | ACTION, GenreMatch.ALL);
+        long before = catalogVersion.version(both);
+
+        catalogVersion.onMoviesAdded(List.of(buildMovie(1L, ACTION), buildMovie(2L, ACTION)));
+
+        assertThat(catalogVersion.version(both)).isEqualTo(before + 1);
+        assertThat(catalogVersion.version(genres(DRAMA))).isZero();
+    }
+
+    @Test
+    void testETagIsStrongAndDistinguishesFilters() {
+        String catalog = catalogVersion.etag(GenreFilter.UNFILTERED);
+
+        assertThat(catalog).startsWith("\"").endsWith("\"");
+        assertThat(catalogVersion.etag(genres(DRAMA))).isNotEqualTo(catalog);
+        assertThat(catalogVersion.etag(genres(DRAMA))).isNotEqualTo(catalogVersion.etag(genres(ACTION)));
+    }
+
+    @Test
+    void testCatalogReloadBumpsEveryGenre() {
+        String drama = catalogVersion.etag(genres(DRAMA));
+        String action = catalogVersion.etag(genres(ACTION));
+
+        catalogVersion.onCatalogReloaded();
+
+        assertThat(catalogVersion.etag(genres(DRAMA))).isNotEqualTo(drama);
+        assertThat(catalogVersion.etag(genres(ACTION))).isNotEqualTo(action);
+    }
+
+    @Test
+    void testRemovalBumpsEveryGenre() {
+        String drama = catalogVersion.etag(genres(DRAMA));
+        String catalog = catalogVersion.etag(GenreFilter.UNFILTERED);
+
+        catalogVersion.onMoviesRemoved(List.of(1L));
+
+        assertThat(catalogVersion.etag(genres(DRAMA))).isNotEqualTo(drama);
+        assertThat(catalogVersion.etag(GenreFilter.UNFILTERED)).isNotEqualTo(catalog);
+    }
+
+    private GenreFilter genres(long mask) {
+        return GenreFilter.of(mask, GenreMatch.ANY);
+    }
+
+    private Movie buildMovie(Long id, long genreBits) {
+        return Movie.builder()
+                .id(id)
+                .title("Movie " + id)
+                .genre("Genre " + genreBits)
+                .genreBits(genreBits)
+                .build();
+    }
+}
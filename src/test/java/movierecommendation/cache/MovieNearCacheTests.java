@@ -0,0 +1,148 @@
+package movierecommendation.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.model.Movie;
+import movierecommendation.repository.MovieRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class MovieNearCacheTests {
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MovieNearCache movieNearCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        movieNearCache = new MovieNearCache(movieRepository, 16, meterRegistry);
+    }
+
+    @Test
+    void testGet_ReadsThroughOnce() {
+        when(movieRepository.findById(1L)).thenReturn(Optional.of(buildMovie(1L, 3.0)));
+
+        assertThat(movieNearCache.get(1L).getAverageRating()).isEqualTo(3.0);
+        assertThat(movieNearCache.get(1L).getAverageRating()).isEqualTo(3.0);
+
+        verify(movieRepository, times(1)).findById(1L);
+        assertThat(movieNearCache.getHits()).isEqualTo(1);
+        assertThat(movieNearCache.getMisses()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "movies", "result", "hit").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("cache.movies.load").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testGet_CachesUnknownIds() {
+        when(movieRepository.findById(7L)).thenReturn(Optional.empty());
+
+        assertThat(movieNearCache.exists(7L)).isFalse();
+        assertThat(movieNearCache.exists(7L)).isFalse();
+        verify(movieRepository, times(1)).findById(7L);
+
+        movieNearCache.onMovieAdded(buildMovie(7L, 0));
+
+        assertThat(movieNearCache.exists(7L)).isTrue();
+        verify(movieRepository, times(1)).findById(7L);
+    }
+
+    @Test
+    void testWriteThroughUpdatesOnlyCachedMovies() {
+        when(movieRepository.findById(1L)).thenReturn(Optional.of(buildMovie(1L, 3.0)));
+        movieNearCache.get(1L);
+
+        movieNearCache.onMoviesUpdated(List.of(buildMovie(1L, 4.5), buildMovie(2L, 2.0)));
+
+        assertThat(movieNearCache.get(1L).getAverageRating()).isEqualTo(4.5);
+        assertThat(movieNearCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void testExisting_LoadsMissesInOneQuery() {
+        when(movieRepository.findById(1L)).thenReturn(Optional.of(buildMovie(1L, 3.0)));
+        movieNearCache.get(1L);
+        when(movieRepository.findAllById(anyIterable())).thenReturn(List.of(buildMovie(2L, 4.0)));
+
+        assertThat(movieNearCache.existing(List.of(1L, 2L, 3L))).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(movieNearCache.existing(List.of(1L, 2L, 3L))).containsExactlyInAnyOrder(1L, 2L);
+
+        verify(movieRepository, times(1)).findAllById(argThat(ids -> Set.copyOf((Collection<Long>) ids).equals(Set.of(2L, 3L))));
+        verify(movieRepository, times(1)).findAllById(anyIterable());
+        assertThat(movieNearCache.getHits()).isEqualTo(4);
+        assertThat(movieNearCache.getMisses()).isEqualTo(3);
+    }
+
+    @Test
+    void testCachedCopyIsDetached() {
+        Movie movie = buildMovie(1L, 3.0);
+        when(movieRepository.findById(1L)).thenReturn(Optional.of(movie));
+        movieNearCache.get(1L);
+
+        movie.setAverageRating(1.0);
+
+        assertThat(movieNearCache.get(1L).getAverageRating()).isEqualTo(3.0);
+    }
+
+    @Test
+    void testCatalogReloadedClears() {
+        when(movieRepository.findById(anyLong())).thenAnswer(invocation -> Optional.of(buildMovie(invocation.getArgument(0), 3.0)));
+        movieNearCache.get(1L);
+
+        movieNearCache.onCatalogReloaded();
+        movieNearCache.get(1L);
+
+        verify(movieRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void testRemovedMoviesAreDropped() {
+        when(movieRepository.findById(anyLong())).thenAnswer(invocation -> Optional.of(buildMovie(invocation.getArgument(0), 3.0)));
+        movieNearCache.get(1L);
+        movieNearCache.get(2L);
+
+        movieNearCache.onMoviesRemoved(List.of(1L));
+        movieNearCache.get(1L);
+        movieNearCache.get(2L);
+
+        verify(movieRepository, times(2)).findById(1L);
+        verify(movieRepository, times(1)).findById(2L);
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        when(movieRepository.findById(anyLong())).thenAnswer(invocation -> Optional.of(buildMovie(invocation.getArgument(0), 3.0)));
+
+        for (long id = 1; id <= 1000; id++) {
+            movieNearCache.get(id);
+        }
+
+        assertThat(movieNearCache.size()).isLessThanOrEqualTo(16);
+        assertThat(meterRegistry.get("cache.evictions").tag("cache", "movies").functionCounter().count())
+                .isEqualTo(1000 - movieNearCache.size());
+    }
+
+    private Movie buildMovie(Long id, double averageRating) {
+        return Movie.builder()
+                .id(id)
+                .title("Movie " + id)
+                .genre("Drama")
+                .director("Test Director")
+                .releaseYear(2021)
+                .averageRating(averageRating)
+                .build();
+    }
+}
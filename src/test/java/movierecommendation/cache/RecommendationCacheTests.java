@@ -0,0 +1,162 @@
+package movierecommendation.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.model.GenreFilter;
+import movierecommendation.model.GenreMatch;
+import movierecommendation.model.Movie;
+import movierecommendation.model.MovieSort;
+import movierecommendation.model.RecommendationQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecommendationCacheTests {
+
+    private static final long DRAMA = 1L;
+    private static final long ACTION = 1L << 1;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CatalogVersion catalogVersion;
+    private RecommendationCache recommendationCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        catalogVersion = new CatalogVersion();
+        recommendationCache = new RecommendationCache(catalogVersion, 2, 0, meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void testGet_HitAfterMiss() {
+        recommendationCache.get(genres(DRAMA), query(10), loader());
+        List<Movie> cached = recommendationCache.get(genres(DRAMA), query(10), loader());
+
+        assertThat(cached).hasSize(1);
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(recommendationCache.getHits()).isEqualTo(1);
+        assertThat(recommendationCache.getMisses()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testWriteInvalidatesOnlyAffectedGenre() {
+        recommendationCache = new RecommendationCache(catalogVersion, 10, 0, new SimpleMeterRegistry());
+        recommendationCache.get(genres(DRAMA), query(10), loader());
+        recommendationCache.get(genres(ACTION), query(10), loader());
+        recommendationCache.get(GenreFilter.UNFILTERED, query(10), loader());
+
+        catalogVersion.onMoviesUpdated(List.of(buildMovie(1L, DRAMA)));
+
+        recommendationCache.get(genres(DRAMA), query(10), loader());
+        recommendationCache.get(genres(ACTION), query(10), loader());
+        recommendationCache.get(GenreFilter.UNFILTERED, query(10), loader());
+
+        assertThat(loads.get()).isEqualTo(5);
+        assertThat(recommendationCache.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void testWriteInvalidatesMultiGenreEntriesOfAnyOfItsGenres() {
+        GenreFilter both = GenreFilter.of(DRAMA | ACTION, GenreMatch.ALL);
+        recommendationCache.get(both, query(10), loader());
+        recommendationCache.get(GenreFilter.of(DRAMA | ACTION, GenreMatch.ANY), query(10), loader());
+
+        catalogVersion.onMovieAdded(buildMovie(1L, ACTION));
+
+        recommendationCache.get(both, query(10), loader());
+        recommendationCache.get(GenreFilter.of(DRAMA | ACTION, GenreMatch.ANY), query(10), loader());
+
+        assertThat(loads.get()).isEqualTo(4);
+    }
+
+    @Test
+    void testMaxStalenessServesInvalidatedEntries() {
+        recommendationCache = new RecommendationCache(catalogVersion, 10, 60_000, new SimpleMeterRegistry());
+        recommendationCache.get(genres(DRAMA), query(null), loader());
+
+        catalogVersion.onMovieAdded(buildMovie(1L, DRAMA));
+        recommendationCache.get(genres(DRAMA), query(null), loader());
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testSizeBasedEviction() {
+        recommendationCache.get(genres(DRAMA), query(1), loader());
+        recommendationCache.get(genres(DRAMA), query(2), loader());
+        recommendationCache.get(genres(DRAMA), query(1), loader());
+        recommendationCache.get(genres(ACTION), query(1), loader());
+
+        assertThat(recommendationCache.size()).isEqualTo(2);
+        assertThat(recommendationCache.getEvictions()).isEqualTo(1);
+
+        recommendationCache.get(genres(DRAMA), query(2), loader());
+        assertThat(loads.get()).isEqualTo(4);
+    }
+
+    @Test
+    void testSegmentedCacheStaysBounded() {
+        recommendationCache = new RecommendationCache(catalogVersion, 1024, 0, new SimpleMeterRegistry());
+        for (int limit = 1; limit <= 5000; limit++) {
+            recommendationCache.get(genres(DRAMA), query(limit), loader());
+        }
+
+        assertThat(recommendationCache.size()).isLessThanOrEqualTo(1024).isGreaterThan(512);
+        assertThat(recommendationCache.getEvictions()).isEqualTo(5000 - recommendationCache.size());
+        recommendationCache.get(genres(DRAMA), query(5000), loader());
+        assertThat(recommendationCache.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void testSortIsPartOfTheKey() {
+        recommendationCache.get(genres(DRAMA), query(10), loader());
+        recommendationCache.get(genres(DRAMA), RecommendationQuery.builder().limit(10).sort(MovieSort.SCORE).build(), loader());
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testCatalogReloadInvalidatesEverything() {
+        recommendationCache.get(genres(DRAMA), query(10), loader());
+        recommendationCache.get(GenreFilter.UNFILTERED, query(10), loader());
+
+        catalogVersion.onCatalogReloaded();
+        recommendationCache.get(genres(DRAMA), query(10), loader());
+        recommendationCache.get(GenreFilter.UNFILTERED, query(10), loader());
+
+        assertThat(loads.get()).isEqualTo(4);
+    }
+
+    private GenreFilter genres(long mask) {
+        return GenreFilter.of(mask, GenreMatch.ANY);
+    }
+
+    private RecommendationQuery query(Integer limit) {
+        return RecommendationQuery.builder().limit(limit).build();
+    }
+
+    private Supplier<List<Movie>> loader() {
+        return () -> {
+            loads.incrementAndGet();
+            return List.of(buildMovie(1L, DRAMA));
+        };
+    }
+
+    private Movie buildMovie(Long id, long genreBits) {
+        return Movie.builder()
+                .id(id)
+                .title("Movie " + id)
+                .genre("Genre " + genreBits)
+                .genreBits(genreBits)
+                .director("Test Director")
+                .releaseYear(2021)
+                .build();
+    }
+}
@@ -0,0 +1,224 @@
+package movierecommendation.cluster;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.exception.ClusterUnavailableException;
+import movierecommendation.index.MovieRankingIndex;
+import movierecommendation.model.Movie;
+import movierecommendation.model.MovieSort;
+import movierecommendation.model.RatingBatchItem;
+import movierecommendation.model.RatingBatchReport;
+import movierecommendation.model.RatingBatchResult;
+import movierecommendation.model.RecommendationQuery;
+import movierecommendation.service.MovieService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ClusterMovieServiceTests {
+
+    private static final String SELF = "http://a:8080";
+    private static final String OTHER = "http://b:8080";
+    private static final String THIRD = "http://c:8080";
+
+    @Mock
+    private MovieService delegate;
+
+    @Mock
+    private ClusterMembership clusterMembership;
+
+    @Mock
+    private ClusterClient clusterClient;
+
+    @Mock
+    private RatingForwarder ratingForwarder;
+
+    @Mock
+    private ClusterRebalancer clusterRebalancer;
+
+    @Mock
+    private MovieRankingIndex movieRankingIndex;
+
+    private ClusterMovieService clusterMovieService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(clusterMembership.isEnabled()).thenReturn(true);
+        when(clusterMembership.getSelf()).thenReturn(SELF);
+        when(clusterMembership.getMembers()).thenReturn(List.of(SELF, OTHER, THIRD));
+        clusterMovieService = new ClusterMovieService(delegate, clusterMembership, clusterClient, ratingForwarder,
+                clusterRebalancer, movieRankingIndex, 2, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        clusterMovieService.stop();
+    }
+
+    @Test
+    void testRateMovie_AppliesRatingOfLocalMovie() {
+        when(clusterMembership.isLocal(1L)).thenReturn(true);
+        when(delegate.rateMovie(1L, 7L, 4.0)).thenReturn(ResponseEntity.ok("Rating submitted successfully"));
+
+        ResponseEntity<String> response = clusterMovieService.rateMovie(1L, 7L, 4.0);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        verifyNoInteractions(ratingForwarder);
+    }
+
+    @Test
+    void testRateMovie_AppliesRatingOfMovieNotHandedOffYet() {
+        when(clusterMembership.isLocal(1L)).thenReturn(false);
+        when(movieRankingIndex.contains(1L)).thenReturn(true);
+        when(delegate.rateMovie(1L, null, 4.0)).thenReturn(ResponseEntity.ok("Rating submitted successfully"));
+
+        assertThat(clusterMovieService.rateMovie(1L, null, 4.0).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        verifyNoInteractions(ratingForwarder);
+    }
+
+    @Test
+    void testRateMovie_ForwardsRatingOfRemoteMovie() {
+        when(clusterMembership.isLocal(1L)).thenReturn(false);
+        when(clusterMembership.owner(1L)).thenReturn(OTHER);
+        when(ratingForwarder.offer(OTHER, 1L, 7L, 4.0)).thenReturn(true);
+
+        ResponseEntity<String> response = clusterMovieService.rateMovie(1L, 7L, 4.0);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        assertThat(response.getBody()).isEqualTo("Rating accepted");
+        verify(delegate, never()).rateMovie(anyLong(), any(), anyDouble());
+    }
+
+    @Test
+    void testRateMovie_RejectsInvalidRatingOfRemoteMovie() {
+        when(clusterMembership.isLocal(1L)).thenReturn(false);
+
+        ResponseEntity<String> response = clusterMovieService.rateMovie(1L, null, 6.0);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).isEqualTo("Invalid rating value. Rating must be between 1 and 5.");
+        verifyNoInteractions(ratingForwarder);
+    }
+
+    @Test
+    void testRateMovies_SplitsLocalAndForwardedRatings() {
+        RatingBatchItem local = new RatingBatchItem(1L, 7L, 4.0);
+        RatingBatchItem invalid = new RatingBatchItem(2L, null, 6.0);
+        when(clusterMembership.isLocal(1L)).thenReturn(true);
+        when(clusterMembership.owner(2L)).thenReturn(OTHER);
+        when(clusterMembership.owner(3L)).thenReturn(THIRD);
+        when(ratingForwarder.offer(OTHER, 2L, null, 5.0)).thenReturn(true);
+        when(ratingForwarder.offer(THIRD, 3L, null, 5.0)).thenReturn(false);
+        RatingBatchReport localReport = new RatingBatchReport();
+        localReport.add(new RatingBatchResult(0, RatingBatchResult.Status.RATED, 1L, null));
+        localReport.add(new RatingBatchResult(1, RatingBatchResult.Status.INVALID, 2L, "Invalid rating value."));
+        localReport.setMovies(1);
+        when(delegate.rateMovies(List.of(local, invalid))).thenReturn(localReport);
+
+        RatingBatchReport report = clusterMovieService.rateMovies(List.of(new RatingBatchItem(2L, null, 5.0), local,
+                new RatingBatchItem(3L, null, 5.0), invalid));
+
+        assertThat(report.getResults()).extracting(RatingBatchResult::getIndex).containsExactly(0, 1, 2, 3);
+        assertThat(report.getResults()).extracting(RatingBatchResult::getStatus).containsExactly(
+                RatingBatchResult.Status.ACCEPTED, RatingBatchResult.Status.RATED, RatingBatchResult.Status.REJECTED,
+                RatingBatchResult.Status.INVALID);
+        assertThat(report.getMovies()).isEqualTo(2);
+        verify(ratingForwarder, never()).offer(anyString(), eq(2L), any(), eq(6.0));
+    }
+
+    @Test
+    void testRateMovie_AsksToRetryWhenForwardQueueFull() {
+        when(clusterMembership.isLocal(1L)).thenReturn(false);
+        when(clusterMembership.owner(1L)).thenReturn(OTHER);
+        when(ratingForwarder.offer(OTHER, 1L, null, 4.0)).thenReturn(false);
+
+        ResponseEntity<String> response = clusterMovieService.rateMovie(1L, null, 4.0);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+    }
+
+    @Test
+    void testRecommend_MergesPagesOfAllMembers() {
+        RecommendationQuery query = RecommendationQuery.builder().genre("Action").limit(3).build();
+        when(delegate.recommendMoviesByRatingsAndGenre(query)).thenReturn(List.of(movie(1L, 4.5), movie(4L, 3.0)));
+        when(clusterClient.recommend(OTHER, query)).thenReturn(List.of(movie(2L, 5.0), movie(5L, 4.5)));
+        when(clusterClient.recommend(THIRD, query)).thenReturn(List.of(movie(3L, 4.0)));
+
+        List<Movie> movies = clusterMovieService.recommendMoviesByRatingsAndGenre(query);
+
+        assertThat(movies).extracting(Movie::getId).containsExactly(2L, 1L, 5L);
+    }
+
+    @Test
+    void testRecommend_MergesByRequestedSort() {
+        RecommendationQuery query = RecommendationQuery.builder().sort(MovieSort.SCORE).build();
+        Movie local = movie(1L, 5.0);
+        local.setRankingScore(2.0);
+        Movie remote = movie(2L, 3.0);
+        remote.setRankingScore(3.0);
+        when(delegate.recommendMoviesByRatingsAndGenre(query)).thenReturn(List.of(local));
+        when(clusterClient.recommend(OTHER, query)).thenReturn(List.of(remote));
+        when(clusterClient.recommend(THIRD, query)).thenReturn(List.of());
+
+        assertThat(clusterMovieService.recommendMoviesByRatingsAndGenre(query))
+                .extracting(Movie::getId).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void testRecommend_FailsWhenMemberUnavailable() {
+        RecommendationQuery query = RecommendationQuery.builder().build();
+        when(delegate.recommendMoviesByRatingsAndGenre(query)).thenReturn(List.of(movie(1L, 4.5)));
+        when(clusterClient.recommend(OTHER, query)).thenReturn(List.of());
+        when(clusterClient.recommend(THIRD, query))
+                .thenThrow(new ClusterUnavailableException("Cluster member http://c:8080 is unavailable", null));
+
+        assertThatThrownBy(() -> clusterMovieService.recommendMoviesByRatingsAndGenre(query))
+                .isInstanceOf(ClusterUnavailableException.class)
+                .hasMessage("Cluster member http://c:8080 is unavailable");
+    }
+
+    @Test
+    void testAddMovie_QueuesCreatedMovieForHandoff() {
+        Movie movie = movie(null, 0);
+        when(delegate.addMovie(movie)).thenAnswer(invocation -> {
+            movie.setId(9L);
+            return ResponseEntity.status(HttpStatus.CREATED).body("Movie added successfully");
+        });
+
+        clusterMovieService.addMovie(movie);
+
+        verify(clusterRebalancer).movieCreated(9L);
+    }
+
+    @Test
+    void testDisabled_DelegatesEveryCall() {
+        when(clusterMembership.isEnabled()).thenReturn(false);
+        RecommendationQuery query = RecommendationQuery.builder().build();
+        when(delegate.recommendMoviesByRatingsAndGenre(query)).thenReturn(List.of(movie(1L, 4.5)));
+        when(delegate.getRecommendationETag(query)).thenReturn("\"1\"");
+        when(delegate.rateMovie(1L, null, 4.0)).thenReturn(ResponseEntity.ok("Rating submitted successfully"));
+
+        assertThat(clusterMovieService.recommendMoviesByRatingsAndGenre(query)).hasSize(1);
+        assertThat(clusterMovieService.getRecommendationETag(query)).isEqualTo("\"1\"");
+        assertThat(clusterMovieService.rateMovie(1L, null, 4.0).getStatusCode()).isEqualTo(HttpStatus.OK);
+        verifyNoInteractions(clusterClient, ratingForwarder, clusterRebalancer);
+    }
+
+    private static Movie movie(Long id, double averageRating) {
+        return Movie.builder().id(id).title("Movie " + id).genre("Action").averageRating(averageRating).build();
+    }
+}
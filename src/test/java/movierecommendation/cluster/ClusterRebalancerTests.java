@@ -0,0 +1,227 @@
+package movierecommendation.cluster;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.exception.ClusterUnavailableException;
+import movierecommendation.journal.RatingJournal;
+import movierecommendation.model.Movie;
+import movierecommendation.model.UserRating;
+import movierecommendation.repository.CatalogLoader;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.repository.UserRatingRepository;
+import movierecommendation.service.GenreDictionary;
+import movierecommendation.service.MovieChangeNotifier;
+import movierecommendation.service.RankingScorer;
+import movierecommendation.service.RatingAggregator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ClusterRebalancerTests {
+
+    private static final String SELF = "http://a:8080";
+    private static final String OTHER = "http://b:8080";
+
+    @Mock
+    private ClusterMembership clusterMembership;
+
+    @Mock
+    private ClusterClient clusterClient;
+
+    @Mock
+    private RatingForwarder ratingForwarder;
+
+    @Mock
+    private RatingAggregator ratingAggregator;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private UserRatingRepository userRatingRepository;
+
+    @Mock
+    private MovieChangeNotifier movieChangeNotifier;
+
+    @Mock
+    private GenreDictionary genreDictionary;
+
+    @Mock
+    private RankingScorer rankingScorer;
+
+    @Mock
+    private RatingJournal ratingJournal;
+
+    @Mock
+    private CatalogLoader catalogLoader;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ClusterRebalancer clusterRebalancer;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        when(clusterMembership.isEnabled()).thenReturn(true);
+        when(clusterMembership.getSelf()).thenReturn(SELF);
+        clusterRebalancer = new ClusterRebalancer(clusterMembership, clusterClient, ratingForwarder, ratingAggregator,
+                movieRepository, userRatingRepository, movieChangeNotifier, genreDictionary, rankingScorer,
+                ratingJournal, catalogLoader, transactionManager, 2, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clusterRebalancer.stop();
+    }
+
+    @Test
+    void testAccept_InsertsNewMoviesAndReleasesParkedRatings() {
+        Movie held = movie(1L);
+        Movie arriving = movie(2L);
+        UserRating rating = UserRating.builder().userId(7L).movieId(2L).rating(4.0).build();
+        when(movieRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(held));
+        when(genreDictionary.encodeLenient("Action")).thenReturn(1L);
+        when(rankingScorer.score(4.0, 1)).thenReturn(3.5);
+
+        MovieTransferReceipt receipt = clusterRebalancer.accept(new MovieTransfer(List.of(movie(1L), arriving),
+                List.of(UserRating.builder().userId(7L).movieId(1L).rating(5.0).build(), rating)));
+
+        assertThat(receipt.getAccepted()).containsExactly(1L, 2L);
+        assertThat(receipt.getConflicts()).isEmpty();
+        assertThat(arriving.getGenreBits()).isEqualTo(1L);
+        assertThat(arriving.getRankingScore()).isEqualTo(3.5);
+        verify(catalogLoader).insertMovies(List.of(arriving));
+        verify(catalogLoader).insertUserRatings(List.of(rating));
+        verify(transactionManager).commit(any());
+        verify(movieChangeNotifier).moviesAdded(List.of(arriving));
+        verify(ratingJournal).appendUserRatings(List.of(rating));
+        verify(movieChangeNotifier).userRatingsUpdated(List.of(rating));
+        verify(ratingForwarder).releaseParked(List.of(1L, 2L));
+        assertThat(meterRegistry.get("cluster.movies.received").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testAccept_ReportsIdsHeldByOtherMovies() {
+        Movie held = Movie.builder().id(1L).title("Another Movie").genre("Drama").build();
+        when(movieRepository.findAllById(List.of(1L))).thenReturn(List.of(held));
+
+        MovieTransferReceipt receipt = clusterRebalancer.accept(new MovieTransfer(List.of(movie(1L)),
+                List.of(UserRating.builder().userId(7L).movieId(1L).rating(5.0).build())));
+
+        assertThat(receipt.getAccepted()).isEmpty();
+        assertThat(receipt.getConflicts()).containsExactly(1L);
+        verify(movieChangeNotifier).moviesAdded(List.of());
+        verify(movieChangeNotifier).userRatingsUpdated(List.of());
+    }
+
+    @Test
+    void testAfterSingletonsInstantiated_RestartsSequenceAboveJournaledHighWater() {
+        long base = 1L << ClusterRebalancer.ID_RANGE_BITS;
+        when(clusterMembership.getNodeId()).thenReturn(1);
+        when(movieRepository.findMaxIdInRange(base, 2 * base)).thenReturn(base + 5);
+        when(ratingJournal.getIdHighWater()).thenReturn(base + 100);
+
+        clusterRebalancer.afterSingletonsInstantiated();
+
+        verify(catalogLoader).restartMovieSequenceAbove(base + 100);
+    }
+
+    @Test
+    void testRebalance_HandsOffMoviesOwnedElsewhere() {
+        when(clusterMembership.isLocal(1L)).thenReturn(true);
+        when(clusterMembership.isLocal(2L)).thenReturn(false);
+        when(clusterMembership.owner(2L)).thenReturn(OTHER);
+        when(movieRepository.findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), any(Pageable.class)))
+                .thenReturn(List.of(movie(1L), movie(2L)));
+        when(movieRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), any(Pageable.class))).thenReturn(List.of());
+        when(userRatingRepository.findByMovieIdIn(List.of(2L))).thenReturn(List.of());
+        when(clusterClient.transfer(eq(OTHER), any())).thenReturn(new MovieTransferReceipt(List.of(2L), List.of()));
+
+        assertThat(clusterRebalancer.rebalance()).isEqualTo(1);
+
+        verify(ratingAggregator).flush();
+        verify(clusterClient).transfer(OTHER, new MovieTransfer(List.of(movie(2L)), List.of()));
+        verify(ratingJournal).recordIdHighWater(2L);
+        verify(userRatingRepository).deleteByMovieIdIn(List.of(2L));
+        verify(movieRepository).deleteAllByIdInBatch(List.of(2L));
+        verify(movieChangeNotifier).moviesRemoved(List.of(2L));
+        verify(movieChangeNotifier, never()).catalogReloaded();
+        assertThat(meterRegistry.get("cluster.movies.handed.off").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cluster.rebalance").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testRebalance_KeepsMoviesWhenOwnerUnavailable() {
+        when(clusterMembership.isLocal(2L)).thenReturn(false);
+        when(clusterMembership.owner(2L)).thenReturn(OTHER);
+        when(movieRepository.findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), any(Pageable.class)))
+                .thenReturn(List.of(movie(2L)));
+        when(movieRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), any(Pageable.class))).thenReturn(List.of());
+        doThrow(new ClusterUnavailableException("Cluster member http://b:8080 is unavailable", null))
+                .when(clusterClient).transfer(eq(OTHER), any());
+
+        assertThat(clusterRebalancer.rebalance()).isZero();
+
+        verify(movieRepository, never()).deleteAllByIdInBatch(any());
+        verify(userRatingRepository, never()).deleteByMovieIdIn(any());
+        verify(movieChangeNotifier, never()).catalogReloaded();
+    }
+
+    @Test
+    void testRebalance_KeepsMoviesTheOwnerDidNotAcknowledge() {
+        when(clusterMembership.isLocal(anyLong())).thenReturn(false);
+        when(clusterMembership.owner(anyLong())).thenReturn(OTHER);
+        when(movieRepository.findByIdGreaterThanOrderByIdAsc(eq(Long.MIN_VALUE), any(Pageable.class)))
+                .thenReturn(List.of(movie(2L), movie(3L)));
+        when(movieRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), any(Pageable.class))).thenReturn(List.of());
+        when(clusterClient.transfer(eq(OTHER), any())).thenReturn(new MovieTransferReceipt(List.of(2L), List.of(3L)));
+
+        assertThat(clusterRebalancer.rebalance()).isEqualTo(1);
+
+        verify(movieRepository).deleteAllByIdInBatch(List.of(2L));
+        verify(userRatingRepository).deleteByMovieIdIn(List.of(2L));
+        verify(movieChangeNotifier).moviesRemoved(List.of(2L));
+        verify(ratingJournal).recordIdHighWater(2L);
+    }
+
+    @Test
+    void testHandOffCreated_OnlyMovesQueuedMoviesOwnedElsewhere() {
+        when(clusterMembership.isLocal(1L)).thenReturn(true);
+        when(clusterMembership.isLocal(2L)).thenReturn(false);
+        when(clusterMembership.owner(2L)).thenReturn(OTHER);
+        when(movieRepository.findAllById(List.of(2L))).thenReturn(List.of(movie(2L)));
+        when(clusterClient.transfer(eq(OTHER), any())).thenReturn(new MovieTransferReceipt(List.of(2L), List.of()));
+
+        clusterRebalancer.movieCreated(1L);
+        clusterRebalancer.movieCreated(2L);
+
+        assertThat(clusterRebalancer.handOffCreated()).isEqualTo(1);
+        assertThat(clusterRebalancer.handOffCreated()).isZero();
+        verify(clusterClient).transfer(eq(OTHER), any());
+        verify(movieRepository).deleteAllByIdInBatch(List.of(2L));
+    }
+
+    @Test
+    void testMemberLeft_IgnoresSelf() {
+        clusterRebalancer.memberLeft(SELF + "/");
+
+        verify(clusterMembership, never()).remove(anyString());
+    }
+
+    private static Movie movie(Long id) {
+        return Movie.builder().id(id).title("Movie " + id).genre("Action").averageRating(4.0).numberOfRatings(1)
+                .build();
+    }
+}
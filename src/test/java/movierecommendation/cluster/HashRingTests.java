@@ -0,0 +1,63 @@
+package movierecommendation.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashRingTests {
+
+    private static final List<String> MEMBERS = List.of("http://a:8080", "http://b:8080", "http://c:8080");
+
+    @Test
+    void testOwner_IsDeterministicAcrossMemberOrder() {
+        HashRing ring = new HashRing(MEMBERS, 128);
+        HashRing reordered = new HashRing(List.of("http://c:8080", "http://a:8080", "http://b:8080"), 128);
+
+        for (long id = 1; id <= 1000; id++) {
+            assertThat(reordered.owner(id)).isEqualTo(ring.owner(id));
+        }
+    }
+
+    @Test
+    void testOwner_SpreadsIdsEvenly() {
+        HashRing ring = new HashRing(MEMBERS, 128);
+        Map<String, Integer> counts = new HashMap<>();
+
+        for (long id = 1; id <= 30000; id++) {
+            counts.merge(ring.owner(id), 1, Integer::sum);
+        }
+
+        assertThat(counts).hasSize(3);
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(7000, 13000));
+    }
+
+    @Test
+    void testWith_MovesOnlyIdsToTheNewMember() {
+        HashRing ring = new HashRing(MEMBERS, 128);
+        HashRing grown = ring.with("http://d:8080");
+        int moved = 0;
+
+        for (long id = 1; id <= 20000; id++) {
+            if (!grown.owner(id).equals(ring.owner(id))) {
+                assertThat(grown.owner(id)).isEqualTo("http://d:8080");
+                moved++;
+            }
+        }
+
+        assertThat(moved).isBetween(3000, 7000);
+        assertThat(grown.without("http://d:8080").getMembers()).isEqualTo(ring.getMembers());
+    }
+
+    @Test
+    void testWithAndWithout_ReturnSameRingWhenUnchanged() {
+        HashRing ring = new HashRing(MEMBERS, 16);
+
+        assertThat(ring.with("http://a:8080")).isSameAs(ring);
+        assertThat(ring.without("http://d:8080")).isSameAs(ring);
+        assertThat(new HashRing(List.of(), 16).owner(1L)).isNull();
+    }
+}
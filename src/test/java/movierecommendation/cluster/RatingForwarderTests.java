@@ -0,0 +1,138 @@
+package movierecommendation.cluster;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.exception.ClusterUnavailableException;
+import movierecommendation.service.RatingAggregator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RatingForwarderTests {
+
+    private static final String OWNER = "http://b:8080";
+
+    @Mock
+    private ClusterMembership clusterMembership;
+
+    @Mock
+    private ClusterClient clusterClient;
+
+    @Mock
+    private RatingAggregator ratingAggregator;
+
+    private final AtomicLong now = new AtomicLong(1000);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    void testFlush_SendsQueuedRatingsInBatches() {
+        RatingForwarder ratingForwarder = forwarder(2, 10);
+        ratingForwarder.offer(OWNER, 1L, null, 4.0);
+        ratingForwarder.offer(OWNER, 2L, 7L, 3.0);
+        ratingForwarder.offer(OWNER, 3L, null, 5.0);
+
+        assertThat(ratingForwarder.pending()).isEqualTo(3);
+        assertThat(ratingForwarder.flush()).isEqualTo(3);
+
+        verify(clusterClient).sendRatings(OWNER, List.of(new ForwardedRating(1L, null, 4.0),
+                new ForwardedRating(2L, 7L, 3.0)));
+        verify(clusterClient).sendRatings(OWNER, List.of(new ForwardedRating(3L, null, 5.0)));
+        assertThat(ratingForwarder.pending()).isZero();
+    }
+
+    @Test
+    void testOffer_RejectsWhenQueueFull() {
+        RatingForwarder ratingForwarder = forwarder(10, 1);
+
+        assertThat(ratingForwarder.offer(OWNER, 1L, null, 4.0)).isTrue();
+        assertThat(ratingForwarder.offer(OWNER, 2L, null, 4.0)).isFalse();
+        assertThat(ratingForwarder.offer("http://c:8080", 3L, null, 4.0)).isTrue();
+    }
+
+    @Test
+    void testFlush_DropsBatchWhenOwnerUnavailable() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RatingForwarder ratingForwarder = new RatingForwarder(clusterMembership, clusterClient, ratingAggregator,
+                10, 10, 5000, meterRegistry);
+        doThrow(new ClusterUnavailableException("Cluster member http://b:8080 is unavailable", null))
+                .when(clusterClient).sendRatings(eq(OWNER), anyList());
+        ratingForwarder.offer(OWNER, 1L, null, 4.0);
+
+        assertThat(ratingForwarder.flush()).isZero();
+
+        assertThat(ratingForwarder.pending()).isZero();
+        assertThat(meterRegistry.get("cluster.ratings.forward.failed").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cluster.ratings.forwarded").functionCounter().count()).isZero();
+    }
+
+    @Test
+    void testReceive_AppliesRatingsOfLocalMovies() {
+        RatingForwarder ratingForwarder = forwarder(10, 10);
+        when(clusterMembership.isLocal(1L)).thenReturn(true);
+        when(ratingAggregator.record(1L, 7L, 4.0)).thenReturn(true);
+
+        assertThat(ratingForwarder.receive(List.of(new ForwardedRating(1L, 7L, 4.0)))).isEqualTo(1);
+
+        assertThat(ratingForwarder.parked()).isZero();
+    }
+
+    @Test
+    void testReceive_PassesOnRatingsOfMoviesOwnedElsewhere() {
+        RatingForwarder ratingForwarder = forwarder(10, 10);
+        when(clusterMembership.isLocal(1L)).thenReturn(false);
+        when(clusterMembership.owner(1L)).thenReturn(OWNER);
+
+        assertThat(ratingForwarder.receive(List.of(new ForwardedRating(1L, null, 4.0)))).isZero();
+
+        verify(ratingAggregator, never()).record(anyLong(), any(), anyDouble());
+        assertThat(ratingForwarder.flush()).isEqualTo(1);
+        verify(clusterClient).sendRatings(OWNER, List.of(new ForwardedRating(1L, null, 4.0)));
+    }
+
+    @Test
+    void testReceive_ParksRatingsUntilMovieArrives() {
+        RatingForwarder ratingForwarder = forwarder(10, 10);
+        when(clusterMembership.isLocal(1L)).thenReturn(true);
+        when(ratingAggregator.record(1L, null, 4.0)).thenReturn(false);
+
+        assertThat(ratingForwarder.receive(List.of(new ForwardedRating(1L, null, 4.0)))).isZero();
+        assertThat(ratingForwarder.parked()).isEqualTo(1);
+
+        ratingForwarder.releaseParked(List.of(1L));
+
+        verify(ratingAggregator, times(2)).record(1L, null, 4.0);
+        assertThat(ratingForwarder.parked()).isZero();
+    }
+
+    @Test
+    void testFlush_ExpiresParkedRatings() {
+        RatingForwarder ratingForwarder = forwarder(10, 10);
+        when(clusterMembership.isLocal(1L)).thenReturn(true);
+        ratingForwarder.receive(List.of(new ForwardedRating(1L, null, 4.0)));
+
+        ratingForwarder.flush();
+        assertThat(ratingForwarder.parked()).isEqualTo(1);
+        now.addAndGet(5000);
+        ratingForwarder.flush();
+
+        assertThat(ratingForwarder.parked()).isZero();
+        ratingForwarder.releaseParked(List.of(1L));
+        verify(ratingAggregator, times(1)).record(1L, null, 4.0);
+    }
+
+    private RatingForwarder forwarder(int batchSize, int capacity) {
+        return new RatingForwarder(clusterMembership, clusterClient, ratingAggregator, batchSize, capacity, 5000,
+                now::get);
+    }
+}
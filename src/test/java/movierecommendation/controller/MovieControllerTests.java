@@ -1,9 +1,20 @@
 package movierecommendation.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import movierecommendation.MovieRecommendation;
+import movierecommendation.model.GenreMatch;
 import movierecommendation.model.Movie;
+import movierecommendation.model.MovieIngestReport;
+import movierecommendation.model.MovieIngestResult;
+import movierecommendation.model.MovieSort;
+import movierecommendation.model.RatingBatchItem;
+import movierecommendation.model.RatingBatchReport;
+import movierecommendation.model.RatingBatchResult;
+import movierecommendation.model.RecommendationQuery;
 import movierecommendation.service.MovieService;
+import movierecommendation.util.MovieCursor;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -13,20 +24,29 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
-@SpringBootTest(classes = MovieRecommendation.class)
+@SpringBootTest(classes = MovieRecommendation.class, properties = "movies.journal.enabled=false")
 @AutoConfigureMockMvc
 public class MovieControllerTests {
 
@@ -57,6 +77,61 @@ public class MovieControllerTests {
                 .andExpect(MockMvcResultMatchers.status().isCreated());
     }
 
+    @Test
+    public void testAddMovies() throws Exception {
+        List<Movie> movies = List.of(
+                Movie.builder().title("Movie 1").genre("Action").director("Director").build(),
+                Movie.builder().title("Movie 2").genre("Action").director("Director").build());
+        MovieIngestReport report = new MovieIngestReport();
+        report.add(new MovieIngestResult(0, MovieIngestResult.Status.CREATED, 1L, "Movie added successfully"));
+        report.add(new MovieIngestResult(1, MovieIngestResult.Status.DUPLICATE, null, "Movie already exists"));
+        when(movieService.addMovies(any())).thenReturn(report);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/movies/addMovies")
+                        .content(asJsonString(movies))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$.created", is(1)))
+                .andExpect(jsonPath("$.rejected", is(1)))
+                .andExpect(jsonPath("$.results[1].status", is("DUPLICATE")));
+    }
+
+    @Test
+    public void testAddMoviesNdjson() throws Exception {
+        List<String> titles = new ArrayList<>();
+        when(movieService.addMovies(any())).thenAnswer(invocation -> {
+            Iterator<Movie> movies = invocation.getArgument(0);
+            movies.forEachRemaining(movie -> titles.add(movie.getTitle()));
+            return new MovieIngestReport();
+        });
+        String body = asJsonString(Movie.builder().title("Movie 1").build()) + "\n"
+                + asJsonString(Movie.builder().title("Movie 2").build()) + "\n";
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/movies/addMovies")
+                        .content(body)
+                        .contentType("application/x-ndjson"))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        assertEquals(List.of("Movie 1", "Movie 2"), titles);
+    }
+
+    @Test
+    public void testAddMoviesNdjsonMalformed() throws Exception {
+        when(movieService.addMovies(any())).thenAnswer(invocation -> {
+            Iterator<Movie> movies = invocation.getArgument(0);
+            movies.forEachRemaining(movie -> { });
+            return new MovieIngestReport();
+        });
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/movies/addMovies")
+                        .content("{\"title\": \"Movie 1\"}\n{not json\n")
+                        .contentType("application/x-ndjson"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
     @Test
     public void testRateMovie() throws Exception {
         Long movieId = 1L;
@@ -88,7 +163,7 @@ public class MovieControllerTests {
         Long movieId = 1L;
         double invalidRating = 6.0; // Invalid rating value
 
-        when(movieService.rateMovie(movieId, invalidRating)).thenReturn(ResponseEntity.badRequest().body("Invalid rating"));
+        when(movieService.rateMovie(movieId, null, invalidRating)).thenReturn(ResponseEntity.badRequest().body("Invalid rating"));
 
         mockMvc.perform(MockMvcRequestBuilders
                         .post("/movies/" + movieId + "/rate")
@@ -118,7 +193,7 @@ public class MovieControllerTests {
                 .averageRating(5)
                 .build());
 
-        when(movieService.recommendMoviesByRatingsAndGenre(anyString())).thenReturn(sampleMovies);
+        when(movieService.recommendMoviesByRatingsAndGenre(any())).thenReturn(sampleMovies);
 
         mockMvc.perform(MockMvcRequestBuilders.get("/movies/recommend").param("genre", "Action"))
                 .andExpect(MockMvcResultMatchers.status().isOk())
@@ -127,7 +202,315 @@ public class MovieControllerTests {
                 .andExpect(jsonPath("$[0].title", is("Movie 2")))
                 .andExpect(jsonPath("$[1].title", is("Movie 1")));
 
-        verify(movieService).recommendMoviesByRatingsAndGenre("Action");
+        verify(movieService).recommendMoviesByRatingsAndGenre(RecommendationQuery.builder().genre("Action").build());
+    }
+
+    @Test
+    public void testRecommendMoviesWithLimit() throws Exception {
+        RecommendationQuery query = RecommendationQuery.builder().limit(5).build();
+        when(movieService.recommendMoviesByRatingsAndGenre(query)).thenReturn(new ArrayList<>());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/recommend").param("limit", "5"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)))
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("X-Next-Cursor"));
+
+        verify(movieService).recommendMoviesByRatingsAndGenre(query);
+    }
+
+    @Test
+    public void testRecommendMoviesNextPage() throws Exception {
+        Movie movie = Movie.builder().id(7L).title("Movie 7").averageRating(4.5).rankingScore(4.1).build();
+        MovieCursor cursor = new MovieCursor(4.2, 3L);
+        RecommendationQuery query = RecommendationQuery.builder().limit(1).after(cursor).sort(MovieSort.SCORE).build();
+        when(movieService.recommendMoviesByRatingsAndGenre(query)).thenReturn(List.of(movie));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/recommend")
+                        .param("limit", "1")
+                        .param("cursor", cursor.encode())
+                        .param("sort", "score"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$[0].title", is("Movie 7")))
+                .andExpect(MockMvcResultMatchers.header().string("X-Next-Cursor", new MovieCursor(4.1, 7L).encode()));
+    }
+
+    @Test
+    public void testRecommendMoviesWithSeveralGenres() throws Exception {
+        RecommendationQuery query = RecommendationQuery.builder()
+                .genre("Action").genre("Comedy").match(GenreMatch.ALL).build();
+        when(movieService.recommendMoviesByRatingsAndGenre(query)).thenReturn(new ArrayList<>());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/recommend")
+                        .param("genre", "Action", "Comedy")
+                        .param("match", "all"))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        verify(movieService).recommendMoviesByRatingsAndGenre(query);
+    }
+
+    @Test
+    public void testRecommendMoviesInvalidMatch() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/recommend").param("match", "some"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void testRecommendMoviesInvalidSort() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/recommend").param("sort", "popularity"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void testGetMoviesPage() throws Exception {
+        List<Movie> page = List.of(
+                Movie.builder().id(1L).title("Movie 1").averageRating(4.5).build(),
+                Movie.builder().id(2L).title("Movie 2").averageRating(3.5).build());
+        when(movieService.getMovies(null, 2)).thenReturn(page);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/getMovies").param("limit", "2"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(MockMvcResultMatchers.header().string("X-Next-Cursor", new MovieCursor(0, 2L).encode()));
+
+        verify(movieService, never()).getAllMovies();
+    }
+
+    @Test
+    public void testGetMoviesSparseFields() throws Exception {
+        Movie movie = Movie.builder().id(1L).title("Movie 1").genre("Drama").averageRating(4.5).build();
+        when(movieService.getMovies(null, 1)).thenReturn(List.of(movie));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/getMovies").param("limit", "1")
+                        .param("fields", "id,title,averageRating"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[0].title", is("Movie 1")))
+                .andExpect(jsonPath("$[0].averageRating", is(4.5)))
+                .andExpect(jsonPath("$[0].genre").doesNotExist())
+                .andExpect(jsonPath("$[0].rankingScore").doesNotExist())
+                .andExpect(MockMvcResultMatchers.header().string("X-Next-Cursor", new MovieCursor(0, 1L).encode()));
+    }
+
+    @Test
+    public void testGetMoviesInvalidField() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/getMovies").param("fields", "id,budget"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+        verify(movieService, never()).getAllMovies();
+    }
+
+    @Test
+    public void testRecommendMoviesCbor() throws Exception {
+        when(movieService.recommendMoviesByRatingsAndGenre(any()))
+                .thenReturn(List.of(Movie.builder().id(1L).title("Movie 1").genre("Drama").averageRating(4.5).build()));
+
+        byte[] body = mockMvc.perform(MockMvcRequestBuilders.get("/movies/recommend").param("fields", "id,title")
+                        .accept(MediaType.valueOf("application/cbor")))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/cbor"))
+                .andExpect(MockMvcResultMatchers.header().string("Vary", containsString("Accept")))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode movies = new CBORMapper().readTree(body);
+        assertEquals(1, movies.size());
+        assertEquals("Movie 1", movies.get(0).get("title").asText());
+        assertEquals(2, movies.get(0).size());
+    }
+
+    @Test
+    public void testGetAllMoviesETag() throws Exception {
+        when(movieService.getCatalogETag()).thenReturn("\"v1\"");
+        when(movieService.getAllMovies()).thenReturn(new ArrayList<>());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/getMovies"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"v1\""));
+    }
+
+    @Test
+    public void testGetAllMoviesNotModified() throws Exception {
+        when(movieService.getCatalogETag()).thenReturn("\"v1\"");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/getMovies").param("limit", "2")
+                        .header("If-None-Match", "\"v1\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.content().string(""));
+
+        verify(movieService, never()).getAllMovies();
+        verify(movieService, never()).getMovies(any(), anyInt());
+    }
+
+    @Test
+    public void testGetAllMoviesChangedSinceETag() throws Exception {
+        when(movieService.getCatalogETag()).thenReturn("\"v2\"");
+        when(movieService.getAllMovies()).thenReturn(new ArrayList<>());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/getMovies").header("If-None-Match", "\"v1\""))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"v2\""));
+    }
+
+    @Test
+    public void testGetAllMoviesETagPerRepresentation() throws Exception {
+        when(movieService.getCatalogETag()).thenReturn("\"v1\"");
+        when(movieService.getAllMovies()).thenReturn(new ArrayList<>());
+
+        String cbor = mockMvc.perform(MockMvcRequestBuilders.get("/movies/getMovies")
+                        .accept(MediaType.valueOf("application/cbor")).header("If-None-Match", "\"v1\""))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        String sparse = mockMvc.perform(MockMvcRequestBuilders.get("/movies/getMovies").param("fields", "id,title")
+                        .header("If-None-Match", "\"v1\", " + cbor))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        assertNotEquals("\"v1\"", cbor);
+        assertNotEquals("\"v1\"", sparse);
+        assertNotEquals(cbor, sparse);
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/getMovies").param("fields", "title,id")
+                        .header("If-None-Match", sparse))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+    }
+
+    @Test
+    public void testRecommendMoviesNotModified() throws Exception {
+        RecommendationQuery query = RecommendationQuery.builder().genre("Action").build();
+        when(movieService.getRecommendationETag(query)).thenReturn("\"g1\"");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/recommend").param("genre", "Action")
+                        .header("If-None-Match", "\"g1\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        verify(movieService, never()).recommendMoviesByRatingsAndGenre(any());
+    }
+
+    @Test
+    public void testGetMoviesInvalidCursor() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/getMovies").param("cursor", "not a cursor"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void testStreamAllMovies() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Movie> consumer = invocation.getArgument(0);
+            consumer.accept(Movie.builder().id(1L).title("Movie 1").build());
+            consumer.accept(Movie.builder().id(2L).title("Movie 2").build());
+            return null;
+        }).when(movieService).forEachMovie(any());
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/movies/getMovies/stream"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].title", is("Movie 2")));
+    }
+
+    @Test
+    public void testRateMovies() throws Exception {
+        List<RatingBatchItem> ratings = List.of(new RatingBatchItem(1L, 7L, 4.0), new RatingBatchItem(2L, null, 6.0));
+        RatingBatchReport report = new RatingBatchReport();
+        report.add(new RatingBatchResult(0, RatingBatchResult.Status.RATED, 1L, null));
+        report.add(new RatingBatchResult(1, RatingBatchResult.Status.INVALID, 2L,
+                "Invalid rating value. Rating must be between 1 and 5."));
+        when(movieService.rateMovies(ratings)).thenReturn(report);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/movies/ratings:batch")
+                        .content(asJsonString(ratings))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$.rated", is(1)))
+                .andExpect(jsonPath("$.rejected", is(1)))
+                .andExpect(jsonPath("$.results[1].status", is("INVALID")));
+    }
+
+    @Test
+    public void testRateMoviesInvalidBatch() throws Exception {
+        when(movieService.rateMovies(List.of()))
+                .thenThrow(new IllegalArgumentException("Invalid batch. A batch must have between 1 and 1000 ratings."));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/movies/ratings:batch")
+                        .content("[]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void testRateMovieForUser() throws Exception {
+        when(movieService.rateMovie(1L, 7L, 4.0)).thenReturn(ResponseEntity.ok("Movie rated successfully"));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/movies/1/rate")
+                        .param("rating", "4.0")
+                        .param("userId", "7"))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    @Test
+    public void testRecommendMoviesForUser() throws Exception {
+        when(movieService.recommendMoviesForUser(7L, 10))
+                .thenReturn(List.of(Movie.builder().id(3L).title("Movie 3").build()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/recommend/user/7"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].title", is("Movie 3")));
+    }
+
+    @Test
+    public void testFindSimilarMovies() throws Exception {
+        when(movieService.findSimilarMovies(1L, 5))
+                .thenReturn(List.of(Movie.builder().id(2L).title("Movie 2").build()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/1/similar").param("limit", "5"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].title", is("Movie 2")));
+    }
+
+    @Test
+    public void testFindSimilarMoviesNotFound() throws Exception {
+        when(movieService.findSimilarMovies(99L, 10)).thenReturn(null);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/99/similar"))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+    @Test
+    public void testSearchMovies() throws Exception {
+        when(movieService.searchMovies("star w", 10))
+                .thenReturn(List.of(Movie.builder().id(4L).title("Star Wars").build()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/search").param("q", "star w"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].title", is("Star Wars")));
+    }
+
+    @Test
+    public void testGetTrendingMovies() throws Exception {
+        when(movieService.getTrendingMovies("24h", List.of("Drama"), 5))
+                .thenReturn(List.of(Movie.builder().id(4L).title("Heat").build()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/trending")
+                        .param("window", "24h").param("genre", "Drama").param("limit", "5"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].title", is("Heat")));
+    }
+
+    @Test
+    public void testGetTrendingMovies_InvalidWindow() throws Exception {
+        when(movieService.getTrendingMovies("2d", null, 10))
+                .thenThrow(new IllegalArgumentException("Invalid window. Window must be one of 1h, 6h, 24h."));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/trending").param("window", "2d"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
     }
 
     private static String asJsonString(final Object obj) {
@@ -40,6 +40,24 @@ public class GlobalExceptionHandlerTests {
         assertEquals("Invalid movie data", response.getBody());
     }
 
+    @Test
+    public void testHandleIllegalArgumentException() {
+        IllegalArgumentException exception = new IllegalArgumentException("Invalid limit");
+        ResponseEntity<String> response = globalExceptionHandler.handleIllegalArgumentException(exception);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Invalid limit", response.getBody());
+    }
+
+    @Test
+    public void testHandleClusterUnavailableException() {
+        ClusterUnavailableException exception = new ClusterUnavailableException("Cluster member http://localhost:8081 is unavailable", null);
+        ResponseEntity<String> response = globalExceptionHandler.handleClusterUnavailableException(exception);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("Cluster member http://localhost:8081 is unavailable", response.getBody());
+    }
+
     @Test
     public void testHandleGenericException() {
         Exception exception = new Exception("Unexpected error");
@@ -0,0 +1,134 @@
+package movierecommendation.index;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.model.UserRating;
+import movierecommendation.repository.UserRatingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+class ItemSimilarityIndexTests {
+
+    @Mock
+    private UserRatingRepository userRatingRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ItemSimilarityIndex itemSimilarityIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        itemSimilarityIndex = new ItemSimilarityIndex(userRatingRepository, transactionManager, meterRegistry, 50, 500);
+    }
+
+    @Test
+    void testRecommend_RanksCoRatedMoviesAndExcludesRatedOnes() {
+        itemSimilarityIndex.onUserRatingsUpdated(List.of(
+                rating(1L, 10L, 5.0), rating(1L, 20L, 5.0),
+                rating(2L, 10L, 5.0), rating(2L, 20L, 4.0), rating(2L, 30L, 1.0),
+                rating(3L, 10L, 4.0)));
+
+        long[] recommended = itemSimilarityIndex.recommend(3L, 10);
+
+        assertThat(recommended).containsExactly(20L, 30L);
+        assertThat(itemSimilarityIndex.recommend(3L, 1)).containsExactly(20L);
+        assertThat(itemSimilarityIndex.hasRated(3L, 10L)).isTrue();
+        assertThat(itemSimilarityIndex.hasRated(3L, 20L)).isFalse();
+    }
+
+    @Test
+    void testRemovedMovieIsNeitherNeighborNorRecommended() {
+        itemSimilarityIndex.onUserRatingsUpdated(List.of(
+                rating(1L, 10L, 5.0), rating(1L, 20L, 5.0), rating(1L, 30L, 4.0),
+                rating(2L, 20L, 5.0)));
+
+        itemSimilarityIndex.onMoviesRemoved(List.of(10L));
+
+        assertThat(itemSimilarityIndex.recommend(2L, 10)).containsExactly(30L);
+        assertThat(itemSimilarityIndex.hasRated(1L, 10L)).isFalse();
+        assertThat(meterRegistry.get("similarity.index.movies").gauge().value()).isEqualTo(2);
+
+        itemSimilarityIndex.onUserRatingsUpdated(List.of(rating(3L, 10L, 5.0), rating(3L, 40L, 5.0)));
+
+        assertThat(itemSimilarityIndex.recommend(2L, 10)).containsExactly(30L);
+        assertThat(itemSimilarityIndex.hasRated(3L, 10L)).isTrue();
+    }
+
+    @Test
+    void testRecommend_UnknownUser() {
+        itemSimilarityIndex.onUserRatingsUpdated(List.of(rating(1L, 10L, 5.0), rating(1L, 20L, 5.0)));
+
+        assertThat(itemSimilarityIndex.recommend(99L, 10)).isEmpty();
+        assertThat(itemSimilarityIndex.ratingCount(99L)).isZero();
+    }
+
+    @Test
+    void testRerateMatchesRatingFromScratch() {
+        ItemSimilarityIndex fromScratch = new ItemSimilarityIndex(userRatingRepository, transactionManager,
+                new SimpleMeterRegistry(), 50, 500);
+        List<UserRating> common = List.of(
+                rating(1L, 10L, 5.0), rating(1L, 20L, 2.0), rating(1L, 30L, 4.0),
+                rating(2L, 10L, 3.0), rating(2L, 40L, 5.0),
+                rating(3L, 20L, 4.0));
+        itemSimilarityIndex.onUserRatingsUpdated(common);
+        fromScratch.onUserRatingsUpdated(common);
+
+        itemSimilarityIndex.onUserRatingsUpdated(List.of(rating(2L, 30L, 1.0)));
+        itemSimilarityIndex.onUserRatingsUpdated(List.of(rating(2L, 30L, 5.0)));
+        fromScratch.onUserRatingsUpdated(List.of(rating(2L, 30L, 5.0)));
+
+        assertThat(itemSimilarityIndex.ratingCount(2L)).isEqualTo(3);
+        assertThat(itemSimilarityIndex.recommend(3L, 10)).containsExactly(fromScratch.recommend(3L, 10));
+        assertThat(itemSimilarityIndex.recommend(2L, 10)).containsExactly(fromScratch.recommend(2L, 10));
+    }
+
+    @Test
+    void testRebuildFromRepository() {
+        when(userRatingRepository.streamAllRatings()).thenReturn(Stream.of(
+                new Object[]{1L, 10L, 5.0}, new Object[]{1L, 20L, 4.0}, new Object[]{2L, 10L, 5.0}));
+
+        itemSimilarityIndex.rebuild();
+
+        assertThat(itemSimilarityIndex.recommend(2L, 10)).containsExactly(20L);
+        assertThat(meterRegistry.get("similarity.index.users").gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get("similarity.index.memory").gauge().value()).isPositive();
+    }
+
+    @Test
+    void testHeavyUserContributesOnlyCappedProfile() {
+        SimpleMeterRegistry cappedRegistry = new SimpleMeterRegistry();
+        ItemSimilarityIndex capped = new ItemSimilarityIndex(userRatingRepository, transactionManager,
+                cappedRegistry, 50, 3);
+        List<UserRating> heavy = LongStream.rangeClosed(1, 1000)
+                .mapToObj(movieId -> rating(1L, movieId, 4.0))
+                .collect(Collectors.toList());
+        capped.onUserRatingsUpdated(heavy);
+        itemSimilarityIndex.onUserRatingsUpdated(heavy);
+        capped.onUserRatingsUpdated(List.of(rating(2L, 1L, 5.0), rating(2L, 500L, 5.0)));
+
+        assertThat(capped.ratingCount(1L)).isEqualTo(1000);
+        assertThat(capped.hasRated(1L, 1000L)).isTrue();
+        assertThat(capped.recommend(2L, 10)).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(capped.recommend(1L, 10)).isEmpty();
+        assertThat(cappedRegistry.get("similarity.index.memory").gauge().value())
+                .isLessThan(meterRegistry.get("similarity.index.memory").gauge().value() / 10);
+    }
+
+    private UserRating rating(Long userId, Long movieId, double rating) {
+        return UserRating.builder().userId(userId).movieId(movieId).rating(rating).build();
+    }
+}
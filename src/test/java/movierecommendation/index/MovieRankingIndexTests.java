@@ -0,0 +1,312 @@
+package movierecommendation.index;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.model.GenreFilter;
+import movierecommendation.model.GenreMatch;
+import movierecommendation.model.Movie;
+import movierecommendation.model.MovieSort;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.service.MovieChangeNotifier;
+import movierecommendation.util.MovieCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MovieRankingIndexTests {
+
+    private static final long DRAMA = 1L;
+    private static final long ACTION = 1L << 1;
+    private static final long COMEDY = 1L << 2;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieChangeNotifier movieChangeNotifier;
+
+    @Mock
+    private ObjectProvider<MovieChangeNotifier> movieChangeNotifierProvider;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MovieRankingIndex movieRankingIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        when(movieChangeNotifierProvider.getObject()).thenReturn(movieChangeNotifier);
+        movieRankingIndex = new MovieRankingIndex(movieRepository, movieChangeNotifierProvider, meterRegistry);
+    }
+
+    @Test
+    void testTop_OrdersByRatingThenId() {
+        movieRankingIndex.onMovieAdded(buildMovie(1L, DRAMA, 3.0));
+        movieRankingIndex.onMovieAdded(buildMovie(2L, ACTION, 4.5));
+        movieRankingIndex.onMovieAdded(buildMovie(3L, DRAMA, 4.5));
+
+        List<Movie> top = movieRankingIndex.top(GenreFilter.UNFILTERED, 2);
+
+        assertThat(top).extracting(Movie::getId).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void testTop_FiltersByGenre() {
+        movieRankingIndex.onMovieAdded(buildMovie(1L, DRAMA, 3.0));
+        movieRankingIndex.onMovieAdded(buildMovie(2L, ACTION, 4.5));
+        movieRankingIndex.onMovieAdded(buildMovie(3L, DRAMA, 4.0));
+
+        assertThat(movieRankingIndex.top(genres(DRAMA, GenreMatch.ANY), null)).extracting(Movie::getId).containsExactly(3L, 1L);
+        assertThat(movieRankingIndex.top(genres(COMEDY, GenreMatch.ANY), null)).isEmpty();
+        assertThat(movieRankingIndex.top(GenreFilter.NOTHING, null)).isEmpty();
+    }
+
+    @Test
+    void testTop_MatchesAnyOfSeveralGenres() {
+        movieRankingIndex.onMovieAdded(buildMovie(1L, DRAMA, 3.0));
+        movieRankingIndex.onMovieAdded(buildMovie(2L, ACTION, 4.5));
+        movieRankingIndex.onMovieAdded(buildMovie(3L, COMEDY, 4.0));
+        movieRankingIndex.onMovieAdded(buildMovie(4L, DRAMA | COMEDY, 3.5));
+
+        assertThat(movieRankingIndex.top(genres(DRAMA | COMEDY, GenreMatch.ANY), null))
+                .extracting(Movie::getId).containsExactly(3L, 4L, 1L);
+    }
+
+    @Test
+    void testTop_MatchesAllOfSeveralGenres() {
+        movieRankingIndex.onMovieAdded(buildMovie(1L, DRAMA, 3.0));
+        movieRankingIndex.onMovieAdded(buildMovie(2L, DRAMA | ACTION, 4.5));
+        movieRankingIndex.onMovieAdded(buildMovie(3L, DRAMA | ACTION | COMEDY, 4.0));
+        movieRankingIndex.onMovieAdded(buildMovie(4L, ACTION | COMEDY, 3.5));
+
+        assertThat(movieRankingIndex.top(genres(DRAMA | ACTION, GenreMatch.ALL), null))
+                .extracting(Movie::getId).containsExactly(2L, 3L);
+        assertThat(movieRankingIndex.top(genres(DRAMA | ACTION, GenreMatch.ALL), 1))
+                .extracting(Movie::getId).containsExactly(2L);
+    }
+
+    @Test
+    void testOnMoviesUpdated_MovesMovieBetweenGenres() {
+        movieRankingIndex.onMovieAdded(buildMovie(1L, DRAMA, 3.0));
+
+        movieRankingIndex.onMoviesUpdated(List.of(buildMovie(1L, ACTION, 3.0)));
+
+        assertThat(movieRankingIndex.top(genres(DRAMA, GenreMatch.ANY), null)).isEmpty();
+        assertThat(movieRankingIndex.top(genres(ACTION, GenreMatch.ANY), null)).extracting(Movie::getId).containsExactly(1L);
+    }
+
+    @Test
+    void testPage_ContinuesAfterCursor() {
+        movieRankingIndex.onMovieAdded(buildMovie(1L, DRAMA, 3.0));
+        movieRankingIndex.onMovieAdded(buildMovie(2L, DRAMA, 4.5));
+        movieRankingIndex.onMovieAdded(buildMovie(3L, DRAMA, 4.5));
+
+        List<Movie> firstPage = movieRankingIndex.page(genres(DRAMA, GenreMatch.ANY), MovieSort.RATING, null, 1);
+        List<Movie> secondPage = movieRankingIndex.page(genres(DRAMA, GenreMatch.ANY), MovieSort.RATING, MovieCursor.of(firstPage.get(0), MovieSort.RATING), 5);
+
+        assertThat(firstPage).extracting(Movie::getId).containsExactly(2L);
+        assertThat(secondPage).extracting(Movie::getId).containsExactly(3L, 1L);
+    }
+
+    @Test
+    void testPage_SortedByRankingScore() {
+        movieRankingIndex.onMovieAdded(buildMovie(1L, DRAMA, 5.0, 3.4));
+        movieRankingIndex.onMovieAdded(buildMovie(2L, DRAMA, 4.8, 4.7));
+        movieRankingIndex.onMovieAdded(buildMovie(3L, ACTION, 4.0, 3.9));
+
+        List<Movie> firstPage = movieRankingIndex.page(GenreFilter.UNFILTERED, MovieSort.SCORE, null, 2);
+        List<Movie> secondPage = movieRankingIndex.page(GenreFilter.UNFILTERED, MovieSort.SCORE,
+                MovieCursor.of(firstPage.get(1), MovieSort.SCORE), 2);
+
+        assertThat(firstPage).extracting(Movie::getId).containsExactly(2L, 3L);
+        assertThat(secondPage).extracting(Movie::getId).containsExactly(1L);
+        assertThat(movieRankingIndex.top(genres(DRAMA, GenreMatch.ANY), null)).extracting(Movie::getId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void testOnMoviesUpdated_Reorders() {
+        movieRankingIndex.onMovieAdded(buildMovie(1L, DRAMA, 3.0));
+        movieRankingIndex.onMovieAdded(buildMovie(2L, DRAMA, 4.0));
+
+        movieRankingIndex.onMoviesUpdated(List.of(buildMovie(1L, DRAMA, 5.0)));
+
+        assertThat(movieRankingIndex.top(genres(DRAMA, GenreMatch.ANY), null)).extracting(Movie::getId).containsExactly(1L, 2L);
+        assertThat(movieRankingIndex.size()).isEqualTo(2);
+    }
+
+    @Test
+    void testRebuildAndCheckConsistency() {
+        Movie movie1 = buildMovie(1L, DRAMA, 3.0);
+        Movie movie2 = buildMovie(2L, ACTION, 4.0);
+        when(movieRepository.findAll()).thenReturn(List.of(movie1, movie2));
+
+        assertThat(movieRankingIndex.checkConsistency()).isEqualTo(2);
+
+        movieRankingIndex.rebuild();
+
+        assertThat(movieRankingIndex.top(GenreFilter.UNFILTERED, null)).extracting(Movie::getId).containsExactly(2L, 1L);
+        assertThat(movieRankingIndex.checkConsistency()).isZero();
+
+        movie1.setAverageRating(4.5);
+        assertThat(movieRankingIndex.checkConsistency()).isEqualTo(1);
+    }
+
+    @Test
+    void testVerify_SkipsRebuildWhenPendingProjectionCatchesUp() throws InterruptedException {
+        movieRankingIndex.onMovieAdded(buildMovie(1L, DRAMA, 3.0));
+        movieRankingIndex.onMovieAdded(buildMovie(2L, DRAMA, 4.0));
+        Movie rated = buildMovie(1L, DRAMA, 4.5);
+        when(movieRepository.findAll()).thenReturn(List.of(rated, buildMovie(2L, DRAMA, 4.0)));
+        when(movieRepository.findAllById(List.of(1L))).thenReturn(List.of(rated));
+        when(movieChangeNotifier.awaitProjections(anyLong(), any())).thenAnswer(invocation -> {
+            movieRankingIndex.onMoviesUpdated(List.of(rated));
+            return true;
+        });
+
+        movieRankingIndex.verify();
+
+        verify(movieRepository, times(1)).findAll();
+        assertThat(movieRankingIndex.get(1L).getAverageRating()).isEqualTo(4.5);
+    }
+
+    @Test
+    void testVerify_RebuildsWhenMismatchPersists() throws InterruptedException {
+        movieRankingIndex.onMovieAdded(buildMovie(1L, DRAMA, 3.0));
+        Movie stored = buildMovie(1L, DRAMA, 4.5);
+        when(movieRepository.findAll()).thenReturn(List.of(stored));
+        when(movieRepository.findAllById(List.of(1L))).thenReturn(List.of(stored));
+        when(movieChangeNotifier.awaitProjections(anyLong(), any())).thenReturn(true);
+
+        movieRankingIndex.verify();
+
+        verify(movieRepository, times(2)).findAll();
+        assertThat(movieRankingIndex.get(1L).getAverageRating()).isEqualTo(4.5);
+    }
+
+    @Test
+    void testVerify_WaitsForNextCheckWhenProjectionsLag() throws InterruptedException {
+        movieRankingIndex.onMovieAdded(buildMovie(1L, DRAMA, 3.0));
+        when(movieRepository.findAll()).thenReturn(List.of(buildMovie(1L, DRAMA, 4.5)));
+        when(movieChangeNotifier.awaitProjections(anyLong(), any())).thenReturn(false);
+
+        movieRankingIndex.verify();
+
+        verify(movieRepository, times(1)).findAll();
+        verify(movieRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void testAll_ReturnsDetachedCopiesOrderedById() {
+        movieRankingIndex.onMovieAdded(buildMovie(3L, DRAMA, 3.0));
+        movieRankingIndex.onMovieAdded(buildMovie(1L, ACTION, 4.5));
+        movieRankingIndex.onMovieAdded(buildMovie(2L, DRAMA, 4.0));
+
+        List<Movie> all = movieRankingIndex.all();
+        all.get(0).setTitle("Changed");
+
+        assertThat(all).extracting(Movie::getId).containsExactly(1L, 2L, 3L);
+        assertThat(movieRankingIndex.get(1L).getTitle()).isEqualTo("Movie 1");
+    }
+
+    @Test
+    void testPageById_ContinuesAfterId() {
+        for (long id = 1; id <= 5; id++) {
+            movieRankingIndex.onMovieAdded(buildMovie(id, DRAMA, 3.0));
+        }
+
+        assertThat(movieRankingIndex.pageById(Long.MIN_VALUE, 2)).extracting(Movie::getId).containsExactly(1L, 2L);
+        assertThat(movieRankingIndex.pageById(2L, 2)).extracting(Movie::getId).containsExactly(3L, 4L);
+        assertThat(movieRankingIndex.pageById(4L, 10)).extracting(Movie::getId).containsExactly(5L);
+        assertThat(movieRankingIndex.pageById(5L, 10)).isEmpty();
+    }
+
+    @Test
+    void testOnMoviesRemoved_DropsMovieFromRankingsAndStore() {
+        for (long id = 1; id <= 4; id++) {
+            movieRankingIndex.onMovieAdded(buildMovie(id, id % 2 == 0 ? ACTION : DRAMA, id));
+        }
+
+        movieRankingIndex.onMoviesRemoved(List.of(2L, 3L, 9L));
+
+        assertThat(movieRankingIndex.top(GenreFilter.UNFILTERED, null)).extracting(Movie::getId).containsExactly(4L, 1L);
+        assertThat(movieRankingIndex.top(genres(DRAMA, GenreMatch.ANY), null)).extracting(Movie::getId).containsExactly(1L);
+        assertThat(movieRankingIndex.all()).extracting(Movie::getId).containsExactly(1L, 4L);
+        assertThat(movieRankingIndex.pageById(1L, 1)).extracting(Movie::getId).containsExactly(4L);
+        assertThat(movieRankingIndex.get(2L)).isNull();
+        assertThat(movieRankingIndex.size()).isEqualTo(2);
+
+        movieRankingIndex.onMovieAdded(buildMovie(2L, DRAMA, 5.0));
+
+        assertThat(movieRankingIndex.top(genres(DRAMA, GenreMatch.ANY), null)).extracting(Movie::getId).containsExactly(2L, 1L);
+        assertThat(movieRankingIndex.all()).extracting(Movie::getId).containsExactly(1L, 2L, 4L);
+        verify(movieRepository, never()).findAll();
+    }
+
+    @Test
+    void testPageById_OrdersMoviesAddedOutOfOrder() {
+        movieRankingIndex.onMovieAdded(buildMovie(5L, DRAMA, 3.0));
+        movieRankingIndex.onMovieAdded(buildMovie(1L, ACTION, 4.5));
+        movieRankingIndex.onMovieAdded(buildMovie(3L, DRAMA, 4.0));
+        movieRankingIndex.onMovieAdded(buildMovie(2L, DRAMA, 4.0));
+
+        assertThat(movieRankingIndex.pageById(1L, 2)).extracting(Movie::getId).containsExactly(2L, 3L);
+        assertThat(movieRankingIndex.pageById(3L, 2)).extracting(Movie::getId).containsExactly(5L);
+    }
+
+    @Test
+    void testGet_ReflectsUpdates() {
+        movieRankingIndex.onMovieAdded(buildMovie(1L, DRAMA, 3.0));
+
+        movieRankingIndex.onMoviesUpdated(List.of(buildMovie(1L, DRAMA, 4.5)));
+
+        Movie movie = movieRankingIndex.get(1L);
+        assertThat(movie.getAverageRating()).isEqualTo(4.5);
+        assertThat(movie.getDirector()).isEqualTo("Test Director");
+        assertThat(movie.getGenre()).isEqualTo("Genre " + DRAMA);
+        assertThat(movieRankingIndex.get(2L)).isNull();
+        assertThat(movieRankingIndex.size()).isEqualTo(1);
+    }
+
+    @Test
+    void testStoreMetrics() {
+        for (long id = 1; id <= 100; id++) {
+            movieRankingIndex.onMovieAdded(buildMovie(id, DRAMA, 3.0));
+        }
+
+        assertThat(meterRegistry.get("catalog.store.movies").gauge().value()).isEqualTo(100);
+        assertThat(meterRegistry.get("catalog.store.memory").gauge().value()).isPositive();
+    }
+
+    private GenreFilter genres(long mask, GenreMatch match) {
+        return GenreFilter.of(mask, match);
+    }
+
+    private Movie buildMovie(Long id, long genreBits, double averageRating) {
+        return buildMovie(id, genreBits, averageRating, averageRating);
+    }
+
+    private Movie buildMovie(Long id, long genreBits, double averageRating, double rankingScore) {
+        return Movie.builder()
+                .id(id)
+                .title("Movie " + id)
+                .genre("Genre " + genreBits)
+                .genreBits(genreBits)
+                .director("Test Director")
+                .releaseYear(2021)
+                .averageRating(averageRating)
+                .numberOfRatings(1)
+                .rankingScore(rankingScore)
+                .build();
+    }
+}
@@ -0,0 +1,150 @@
+package movierecommendation.index;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.model.Movie;
+import movierecommendation.repository.MovieRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+class SimilarMovieIndexTests {
+
+    private static final long DRAMA = 1L;
+    private static final long ACTION = 1L << 1;
+    private static final long COMEDY = 1L << 2;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    private SimilarMovieIndex similarMovieIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        similarMovieIndex = new SimilarMovieIndex(movieRepository, new SimpleMeterRegistry(), 10);
+    }
+
+    @Test
+    void testSimilar_ScoresDirectorGenreAndYear() {
+        similarMovieIndex.onMoviesAdded(List.of(
+                buildMovie(1L, DRAMA, "Nolan", 2010, 3.0),
+                buildMovie(2L, ACTION, "Nolan", 2010, 3.0),
+                buildMovie(3L, DRAMA, "Someone", 2011, 3.0),
+                buildMovie(4L, DRAMA, "NOLAN", 2005, 3.0),
+                buildMovie(5L, DRAMA, "Other", 1950, 3.0),
+                buildMovie(6L, COMEDY, "Other", 2010, 3.0)));
+
+        assertThat(similarMovieIndex.similar(1L, 10)).containsExactly(4L, 2L, 3L, 5L);
+        assertThat(similarMovieIndex.similar(1L, 2)).containsExactly(4L, 2L);
+    }
+
+    @Test
+    void testSimilar_RankingScoreBreaksTies() {
+        similarMovieIndex.onMoviesAdded(List.of(
+                buildMovie(1L, DRAMA, "A", 2010, 3.0),
+                buildMovie(2L, DRAMA, "B", 2012, 3.5),
+                buildMovie(3L, DRAMA, "C", 2008, 4.5)));
+
+        assertThat(similarMovieIndex.similar(1L, 10)).containsExactly(3L, 2L);
+
+        similarMovieIndex.onMoviesUpdated(List.of(buildMovie(2L, DRAMA, "B", 2012, 5.0)));
+
+        assertThat(similarMovieIndex.similar(1L, 10)).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void testSimilar_SkipsRemovedMovies() {
+        similarMovieIndex.onMoviesAdded(List.of(
+                buildMovie(1L, DRAMA, "Director A", 2000, 3.0),
+                buildMovie(2L, DRAMA, "Director A", 2001, 3.0),
+                buildMovie(3L, DRAMA, "Director B", 2002, 3.0)));
+
+        similarMovieIndex.onMoviesRemoved(List.of(2L));
+
+        assertThat(similarMovieIndex.similar(1L, 10)).containsExactly(3L);
+        assertThat(similarMovieIndex.similar(2L, 10)).isNull();
+        assertThat(similarMovieIndex.size()).isEqualTo(2);
+    }
+
+    @Test
+    void testSimilar_UnknownMovie() {
+        similarMovieIndex.onMovieAdded(buildMovie(1L, DRAMA, "A", 2010, 3.0));
+
+        assertThat(similarMovieIndex.similar(99L, 10)).isNull();
+        assertThat(similarMovieIndex.similar(1L, 10)).isEmpty();
+    }
+
+    @Test
+    void testSimilar_MatchesFullScanOnLargeGenre() {
+        List<Movie> movies = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            long genreBits = (id % 3 == 0 ? DRAMA : ACTION) | (id % 5 == 0 ? COMEDY : 0);
+            movies.add(buildMovie(id, genreBits, "Director " + (id % 50),
+                    1950 + (int) (id % 70), (id * 7 % 40) / 10.0));
+        }
+        similarMovieIndex.onMoviesAdded(movies);
+
+        for (long id : new long[]{3L, 10L, 15L, 777L, 1999L}) {
+            assertThat(similarMovieIndex.similar(id, 20)).containsExactly(fullScan(movies, id, 20));
+        }
+    }
+
+    @Test
+    void testRebuildFromRepository() {
+        when(movieRepository.findAll()).thenReturn(List.of(
+                buildMovie(1L, DRAMA, "A", 2010, 3.0),
+                buildMovie(2L, DRAMA, "B", 2010, 3.0)));
+        similarMovieIndex.onMovieAdded(buildMovie(3L, DRAMA, "A", 2010, 3.0));
+
+        similarMovieIndex.rebuild();
+
+        assertThat(similarMovieIndex.size()).isEqualTo(2);
+        assertThat(similarMovieIndex.similar(1L, 10)).containsExactly(2L);
+    }
+
+    private static long[] fullScan(List<Movie> movies, long movieId, int limit) {
+        Movie target = movies.get((int) movieId - 1);
+        return movies.stream()
+                .filter(movie -> movie != target)
+                .filter(movie -> (movie.getGenreBits() & target.getGenreBits()) != 0
+                        || movie.getDirector().equals(target.getDirector()))
+                .sorted((a, b) -> {
+                    int order = Float.compare(score(target, b), score(target, a));
+                    return order != 0 ? order : Long.compare(a.getId(), b.getId());
+                })
+                .limit(limit)
+                .mapToLong(Movie::getId)
+                .toArray();
+    }
+
+    private static float score(Movie target, Movie movie) {
+        float score = SimilarMovieIndex.yearProximity(Math.abs(movie.getReleaseYear() - target.getReleaseYear()), 10)
+                + (float) movie.getRankingScore() * SimilarMovieIndex.TIE_BREAK_WEIGHT;
+        if ((movie.getGenreBits() & target.getGenreBits()) != 0) {
+            score += SimilarMovieIndex.GENRE_WEIGHT;
+        }
+        if (movie.getDirector().equals(target.getDirector())) {
+            score += SimilarMovieIndex.DIRECTOR_WEIGHT;
+        }
+        return score;
+    }
+
+    private Movie buildMovie(Long id, long genreBits, String director, int releaseYear, double rankingScore) {
+        return Movie.builder()
+                .id(id)
+                .title("Movie " + id)
+                .genre("Genre " + genreBits)
+                .genreBits(genreBits)
+                .director(director)
+                .releaseYear(releaseYear)
+                .rankingScore(rankingScore)
+                .build();
+    }
+}
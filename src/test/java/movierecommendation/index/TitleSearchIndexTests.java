@@ -0,0 +1,108 @@
+package movierecommendation.index;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.model.Movie;
+import movierecommendation.repository.MovieRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+class TitleSearchIndexTests {
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TitleSearchIndex titleSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        titleSearchIndex = new TitleSearchIndex(movieRepository, meterRegistry, 0.5f);
+        titleSearchIndex.onMoviesAdded(List.of(
+                buildMovie(1L, "Star Wars", 4.0),
+                buildMovie(2L, "Star Trek", 4.5),
+                buildMovie(3L, "Lone Star", 3.0),
+                buildMovie(4L, "Starship Troopers", 3.5),
+                buildMovie(5L, "Am\u00e9lie", 4.2),
+                buildMovie(6L, "Mustard", 2.0)));
+    }
+
+    @Test
+    void testNormalize() {
+        assertThat(TitleSearchIndex.normalize("  Am\u00e9lie: Le Fabuleux-Destin!  ")).isEqualTo("amelie le fabuleux destin");
+        assertThat(TitleSearchIndex.normalize(null)).isEmpty();
+    }
+
+    @Test
+    void testSearch_RanksByMatchQualityThenRating() {
+        assertThat(titleSearchIndex.search("star wars", 10)).containsExactly(1L);
+        assertThat(titleSearchIndex.search("Star", 10)).containsExactly(2L, 1L, 4L, 3L, 6L);
+    }
+
+    @Test
+    void testSearch_PrefixAutocomplete() {
+        assertThat(titleSearchIndex.search("star t", 1)).containsExactly(2L);
+        assertThat(titleSearchIndex.search("tro", 10)).containsExactly(4L);
+        assertThat(titleSearchIndex.search("a", 10)).containsExactly(5L);
+    }
+
+    @Test
+    void testSearch_ToleratesTyposAndAccents() {
+        assertThat(titleSearchIndex.search("star wors", 1)).containsExactly(1L);
+        assertThat(titleSearchIndex.search("AMELIE", 10)).containsExactly(5L);
+        assertThat(titleSearchIndex.search("xyz", 10)).isEmpty();
+        assertThat(titleSearchIndex.search(" ! ", 10)).isEmpty();
+    }
+
+    @Test
+    void testRatingUpdateReorders() {
+        titleSearchIndex.onMoviesUpdated(List.of(buildMovie(1L, "Star Wars", 5.0)));
+
+        assertThat(titleSearchIndex.search("star", 2)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void testRemovedMoviesAreNotFound() {
+        titleSearchIndex.onMoviesRemoved(List.of(1L, 3L));
+
+        assertThat(titleSearchIndex.search("Star", 10)).containsExactly(2L, 4L, 6L);
+        assertThat(titleSearchIndex.search("star wors", 10)).doesNotContain(1L);
+        assertThat(titleSearchIndex.size()).isEqualTo(4);
+
+        titleSearchIndex.onMovieAdded(buildMovie(1L, "Star Wars", 4.0));
+
+        assertThat(titleSearchIndex.search("star wars", 10)).containsExactly(1L);
+    }
+
+    @Test
+    void testRebuildAndMemoryMetrics() {
+        when(movieRepository.findAll()).thenReturn(List.of(buildMovie(7L, "Alien", 4.0)));
+
+        titleSearchIndex.rebuild();
+
+        assertThat(titleSearchIndex.size()).isEqualTo(1);
+        assertThat(titleSearchIndex.search("alien", 10)).containsExactly(7L);
+        assertThat(titleSearchIndex.search("star", 10)).isEmpty();
+        assertThat(meterRegistry.get("search.index.memory.per.title").gauge().value())
+                .isEqualTo(titleSearchIndex.estimatedBytes());
+    }
+
+    private Movie buildMovie(Long id, String title, double averageRating) {
+        return Movie.builder()
+                .id(id)
+                .title(title)
+                .genre("Drama")
+                .director("Test Director")
+                .releaseYear(2021)
+                .averageRating(averageRating)
+                .build();
+    }
+}
@@ -0,0 +1,162 @@
+package movierecommendation.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TrendingIndexTests {
+
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+
+    private TrendingIndex trendingIndex;
+
+    @BeforeEach
+    void setUp() {
+        trendingIndex = new TrendingIndex(60, "5m,1h", clock::get);
+    }
+
+    @Test
+    void testTop_OrdersByNumberOfRatings() {
+        rate(1L, 3);
+        rate(2L, 1);
+        rate(3L, 2);
+
+        assertThat(trendingIndex.top("1h", id -> true, 10)).isEmpty();
+
+        trendingIndex.tick();
+
+        assertThat(trendingIndex.top("1h", id -> true, 10)).containsExactly(1L, 3L, 2L);
+        assertThat(trendingIndex.top("1h", id -> true, 2)).containsExactly(1L, 3L);
+        assertThat(trendingIndex.top("5m", id -> true, 10)).containsExactly(1L, 3L, 2L);
+    }
+
+    @Test
+    void testTop_RecentRatingsWeighMore() {
+        rate(1L, 2);
+        advance(30);
+        rate(2L, 1);
+        trendingIndex.tick();
+
+        assertThat(trendingIndex.top("1h", id -> true, 10)).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void testTop_AverageRatingBreaksTies() {
+        trendingIndex.record(1L, 3.0);
+        trendingIndex.record(2L, 5.0);
+        trendingIndex.tick();
+
+        assertThat(trendingIndex.top("1h", id -> true, 10)).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void testRemovedMovieLeavesRankings() {
+        rate(1L, 2);
+        rate(2L, 1);
+        trendingIndex.tick();
+
+        trendingIndex.onMoviesRemoved(List.of(1L, 3L));
+
+        assertThat(trendingIndex.top("1h", id -> true, 10)).containsExactly(2L);
+        assertThat(trendingIndex.activeMovies()).isEqualTo(1);
+
+        rate(1L, 1);
+        advance(1);
+        trendingIndex.tick();
+
+        assertThat(trendingIndex.top("1h", id -> true, 10)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(trendingIndex.activeMovies()).isEqualTo(2);
+    }
+
+    @Test
+    void testTop_Filter() {
+        rate(1L, 2);
+        rate(2L, 1);
+        trendingIndex.tick();
+
+        assertThat(trendingIndex.top("1h", id -> id != 1L, 10)).containsExactly(2L);
+    }
+
+    @Test
+    void testTick_ExpiresRatingsOutsideWindow() {
+        rate(1L, 1);
+        trendingIndex.tick();
+        assertThat(trendingIndex.activeMovies()).isEqualTo(1);
+
+        advance(6);
+        trendingIndex.tick();
+
+        assertThat(trendingIndex.top("5m", id -> true, 10)).isEmpty();
+        assertThat(trendingIndex.top("1h", id -> true, 10)).containsExactly(1L);
+
+        advance(60);
+        trendingIndex.tick();
+
+        assertThat(trendingIndex.top("1h", id -> true, 10)).isEmpty();
+        assertThat(trendingIndex.activeMovies()).isZero();
+
+        rate(1L, 1);
+        trendingIndex.tick();
+
+        assertThat(trendingIndex.top("5m", id -> true, 10)).containsExactly(1L);
+        assertThat(trendingIndex.activeMovies()).isEqualTo(1);
+    }
+
+    @Test
+    void testRecord_ConcurrentRatingsAreNotLost() throws Exception {
+        int threads = 8;
+        int perThread = 10_000;
+        for (int i = 0; i < threads * perThread - 1; i++) {
+            trendingIndex.record(2L, 5.0);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(() -> rate(1L, perThread)));
+            }
+            Future<?> ticker = executor.submit(() -> {
+                while (!workers.stream().allMatch(Future::isDone)) {
+                    trendingIndex.tick();
+                }
+            });
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            ticker.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        trendingIndex.tick();
+
+        // One lost rating of movie 1 would tie the counts and let the higher average of movie 2 win.
+        assertThat(trendingIndex.top("1h", id -> true, 10)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void testTop_InvalidWindow() {
+        assertThatThrownBy(() -> trendingIndex.top("2d", id -> true, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid window. Window must be one of 5m, 1h.");
+    }
+
+    private void rate(long movieId, int times) {
+        for (int i = 0; i < times; i++) {
+            trendingIndex.record(movieId, 4.0);
+        }
+    }
+
+    private void advance(int minutes) {
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(minutes));
+    }
+}
@@ -0,0 +1,107 @@
+package movierecommendation.journal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.model.Movie;
+import movierecommendation.model.UserRating;
+import movierecommendation.repository.CatalogLoader;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.service.GenreDictionary;
+import movierecommendation.service.RankingScorer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class JournalRecoveryTests {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private CatalogLoader catalogLoader;
+
+    @Mock
+    private RankingScorer rankingScorer;
+
+    @Mock
+    private GenreDictionary genreDictionary;
+
+    private RatingJournal ratingJournal;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        RatingJournal previous = journal();
+        previous.open();
+        previous.onMovieAdded(Movie.builder().id(1L).title("Movie 1").genre("Drama").director("Director").releaseYear(2020).build());
+        previous.onMovieAdded(Movie.builder().id(2L).title("Movie 2").genre("Action").director("Director").releaseYear(2021).build());
+        previous.appendRating(1L, 7L, 4.0);
+        previous.awaitDurable(previous.appendRating(1L, null, 2.0));
+        previous.close();
+        ratingJournal = journal();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        ratingJournal.close();
+    }
+
+    @Captor
+    private ArgumentCaptor<List<Movie>> movies;
+
+    @Captor
+    private ArgumentCaptor<List<UserRating>> userRatings;
+
+    @Test
+    void testRecover_RestoresMoviesAndUserRatingsAndMovesSequence() throws Exception {
+        when(movieRepository.count()).thenReturn(0L);
+        when(rankingScorer.score(anyDouble(), anyInt())).thenReturn(3.5);
+        when(genreDictionary.encodeLenient("Drama")).thenReturn(1L);
+        JournalRecovery journalRecovery = new JournalRecovery(ratingJournal, movieRepository, catalogLoader,
+                rankingScorer, genreDictionary);
+
+        journalRecovery.recover();
+
+        verify(catalogLoader).insertMovies(movies.capture());
+        assertThat(movies.getValue()).hasSize(2);
+        assertThat(movies.getValue().get(0)).usingRecursiveComparison().isEqualTo(Movie.builder().id(1L).title("Movie 1").genre("Drama")
+                .genreBits(1L).releaseYear(2020).director("Director").averageRating(3.0).numberOfRatings(2)
+                .rankingScore(3.5).build());
+        verify(catalogLoader).insertUserRatings(userRatings.capture());
+        assertThat(userRatings.getValue()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactly(UserRating.builder().userId(7L).movieId(1L).rating(4.0).build());
+        verify(catalogLoader).restartMovieSequenceAbove(2L);
+        verify(rankingScorer).score(3.0, 2);
+        assertThat(journalRecovery.isRestored()).isTrue();
+    }
+
+    @Test
+    void testRecover_LeavesPopulatedDatabaseAlone() throws Exception {
+        when(movieRepository.count()).thenReturn(5L);
+        JournalRecovery journalRecovery = new JournalRecovery(ratingJournal, movieRepository, catalogLoader,
+                rankingScorer, genreDictionary);
+
+        journalRecovery.recover();
+
+        verifyNoInteractions(catalogLoader);
+        assertThat(journalRecovery.isRestored()).isFalse();
+    }
+
+    private RatingJournal journal() {
+        return new RatingJournal(true, directory.toString(), "always", 10, 1 << 20, 2, 3, 10, 1 << 20,
+                new SimpleMeterRegistry());
+    }
+}
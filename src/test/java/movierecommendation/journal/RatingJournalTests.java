@@ -0,0 +1,310 @@
+package movierecommendation.journal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.model.Movie;
+import movierecommendation.model.UserRating;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class RatingJournalTests {
+
+    @TempDir
+    Path directory;
+
+    private final List<RatingJournal> journals = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (RatingJournal journal : journals) {
+            journal.close();
+        }
+    }
+
+    @Test
+    void testReplayRebuildsAggregatesAndLatestUserRatings() throws Exception {
+        RatingJournal journal = open(1 << 20, 1);
+        journal.onMovieAdded(buildMovie(1L, 4.0, 2));
+        journal.onMovieAdded(buildMovie(2L, 0, 0));
+        journal.awaitDurable(journal.appendRating(1L, null, 1.0));
+        journal.awaitDurable(journal.appendRating(1L, 7L, 2.0));
+        journal.awaitDurable(journal.appendRating(1L, 7L, 5.0));
+        journal.awaitDurable(journal.appendRating(2L, 7L, 3.0));
+        journal.close();
+
+        ReplayState state = open(1 << 20, 1).replay();
+
+        assertThat(state.getRecords()).isEqualTo(6);
+        assertThat(state.getMovies()).containsOnlyKeys(1L, 2L);
+        assertThat(state.getMovies().get(1L).getTitle()).isEqualTo("Movie 1");
+        assertThat(state.partitionFor(1L).count(1L)).isEqualTo(4);
+        assertThat(state.partitionFor(1L).sum(1L)).isEqualTo(8.0 + 1.0 + 5.0);
+        assertThat(state.partitionFor(2L).count(2L)).isEqualTo(1);
+        assertThat(userRatings(state)).containsExactlyInAnyOrder("7:1=5.0", "7:2=3.0");
+    }
+
+    @Test
+    void testParallelReplayMatchesSequentialReplay() throws Exception {
+        RatingJournal journal = open(1 << 20, 1);
+        for (long id = 1; id <= 50; id++) {
+            journal.onMovieAdded(buildMovie(id, 0, 0));
+        }
+        long sequence = 0;
+        for (int i = 0; i < 20_000; i++) {
+            sequence = journal.appendRating(1 + i % 50, (long) (i % 300), 1 + i % 5);
+        }
+        journal.awaitDurable(sequence);
+        journal.close();
+
+        ReplayState sequential = open(1 << 20, 1).replay();
+        ReplayState parallel = open(1 << 20, 4).replay();
+
+        assertThat(parallel.getRecords()).isEqualTo(sequential.getRecords());
+        for (long id = 1; id <= 50; id++) {
+            assertThat(parallel.partitionFor(id).count(id)).isEqualTo(sequential.partitionFor(id).count(id));
+            assertThat(parallel.partitionFor(id).sum(id)).isEqualTo(sequential.partitionFor(id).sum(id));
+        }
+        assertThat(userRatings(parallel)).containsExactlyInAnyOrderElementsOf(userRatings(sequential));
+    }
+
+    @Test
+    void testTornTailIsIgnored() throws Exception {
+        RatingJournal journal = open(1 << 20, 1);
+        journal.onMovieAdded(buildMovie(1L, 0, 0));
+        journal.awaitDurable(journal.appendRating(1L, null, 4.0));
+        journal.close();
+        Path segment = files("segment-").get(0);
+        Files.write(segment, new byte[]{0, 0, 0, 33, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        ReplayState state = open(1 << 20, 1).replay();
+
+        assertThat(state.getRecords()).isEqualTo(2);
+        assertThat(state.partitionFor(1L).count(1L)).isEqualTo(1);
+    }
+
+    @Test
+    void testCompactionKeepsStateAndRemovesSealedSegments() throws Exception {
+        RatingJournal journal = open(64, 2);
+        journal.onMovieAdded(buildMovie(1L, 0, 0));
+        journal.awaitDurable(journal.appendRating(1L, 7L, 2.0));
+        journal.awaitDurable(journal.appendRating(1L, 7L, 4.0));
+        journal.awaitDurable(journal.appendRating(1L, 8L, 3.0));
+        assertThat(files("segment-").size()).isGreaterThan(1);
+
+        journal.compact();
+        journal.close();
+
+        assertThat(files("snapshot-")).hasSize(1);
+        ReplayState state = open(64, 2).replay();
+        assertThat(state.getMovies()).containsOnlyKeys(1L);
+        assertThat(state.partitionFor(1L).count(1L)).isEqualTo(2);
+        assertThat(state.partitionFor(1L).sum(1L)).isEqualTo(7.0);
+        assertThat(userRatings(state)).containsExactlyInAnyOrder("7:1=4.0", "8:1=3.0");
+    }
+
+    @Test
+    void testReplayDropsRemovedMoviesAndTheirUserRatings() throws Exception {
+        RatingJournal journal = open(1 << 20, 2);
+        journal.onMoviesAdded(List.of(buildMovie(1L, 4.0, 2), buildMovie(2L, 0, 0)));
+        journal.awaitDurable(journal.appendRating(1L, 7L, 2.0));
+        journal.awaitDurable(journal.appendRating(2L, 7L, 3.0));
+        journal.onMoviesRemoved(List.of(1L));
+        journal.close();
+
+        ReplayState state = open(1 << 20, 2).replay();
+
+        assertThat(state.getMovies()).containsOnlyKeys(2L);
+        assertThat(state.partitionFor(1L).count(1L)).isZero();
+        assertThat(userRatings(state)).containsExactly("7:2=3.0");
+    }
+
+    @Test
+    void testReplayOfMovieAddedAgainAfterRemovalStartsFromItsNewAggregates() throws Exception {
+        RatingJournal journal = open(1 << 20, 1);
+        journal.onMovieAdded(buildMovie(1L, 4.0, 2));
+        journal.awaitDurable(journal.appendRating(1L, 7L, 2.0));
+        journal.onMoviesRemoved(List.of(1L));
+        journal.onMovieAdded(buildMovie(1L, 3.0, 1));
+        journal.awaitDurable(journal.appendRating(1L, 7L, 5.0));
+        journal.close();
+
+        ReplayState state = open(1 << 20, 1).replay();
+
+        assertThat(state.getMovies()).containsOnlyKeys(1L);
+        assertThat(state.partitionFor(1L).count(1L)).isEqualTo(2);
+        assertThat(state.partitionFor(1L).sum(1L)).isEqualTo(8.0);
+        assertThat(userRatings(state)).containsExactly("7:1=5.0");
+    }
+
+    @Test
+    void testAppendedUserRatingsDoNotChangeAggregates() throws Exception {
+        RatingJournal journal = open(1 << 20, 1);
+        journal.onMovieAdded(buildMovie(1L, 4.0, 2));
+        journal.appendUserRatings(List.of(UserRating.builder().userId(7L).movieId(1L).rating(3.0).build()));
+        journal.close();
+
+        ReplayState state = open(1 << 20, 1).replay();
+
+        assertThat(state.partitionFor(1L).count(1L)).isEqualTo(2);
+        assertThat(state.partitionFor(1L).sum(1L)).isEqualTo(8.0);
+        assertThat(userRatings(state)).containsExactly("7:1=3.0");
+    }
+
+    @Test
+    void testIdHighWaterSurvivesReplayAndCompaction() throws Exception {
+        RatingJournal journal = open(64, 1);
+        journal.onMovieAdded(buildMovie(5L, 0, 0));
+        journal.recordIdHighWater(9L);
+        journal.recordIdHighWater(7L);
+        journal.onMoviesRemoved(List.of(5L));
+        journal.close();
+
+        RatingJournal reopened = open(64, 1);
+        assertThat(reopened.replay().getIdHighWater()).isEqualTo(9L);
+        assertThat(reopened.getIdHighWater()).isEqualTo(9L);
+        reopened.compact();
+        reopened.close();
+
+        assertThat(files("snapshot-")).hasSize(1);
+        ReplayState state = open(64, 1).replay();
+        assertThat(state.getMovies()).isEmpty();
+        assertThat(state.getIdHighWater()).isEqualTo(9L);
+    }
+
+    @Test
+    void testSnapshotLoadedAndDeletedMoviesSurviveReplay() throws Exception {
+        RatingJournal journal = open(64, 1);
+        journal.onMovieAdded(buildMovie(5L, 0, 0));
+        journal.onMovieAdded(buildMovie(6L, 0, 0));
+        journal.recordSnapshotLoaded(6L);
+        journal.onMoviesRemoved(List.of(5L));
+        journal.close();
+
+        RatingJournal reopened = open(64, 1);
+        assertThat(reopened.isSnapshotLoaded()).isFalse();
+        ReplayState replayed = reopened.replay();
+        assertThat(reopened.isSnapshotLoaded()).isTrue();
+        assertThat(replayed.getSnapshotLoaded()).isEqualTo(6L);
+        assertThat(replayed.getDeletedMovies().get(5L, -1)).isGreaterThanOrEqualTo(0);
+        assertThat(replayed.getDeletedMovies().get(6L, -1)).isEqualTo(-1);
+        reopened.compact();
+        reopened.close();
+
+        assertThat(files("snapshot-")).hasSize(1);
+        assertThat(open(64, 1).replay().getSnapshotLoaded()).isEqualTo(6L);
+    }
+
+    @Test
+    void testFailedRotationFailsWaitersAndLaterAppends() throws Exception {
+        Path journalDirectory = directory.resolve("journal");
+        RatingJournal journal = new RatingJournal(true, journalDirectory.toString(), "always", 10, 1, 1,
+                3, 10, 1 << 20, new SimpleMeterRegistry());
+        journals.add(journal);
+        journal.open();
+        try (Stream<Path> files = Files.list(journalDirectory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(journalDirectory);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThatThrownBy(() -> {
+            while (true) {
+                journal.awaitDurable(journal.appendRating(1L, null, 4.0));
+            }
+        }).isInstanceOf(UncheckedIOException.class));
+        assertThatThrownBy(() -> journal.appendRating(1L, null, 5.0)).isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(() -> journal.onMovieAdded(buildMovie(2L, 0, 0))).isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    void testFailedWritesFailWaitersAndLaterAppends() throws Exception {
+        RatingJournal journal = new RatingJournal(true, directory.toString(), "always", 10, 1 << 20, 1,
+                3, 10, 1 << 20, new SimpleMeterRegistry()) {
+            @Override
+            FileChannel openSegment(long number) throws IOException {
+                FileChannel channel = super.openSegment(number);
+                channel.close();
+                return channel;
+            }
+        };
+        journals.add(journal);
+        journal.open();
+
+        long sequence = journal.appendRating(1L, null, 4.0);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                assertThatThrownBy(() -> journal.awaitDurable(sequence)).isInstanceOf(UncheckedIOException.class));
+        assertThatThrownBy(() -> journal.appendRating(1L, null, 5.0)).isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    void testAppendsRejectedWhileBacklogIsFull() throws Exception {
+        RatingJournal journal = new RatingJournal(true, directory.toString(), "interval", 1000, 1 << 20, 1,
+                3, 10, 64, new SimpleMeterRegistry());
+        journals.add(journal);
+        journal.open();
+
+        assertThatThrownBy(() -> {
+            for (long movieId = 1; movieId <= 64; movieId++) {
+                journal.appendRating(movieId, null, 4.0);
+            }
+        }).isInstanceOf(UncheckedIOException.class).hasMessageContaining("backlog");
+    }
+
+    private RatingJournal open(long segmentSizeBytes, int replayThreads) throws IOException {
+        RatingJournal journal = new RatingJournal(true, directory.toString(), "always", 10, segmentSizeBytes,
+                replayThreads, 3, 10, 1 << 20, new SimpleMeterRegistry());
+        journals.add(journal);
+        journal.open();
+        return journal;
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> userRatings(ReplayState state) {
+        List<String> ratings = new ArrayList<>();
+        for (ReplayState.Partition partition : state.getPartitions()) {
+            for (int slot = 0; slot < partition.ratingCapacity(); slot++) {
+                if (partition.ratingUserAt(slot) != JournalCodec.NO_USER) {
+                    ratings.add(partition.ratingUserAt(slot) + ":" + partition.ratingMovieAt(slot)
+                            + "=" + partition.ratingValueAt(slot));
+                }
+            }
+        }
+        return ratings;
+    }
+
+    private Movie buildMovie(Long id, double averageRating, int numberOfRatings) {
+        return Movie.builder()
+                .id(id)
+                .title("Movie " + id)
+                .genre("Drama")
+                .director("Test Director")
+                .releaseYear(2021)
+                .averageRating(averageRating)
+                .numberOfRatings(numberOfRatings)
+                .build();
+    }
+}
@@ -0,0 +1,54 @@
+package movierecommendation.repository;
+
+import movierecommendation.model.Movie;
+import movierecommendation.model.UserRating;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(CatalogLoader.class)
+class CatalogLoaderTests {
+
+    @Autowired
+    private CatalogLoader catalogLoader;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private UserRatingRepository userRatingRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void testInsertMoviesAndUserRatingsKeepsIds() {
+        catalogLoader.insertMovies(List.of(Movie.builder().id(1000L).title("Movie 1").genre("Drama").genreBits(2L)
+                .releaseYear(2020).director("Director").averageRating(4.0).numberOfRatings(2).rankingScore(3.5)
+                .build()));
+        catalogLoader.insertUserRatings(List.of(UserRating.builder().userId(7L).movieId(1000L).rating(4.5).build()));
+
+        Movie movie = movieRepository.findById(1000L).get();
+        assertThat(movie.getTitle()).isEqualTo("Movie 1");
+        assertThat(movie.getGenreBits()).isEqualTo(2L);
+        assertThat(movie.getRankingScore()).isEqualTo(3.5);
+        assertThat(userRatingRepository.findByMovieIdIn(List.of(1000L))).singleElement()
+                .extracting(UserRating::getRating).isEqualTo(4.5);
+    }
+
+    @Test
+    void testRestartMovieSequenceAbove() {
+        catalogLoader.restartMovieSequenceAbove(5000L);
+
+        Movie movie = entityManager.persistAndFlush(Movie.builder().title("Movie 1").build());
+
+        assertThat(movie.getId()).isGreaterThan(5000L);
+    }
+}
@@ -6,10 +6,12 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 @DataJpaTest
 public class MovieRepositoryTests {
@@ -44,38 +46,101 @@ public class MovieRepositoryTests {
     }
 
     @Test
-    public void testFindByGenreIgnoreCase() {
-        Movie movie1 =  Movie.builder()
+    public void testFindByGenreBitsAndGenreIsNotNull() {
+        Movie unmigrated = entityManager.persistAndFlush(Movie.builder()
                 .title("Movie 1")
                 .releaseYear(2020)
-                .averageRating(1)
                 .director("Test Director")
                 .genre("action")
-                .numberOfRatings(2)
-                .build();
-
-        Movie movie2 =  Movie.builder()
+                .build());
+        entityManager.persistAndFlush(Movie.builder()
                 .title("Movie 2")
                 .releaseYear(2020)
-                .averageRating(1)
-                .director("Test Director 2")
-                .numberOfRatings(2)
-                .build();
-        entityManager.persistAndFlush(movie1);
-        entityManager.persistAndFlush(movie2);
+                .director("Test Director")
+                .genre("drama")
+                .genreBits(2L)
+                .build());
+        entityManager.persistAndFlush(Movie.builder()
+                .title("Movie 3")
+                .releaseYear(2020)
+                .director("Test Director")
+                .build());
 
-        List<Movie> movies = movieRepository.findByGenreIgnoreCase("action", null);
+        List<Movie> movies = movieRepository.findByGenreBitsAndGenreIsNotNullAndIdGreaterThanOrderByIdAsc(
+                0L, Long.MIN_VALUE, PageRequest.of(0, 10));
+
+        assertThat(movies).containsExactly(unmigrated);
+        assertThat(movieRepository.findByGenreBitsAndGenreIsNotNullAndIdGreaterThanOrderByIdAsc(
+                0L, unmigrated.getId(), PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    public void testFindByIdGreaterThanOrderByIdAsc() {
+        Movie movie1 = entityManager.persistAndFlush(Movie.builder().title("Movie 1").releaseYear(2020).build());
+        Movie movie2 = entityManager.persistAndFlush(Movie.builder().title("Movie 2").releaseYear(2020).build());
+        Movie movie3 = entityManager.persistAndFlush(Movie.builder().title("Movie 3").releaseYear(2020).build());
+
+        List<Movie> firstPage = movieRepository.findByIdGreaterThanOrderByIdAsc(Long.MIN_VALUE, PageRequest.of(0, 2));
+        List<Movie> secondPage = movieRepository.findByIdGreaterThanOrderByIdAsc(movie2.getId(), PageRequest.of(0, 2));
+
+        assertThat(firstPage).containsExactly(movie1, movie2);
+        assertThat(secondPage).containsExactly(movie3);
+    }
+
+    @Test
+    public void testFindIdsByIdIn() {
+        Movie movie = entityManager.persistAndFlush(Movie.builder().title("Movie 1").releaseYear(2020).build());
 
-        assertThat(movies).hasSize(1);
-        assertThat(movies.get(0).getTitle()).isEqualTo("Movie 1");
+        assertThat(movieRepository.findIdsByIdIn(List.of(movie.getId(), movie.getId() + 1000)))
+                .containsExactly(movie.getId());
     }
 
     @Test
-    public void testFindByGenreIgnoreCase_WhenGenreNotFound() {
-        // When
-        List<Movie> movies = movieRepository.findByGenreIgnoreCase("Comedy", null);
+    public void testFindMaxIdInRange() {
+        Movie movie1 = entityManager.persistAndFlush(Movie.builder().title("Movie 1").releaseYear(2020).build());
+        Movie movie2 = entityManager.persistAndFlush(Movie.builder().title("Movie 2").releaseYear(2020).build());
+
+        assertThat(movieRepository.findMaxIdInRange(0, movie2.getId())).isEqualTo(movie1.getId());
+        assertThat(movieRepository.findMaxIdInRange(movie2.getId() + 1, Long.MAX_VALUE)).isNull();
+    }
+
+    @Test
+    public void testFindCatalogMeanRating() {
+        entityManager.persistAndFlush(Movie.builder().title("Movie 1").averageRating(4.0).numberOfRatings(3).build());
+        entityManager.persistAndFlush(Movie.builder().title("Movie 2").averageRating(2.0).numberOfRatings(1).build());
+        entityManager.persistAndFlush(Movie.builder().title("Movie 3").build());
+
+        assertThat(movieRepository.findCatalogMeanRating()).isEqualTo(3.5);
+    }
+
+    @Test
+    public void testFindCatalogMeanRating_WhenNothingRated() {
+        entityManager.persistAndFlush(Movie.builder().title("Movie 1").build());
+
+        assertThat(movieRepository.findCatalogMeanRating()).isNull();
+    }
+
+    @Test
+    public void testUpdateRankingScores() {
+        Movie movie = entityManager.persistAndFlush(
+                Movie.builder().title("Movie 1").averageRating(5.0).numberOfRatings(10).build());
+
+        int updated = movieRepository.updateRankingScores(3.0, 10);
+        entityManager.clear();
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(movieRepository.findById(movie.getId()).get().getRankingScore()).isEqualTo(4.0);
+    }
+
+    @Test
+    public void testUpdateRankingScores_WithFractionalWeight() {
+        Movie movie = entityManager.persistAndFlush(
+                Movie.builder().title("Movie 1").averageRating(4.0).numberOfRatings(2).build());
+
+        movieRepository.updateRankingScores(3.5, 2.5);
+        entityManager.clear();
 
-        // Then
-        assertThat(movies).isEmpty();
+        assertThat(movieRepository.findById(movie.getId()).get().getRankingScore())
+                .isCloseTo((2.5 * 3.5 + 4.0 * 2) / 4.5, within(1e-9));
     }
 }
@@ -0,0 +1,33 @@
+package movierecommendation.repository;
+
+import movierecommendation.model.Movie;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepositoryRowMetricsTests {
+
+    @Test
+    void testRows() {
+        Movie movie = Movie.builder().id(1L).build();
+
+        assertThat(RepositoryRowMetrics.rows(List.of(movie, movie))).isEqualTo(2);
+        assertThat(RepositoryRowMetrics.rows(new PageImpl<>(List.of(movie)))).isEqualTo(1);
+        assertThat(RepositoryRowMetrics.rows(Optional.of(movie))).isEqualTo(1);
+        assertThat(RepositoryRowMetrics.rows(Optional.empty())).isZero();
+        assertThat(RepositoryRowMetrics.rows(movie)).isEqualTo(1);
+        assertThat(RepositoryRowMetrics.rows(null)).isZero();
+    }
+
+    @Test
+    void testRows_NotCounted() {
+        assertThat(RepositoryRowMetrics.rows(Stream.empty())).isNegative();
+        assertThat(RepositoryRowMetrics.rows(true)).isNegative();
+        assertThat(RepositoryRowMetrics.rows(3L)).isNegative();
+    }
+}
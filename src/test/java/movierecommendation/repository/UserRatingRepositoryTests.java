@@ -0,0 +1,58 @@
+package movierecommendation.repository;
+
+import movierecommendation.model.UserRating;
+import movierecommendation.model.UserRatingId;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+public class UserRatingRepositoryTests {
+
+    @Autowired
+    private UserRatingRepository userRatingRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    public void testSaveAllThenUpdateLoadedRating() {
+        userRatingRepository.saveAll(List.of(
+                UserRating.builder().userId(1L).movieId(10L).rating(4.0).build(),
+                UserRating.builder().userId(1L).movieId(20L).rating(2.0).build()));
+        entityManager.flush();
+        entityManager.clear();
+
+        UserRating loaded = userRatingRepository.findById(new UserRatingId(1L, 20L)).orElseThrow();
+        assertThat(loaded.isNew()).isFalse();
+        loaded.setRating(5.0);
+        userRatingRepository.saveAll(List.of(loaded));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(userRatingRepository.count()).isEqualTo(2);
+        assertThat(userRatingRepository.findById(new UserRatingId(1L, 20L)).orElseThrow().getRating()).isEqualTo(5.0);
+    }
+
+    @Test
+    public void testStreamAllRatings() {
+        entityManager.persist(UserRating.builder().userId(1L).movieId(10L).rating(4.0).build());
+        entityManager.persist(UserRating.builder().userId(2L).movieId(10L).rating(3.0).build());
+        entityManager.flush();
+
+        List<Object[]> rows;
+        try (Stream<Object[]> ratings = userRatingRepository.streamAllRatings()) {
+            rows = ratings.collect(Collectors.toList());
+        }
+
+        assertThat(rows).hasSize(2);
+        assertThat(rows).extracting(row -> row[0]).containsExactlyInAnyOrder(1L, 2L);
+    }
+}
@@ -0,0 +1,142 @@
+package movierecommendation.service;
+
+import movierecommendation.exception.TooManyGenresException;
+import movierecommendation.model.Genre;
+import movierecommendation.model.GenreFilter;
+import movierecommendation.model.GenreMatch;
+import movierecommendation.repository.GenreRepository;
+import movierecommendation.repository.MovieRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class GenreDictionaryTests {
+
+    @Mock
+    private GenreRepository genreRepository;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private GenreDictionary genreDictionary;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(genreRepository.findAll()).thenReturn(List.of(new Genre(0, "drama"), new Genre(1, "action")));
+        when(movieRepository.findDistinctGenreBits()).thenReturn(List.of(1L, 3L));
+        genreDictionary = dictionary(60000);
+    }
+
+    @Test
+    void testEncode_KnownGenresIgnoringCaseAndSeparators() {
+        assertThat(genreDictionary.encode("Drama")).isEqualTo(1L);
+        assertThat(genreDictionary.encode("ACTION | drama, Action")).isEqualTo(3L);
+        assertThat(genreDictionary.encode(null)).isZero();
+        verify(genreRepository, never()).save(any());
+    }
+
+    @Test
+    void testEncode_AddsUnknownGenre() {
+        assertThat(genreDictionary.encode("Drama|Comedy")).isEqualTo(1L | 1L << 2);
+        assertThat(genreDictionary.encode("comedy")).isEqualTo(1L << 2);
+        verify(genreRepository, times(1)).save(new Genre(2, "comedy"));
+    }
+
+    @Test
+    void testEncode_TooManyGenres() {
+        for (int i = 2; i < GenreDictionary.MAX_GENRES; i++) {
+            genreDictionary.encode("Genre " + i);
+        }
+
+        assertThatThrownBy(() -> genreDictionary.encode("One Too Many"))
+                .isInstanceOf(TooManyGenresException.class)
+                .hasMessage("Too many genres. At most 64 genres are supported.");
+        assertThat(genreDictionary.encode("Genre 63")).isEqualTo(Long.MIN_VALUE);
+    }
+
+    @Test
+    void testEncodeLenient_SkipsGenresThatDoNotFit() {
+        for (int i = 2; i < GenreDictionary.MAX_GENRES; i++) {
+            genreDictionary.encode("Genre " + i);
+        }
+
+        assertThat(genreDictionary.encodeLenient("Drama | One Too Many | Genre 63")).isEqualTo(1L | Long.MIN_VALUE);
+        assertThat(genreDictionary.encodeLenient("One Too Many")).isZero();
+        verify(genreRepository, never()).save(new Genre(GenreDictionary.MAX_GENRES, "one too many"));
+    }
+
+    @Test
+    void testEncode_ReclaimsGenresNoMovieUses() {
+        genreDictionary = dictionary(0);
+        for (int i = 2; i < GenreDictionary.MAX_GENRES; i++) {
+            genreDictionary.encode("Genre " + i);
+        }
+        when(movieRepository.findDistinctGenreBits()).thenReturn(List.of(~(1L << 5 | 1L << 9), 1L));
+
+        assertThat(genreDictionary.encode("Western")).isEqualTo(1L << 5);
+        assertThat(genreDictionary.encode("Noir")).isEqualTo(1L << 9);
+
+        verify(genreRepository).deleteAllById(List.of(5, 9));
+        verify(genreRepository).save(new Genre(5, "western"));
+        verify(genreRepository).save(new Genre(9, "noir"));
+        verify(movieRepository, times(1)).findDistinctGenreBits();
+        assertThat(genreDictionary.filter(List.of("Genre 5"), GenreMatch.ANY)).isEqualTo(GenreFilter.NOTHING);
+        assertThat(genreDictionary.encode("Genre 6")).isEqualTo(1L << 6);
+    }
+
+    @Test
+    void testEncode_KeepsRecentlyEncodedGenresUnusedByMovies() {
+        for (int i = 2; i < GenreDictionary.MAX_GENRES; i++) {
+            genreDictionary.encode("Genre " + i);
+        }
+        when(movieRepository.findDistinctGenreBits()).thenReturn(List.of(3L));
+
+        assertThatThrownBy(() -> genreDictionary.encode("Western")).isInstanceOf(TooManyGenresException.class);
+        assertThatThrownBy(() -> genreDictionary.encode("Noir")).isInstanceOf(TooManyGenresException.class);
+
+        verify(movieRepository, times(1)).findDistinctGenreBits();
+        verify(genreRepository, never()).deleteAllById(any());
+        assertThat(genreDictionary.encode("Genre 5")).isEqualTo(1L << 5);
+    }
+
+    @Test
+    void testFilter() {
+        assertThat(genreDictionary.filter(Collections.emptyList(), GenreMatch.ANY)).isEqualTo(GenreFilter.UNFILTERED);
+        assertThat(genreDictionary.filter(List.of("drama", "Action"), GenreMatch.ALL))
+                .isEqualTo(GenreFilter.of(3L, GenreMatch.ALL));
+        assertThat(genreDictionary.filter(List.of("Drama|Action"), GenreMatch.ANY))
+                .isEqualTo(GenreFilter.of(3L, GenreMatch.ANY));
+    }
+
+    @Test
+    void testFilter_UnknownGenres() {
+        assertThat(genreDictionary.filter(List.of("Western"), GenreMatch.ANY)).isEqualTo(GenreFilter.NOTHING);
+        assertThat(genreDictionary.filter(List.of("Western", "Drama"), GenreMatch.ANY))
+                .isEqualTo(GenreFilter.of(1L, GenreMatch.ANY));
+        assertThat(genreDictionary.filter(List.of("Western", "Drama"), GenreMatch.ALL)).isEqualTo(GenreFilter.NOTHING);
+        assertThat(genreDictionary.filter(Arrays.asList(null, "drama"), GenreMatch.ANY))
+                .isEqualTo(GenreFilter.of(1L, GenreMatch.ANY));
+        verify(genreRepository, never()).save(any());
+    }
+
+    private GenreDictionary dictionary(long reclaimAfterMs) {
+        GenreDictionary dictionary = new GenreDictionary(genreRepository, movieRepository, transactionManager,
+                reclaimAfterMs);
+        dictionary.load();
+        return dictionary;
+    }
+}
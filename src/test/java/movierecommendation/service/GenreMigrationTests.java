@@ -0,0 +1,64 @@
+package movierecommendation.service;
+
+import movierecommendation.model.Movie;
+import movierecommendation.repository.MovieRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class GenreMigrationTests {
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private GenreDictionary genreDictionary;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private GenreMigration genreMigration;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        genreMigration = new GenreMigration(movieRepository, genreDictionary, transactionManager);
+        when(movieRepository.saveAll(anyIterable())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void testMigrate_EncodesPagesInIdOrder() {
+        Movie movie1 = Movie.builder().id(1L).title("Movie 1").genre("Drama|Action").build();
+        Movie movie2 = Movie.builder().id(5L).title("Movie 2").genre("Comedy").build();
+        when(genreDictionary.encodeLenient("Drama|Action")).thenReturn(3L);
+        when(genreDictionary.encodeLenient("Comedy")).thenReturn(4L);
+        when(movieRepository.findByGenreBitsAndGenreIsNotNullAndIdGreaterThanOrderByIdAsc(
+                0L, Long.MIN_VALUE, PageRequest.of(0, GenreMigration.PAGE_SIZE))).thenReturn(List.of(movie1, movie2));
+        when(movieRepository.findByGenreBitsAndGenreIsNotNullAndIdGreaterThanOrderByIdAsc(
+                0L, 5L, PageRequest.of(0, GenreMigration.PAGE_SIZE))).thenReturn(Collections.emptyList());
+
+        assertThat(genreMigration.migrate()).isEqualTo(2);
+
+        assertThat(movie1.getGenreBits()).isEqualTo(3L);
+        assertThat(movie2.getGenreBits()).isEqualTo(4L);
+        verify(movieRepository, times(2)).saveAll(anyIterable());
+    }
+
+    @Test
+    void testMigrate_NothingToMigrate() {
+        when(movieRepository.findByGenreBitsAndGenreIsNotNullAndIdGreaterThanOrderByIdAsc(anyLong(), any(), any()))
+                .thenReturn(Collections.emptyList());
+
+        assertThat(genreMigration.migrate()).isZero();
+        verifyNoInteractions(genreDictionary);
+    }
+}
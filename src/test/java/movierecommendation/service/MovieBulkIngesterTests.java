@@ -0,0 +1,155 @@
+package movierecommendation.service;
+
+import movierecommendation.exception.TooManyGenresException;
+import movierecommendation.model.Movie;
+import movierecommendation.model.MovieIngestReport;
+import movierecommendation.model.MovieIngestResult;
+import movierecommendation.model.MovieViolation;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.util.MovieValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class MovieBulkIngesterTests {
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieChangeNotifier movieChangeNotifier;
+
+    @Mock
+    private RankingScorer rankingScorer;
+
+    @Mock
+    private GenreDictionary genreDictionary;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Captor
+    private ArgumentCaptor<Iterable<Movie>> savedChunks;
+
+    private MovieBulkIngester movieBulkIngester;
+
+    private long nextId;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        movieBulkIngester = new MovieBulkIngester(movieRepository, new MovieValidator(), movieChangeNotifier,
+                rankingScorer, genreDictionary, entityManager, transactionManager, 2);
+        nextId = 100;
+        when(movieRepository.saveAll(savedChunks.capture())).thenAnswer(invocation -> {
+            List<Movie> saved = new ArrayList<>();
+            for (Movie movie : savedChunks.getValue()) {
+                movie.setId(nextId++);
+                saved.add(movie);
+            }
+            return saved;
+        });
+    }
+
+    @Test
+    void testIngest_ReportsEveryItemInOrder() {
+        Movie valid1 = buildMovie("Movie 1", 2020);
+        Movie invalid = Movie.builder().title("No Genre").releaseYear(2020).build();
+        Movie duplicateInRequest = buildMovie("Movie 1", 2020);
+        Movie existing = buildMovie("Movie 2", 2019);
+        Movie valid2 = buildMovie("Movie 2", 2021);
+        when(movieRepository.findTitleAndReleaseYearByTitleIn(anyCollection()))
+                .thenReturn(Collections.emptyList())
+                .thenReturn(Arrays.asList(new Object[]{"Movie 1", 2020}, new Object[]{"Movie 2", 2019}));
+
+        MovieIngestReport report = movieBulkIngester.ingest(
+                Arrays.asList(valid1, invalid, duplicateInRequest, existing, valid2).iterator());
+
+        assertThat(report.getResults()).extracting(MovieIngestResult::getIndex).containsExactly(0, 1, 2, 3, 4);
+        assertThat(report.getResults()).extracting(MovieIngestResult::getStatus).containsExactly(
+                MovieIngestResult.Status.CREATED,
+                MovieIngestResult.Status.INVALID,
+                MovieIngestResult.Status.DUPLICATE,
+                MovieIngestResult.Status.DUPLICATE,
+                MovieIngestResult.Status.CREATED);
+        assertThat(report.getResults().get(0).getMovieId()).isEqualTo(100L);
+        assertThat(report.getResults().get(3).getMessage()).isEqualTo("Movie already exists");
+        assertThat(report.getResults().get(1).getViolations())
+                .containsExactly(MovieViolation.MISSING_GENRE, MovieViolation.MISSING_DIRECTOR);
+        assertThat(report.getResults().get(0).getViolations()).isEmpty();
+        assertThat(report.getCreated()).isEqualTo(2);
+        assertThat(report.getRejected()).isEqualTo(3);
+        verify(movieChangeNotifier).moviesAdded(List.of(valid1));
+        verify(movieChangeNotifier).moviesAdded(List.of(valid2));
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void testIngest_OneDuplicateQueryPerChunk() {
+        when(movieRepository.findTitleAndReleaseYearByTitleIn(anyCollection())).thenReturn(Collections.emptyList());
+
+        movieBulkIngester.ingest(Arrays.asList(
+                buildMovie("Movie 1", 2020),
+                buildMovie("Movie 2", 2020),
+                buildMovie("Movie 3", 2020)).iterator());
+
+        verify(movieRepository, times(2)).findTitleAndReleaseYearByTitleIn(anyCollection());
+        verify(movieRepository, times(2)).saveAll(anyIterable());
+        assertThat(savedChunks.getAllValues()).hasSize(2);
+        assertThat(savedChunks.getAllValues().get(0)).hasSize(2);
+        assertThat(savedChunks.getAllValues().get(1)).hasSize(1);
+        verify(movieRepository, never()).existsByTitleAndReleaseYear(any(), anyInt());
+    }
+
+    @Test
+    void testIngest_TooManyGenresRejectsOnlyThatMovie() {
+        Movie valid = buildMovie("Movie 1", 2020);
+        Movie newGenre = buildMovie("Movie 2", 2020);
+        newGenre.setGenre("One Too Many");
+        when(movieRepository.findTitleAndReleaseYearByTitleIn(anyCollection())).thenReturn(Collections.emptyList());
+        when(genreDictionary.encode("One Too Many")).thenThrow(new TooManyGenresException("Too many genres."));
+
+        MovieIngestReport report = movieBulkIngester.ingest(Arrays.asList(valid, newGenre).iterator());
+
+        assertThat(report.getResults()).extracting(MovieIngestResult::getStatus).containsExactly(
+                MovieIngestResult.Status.CREATED,
+                MovieIngestResult.Status.INVALID);
+        assertThat(report.getResults().get(1).getViolations()).containsExactly(MovieViolation.TOO_MANY_GENRES);
+        assertThat(savedChunks.getValue()).containsExactly(valid);
+        verify(movieChangeNotifier).moviesAdded(List.of(valid));
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void testIngest_Empty() {
+        MovieIngestReport report = movieBulkIngester.ingest(Collections.emptyIterator());
+
+        assertThat(report.getResults()).isEmpty();
+        verify(transactionManager, never()).getTransaction(any());
+    }
+
+    private Movie buildMovie(String title, int releaseYear) {
+        return Movie.builder()
+                .title(title)
+                .genre("Drama")
+                .director("Test Director")
+                .releaseYear(releaseYear)
+                .build();
+    }
+}
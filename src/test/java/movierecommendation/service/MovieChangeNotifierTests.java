@@ -0,0 +1,132 @@
+package movierecommendation.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.model.Movie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class MovieChangeNotifierTests {
+
+    @Mock
+    private ObjectProvider<MovieChangeListener> listenerProvider;
+
+    @Mock
+    private MovieChangeListener journal;
+
+    @Mock
+    private MovieProjection index;
+
+    @Mock
+    private MovieProjection version;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MovieChangeNotifier movieChangeNotifier;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        when(listenerProvider.orderedStream()).thenReturn(Stream.of(index, journal, version));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (movieChangeNotifier != null) {
+            movieChangeNotifier.stop();
+        }
+    }
+
+    @Test
+    void testSynchronous_NotifiesEveryListenerInOrder() {
+        movieChangeNotifier = notifier(false);
+        Movie movie = Movie.builder().id(1L).title("Movie 1").build();
+        doThrow(new IllegalStateException("boom")).when(journal).onMovieAdded(movie);
+
+        movieChangeNotifier.movieAdded(movie);
+
+        InOrder inOrder = inOrder(journal, index, version);
+        inOrder.verify(journal).onMovieAdded(movie);
+        inOrder.verify(index).onMovieAdded(movie);
+        inOrder.verify(version).onMovieAdded(movie);
+        assertThat(meterRegistry.get("projection.lag").tag("event", "movieAdded").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testAsync_ProjectsAfterWritePathListeners() throws InterruptedException {
+        movieChangeNotifier = notifier(true);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(index).onMoviesUpdated(anyList());
+        List<Movie> movies = List.of(Movie.builder().id(1L).title("Movie 1").build());
+
+        movieChangeNotifier.moviesUpdated(movies);
+
+        verify(journal).onMoviesUpdated(movies);
+        verify(version, after(100).never()).onMoviesUpdated(anyList());
+        release.countDown();
+        assertThat(movieChangeNotifier.awaitProjections(5, TimeUnit.SECONDS)).isTrue();
+        InOrder inOrder = inOrder(index, version);
+        inOrder.verify(index).onMoviesUpdated(movies);
+        inOrder.verify(version).onMoviesUpdated(movies);
+        assertThat(movieChangeNotifier.pending()).isZero();
+        assertThat(meterRegistry.get("projection.lag").tag("event", "moviesUpdated").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testAsync_FailingProjectionDoesNotStopOthers() throws InterruptedException {
+        movieChangeNotifier = notifier(true);
+        doThrow(new IllegalStateException("boom")).when(index).onCatalogReloaded();
+
+        movieChangeNotifier.catalogReloaded();
+
+        assertThat(movieChangeNotifier.awaitProjections(5, TimeUnit.SECONDS)).isTrue();
+        verify(journal).onCatalogReloaded();
+        verify(version).onCatalogReloaded();
+    }
+
+    @Test
+    void testRebuildProjections_OnlyRebuildsProjections() throws InterruptedException {
+        movieChangeNotifier = notifier(true);
+
+        assertThat(movieChangeNotifier.rebuildProjections(5, TimeUnit.SECONDS)).isTrue();
+
+        verify(index).onRebuild();
+        verify(version).onRebuild();
+        verifyNoInteractions(journal);
+        assertThat(meterRegistry.get("projection.lag").tag("event", "rebuild").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testStop_ProjectsOnCallingThreadAfterwards() throws InterruptedException {
+        movieChangeNotifier = notifier(true);
+        Movie movie = Movie.builder().id(1L).title("Movie 1").build();
+
+        movieChangeNotifier.stop();
+        movieChangeNotifier.movieAdded(movie);
+
+        verify(index).onMovieAdded(movie);
+        verify(version).onMovieAdded(movie);
+        assertThat(movieChangeNotifier.staleness()).isZero();
+    }
+
+    private MovieChangeNotifier notifier(boolean async) {
+        MovieChangeNotifier notifier = new MovieChangeNotifier(listenerProvider, async, 16, meterRegistry);
+        notifier.start();
+        return notifier;
+    }
+}
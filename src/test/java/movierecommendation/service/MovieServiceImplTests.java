@@ -1,21 +1,46 @@
 package movierecommendation.service;
 
+import movierecommendation.cache.CatalogVersion;
+import movierecommendation.cache.MovieNearCache;
+import movierecommendation.cache.RecommendationCache;
+import movierecommendation.exception.TooManyGenresException;
+import movierecommendation.index.ItemSimilarityIndex;
+import movierecommendation.index.MovieRankingIndex;
+import movierecommendation.index.SimilarMovieIndex;
+import movierecommendation.index.TitleSearchIndex;
+import movierecommendation.index.TrendingIndex;
+import movierecommendation.model.GenreFilter;
+import movierecommendation.model.GenreMatch;
 import movierecommendation.model.Movie;
+import movierecommendation.model.MovieSort;
+import movierecommendation.model.MovieValidation;
+import movierecommendation.model.MovieViolation;
+import movierecommendation.model.RatingBatchItem;
+import movierecommendation.model.RatingBatchReport;
+import movierecommendation.model.RatingBatchResult;
+import movierecommendation.model.RecommendationQuery;
 import movierecommendation.repository.MovieRepository;
+import movierecommendation.util.MovieCursor;
 import movierecommendation.util.MovieValidator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 class MovieServiceImplTests {
@@ -26,6 +51,48 @@ class MovieServiceImplTests {
     @Mock
     private MovieValidator movieValidator;
 
+    @Mock
+    private RatingAggregator ratingAggregator;
+
+    @Mock
+    private MovieRankingIndex movieRankingIndex;
+
+    @Mock
+    private MovieChangeNotifier movieChangeNotifier;
+
+    @Mock
+    private MovieBulkIngester movieBulkIngester;
+
+    @Mock
+    private RecommendationCache recommendationCache;
+
+    @Mock
+    private RankingScorer rankingScorer;
+
+    @Mock
+    private ItemSimilarityIndex itemSimilarityIndex;
+
+    @Mock
+    private SimilarMovieIndex similarMovieIndex;
+
+    @Mock
+    private TitleSearchIndex titleSearchIndex;
+
+    @Mock
+    private GenreDictionary genreDictionary;
+
+    @Mock
+    private RatingQueue ratingQueue;
+
+    @Mock
+    private CatalogVersion catalogVersion;
+
+    @Mock
+    private TrendingIndex trendingIndex;
+
+    @Mock
+    private MovieNearCache movieNearCache;
+
     @InjectMocks
     private MovieServiceImpl movieService;
 
@@ -37,33 +104,39 @@ class MovieServiceImplTests {
     @Test
     void testAddMovie_ValidMovie() {
         Movie movie = buildMovie("Movie 1", "Drama", 2021);
-        when(movieValidator.validateMovie(movie)).thenReturn(true);
+        when(movieValidator.validate(movie)).thenReturn(MovieValidation.VALID);
         when(movieRepository.existsByTitleAndReleaseYear(movie.getTitle(), movie.getReleaseYear())).thenReturn(false);
         when(movieRepository.save(movie)).thenReturn(movie);
+        when(genreDictionary.encode("Drama")).thenReturn(4L);
 
         ResponseEntity<String> response = movieService.addMovie(movie);
 
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
         assertThat(response.getBody()).isEqualTo("Movie added successfully");
+        assertThat(movie.getGenreBits()).isEqualTo(4L);
+        verify(rankingScorer, times(1)).applyScore(movie);
         verify(movieRepository, times(1)).save(movie);
+        verify(movieChangeNotifier, times(1)).movieAdded(movie);
     }
 
     @Test
     void testAddMovie_InvalidMovie() {
         Movie movie = buildMovie("Movie 1", "Drama", 2021);
-        when(movieValidator.validateMovie(movie)).thenReturn(false);
+        when(movieValidator.validate(movie)).thenReturn(MovieValidation.of(MovieViolation.MISSING_GENRE)
+                .with(MovieViolation.RELEASE_YEAR_OUT_OF_RANGE));
 
         ResponseEntity<String> response = movieService.addMovie(movie);
 
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
-        assertThat(response.getBody()).isEqualTo("Missing mandatory fields: title, genre, and director are required");
+        assertThat(response.getBody()).isEqualTo("Missing mandatory fields: genre required; Release year is out of range");
+        verify(movieRepository, never()).existsByTitleAndReleaseYear(any(), anyInt());
         verify(movieRepository, never()).save(any());
     }
 
     @Test
     void testAddMovie_MovieAlreadyExists() {
         Movie movie = buildMovie("Movie 1", "Drama", 2021);
-        when(movieValidator.validateMovie(movie)).thenReturn(true);
+        when(movieValidator.validate(movie)).thenReturn(MovieValidation.VALID);
         when(movieRepository.existsByTitleAndReleaseYear(movie.getTitle(), movie.getReleaseYear())).thenReturn(true);
 
         ResponseEntity<String> response = movieService.addMovie(movie);
@@ -73,24 +146,33 @@ class MovieServiceImplTests {
         verify(movieRepository, never()).save(any());
     }
 
+    @Test
+    void testAddMovie_TooManyGenres() {
+        Movie movie = buildMovie("Movie 1", "One Too Many", 2021);
+        when(movieValidator.validate(movie)).thenReturn(MovieValidation.VALID);
+        when(genreDictionary.encode("One Too Many")).thenThrow(new TooManyGenresException("Too many genres."));
+
+        ResponseEntity<String> response = movieService.addMovie(movie);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).isEqualTo("Too many genres. At most 64 genres are supported");
+        verify(movieRepository, never()).save(any());
+        verify(movieChangeNotifier, never()).movieAdded(any());
+    }
+
     @Test
     void testRateMovie_ValidRating() {
         // Arrange
         Long movieId = 1L;
         double rating = 4.5;
-        Movie movie = buildMovie("Movie 1", "Drama", 2021);
-        movie.setId(movieId);
-        movie.setAverageRating(3.0);
-        movie.setNumberOfRatings(2);
-        when(movieRepository.findById(movieId)).thenReturn(Optional.of(movie));
+        when(ratingAggregator.record(movieId, null, rating)).thenReturn(true);
 
-        ResponseEntity<String> response = movieService.rateMovie(movieId, rating);
+        ResponseEntity<String> response = movieService.rateMovie(movieId, null, rating);
 
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo("Movie rated successfully");
-        assertThat(movie.getAverageRating()).isEqualTo(3.5);
-        assertThat(movie.getNumberOfRatings()).isEqualTo(3);
-        verify(movieRepository, times(1)).save(movie);
+        verify(ratingAggregator, times(1)).record(movieId, null, rating);
+        verify(movieRepository, never()).save(any());
     }
 
     @Test
@@ -98,10 +180,11 @@ class MovieServiceImplTests {
         Long movieId = 1L;
         double rating = 6.0;
 
-        ResponseEntity<String> response = movieService.rateMovie(movieId, rating);
+        ResponseEntity<String> response = movieService.rateMovie(movieId, null, rating);
 
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
         assertThat(response.getBody()).isEqualTo("Invalid rating value. Rating must be between 1 and 5.");
+        verify(ratingAggregator, never()).record(any(), any(), anyDouble());
         verify(movieRepository, never()).save(any());
     }
 
@@ -109,25 +192,303 @@ class MovieServiceImplTests {
     void testRateMovie_MovieNotFound() {
         Long movieId = 1L;
         double rating = 4.0;
-        when(movieRepository.findById(movieId)).thenReturn(Optional.empty());
+        when(ratingAggregator.record(movieId, null, rating)).thenReturn(false);
 
-        ResponseEntity<String> response = movieService.rateMovie(movieId, rating);
+        ResponseEntity<String> response = movieService.rateMovie(movieId, null, rating);
 
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
         assertThat(response.getBody()).isEqualTo("Movie Not Found");
         verify(movieRepository, never()).save(any());
     }
 
+    @Test
+    void testRateMovie_Async_Accepted() {
+        when(ratingQueue.isEnabled()).thenReturn(true);
+        when(movieNearCache.exists(1L)).thenReturn(true);
+        when(ratingQueue.offer(1L, 7L, 4.0)).thenReturn(true);
+
+        ResponseEntity<String> response = movieService.rateMovie(1L, 7L, 4.0);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        assertThat(response.getBody()).isEqualTo("Rating accepted");
+        verify(ratingAggregator, never()).record(any(), any(), anyDouble());
+        verify(movieRepository, never()).existsById(any());
+    }
+
+    @Test
+    void testRateMovie_Async_QueueFull() {
+        when(ratingQueue.isEnabled()).thenReturn(true);
+        when(movieNearCache.exists(1L)).thenReturn(true);
+        when(ratingQueue.offer(1L, null, 4.0)).thenReturn(false);
+
+        ResponseEntity<String> response = movieService.rateMovie(1L, null, 4.0);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+    }
+
+    @Test
+    void testRateMovie_Async_MovieNotFound() {
+        when(ratingQueue.isEnabled()).thenReturn(true);
+
+        ResponseEntity<String> response = movieService.rateMovie(1L, null, 4.0);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        verify(ratingQueue, never()).offer(anyLong(), any(), anyDouble());
+    }
+
+    @Test
+    void testRateMovie_Async_InvalidRating() {
+        when(ratingQueue.isEnabled()).thenReturn(true);
+
+        ResponseEntity<String> response = movieService.rateMovie(1L, null, 0.5);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verify(ratingQueue, never()).offer(anyLong(), any(), anyDouble());
+    }
+
+    @Test
+    void testRateMovies_ReportsEveryRating() {
+        RatingBatchItem first = new RatingBatchItem(1L, 7L, 4.0);
+        RatingBatchItem second = new RatingBatchItem(1L, null, 2.0);
+        RatingBatchItem unknown = new RatingBatchItem(3L, null, 5.0);
+        when(ratingAggregator.recordAll(List.of(first, second, unknown))).thenReturn(Set.of(1L));
+
+        RatingBatchReport report = movieService.rateMovies(Arrays.asList(first, new RatingBatchItem(2L, null, 6.0),
+                second, new RatingBatchItem(null, null, 3.0), unknown, null));
+
+        assertThat(report.getResults()).extracting(RatingBatchResult::getIndex).containsExactly(0, 1, 2, 3, 4, 5);
+        assertThat(report.getResults()).extracting(RatingBatchResult::getStatus).containsExactly(
+                RatingBatchResult.Status.RATED, RatingBatchResult.Status.INVALID, RatingBatchResult.Status.RATED,
+                RatingBatchResult.Status.INVALID, RatingBatchResult.Status.NOT_FOUND, RatingBatchResult.Status.INVALID);
+        assertThat(report.getResults().get(1).getMessage()).isEqualTo("Invalid rating value. Rating must be between 1 and 5.");
+        assertThat(report.getRated()).isEqualTo(2);
+        assertThat(report.getRejected()).isEqualTo(4);
+        assertThat(report.getMovies()).isEqualTo(1);
+        verify(ratingAggregator, times(1)).recordAll(anyList());
+        verify(ratingAggregator, never()).record(any(), any(), anyDouble());
+    }
+
+    @Test
+    void testRateMovies_InvalidBatchSize() {
+        List<RatingBatchItem> tooMany = new ArrayList<>();
+        for (int i = 0; i <= MovieServiceImpl.MAX_BATCH_SIZE; i++) {
+            tooMany.add(new RatingBatchItem(1L, null, 4.0));
+        }
+
+        assertThatThrownBy(() -> movieService.rateMovies(List.of())).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> movieService.rateMovies(tooMany)).isInstanceOf(IllegalArgumentException.class);
+        verify(ratingAggregator, never()).recordAll(anyList());
+    }
+
+    @Test
+    void testRateMovies_Async_QueuesEachRating() {
+        when(ratingQueue.isEnabled()).thenReturn(true);
+        when(movieNearCache.existing(Set.of(1L, 2L))).thenReturn(Set.of(1L));
+        when(ratingQueue.offer(1L, 7L, 4.0)).thenReturn(true);
+        when(ratingQueue.offer(1L, null, 3.0)).thenReturn(false);
+
+        RatingBatchReport report = movieService.rateMovies(List.of(new RatingBatchItem(1L, 7L, 4.0),
+                new RatingBatchItem(1L, null, 3.0), new RatingBatchItem(2L, null, 3.0)));
+
+        assertThat(report.getResults()).extracting(RatingBatchResult::getStatus).containsExactly(
+                RatingBatchResult.Status.ACCEPTED, RatingBatchResult.Status.REJECTED, RatingBatchResult.Status.NOT_FOUND);
+        assertThat(report.getAccepted()).isEqualTo(1);
+        verify(ratingAggregator, never()).recordAll(anyList());
+    }
+
+    @Test
+    void testGetRecommendationETag_UsesGenreFilter() {
+        RecommendationQuery query = RecommendationQuery.builder().genre("Drama").build();
+        GenreFilter drama = GenreFilter.of(1L, GenreMatch.ANY);
+        when(genreDictionary.filter(List.of("Drama"), GenreMatch.ANY)).thenReturn(drama);
+        when(catalogVersion.etag(drama)).thenReturn("\"e-1-3\"");
+
+        assertThat(movieService.getRecommendationETag(query)).isEqualTo("\"e-1-3\"");
+        verifyNoInteractions(movieRepository, movieRankingIndex);
+    }
+
     @Test
     void testGetAllMovies() {
         List<Movie> expectedMovies = new ArrayList<>();
         expectedMovies.add(buildMovie("Movie 1", "Drama", 2021));
         expectedMovies.add(buildMovie("Movie 2", "Drama", 2022));
-        when(movieRepository.findAll()).thenReturn(expectedMovies);
+        when(movieRankingIndex.all()).thenReturn(expectedMovies);
 
         List<Movie> actualMovies = movieService.getAllMovies();
 
         assertThat(actualMovies).isEqualTo(expectedMovies);
+        verifyNoInteractions(movieRepository);
+    }
+
+    @Test
+    void testRecommendMoviesByRatingsAndGenre() {
+        List<Movie> expectedMovies = new ArrayList<>();
+        expectedMovies.add(buildMovie("Movie 1", "Drama", 2021));
+        RecommendationQuery query = RecommendationQuery.builder().genre("Drama").limit(10).build();
+        GenreFilter drama = GenreFilter.of(1L, GenreMatch.ANY);
+        when(genreDictionary.filter(List.of("Drama"), GenreMatch.ANY)).thenReturn(drama);
+        when(movieRankingIndex.page(drama, MovieSort.RATING, null, 10)).thenReturn(expectedMovies);
+        when(recommendationCache.get(eq(drama), eq(query), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<List<Movie>>>getArgument(2).get());
+
+        List<Movie> actualMovies = movieService.recommendMoviesByRatingsAndGenre(query);
+
+        assertThat(actualMovies).isEqualTo(expectedMovies);
+    }
+
+    @Test
+    void testRecommendMoviesByRatingsAndGenre_UnknownGenre() {
+        RecommendationQuery query = RecommendationQuery.builder().genre("Western").genre("Drama")
+                .match(GenreMatch.ALL).build();
+        when(genreDictionary.filter(List.of("Western", "Drama"), GenreMatch.ALL)).thenReturn(GenreFilter.NOTHING);
+
+        assertThat(movieService.recommendMoviesByRatingsAndGenre(query)).isEmpty();
+        verify(recommendationCache, never()).get(any(), any(), any());
+        verify(movieRankingIndex, never()).page(any(), any(), any(), any());
+    }
+
+    @Test
+    void testRecommendMoviesByRatingsAndGenre_NextPageBypassesCache() {
+        MovieCursor cursor = new MovieCursor(4.0, 3L);
+        List<Movie> expectedMovies = new ArrayList<>();
+        expectedMovies.add(buildMovie("Movie 1", "Drama", 2021));
+        GenreFilter drama = GenreFilter.of(1L, GenreMatch.ANY);
+        when(genreDictionary.filter(List.of("Drama"), GenreMatch.ANY)).thenReturn(drama);
+        when(movieRankingIndex.page(drama, MovieSort.SCORE, cursor, 10)).thenReturn(expectedMovies);
+
+        List<Movie> actualMovies = movieService.recommendMoviesByRatingsAndGenre(RecommendationQuery.builder()
+                .genre("Drama").limit(10).after(cursor).sort(MovieSort.SCORE).build());
+
+        assertThat(actualMovies).isEqualTo(expectedMovies);
+        verify(recommendationCache, never()).get(any(), any(), any());
+    }
+
+    @Test
+    void testRecommendMoviesByRatingsAndGenre_InvalidLimit() {
+        assertThatThrownBy(() -> movieService.recommendMoviesByRatingsAndGenre(RecommendationQuery.builder().limit(0).build()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid limit. Limit must be between 1 and 1000.");
+        verify(movieRankingIndex, never()).page(any(), any(), any(), any());
+    }
+
+    @Test
+    void testRecommendMoviesForUser_FillsWithUnratedPopularMovies() {
+        Movie similar = buildMovie("Movie 1", "Drama", 2021);
+        similar.setId(1L);
+        Movie rated = buildMovie("Movie 2", "Drama", 2021);
+        rated.setId(2L);
+        Movie popular = buildMovie("Movie 3", "Drama", 2021);
+        popular.setId(3L);
+        when(itemSimilarityIndex.recommend(7L, 3)).thenReturn(new long[]{1L});
+        when(itemSimilarityIndex.hasRated(7L, 2L)).thenReturn(true);
+        when(movieRankingIndex.get(1L)).thenReturn(similar);
+        when(movieRankingIndex.page(GenreFilter.UNFILTERED, MovieSort.SCORE, null, 3)).thenReturn(List.of(similar, rated, popular));
+
+        List<Movie> actualMovies = movieService.recommendMoviesForUser(7L, 3);
+
+        assertThat(actualMovies).containsExactly(similar, popular);
+    }
+
+    @Test
+    void testRecommendMoviesForUser_InvalidLimit() {
+        assertThatThrownBy(() -> movieService.recommendMoviesForUser(7L, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(itemSimilarityIndex, never()).recommend(anyLong(), anyInt());
+    }
+
+    @Test
+    void testFindSimilarMovies() {
+        Movie similar = buildMovie("Movie 2", "Drama", 2021);
+        similar.setId(2L);
+        when(similarMovieIndex.similar(1L, 5)).thenReturn(new long[]{2L});
+        when(movieRankingIndex.get(2L)).thenReturn(similar);
+
+        assertThat(movieService.findSimilarMovies(1L, 5)).containsExactly(similar);
+    }
+
+    @Test
+    void testFindSimilarMovies_UnknownMovie() {
+        when(similarMovieIndex.similar(99L, 5)).thenReturn(null);
+
+        assertThat(movieService.findSimilarMovies(99L, 5)).isNull();
+    }
+
+    @Test
+    void testSearchMovies() {
+        Movie match = buildMovie("Star Wars", "Sci-Fi", 1977);
+        match.setId(4L);
+        when(titleSearchIndex.search("star w", 10)).thenReturn(new long[]{4L});
+        when(movieRankingIndex.get(4L)).thenReturn(match);
+
+        assertThat(movieService.searchMovies("star w", 10)).containsExactly(match);
+    }
+
+    @Test
+    void testSearchMovies_BlankQuery() {
+        assertThatThrownBy(() -> movieService.searchMovies("  ", 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid query. Query must not be blank.");
+        verify(titleSearchIndex, never()).search(any(), anyInt());
+    }
+
+    @Test
+    void testGetTrendingMovies_FiltersByGenre() {
+        Movie drama = buildMovie("Drama", "Drama", 2020);
+        drama.setId(1L);
+        when(genreDictionary.filter(List.of("drama"), GenreMatch.ANY)).thenReturn(GenreFilter.of(4L, GenreMatch.ANY));
+        when(movieRankingIndex.genreBits(1L)).thenReturn(4L);
+        when(movieRankingIndex.genreBits(2L)).thenReturn(8L);
+        when(movieRankingIndex.get(1L)).thenReturn(drama);
+        when(trendingIndex.top(eq("1h"), any(), eq(10))).thenAnswer(invocation -> {
+            LongPredicate filter = invocation.getArgument(1);
+            return LongStream.of(2L, 1L).filter(filter).toArray();
+        });
+
+        assertThat(movieService.getTrendingMovies("1h", List.of("drama"), 10)).containsExactly(drama);
+    }
+
+    @Test
+    void testGetTrendingMovies_UnknownGenre() {
+        when(genreDictionary.filter(List.of("western"), GenreMatch.ANY)).thenReturn(GenreFilter.NOTHING);
+
+        assertThat(movieService.getTrendingMovies("1h", List.of("western"), 10)).isEmpty();
+        verify(trendingIndex, never()).top(any(), any(), anyInt());
+    }
+
+    @Test
+    void testGetMovies_AfterCursor() {
+        List<Movie> expectedMovies = new ArrayList<>();
+        expectedMovies.add(buildMovie("Movie 3", "Drama", 2021));
+        when(movieRankingIndex.pageById(2L, 10)).thenReturn(expectedMovies);
+
+        List<Movie> actualMovies = movieService.getMovies(new MovieCursor(0, 2L), 10);
+
+        assertThat(actualMovies).isEqualTo(expectedMovies);
+        verifyNoInteractions(movieRepository);
+    }
+
+    @Test
+    void testGetMovies_InvalidLimit() {
+        assertThatThrownBy(() -> movieService.getMovies(null, 5000))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(movieRankingIndex, never()).pageById(anyLong(), anyInt());
+    }
+
+    @Test
+    void testForEachMovie_PagesThroughIndex() {
+        Movie movie1 = buildMovie("Movie 1", "Drama", 2021);
+        movie1.setId(1L);
+        Movie movie2 = buildMovie("Movie 2", "Drama", 2022);
+        movie2.setId(2L);
+        when(movieRankingIndex.pageById(Long.MIN_VALUE, MovieServiceImpl.MAX_PAGE_SIZE)).thenReturn(List.of(movie1, movie2));
+        when(movieRankingIndex.pageById(2L, MovieServiceImpl.MAX_PAGE_SIZE)).thenReturn(List.of());
+        List<Movie> consumed = new ArrayList<>();
+
+        movieService.forEachMovie(consumed::add);
+
+        assertThat(consumed).containsExactly(movie1, movie2);
+        verifyNoInteractions(movieRepository);
     }
 
     private Movie buildMovie(String title, String genre, int releaseYear) {
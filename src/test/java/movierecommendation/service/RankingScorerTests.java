@@ -0,0 +1,89 @@
+package movierecommendation.service;
+
+import movierecommendation.model.Movie;
+import movierecommendation.repository.MovieRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.*;
+
+class RankingScorerTests {
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieChangeNotifier movieChangeNotifier;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private RankingScorer rankingScorer;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        rankingScorer = new RankingScorer(movieRepository, movieChangeNotifier, transactionManager, 10, 3.0, 0.05);
+    }
+
+    @Test
+    void testScore_ManyRatingsOutrankOneRating() {
+        double oneFiveStarRating = rankingScorer.score(5.0, 1);
+        double manyGoodRatings = rankingScorer.score(4.8, 10_000);
+
+        assertThat(manyGoodRatings).isGreaterThan(oneFiveStarRating);
+        assertThat(oneFiveStarRating).isCloseTo(35.0 / 11, within(1e-9));
+    }
+
+    @Test
+    void testScore_UnratedMovieScoresAtPrior() {
+        assertThat(rankingScorer.score(0, 0)).isEqualTo(3.0);
+    }
+
+    @Test
+    void testApplyScore() {
+        Movie movie = Movie.builder().averageRating(4.0).numberOfRatings(10).build();
+
+        rankingScorer.applyScore(movie);
+
+        assertThat(movie.getRankingScore()).isEqualTo(3.5);
+    }
+
+    @Test
+    void testRefreshPrior_SmallDriftDoesNotRescore() {
+        when(movieRepository.findCatalogMeanRating()).thenReturn(3.01);
+
+        rankingScorer.refreshPrior();
+
+        assertThat(rankingScorer.getPrior()).isEqualTo(3.01);
+        verify(movieRepository, never()).updateRankingScores(anyDouble(), anyDouble());
+        verify(movieChangeNotifier, never()).catalogReloaded();
+    }
+
+    @Test
+    void testRefreshPrior_LargeDriftRescoresOnce() {
+        when(movieRepository.findCatalogMeanRating()).thenReturn(4.0);
+        when(movieRepository.updateRankingScores(4.0, 10)).thenReturn(2);
+
+        rankingScorer.refreshPrior();
+        rankingScorer.refreshPrior();
+
+        assertThat(rankingScorer.score(0, 0)).isEqualTo(4.0);
+        verify(movieRepository, times(1)).updateRankingScores(4.0, 10);
+        verify(movieChangeNotifier, times(1)).catalogReloaded();
+    }
+
+    @Test
+    void testRefreshPrior_EmptyCatalogKeepsDefault() {
+        when(movieRepository.findCatalogMeanRating()).thenReturn(null);
+
+        rankingScorer.refreshPrior();
+
+        assertThat(rankingScorer.getPrior()).isEqualTo(3.0);
+    }
+}
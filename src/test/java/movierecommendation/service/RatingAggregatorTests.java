@@ -0,0 +1,275 @@
+package movierecommendation.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.cache.MovieNearCache;
+import movierecommendation.index.TrendingIndex;
+import movierecommendation.journal.RatingJournal;
+import movierecommendation.model.Movie;
+import movierecommendation.model.RatingBatchItem;
+import movierecommendation.model.UserRating;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.repository.UserRatingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class RatingAggregatorTests {
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private UserRatingRepository userRatingRepository;
+
+    @Mock
+    private MovieChangeNotifier movieChangeNotifier;
+
+    @Mock
+    private RankingScorer rankingScorer;
+
+    @Mock
+    private RatingJournal ratingJournal;
+
+    @Mock
+    private MovieNearCache movieNearCache;
+
+    @Mock
+    private TrendingIndex trendingIndex;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RatingAggregator ratingAggregator;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        ratingAggregator = new RatingAggregator(movieRepository, userRatingRepository, movieChangeNotifier, rankingScorer,
+                ratingJournal, movieNearCache, trendingIndex, transactionManager, 4, meterRegistry);
+        when(movieRepository.saveAll(anyIterable())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userRatingRepository.saveAll(anyIterable()))
+                .thenAnswer(invocation -> new ArrayList<>(invocation.<Collection<UserRating>>getArgument(0)));
+    }
+
+    @Test
+    void testRecordAndFlush() {
+        Movie movie = buildMovie(1L, 3.0, 2);
+        when(movieNearCache.exists(1L)).thenReturn(true);
+        when(movieRepository.findAllById(anyIterable())).thenReturn(List.of(movie));
+
+        assertThat(ratingAggregator.record(1L, 4.5)).isTrue();
+        verify(movieRepository, never()).saveAll(anyIterable());
+        verify(trendingIndex, times(1)).record(1L, 4.5);
+
+        int flushed = ratingAggregator.flush();
+
+        assertThat(flushed).isEqualTo(1);
+        assertThat(movie.getAverageRating()).isEqualTo(3.5);
+        assertThat(movie.getNumberOfRatings()).isEqualTo(3);
+        verify(transactionManager, times(1)).commit(any());
+        verify(rankingScorer, times(1)).applyScore(movie);
+        verify(movieChangeNotifier, times(1)).moviesUpdated(List.of(movie));
+    }
+
+    @Test
+    void testMetrics() {
+        when(movieNearCache.exists(anyLong())).thenReturn(true);
+        when(movieRepository.findAllById(anyIterable())).thenReturn(List.of(buildMovie(1L, 3.0, 2), buildMovie(2L, 3.0, 2)));
+
+        ratingAggregator.record(1L, 4.0);
+        ratingAggregator.record(1L, 7L, 5.0);
+        ratingAggregator.record(2L, 3.0);
+
+        assertThat(meterRegistry.get("ratings.recorded").functionCounter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("ratings.pending.movies").gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get("ratings.pending.user").gauge().value()).isEqualTo(1);
+
+        ratingAggregator.flush();
+
+        assertThat(meterRegistry.get("ratings.flushed").functionCounter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("ratings.pending.movies").gauge().value()).isZero();
+        assertThat(meterRegistry.get("ratings.flush").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testRecord_MovieNotFound() {
+        when(movieNearCache.exists(anyLong())).thenReturn(false);
+
+        assertThat(ratingAggregator.record(7L, 4.0)).isFalse();
+        assertThat(ratingAggregator.flush()).isZero();
+        verify(trendingIndex, never()).record(anyLong(), anyDouble());
+        verify(movieRepository, never()).findAllById(anyIterable());
+    }
+
+    @Test
+    void testFlush_NothingPending() {
+        assertThat(ratingAggregator.flush()).isZero();
+        verify(transactionManager, never()).getTransaction(any());
+    }
+
+    @Test
+    void testConcurrentRatingsAreNotLost() throws Exception {
+        Movie movie = buildMovie(1L, 0, 0);
+        when(movieNearCache.exists(1L)).thenReturn(true);
+        when(movieRepository.findAllById(anyIterable())).thenReturn(List.of(movie));
+
+        int threads = 8;
+        int ratingsPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ratingsPerThread; i++) {
+                    ratingAggregator.record(1L, 4.0);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        ratingAggregator.flush();
+
+        assertThat(movie.getNumberOfRatings()).isEqualTo(threads * ratingsPerThread);
+        assertThat(movie.getAverageRating()).isEqualTo(4.0);
+    }
+
+    @Test
+    void testFailedFlushIsRetried() {
+        Movie movie = buildMovie(1L, 2.0, 1);
+        when(movieNearCache.exists(1L)).thenReturn(true);
+        when(movieRepository.findAllById(anyIterable()))
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(List.of(movie));
+
+        ratingAggregator.record(1L, 4.0);
+
+        assertThat(ratingAggregator.flush()).isZero();
+        assertThat(ratingAggregator.flush()).isEqualTo(1);
+        assertThat(movie.getAverageRating()).isEqualTo(3.0);
+        assertThat(movie.getNumberOfRatings()).isEqualTo(2);
+    }
+
+    @Test
+    void testRecordIsJournaledBeforeAcknowledging() {
+        when(movieNearCache.exists(1L)).thenReturn(true);
+        when(ratingJournal.appendRating(1L, 7L, 4.0)).thenReturn(42L);
+
+        ratingAggregator.record(1L, 7L, 4.0);
+
+        InOrder inOrder = inOrder(ratingJournal);
+        inOrder.verify(ratingJournal).appendRating(1L, 7L, 4.0);
+        inOrder.verify(ratingJournal).awaitDurable(42L);
+    }
+
+    @Test
+    void testUserRatingIsSavedAndPublished() {
+        Movie movie = buildMovie(1L, 0, 0);
+        when(movieNearCache.exists(1L)).thenReturn(true);
+        when(movieRepository.findAllById(anyIterable())).thenReturn(List.of(movie));
+
+        ratingAggregator.record(1L, 7L, 4.0);
+        ratingAggregator.flush();
+
+        assertThat(movie.getNumberOfRatings()).isEqualTo(1);
+        verify(userRatingRepository, times(1)).saveAll(anyIterable());
+        verify(movieChangeNotifier, times(1)).userRatingsUpdated(argThat(ratings -> ratings.size() == 1
+                && ratings.get(0).getUserId() == 7L && ratings.get(0).getRating() == 4.0));
+    }
+
+    @Test
+    void testRerateReplacesPreviousRating() {
+        Movie movie = buildMovie(1L, 2.0, 1);
+        UserRating previous = UserRating.builder().userId(7L).movieId(1L).rating(2.0).build();
+        when(movieNearCache.exists(1L)).thenReturn(true);
+        when(movieRepository.findAllById(anyIterable())).thenReturn(List.of(movie));
+        when(userRatingRepository.findAllById(anyIterable())).thenReturn(List.of(previous));
+
+        ratingAggregator.record(1L, 7L, 4.0);
+        ratingAggregator.flush();
+
+        assertThat(movie.getNumberOfRatings()).isEqualTo(1);
+        assertThat(movie.getAverageRating()).isEqualTo(4.0);
+        assertThat(previous.getRating()).isEqualTo(4.0);
+    }
+
+    @Test
+    void testRepeatedRatingWithinOneFlushCountsOnce() {
+        Movie movie = buildMovie(1L, 0, 0);
+        when(movieNearCache.exists(1L)).thenReturn(true);
+        when(movieRepository.findAllById(anyIterable())).thenReturn(List.of(movie));
+
+        ratingAggregator.record(1L, 7L, 2.0);
+        ratingAggregator.record(1L, 7L, 5.0);
+        ratingAggregator.record(1L, 8L, 3.0);
+        ratingAggregator.flush();
+
+        assertThat(movie.getNumberOfRatings()).isEqualTo(2);
+        assertThat(movie.getAverageRating()).isEqualTo(4.0);
+    }
+
+    @Test
+    void testRecordAll_CoalescesPerMovieAndFlushesOnce() {
+        Movie movie = buildMovie(1L, 3.0, 2);
+        when(movieNearCache.existing(Set.of(1L, 2L))).thenReturn(Set.of(1L));
+        when(ratingJournal.appendRating(anyLong(), any(), anyDouble())).thenReturn(41L, 42L);
+        when(movieRepository.findAllById(anyIterable())).thenReturn(List.of(movie));
+
+        Set<Long> existing = ratingAggregator.recordAll(List.of(new RatingBatchItem(1L, null, 4.0),
+                new RatingBatchItem(2L, null, 5.0), new RatingBatchItem(1L, 7L, 5.0)));
+
+        assertThat(existing).containsExactly(1L);
+        assertThat(movie.getNumberOfRatings()).isEqualTo(4);
+        assertThat(movie.getAverageRating()).isEqualTo(3.75);
+        verify(ratingJournal, never()).appendRating(eq(2L), any(), anyDouble());
+        verify(ratingJournal, times(1)).awaitDurable(anyLong());
+        verify(ratingJournal, times(1)).awaitDurable(42L);
+        verify(movieRepository, times(1)).findAllById(List.of(1L));
+        verify(transactionManager, times(1)).commit(any());
+        verify(trendingIndex, times(2)).record(eq(1L), anyDouble());
+        verify(userRatingRepository, times(1)).saveAll(anyIterable());
+        assertThat(meterRegistry.get("ratings.recorded").functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void testRecordAll_UnknownMoviesOnly() {
+        when(movieNearCache.existing(Set.of(2L))).thenReturn(Set.of());
+
+        assertThat(ratingAggregator.recordAll(List.of(new RatingBatchItem(2L, null, 5.0)))).isEmpty();
+
+        verify(ratingJournal, never()).appendRating(anyLong(), any(), anyDouble());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    private Movie buildMovie(Long id, double averageRating, int numberOfRatings) {
+        return Movie.builder()
+                .id(id)
+                .title("Movie " + id)
+                .genre("Drama")
+                .director("Test Director")
+                .releaseYear(2021)
+                .averageRating(averageRating)
+                .numberOfRatings(numberOfRatings)
+                .build();
+    }
+}
@@ -0,0 +1,84 @@
+package movierecommendation.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class RatingQueueTests {
+
+    @Mock
+    private RatingAggregator ratingAggregator;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testOffer_RejectsWhenFull() {
+        RatingQueue ratingQueue = new RatingQueue(ratingAggregator, false, 2, 10, meterRegistry);
+
+        assertThat(ratingQueue.offer(1L, null, 4.0)).isTrue();
+        assertThat(ratingQueue.offer(2L, 7L, 3.0)).isTrue();
+        assertThat(ratingQueue.offer(3L, null, 5.0)).isFalse();
+
+        assertThat(meterRegistry.get("ratings.queue.depth").gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get("ratings.queue.rejected").functionCounter().count()).isEqualTo(1);
+        verifyNoInteractions(ratingAggregator);
+    }
+
+    @Test
+    void testDrain_AppliesEachBatchInOneFlush() {
+        RatingQueue ratingQueue = new RatingQueue(ratingAggregator, false, 10, 2, meterRegistry);
+        ratingQueue.offer(1L, null, 4.0);
+        ratingQueue.offer(1L, 7L, 5.0);
+        ratingQueue.offer(2L, null, 3.0);
+
+        assertThat(ratingQueue.drain()).isEqualTo(3);
+
+        InOrder inOrder = inOrder(ratingAggregator);
+        inOrder.verify(ratingAggregator).append(1L, null, 4.0);
+        inOrder.verify(ratingAggregator).append(1L, 7L, 5.0);
+        inOrder.verify(ratingAggregator).flush();
+        inOrder.verify(ratingAggregator).append(2L, null, 3.0);
+        inOrder.verify(ratingAggregator).flush();
+        assertThat(meterRegistry.get("ratings.batch.size").summary().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("ratings.batch.size").summary().max()).isEqualTo(2);
+        assertThat(meterRegistry.get("ratings.apply.lag").timer().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("ratings.queue.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    void testWriterAppliesQueuedRatings() throws InterruptedException {
+        RatingQueue ratingQueue = new RatingQueue(ratingAggregator, true, 10, 10, meterRegistry);
+        ratingQueue.start();
+        try {
+            ratingQueue.offer(1L, null, 4.0);
+
+            verify(ratingAggregator, timeout(5000)).append(1L, null, 4.0);
+            verify(ratingAggregator, timeout(5000).atLeastOnce()).flush();
+        } finally {
+            ratingQueue.stop();
+        }
+    }
+
+    @Test
+    void testStop_AppliesRemainingRatings() throws InterruptedException {
+        RatingQueue ratingQueue = new RatingQueue(ratingAggregator, false, 10, 10, meterRegistry);
+        ratingQueue.offer(1L, null, 4.0);
+
+        ratingQueue.stop();
+
+        verify(ratingAggregator).append(1L, null, 4.0);
+        verify(ratingAggregator).flush();
+    }
+}
@@ -0,0 +1,60 @@
+package movierecommendation.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.model.Movie;
+import movierecommendation.model.RecommendationQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class TimedMovieServiceTests {
+
+    @Mock
+    private MovieService delegate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TimedMovieService timedMovieService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        timedMovieService = new TimedMovieService(delegate, meterRegistry);
+    }
+
+    @Test
+    void testTimesDelegatedCalls() {
+        RecommendationQuery query = RecommendationQuery.builder().limit(5).build();
+        List<Movie> movies = List.of(Movie.builder().id(1L).build());
+        when(delegate.rateMovie(1L, null, 4.0)).thenReturn(ResponseEntity.ok("Movie rated successfully"));
+        when(delegate.recommendMoviesByRatingsAndGenre(query)).thenReturn(movies);
+
+        assertThat(timedMovieService.rateMovie(1L, null, 4.0).getBody()).isEqualTo("Movie rated successfully");
+        timedMovieService.rateMovie(1L, null, 4.0);
+        assertThat(timedMovieService.recommendMoviesByRatingsAndGenre(query)).isSameAs(movies);
+
+        assertThat(timer("rateMovie")).isEqualTo(2);
+        assertThat(timer("recommendMoviesByRatingsAndGenre")).isEqualTo(1);
+        assertThat(timer("addMovie")).isZero();
+    }
+
+    @Test
+    void testTimesFailedCalls() {
+        when(delegate.searchMovies(" ", 10)).thenThrow(new IllegalArgumentException("Invalid query. Query must not be blank."));
+
+        assertThatThrownBy(() -> timedMovieService.searchMovies(" ", 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(timer("searchMovies")).isEqualTo(1);
+    }
+
+    private long timer(String method) {
+        return meterRegistry.get("service.invocations").tag("method", method).timer().count();
+    }
+}
@@ -0,0 +1,231 @@
+package movierecommendation.snapshot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import movierecommendation.journal.JournalRecovery;
+import movierecommendation.journal.RatingJournal;
+import movierecommendation.model.Movie;
+import movierecommendation.repository.CatalogLoader;
+import movierecommendation.repository.MovieRepository;
+import movierecommendation.service.GenreDictionary;
+import movierecommendation.service.MovieService;
+import movierecommendation.service.RankingScorer;
+import movierecommendation.service.RatingAggregator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class CatalogSnapshotManagerTests {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieService movieService;
+
+    @Mock
+    private RatingAggregator ratingAggregator;
+
+    @Mock
+    private CatalogLoader catalogLoader;
+
+    @Mock
+    private JournalRecovery journalRecovery;
+
+    @Mock
+    private RatingJournal ratingJournal;
+
+    @Mock
+    private GenreDictionary genreDictionary;
+
+    @Mock
+    private RankingScorer rankingScorer;
+
+    @Captor
+    private ArgumentCaptor<List<Movie>> movies;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CatalogSnapshotManager catalogSnapshotManager;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        catalogSnapshotManager = new CatalogSnapshotManager(movieRepository, movieService, ratingAggregator, catalogLoader,
+                journalRecovery, ratingJournal, genreDictionary, rankingScorer, meterRegistry, directory.resolve("catalog.snap").toString(), false);
+    }
+
+    @Test
+    void testExport_FlushesPendingRatingsFirst() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Movie> consumer = invocation.getArgument(0);
+            consumer.accept(buildMovie(1L, "Drama"));
+            consumer.accept(buildMovie(2L, "Action"));
+            return null;
+        }).when(movieService).forEachMovie(any());
+
+        assertThat(catalogSnapshotManager.export()).isEqualTo(2);
+
+        InOrder inOrder = inOrder(ratingAggregator, movieService);
+        inOrder.verify(ratingAggregator).flush();
+        inOrder.verify(movieService).forEachMovie(any());
+        assertThat(CatalogSnapshotReader.open(catalogSnapshotManager.getFile()).size()).isEqualTo(2);
+        assertThat(meterRegistry.get("catalog.snapshot.export").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testLoadOnStartup_InsertsAndJournalsMoviesAndMovesSequence() throws Exception {
+        writeSnapshot(buildMovie(1L, "Drama"), buildMovie(9L, "Drama"));
+        when(movieRepository.count()).thenReturn(0L);
+        when(genreDictionary.encodeLenient("Drama")).thenReturn(4L);
+        when(rankingScorer.score(anyDouble(), anyInt())).thenReturn(3.5);
+
+        catalogSnapshotManager.loadOnStartup();
+
+        verify(catalogLoader).insertMovies(movies.capture());
+        assertThat(movies.getValue()).hasSize(2);
+        Movie expected = buildMovie(1L, "Drama");
+        expected.setGenreBits(4L);
+        expected.setRankingScore(3.5);
+        assertThat(movies.getValue().get(0)).usingRecursiveComparison().isEqualTo(expected);
+        verify(ratingJournal).onMoviesAdded(movies.getValue());
+        verify(genreDictionary, times(1)).encodeLenient("Drama");
+        verify(catalogLoader).restartMovieSequenceAbove(9L);
+        verify(ratingJournal).recordSnapshotLoaded(9L);
+        assertThat(meterRegistry.get("catalog.snapshot.load").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testLoadOnStartup_CompletesDatabaseRestoredFromJournal() throws Exception {
+        writeSnapshot(buildMovie(1L, "Drama"), buildMovie(9L, "Drama"));
+        when(movieRepository.count()).thenReturn(1L);
+        when(journalRecovery.isRestored()).thenReturn(true);
+        when(movieRepository.findIdsByIdIn(List.of(1L, 9L))).thenReturn(List.of(1L));
+        when(movieRepository.findMaxIdInRange(0, Long.MAX_VALUE)).thenReturn(20L);
+
+        catalogSnapshotManager.loadOnStartup();
+
+        verify(catalogLoader).insertMovies(movies.capture());
+        assertThat(movies.getValue()).extracting(Movie::getId).containsExactly(9L);
+        verify(ratingJournal).onMoviesAdded(movies.getValue());
+        verify(catalogLoader).restartMovieSequenceAbove(20L);
+    }
+
+    @Test
+    void testLoadOnStartup_LeavesPopulatedDatabaseAlone() throws Exception {
+        writeSnapshot(buildMovie(1L, "Drama"));
+        when(movieRepository.count()).thenReturn(5L);
+
+        catalogSnapshotManager.loadOnStartup();
+
+        verifyNoInteractions(catalogLoader);
+        verify(ratingJournal, never()).onMoviesAdded(any());
+    }
+
+    @Test
+    void testLoadOnStartup_SkipsSnapshotAlreadyLoadedIntoJournal() throws Exception {
+        writeSnapshot(buildMovie(1L, "Drama"), buildMovie(9L, "Drama"));
+        when(movieRepository.count()).thenReturn(1L);
+        when(journalRecovery.isRestored()).thenReturn(true);
+        when(ratingJournal.isSnapshotLoaded()).thenReturn(true);
+
+        catalogSnapshotManager.loadOnStartup();
+
+        verifyNoInteractions(catalogLoader);
+        verify(ratingJournal, never()).onMoviesAdded(any());
+    }
+
+    @Test
+    void testLoadOnStartup_DoesNotRestoreMoviesDeletedByJournal() throws Exception {
+        writeSnapshot(buildMovie(1L, "Drama"), buildMovie(9L, "Drama"));
+        when(movieRepository.count()).thenReturn(1L);
+        when(journalRecovery.isRestored()).thenReturn(true);
+        when(journalRecovery.isDeleted(9L)).thenReturn(true);
+        when(movieRepository.findIdsByIdIn(List.of(1L))).thenReturn(List.of(1L));
+
+        catalogSnapshotManager.loadOnStartup();
+
+        verify(catalogLoader).insertMovies(movies.capture());
+        assertThat(movies.getValue()).isEmpty();
+        verify(ratingJournal).recordSnapshotLoaded(9L);
+    }
+
+    @Test
+    void testLoadOnStartup_DeletedSnapshotMovieStaysGoneAfterRestart() throws Exception {
+        writeSnapshot(buildMovie(1L, "Drama"), buildMovie(9L, "Drama"));
+        when(movieRepository.count()).thenReturn(0L);
+        RatingJournal journal = journal();
+        new JournalRecovery(journal, movieRepository, catalogLoader, rankingScorer, genreDictionary).recover();
+        manager(journal, new JournalRecovery(journal, movieRepository, catalogLoader, rankingScorer, genreDictionary))
+                .loadOnStartup();
+        journal.onMoviesRemoved(List.of(9L));
+        journal.close();
+        reset(catalogLoader);
+
+        RatingJournal restarted = journal();
+        JournalRecovery recovery = new JournalRecovery(restarted, movieRepository, catalogLoader, rankingScorer,
+                genreDictionary);
+        recovery.recover();
+        when(movieRepository.count()).thenReturn(1L);
+        manager(restarted, recovery).loadOnStartup();
+        restarted.close();
+
+        verify(catalogLoader).insertMovies(movies.capture());
+        assertThat(movies.getAllValues()).hasSize(1);
+        assertThat(movies.getValue()).extracting(Movie::getId).containsExactly(1L);
+        assertThat(restarted.isSnapshotLoaded()).isTrue();
+    }
+
+    @Test
+    void testLoadOnStartup_WithoutSnapshotFile() throws Exception {
+        catalogSnapshotManager.loadOnStartup();
+
+        verifyNoInteractions(movieRepository, catalogLoader);
+    }
+
+    private RatingJournal journal() {
+        return new RatingJournal(true, directory.resolve("journal").toString(), "always", 10, 1 << 20, 1, 3, 10,
+                1 << 20, new SimpleMeterRegistry());
+    }
+
+    private CatalogSnapshotManager manager(RatingJournal journal, JournalRecovery recovery) {
+        return new CatalogSnapshotManager(movieRepository, movieService, ratingAggregator, catalogLoader, recovery,
+                journal, genreDictionary, rankingScorer, meterRegistry, catalogSnapshotManager.getFile().toString(),
+                false);
+    }
+
+    private void writeSnapshot(Movie... movies) throws Exception {
+        CatalogSnapshotWriter writer = new CatalogSnapshotWriter();
+        for (Movie movie : movies) {
+            writer.add(movie);
+        }
+        writer.write(catalogSnapshotManager.getFile());
+    }
+
+    private Movie buildMovie(Long id, String genre) {
+        return Movie.builder()
+                .id(id)
+                .title("Movie " + id)
+                .genre(genre)
+                .director("Director")
+                .releaseYear(2000 + id.intValue())
+                .averageRating(4.0)
+                .numberOfRatings(10)
+                .build();
+    }
+}
@@ -0,0 +1,108 @@
+package movierecommendation.snapshot;
+
+import movierecommendation.model.Movie;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CatalogSnapshotReaderTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRoundTrip() throws IOException {
+        Path file = directory.resolve("catalog.snap");
+        CatalogSnapshotWriter writer = new CatalogSnapshotWriter();
+        for (long id = 1; id <= 3000; id++) {
+            writer.add(buildMovie(id, "Movie " + id, id % 2 == 0 ? "Drama" : "Action|Comedy", "Director " + (id % 7)));
+        }
+        writer.add(buildMovie(5000L, "Am\u00e9lie", null, null));
+
+        long bytes = writer.write(file);
+
+        assertThat(Files.size(file)).isEqualTo(bytes);
+        assertThat(Files.exists(directory.resolve("catalog.snap.tmp"))).isFalse();
+        CatalogSnapshotReader reader = CatalogSnapshotReader.open(file);
+        assertThat(reader.size()).isEqualTo(3001);
+        assertThat(reader.id(41)).isEqualTo(42L);
+        assertThat(reader.title(41)).isEqualTo("Movie 42");
+        assertThat(reader.genre(41)).isEqualTo("Drama");
+        assertThat(reader.genre(42)).isEqualTo("Action|Comedy");
+        assertThat(reader.director(41)).isEqualTo("Director 0");
+        assertThat(reader.releaseYear(41)).isEqualTo(1992);
+        assertThat(reader.averageRating(41)).isEqualTo(3.5);
+        assertThat(reader.numberOfRatings(41)).isEqualTo(42);
+        assertThat(reader.id(3000)).isEqualTo(5000L);
+        assertThat(reader.title(3000)).isEqualTo("Am\u00e9lie");
+        assertThat(reader.genre(3000)).isNull();
+        assertThat(reader.director(3000)).isNull();
+    }
+
+    @Test
+    void testEmptyCatalog() throws IOException {
+        Path file = directory.resolve("catalog.snap");
+        new CatalogSnapshotWriter().write(file);
+
+        assertThat(CatalogSnapshotReader.open(file).size()).isZero();
+    }
+
+    @Test
+    void testCorruptedFileIsRejected() throws IOException {
+        Path file = directory.resolve("catalog.snap");
+        CatalogSnapshotWriter writer = new CatalogSnapshotWriter();
+        writer.add(buildMovie(1L, "Movie 1", "Drama", "Director"));
+        writer.write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[20] ^= 1;
+        Files.write(file, bytes);
+
+        assertThatThrownBy(() -> CatalogSnapshotReader.open(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("checksum");
+    }
+
+    @Test
+    void testTruncatedFileIsRejected() throws IOException {
+        Path file = directory.resolve("catalog.snap");
+        Files.write(file, new byte[]{1, 2, 3});
+
+        assertThatThrownBy(() -> CatalogSnapshotReader.open(file)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void testUnsupportedVersionIsRejected() throws IOException {
+        Path file = directory.resolve("catalog.snap");
+        new CatalogSnapshotWriter().write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(4, CatalogSnapshotFormat.VERSION + 1);
+        CRC32C checksum = new CRC32C();
+        checksum.update(bytes, 0, bytes.length - 4);
+        ByteBuffer.wrap(bytes).putInt(bytes.length - 4, (int) checksum.getValue());
+        Files.write(file, bytes);
+
+        assertThatThrownBy(() -> CatalogSnapshotReader.open(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("version");
+    }
+
+    private Movie buildMovie(Long id, String title, String genre, String director) {
+        return Movie.builder()
+                .id(id)
+                .title(title)
+                .genre(genre)
+                .director(director)
+                .releaseYear(1950 + (int) (id % 75))
+                .averageRating(id % 2 == 0 ? 3.5 : 4.0)
+                .numberOfRatings((int) (id % 500))
+                .build();
+    }
+}
@@ -0,0 +1,52 @@
+package movierecommendation.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IntFloatHashMapTest {
+
+    @Test
+    public void testPutAddToAndGrow() {
+        IntFloatHashMap map = new IntFloatHashMap();
+        for (int key = 0; key < 1000; key++) {
+            map.put(key, key);
+        }
+        map.addTo(10, 0.5f);
+        map.addTo(5000, 2f);
+
+        assertEquals(1001, map.size());
+        assertEquals(10.5f, map.get(10, Float.NaN));
+        assertEquals(2f, map.get(5000, Float.NaN));
+        assertTrue(map.containsKey(999));
+        assertFalse(map.containsKey(1000));
+        assertEquals(-1f, map.get(1000, -1f));
+    }
+
+    @Test
+    public void testIterateBySlot() {
+        IntFloatHashMap map = new IntFloatHashMap();
+        map.put(3, 1f);
+        map.put(7, 2f);
+
+        float sum = 0;
+        int count = 0;
+        for (int slot = 0; slot < map.capacity(); slot++) {
+            if (map.keyAt(slot) != IntFloatHashMap.EMPTY) {
+                sum += map.valueAt(slot);
+                count++;
+            }
+        }
+
+        assertEquals(2, count);
+        assertEquals(3f, sum);
+    }
+
+    @Test
+    public void testNegativeKeyRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new IntFloatHashMap().put(-1, 1f));
+    }
+}
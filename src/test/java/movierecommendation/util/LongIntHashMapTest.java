@@ -0,0 +1,42 @@
+package movierecommendation.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LongIntHashMapTest {
+
+    @Test
+    public void testPutGetAndGrow() {
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < 1000; i++) {
+            map.put(Long.MAX_VALUE - i, i);
+        }
+        map.put(Long.MAX_VALUE, 42);
+
+        assertEquals(1000, map.size());
+        assertEquals(42, map.get(Long.MAX_VALUE, -1));
+        assertEquals(999, map.get(Long.MAX_VALUE - 999, -1));
+        assertEquals(-1, map.get(0L, -1));
+    }
+
+    @Test
+    public void testRemoveKeepsCollidingKeysReachable() {
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            map.remove(i);
+        }
+        map.remove(5000L);
+
+        assertEquals(500, map.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 0 ? -1 : i, map.get(i, -1));
+        }
+        map.put(0L, 7);
+        assertEquals(7, map.get(0L, -1));
+        assertEquals(501, map.size());
+    }
+}
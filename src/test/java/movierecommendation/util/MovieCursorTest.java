@@ -0,0 +1,31 @@
+package movierecommendation.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MovieCursorTest {
+
+    @Test
+    public void testEncodeDecodeRoundTrip() {
+        MovieCursor cursor = new MovieCursor(4.333333333333333, 42L);
+
+        MovieCursor decoded = MovieCursor.decode(cursor.encode());
+
+        assertEquals(cursor, decoded);
+    }
+
+    @Test
+    public void testDecodeMissingCursor() {
+        assertNull(MovieCursor.decode(null));
+        assertNull(MovieCursor.decode(""));
+    }
+
+    @Test
+    public void testDecodeMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> MovieCursor.decode("bm90LWEtY3Vyc29y"));
+        assertThrows(IllegalArgumentException.class, () -> MovieCursor.decode("%%%"));
+    }
+}
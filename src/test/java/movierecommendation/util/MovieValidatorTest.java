@@ -1,12 +1,19 @@
 package movierecommendation.util;
 
 import movierecommendation.model.Movie;
+import movierecommendation.model.MovieValidation;
+import movierecommendation.model.MovieViolation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.MockitoAnnotations;
 
+import java.time.Year;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class MovieValidatorTest {
@@ -82,4 +89,43 @@ public class MovieValidatorTest {
 
         assertFalse(isValid);
     }
+
+    @Test
+    public void testValidateCollectsEveryViolation() {
+        Movie movie = new Movie();
+        movie.setTitle("x".repeat(MovieValidator.MAX_TITLE_LENGTH + 1));
+        movie.setGenre(" ");
+        movie.setReleaseYear(1700);
+
+        MovieValidation validation = movieValidator.validate(movie);
+
+        assertEquals(List.of(MovieViolation.MISSING_GENRE, MovieViolation.MISSING_DIRECTOR,
+                MovieViolation.RELEASE_YEAR_OUT_OF_RANGE, MovieViolation.TITLE_TOO_LONG), validation.getViolations());
+        assertEquals("Missing mandatory fields: genre, director required; Release year is out of range; "
+                + "Title is too long", validation.getMessage());
+    }
+
+    @Test
+    public void testValidateReleaseYearRange() {
+        Movie movie = new Movie();
+        movie.setTitle("Valid Title");
+        movie.setGenre("Action");
+        movie.setDirector("Director");
+
+        movie.setReleaseYear(MovieValidator.MIN_RELEASE_YEAR);
+        assertTrue(movieValidator.validate(movie).isValid());
+
+        movie.setReleaseYear(Year.now().getValue() + MovieValidator.MAX_YEARS_AHEAD + 1);
+        assertTrue(movieValidator.validate(movie).has(MovieViolation.RELEASE_YEAR_OUT_OF_RANGE));
+    }
+
+    @Test
+    public void testValidateReusesResults() {
+        Movie movie = new Movie();
+        movie.setGenre("Action");
+        movie.setDirector("Director");
+
+        assertSame(movieValidator.validate(movie), movieValidator.validate(movie));
+        assertSame(MovieValidation.of(MovieViolation.MISSING_TITLE), movieValidator.validate(movie));
+    }
 }